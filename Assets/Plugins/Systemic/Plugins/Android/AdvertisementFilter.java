@@ -0,0 +1,255 @@
+package com.systemic.bluetoothle;
+
+import java.util.UUID;
+
+import android.bluetooth.BluetoothDevice;
+import android.os.ParcelUuid;
+
+import no.nordicsemi.android.support.v18.scanner.ScanFilter;
+import no.nordicsemi.android.support.v18.scanner.ScanRecord;
+import no.nordicsemi.android.support.v18.scanner.ScanResult;
+
+/**
+ * @brief Criteria that an advertisement packet must match to be notified to user code,
+ *        see Scanner.setAdvertisementFilters().
+ *
+ * Instances are immutable and created with AdvertisementFilter.Builder.
+ *
+ * Manufacturer data and service data criteria are passed down to the Bluetooth controller
+ * so packets that don't match are dropped by the hardware when it supports filtering.
+ * The device name prefix and the minimum RSSI can't be offloaded and are checked in Java,
+ * before any serialization of the advertisement data.
+ */
+public final class AdvertisementFilter
+{
+    /**
+     * @brief Builds an AdvertisementFilter object.
+     *
+     * All criteria are optional, a filter without any criteria matches all packets.
+     */
+    public static final class Builder
+    {
+        private int _companyId = -1;
+        private byte[] _manufacturerData;
+        private byte[] _manufacturerDataMask;
+        private UUID _serviceDataUuid;
+        private byte[] _serviceData;
+        private byte[] _serviceDataMask;
+        private String _namePrefix;
+        private int _minRssi = Integer.MIN_VALUE;
+
+        /**
+         * @brief Requires manufacturer data for the given company.
+         *
+         * @param companyId The company identifier, between 0 and 65535.
+         * @param prefix The bytes the manufacturer data must start with, may be null or empty.
+         * @param mask The bits of the prefix to compare, same length as the prefix,
+         *             may be null to compare all the bits.
+         * @return This builder.
+         */
+        public Builder setManufacturerData(final int companyId, final byte[] prefix, final byte[] mask)
+        {
+            if ((companyId < 0) || (companyId > 0xFFFF))
+            {
+                throw new IllegalArgumentException("companyId must be between 0 and 65535");
+            }
+            checkMask(prefix, mask);
+            _companyId = companyId;
+            _manufacturerData = prefix == null ? new byte[0] : prefix.clone();
+            _manufacturerDataMask = mask == null ? null : mask.clone();
+            return this;
+        }
+
+        /**
+         * @brief Requires service data for the given service.
+         *
+         * @param serviceUuid The service UUID.
+         * @param prefix The bytes the service data must start with, may be null or empty.
+         * @param mask The bits of the prefix to compare, same length as the prefix,
+         *             may be null to compare all the bits.
+         * @return This builder.
+         */
+        public Builder setServiceData(final String serviceUuid, final byte[] prefix, final byte[] mask)
+        {
+            if (serviceUuid == null)
+            {
+                throw new IllegalArgumentException("serviceUuid is null");
+            }
+            return setServiceData(UUID.fromString(serviceUuid), prefix, mask);
+        }
+
+        /**
+         * @brief Requires service data for the service with the given UuidRegistry identifier.
+         *
+         * @param serviceId The service UUID identifier.
+         * @param prefix The bytes the service data must start with, may be null or empty.
+         * @param mask The bits of the prefix to compare, same length as the prefix,
+         *             may be null to compare all the bits.
+         * @return This builder.
+         */
+        public Builder setServiceData(final int serviceId, final byte[] prefix, final byte[] mask)
+        {
+            return setServiceData(UuidRegistry.get(serviceId), prefix, mask);
+        }
+
+        /**
+         * @brief Requires the device name to start with the given string (case sensitive).
+         *
+         * @param namePrefix The name prefix, may be null to remove that criteria.
+         * @return This builder.
+         */
+        public Builder setNamePrefix(final String namePrefix)
+        {
+            _namePrefix = namePrefix;
+            return this;
+        }
+
+        /**
+         * @brief Requires the signal strength to be at least the given value.
+         *
+         * @param minRssi The minimum RSSI in dBm.
+         * @return This builder.
+         */
+        public Builder setMinRssi(final int minRssi)
+        {
+            _minRssi = minRssi;
+            return this;
+        }
+
+        /**
+         * @brief Creates a filter with the criteria set so far.
+         */
+        public AdvertisementFilter build()
+        {
+            return new AdvertisementFilter(this);
+        }
+
+        private Builder setServiceData(final UUID serviceUuid, final byte[] prefix, final byte[] mask)
+        {
+            checkMask(prefix, mask);
+            _serviceDataUuid = serviceUuid;
+            _serviceData = prefix == null ? new byte[0] : prefix.clone();
+            _serviceDataMask = mask == null ? null : mask.clone();
+            return this;
+        }
+
+        private static void checkMask(final byte[] prefix, final byte[] mask)
+        {
+            if ((mask != null) && ((prefix == null) || (mask.length != prefix.length)))
+            {
+                throw new IllegalArgumentException("mask must have the same length as prefix");
+            }
+        }
+    }
+
+    private final int _companyId;
+    private final byte[] _manufacturerData;
+    private final byte[] _manufacturerDataMask;
+    private final ParcelUuid _serviceDataUuid;
+    private final byte[] _serviceData;
+    private final byte[] _serviceDataMask;
+    private final String _namePrefix;
+    private final int _minRssi;
+
+    private AdvertisementFilter(final Builder builder)
+    {
+        _companyId = builder._companyId;
+        _manufacturerData = builder._manufacturerData;
+        _manufacturerDataMask = builder._manufacturerDataMask;
+        _serviceDataUuid = builder._serviceDataUuid == null ? null : new ParcelUuid(builder._serviceDataUuid);
+        _serviceData = builder._serviceData;
+        _serviceDataMask = builder._serviceDataMask;
+        _namePrefix = builder._namePrefix;
+        _minRssi = builder._minRssi;
+    }
+
+    /**
+     * @brief Creates the Android scan filter with the criteria that may be offloaded
+     *        to the Bluetooth controller.
+     *
+     * @param serviceUuid A service UUID the device must advertise, may be null.
+     */
+    ScanFilter toScanFilter(final UUID serviceUuid)
+    {
+        ScanFilter.Builder builder = new ScanFilter.Builder();
+        if (serviceUuid != null)
+        {
+            builder.setServiceUuid(new ParcelUuid(serviceUuid));
+        }
+        if (_companyId >= 0)
+        {
+            builder.setManufacturerData(_companyId, _manufacturerData, _manufacturerDataMask);
+        }
+        if (_serviceDataUuid != null)
+        {
+            builder.setServiceData(_serviceDataUuid, _serviceData, _serviceDataMask);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @brief Checks whether the given scan result matches all the criteria of this filter.
+     *
+     * Offloaded criteria are checked again as some Bluetooth stacks only filter
+     * on a subset of them.
+     */
+    boolean matches(final ScanResult scanResult)
+    {
+        if (scanResult.getRssi() < _minRssi)
+        {
+            return false;
+        }
+
+        ScanRecord scanRecord = scanResult.getScanRecord();
+        if (_namePrefix != null)
+        {
+            String name = scanRecord == null ? null : scanRecord.getDeviceName();
+            if (name == null)
+            {
+                BluetoothDevice device = scanResult.getDevice();
+                name = device == null ? null : device.getName();
+            }
+            if ((name == null) || !name.startsWith(_namePrefix))
+            {
+                return false;
+            }
+        }
+
+        if ((_companyId >= 0)
+            && ((scanRecord == null)
+                || !matchesPrefix(scanRecord.getManufacturerSpecificData(_companyId), _manufacturerData, _manufacturerDataMask)))
+        {
+            return false;
+        }
+
+        if ((_serviceDataUuid != null)
+            && ((scanRecord == null)
+                || !matchesPrefix(scanRecord.getServiceData(_serviceDataUuid), _serviceData, _serviceDataMask)))
+        {
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * @brief Checks whether the data starts with the given prefix, comparing only
+     *        the bits set in the mask.
+     */
+    private static boolean matchesPrefix(final byte[] data, final byte[] prefix, final byte[] mask)
+    {
+        if ((data == null) || (data.length < prefix.length))
+        {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; ++i)
+        {
+            int m = mask == null ? 0xFF : mask[i];
+            if (((data[i] ^ prefix[i]) & m) != 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,309 @@
+package com.systemic.bluetoothle;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import android.os.ParcelUuid;
+import android.util.SparseArray;
+import android.bluetooth.BluetoothDevice;
+
+import no.nordicsemi.android.support.v18.scanner.ScanRecord;
+import no.nordicsemi.android.support.v18.scanner.ScanResult;
+
+/**
+ * @brief Static class for serializing a scan result into a compact binary record.
+ *
+ * This is the binary counterpart of the JSON advertisement data returned by the
+ * Scanner class. It is meant for callers that want to avoid building and parsing
+ * a JSON string for each received advertisement packet.
+ *
+ * All multi-bytes integers are stored in little-endian order, UUIDs are stored
+ * as 16 bytes in their canonical (big-endian) order.
+ *
+ * A record starts with a fixed size header:
+ * | Offset | Type | Description                                                |
+ * |--------|------|------------------------------------------------------------|
+ * | 0      | u16  | Total length of the record in bytes, header included       |
+ * | 2      | u8   | Format version, see VERSION                                |
+ * | 3      | u8   | Flags, see FLAG_CONNECTABLE and FLAG_LEGACY                |
+ * | 4      | i32  | System id (same value as "systemId" in the JSON format)    |
+ * | 8      | i64  | Bluetooth address                                          |
+ * | 16     | i8   | RSSI                                                       |
+ * | 17     | i8   | Tx power level, 127 if not present                         |
+ *
+ * It is followed by any number of sections, each one starting with a one byte type
+ * and a u16 length (of the section value), see the SECTION_xxx constants.
+ * Readers should skip sections with an unknown type.
+ */
+public final class AdvertisementRecord
+{
+    //! Current version of the binary format.
+    public static final int VERSION = 1;
+
+    //! Size in bytes of the record header.
+    public static final int HEADER_SIZE = 18;
+
+    //! Size in bytes of a section header (type and length).
+    public static final int SECTION_HEADER_SIZE = 3;
+
+    //! Flag set when the peripheral is connectable.
+    public static final int FLAG_CONNECTABLE = 0x1;
+
+    //! Flag set for legacy advertisements.
+    public static final int FLAG_LEGACY = 0x2;
+
+    //! Section with the device name, UTF-8 encoded.
+    public static final int SECTION_NAME = 1;
+
+    //! Section with the list of advertised services, 16 bytes per UUID.
+    public static final int SECTION_SERVICES = 2;
+
+    //! Section with a company id (u16) followed by its manufacturer data, one section per company.
+    public static final int SECTION_MANUFACTURER_DATA = 3;
+
+    //! Section with a service UUID (16 bytes) followed by its data, one section per service.
+    public static final int SECTION_SERVICE_DATA = 4;
+
+    private AdvertisementRecord() {}
+
+    /**
+     * @brief Gets the size in bytes of the record for the given scan result.
+     *
+     * @param scanResult The scan result.
+     * @param name The device name, may be null.
+     * @return The size of the record in bytes.
+     */
+    public static int computeSize(final ScanResult scanResult, final String name)
+    {
+        int size = HEADER_SIZE;
+        if (name != null)
+        {
+            size += SECTION_HEADER_SIZE + utf8Length(name);
+        }
+
+        ScanRecord scanRecord = scanResult.getScanRecord();
+        if (scanRecord != null)
+        {
+            List<ParcelUuid> services = scanRecord.getServiceUuids();
+            if ((services != null) && (services.size() > 0))
+            {
+                size += SECTION_HEADER_SIZE + 16 * services.size();
+            }
+
+            SparseArray<byte[]> manufacturersData = scanRecord.getManufacturerSpecificData();
+            if (manufacturersData != null)
+            {
+                for (int i = 0; i < manufacturersData.size(); ++i)
+                {
+                    size += SECTION_HEADER_SIZE + 2 + manufacturersData.valueAt(i).length;
+                }
+            }
+
+            Map<ParcelUuid, byte[]> servicesData = scanRecord.getServiceData();
+            if (servicesData != null)
+            {
+                for (byte[] data : servicesData.values())
+                {
+                    size += SECTION_HEADER_SIZE + 16 + data.length;
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @brief Writes the record for the given scan result at the current position of a buffer.
+     *
+     * The buffer must be in little-endian order and have at least computeSize() bytes
+     * remaining. On return the buffer position is right after the record.
+     *
+     * @param dst The buffer to write to.
+     * @param scanResult The scan result.
+     * @param address The Bluetooth address of the device as a 48 bits integer.
+     * @param name The device name, may be null.
+     */
+    public static void write(final ByteBuffer dst, final ScanResult scanResult, final long address, final String name)
+    {
+        final int start = dst.position();
+        final BluetoothDevice device = scanResult.getDevice();
+
+        int flags = 0;
+        if (scanResult.isConnectable()) flags |= FLAG_CONNECTABLE;
+        if (scanResult.isLegacy()) flags |= FLAG_LEGACY;
+
+        // Header, length is written last
+        dst.putShort((short)0);
+        dst.put((byte)VERSION);
+        dst.put((byte)flags);
+        dst.putInt(device == null ? 0 : device.hashCode());
+        dst.putLong(address);
+        dst.put((byte)clampToByte(scanResult.getRssi()));
+        dst.put((byte)clampToByte(scanResult.getTxPower()));
+
+        if (name != null)
+        {
+            writeSectionHeader(dst, SECTION_NAME, utf8Length(name));
+            writeUtf8(dst, name);
+        }
+
+        ScanRecord scanRecord = scanResult.getScanRecord();
+        if (scanRecord != null)
+        {
+            // Services
+            List<ParcelUuid> services = scanRecord.getServiceUuids();
+            if ((services != null) && (services.size() > 0))
+            {
+                writeSectionHeader(dst, SECTION_SERVICES, 16 * services.size());
+                for (int i = 0; i < services.size(); ++i)
+                {
+                    writeUuid(dst, services.get(i).getUuid());
+                }
+            }
+
+            // Manufacturer data
+            SparseArray<byte[]> manufacturersData = scanRecord.getManufacturerSpecificData();
+            if (manufacturersData != null)
+            {
+                for (int i = 0; i < manufacturersData.size(); ++i)
+                {
+                    byte[] data = manufacturersData.valueAt(i);
+                    writeSectionHeader(dst, SECTION_MANUFACTURER_DATA, 2 + data.length);
+                    dst.putShort((short)manufacturersData.keyAt(i));
+                    dst.put(data);
+                }
+            }
+
+            // Service data
+            Map<ParcelUuid, byte[]> servicesData = scanRecord.getServiceData();
+            if (servicesData != null)
+            {
+                for (Map.Entry<ParcelUuid, byte[]> entry : servicesData.entrySet())
+                {
+                    byte[] data = entry.getValue();
+                    writeSectionHeader(dst, SECTION_SERVICE_DATA, 16 + data.length);
+                    writeUuid(dst, entry.getKey().getUuid());
+                    dst.put(data);
+                }
+            }
+        }
+
+        // Now that we know it, write the record length
+        dst.putShort(start, (short)(dst.position() - start));
+    }
+
+    /**
+     * @brief Makes sure the given buffer can hold the requested number of bytes,
+     *        and returns either the same buffer or a larger one.
+     *
+     * The returned buffer is cleared, direct and in little-endian order.
+     */
+    static ByteBuffer ensureCapacity(final ByteBuffer buffer, final int capacity)
+    {
+        if ((buffer != null) && (buffer.capacity() >= capacity))
+        {
+            buffer.clear();
+            return buffer;
+        }
+        int newCapacity = buffer == null ? 256 : buffer.capacity();
+        while (newCapacity < capacity)
+        {
+            newCapacity *= 2;
+        }
+        return ByteBuffer.allocateDirect(newCapacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void writeSectionHeader(final ByteBuffer dst, final int type, final int length)
+    {
+        dst.put((byte)type);
+        dst.putShort((short)length);
+    }
+
+    private static void writeUuid(final ByteBuffer dst, final UUID uuid)
+    {
+        // UUIDs are stored in their canonical order, regardless of the buffer order
+        putLongBigEndian(dst, uuid.getMostSignificantBits());
+        putLongBigEndian(dst, uuid.getLeastSignificantBits());
+    }
+
+    private static void putLongBigEndian(final ByteBuffer dst, final long value)
+    {
+        for (int shift = 56; shift >= 0; shift -= 8)
+        {
+            dst.put((byte)(value >> shift));
+        }
+    }
+
+    private static int clampToByte(final int value)
+    {
+        return Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, value));
+    }
+
+    /**
+     * @brief Indicates whether the character at the given index starts a valid surrogate pair.
+     */
+    private static boolean isSurrogatePair(final String str, final int index)
+    {
+        return Character.isHighSurrogate(str.charAt(index))
+            && (index + 1 < str.length())
+            && Character.isLowSurrogate(str.charAt(index + 1));
+    }
+
+    /**
+     * @brief Gets the number of bytes of the UTF-8 representation of the given string,
+     *        see writeUtf8().
+     */
+    private static int utf8Length(final String str)
+    {
+        int length = 0;
+        for (int i = 0; i < str.length(); ++i)
+        {
+            char c = str.charAt(i);
+            if (c < 0x80) length += 1;
+            else if (c < 0x800) length += 2;
+            else if (isSurrogatePair(str, i)) { length += 4; ++i; }
+            else length += 3; // Lone surrogates are written as U+FFFD, also 3 bytes
+        }
+        return length;
+    }
+
+    /**
+     * @brief Writes the UTF-8 representation of the given string without allocating memory.
+     *
+     * Unpaired surrogates are replaced by U+FFFD as they can't be encoded in UTF-8.
+     */
+    private static void writeUtf8(final ByteBuffer dst, final String str)
+    {
+        for (int i = 0; i < str.length(); ++i)
+        {
+            char c = str.charAt(i);
+            if (c < 0x80)
+            {
+                dst.put((byte)c);
+            }
+            else if (c < 0x800)
+            {
+                dst.put((byte)(0xC0 | (c >> 6)));
+                dst.put((byte)(0x80 | (c & 0x3F)));
+            }
+            else if (isSurrogatePair(str, i))
+            {
+                int cp = Character.toCodePoint(c, str.charAt(++i));
+                dst.put((byte)(0xF0 | (cp >> 18)));
+                dst.put((byte)(0x80 | ((cp >> 12) & 0x3F)));
+                dst.put((byte)(0x80 | ((cp >> 6) & 0x3F)));
+                dst.put((byte)(0x80 | (cp & 0x3F)));
+            }
+            else
+            {
+                // Replace lone surrogates by the Unicode replacement character
+                if (Character.isSurrogate(c)) c = '\uFFFD';
+                dst.put((byte)(0xE0 | (c >> 12)));
+                dst.put((byte)(0x80 | ((c >> 6) & 0x3F)));
+                dst.put((byte)(0x80 | (c & 0x3F)));
+            }
+        }
+    }
+}
\ No newline at end of file
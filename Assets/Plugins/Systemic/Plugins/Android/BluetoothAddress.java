@@ -0,0 +1,76 @@
+package com.systemic.bluetoothle;
+
+/**
+ * @brief Static class for converting Bluetooth addresses between their 48 bits
+ *        integer form and their string form.
+ *
+ * The string form is made of 6 groups of 2 hexadecimal digits separated by colons,
+ * with the most significant byte first, such as "01:23:45:67:89:AB".
+ * This is the format used by Android's BluetoothDevice.getAddress().
+ *
+ * Conversions are done without regular expressions, string splitting or boxing
+ * as they are used for each received advertisement packet.
+ */
+public final class BluetoothAddress
+{
+    //! Number of characters of a Bluetooth address in its string form.
+    public static final int STRING_LENGTH = 17;
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private BluetoothAddress() {}
+
+    /**
+     * @brief Converts a Bluetooth address string to a 48 bits integer.
+     *
+     * @param address A Bluetooth address such as "01:23:45:67:89:AB", case insensitive.
+     * @return The Bluetooth address as a 48 bits integer.
+     */
+    public static long toLong(final String address)
+    {
+        if ((address == null) || (address.length() != STRING_LENGTH))
+        {
+            throw new IllegalArgumentException("address must be a string of the form \"01:23:45:67:89:AB\"");
+        }
+
+        long value = 0;
+        for (int i = 0; i < STRING_LENGTH; i += 3)
+        {
+            if ((i > 0) && (address.charAt(i - 1) != ':'))
+            {
+                throw new IllegalArgumentException("address must be a string of the form \"01:23:45:67:89:AB\"");
+            }
+            value = (value << 8) | (hexToInt(address.charAt(i)) << 4) | hexToInt(address.charAt(i + 1));
+        }
+        return value;
+    }
+
+    /**
+     * @brief Converts a 48 bits integer to a Bluetooth address string.
+     *
+     * @param address The Bluetooth address as a 48 bits integer.
+     * @return The Bluetooth address string with upper case hexadecimal digits,
+     *         as expected by Android's BluetoothAdapter.getRemoteDevice().
+     */
+    public static String toString(final long address)
+    {
+        char[] chars = new char[STRING_LENGTH];
+        int index = 0;
+        for (int shift = 40; shift >= 0; shift -= 8)
+        {
+            if (index > 0) chars[index++] = ':';
+            int octet = (int)(address >> shift) & 0xFF;
+            chars[index++] = HEX_DIGITS[octet >> 4];
+            chars[index++] = HEX_DIGITS[octet & 0xF];
+        }
+        return new String(chars);
+    }
+
+    private static int hexToInt(final char c)
+    {
+        if ((c >= '0') && (c <= '9')) return c - '0';
+        if ((c >= 'A') && (c <= 'F')) return c - 'A' + 10;
+        if ((c >= 'a') && (c <= 'f')) return c - 'a' + 10;
+        throw new IllegalArgumentException("address contains an invalid hexadecimal digit");
+    }
+}
\ No newline at end of file
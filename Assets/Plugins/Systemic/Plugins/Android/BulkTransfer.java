@@ -0,0 +1,574 @@
+package com.systemic.bluetoothle;
+
+import java.util.Objects;
+
+import android.bluetooth.BluetoothDevice;
+import android.util.Log;
+
+import no.nordicsemi.android.ble.callback.FailCallback;
+
+/**
+ * @brief Uploads a large block of data to a Pixel die with the bulk data messages,
+ *        resuming where it left off after a connection loss.
+ *
+ * The transfer starts with a BulkSetup message giving the data size, which the die
+ * acknowledges with a BulkSetupAck message. The data is then sent in BulkData messages
+ * of up to CHUNK_SIZE bytes. The die answers each BulkData message with a BulkDataAck
+ * message which is expected to hold the end offset of the data received without gap.
+ * An acknowledgment therefore covers the chunk ending at that offset and all the chunks before it, the last
+ * chunk being acknowledged with the data size.
+ *
+ * Rather than waiting for each chunk to be acknowledged before sending the next one,
+ * up to windowSize chunks are sent ahead. Chunks not covered by an acknowledgment within
+ * ACK_TIMEOUT_MILLIS are sent again, the die is expected to ignore data it already has.
+ *
+ * The receiving code of Pixel.DataTransfer.cs rather adds up the size of the BulkData
+ * messages received, so a chunk received twice is counted twice. This happens
+ * with any window size, including a window of 1 chunk, as soon as an acknowledgment
+ * arrives late and the chunk is sent again. The acknowledgments of such a die are then
+ * ahead of the data actually received. Those covering chunks that were never sent are
+ * ignored, so the transfer eventually fails on a timeout rather than completing with
+ * missing data, but an acknowledgment covering a chunk still in flight is trusted.
+ *
+ * If the peripheral disconnects, the transfer is paused and may be resumed once
+ * the peripheral is ready again, see resume(). The setup message is sent again and
+ * then only the chunks that were not acknowledged yet, which requires the die to keep
+ * the data already received when given a BulkSetup message with the same size.
+ *
+ * Messages are written to the die's write characteristic without response, and the
+ * acknowledgments are intercepted from the die's notify characteristic, which must be
+ * subscribed. Other notified messages are forwarded to user code as usual.
+ *
+ * Callbacks are run on the peripheral callback handler.
+ * This class is thread safe.
+ */
+public final class BulkTransfer
+{
+    private static final String TAG = "SystemicGames";
+
+    //! Maximum number of data bytes in a BulkData message.
+    public static final int CHUNK_SIZE = 100;
+
+    //! Maximum number of bytes that may be transferred.
+    public static final int MAX_SIZE = Short.MAX_VALUE;
+
+    //! Time after which an unacknowledged message is sent again.
+    public static final long ACK_TIMEOUT_MILLIS = 1000;
+
+    //! Number of times a message is sent again before failing the transfer.
+    public static final int MAX_RETRIES = 5;
+
+    // Pixels message types, see MessageType.cs
+    private static final byte MESSAGE_BULK_SETUP = 5;
+    private static final byte MESSAGE_BULK_SETUP_ACK = 6;
+    private static final byte MESSAGE_BULK_DATA = 7;
+    private static final byte MESSAGE_BULK_DATA_ACK = 8;
+
+    // BulkData messages always have the full data array
+    private static final int BULK_DATA_HEADER_SIZE = 4;
+
+    private static final int STATE_IDLE = 0;
+    private static final int STATE_SETUP = 1;
+    private static final int STATE_SENDING = 2;
+    private static final int STATE_PAUSED = 3;
+    private static final int STATE_COMPLETED = 4;
+    private static final int STATE_FAILED = 5;
+
+    /**
+     * @brief Interface for the transfer callbacks.
+     */
+    public interface Callback
+    {
+        /**
+         * @brief Called when more data was acknowledged by the die.
+         *
+         * @param ackedBytes The number of bytes acknowledged so far.
+         * @param totalBytes The size of the data.
+         */
+        void onProgress(final int ackedBytes, final int totalBytes);
+
+        /**
+         * @brief Called when the transfer is paused because the peripheral disconnected.
+         */
+        void onPaused();
+
+        /**
+         * @brief Called once all the data has been acknowledged.
+         */
+        void onCompleted();
+
+        /**
+         * @brief Called when the transfer has failed, it can't be resumed.
+         *
+         * @param error The error message.
+         */
+        void onFailed(final String error);
+    }
+
+    /**
+     * @brief The link to the die, implemented with a Peripheral.
+     */
+    interface Link
+    {
+        /**
+         * @brief Writes a message to the die.
+         */
+        void write(final byte[] message, final Peripheral.RequestCallback callback);
+
+        /**
+         * @brief Starts forwarding the messages received from the die to the given transfer.
+         */
+        void startReceiving(final BulkTransfer transfer);
+
+        /**
+         * @brief Stops forwarding the messages received from the die.
+         */
+        void stopReceiving();
+
+        /**
+         * @brief Runs the given runnable after the given delay.
+         */
+        void postDelayed(final Runnable runnable, final long delayMillis);
+
+        /**
+         * @brief Removes the given runnable if it's pending.
+         */
+        void removeCallbacks(final Runnable runnable);
+    }
+
+    /**
+     * @brief Link implementation for a Peripheral.
+     */
+    private static final class PeripheralLink implements Link
+    {
+        private final Peripheral _peripheral;
+        private final int _writeHandle;
+        private final int _notifyHandle;
+
+        PeripheralLink(final Peripheral peripheral, final int writeHandle, final int notifyHandle)
+        {
+            _peripheral = peripheral;
+            _writeHandle = writeHandle;
+            _notifyHandle = notifyHandle;
+        }
+
+        @Override
+        public void write(final byte[] message, final Peripheral.RequestCallback callback)
+        {
+            _peripheral.writeCharacteristic(_writeHandle, message, true, callback);
+        }
+
+        @Override
+        public void startReceiving(final BulkTransfer transfer)
+        {
+            _peripheral.setValueInterceptor(_notifyHandle, transfer::onMessage);
+        }
+
+        @Override
+        public void stopReceiving()
+        {
+            _peripheral.setValueInterceptor(_notifyHandle, null);
+        }
+
+        @Override
+        public void postDelayed(final Runnable runnable, final long delayMillis)
+        {
+            _peripheral.getCallbackHandler().postDelayed(runnable, delayMillis);
+        }
+
+        @Override
+        public void removeCallbacks(final Runnable runnable)
+        {
+            _peripheral.getCallbackHandler().removeCallbacks(runnable);
+        }
+    }
+
+    private final Link _link;
+    private final byte[] _data;
+    private final int _windowSize;
+    private final Callback _callback;
+    private final Clock _clock;
+    private final Runnable _timeoutRunnable = this::onTimeoutCheck;
+
+    private final int _chunksCount;
+    private final boolean[] _acked;
+    // Time at which each chunk was last sent, zero if not in flight
+    private final long[] _sentTimes;
+    private final int[] _retries;
+    private int _inFlightCount;
+    private int _ackedCount;
+    private int _ackedBytes;
+
+    private int _state = STATE_IDLE;
+    private long _setupSentTime;
+    private int _setupRetries;
+
+    // Throughput measurement, excluding the time spent paused
+    private long _activeStartTime;
+    private long _activeMillis;
+
+    /**
+     * @brief Initializes a transfer of the given data to a Pixel die.
+     *
+     * @param peripheral The die peripheral.
+     * @param writeHandle The handle of the die's write characteristic.
+     * @param notifyHandle The handle of the die's notify characteristic.
+     * @param data The data to upload, at most MAX_SIZE bytes.
+     * @param windowSize The maximum number of chunks sent ahead of acknowledgments, at least 1.
+     * @param callback The callback for notifying of the transfer progress and result.
+     */
+    public BulkTransfer(final Peripheral peripheral, final int writeHandle, final int notifyHandle, final byte[] data, final int windowSize, final Callback callback)
+    {
+        this(new PeripheralLink(Objects.requireNonNull(peripheral), writeHandle, notifyHandle), data, windowSize, callback, Clock.SYSTEM);
+    }
+
+    BulkTransfer(final Link link, final byte[] data, final int windowSize, final Callback callback, final Clock clock)
+    {
+        Objects.requireNonNull(data);
+        Objects.requireNonNull(callback);
+        if ((data.length == 0) || (data.length > MAX_SIZE))
+        {
+            throw new IllegalArgumentException("data length must be between 1 and " + MAX_SIZE);
+        }
+        if (windowSize < 1)
+        {
+            throw new IllegalArgumentException("windowSize must be at least 1");
+        }
+
+        _link = link;
+        _data = data.clone();
+        _windowSize = windowSize;
+        _callback = callback;
+        _clock = clock;
+        _chunksCount = (data.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        _acked = new boolean[_chunksCount];
+        _sentTimes = new long[_chunksCount];
+        _retries = new int[_chunksCount];
+    }
+
+    /**
+     * @brief Starts the transfer, the peripheral must be ready.
+     */
+    public synchronized void start()
+    {
+        Log.v(TAG, "==> BulkTransfer::start " + _data.length + " bytes");
+
+        if (_state != STATE_IDLE)
+        {
+            throw new IllegalStateException("Transfer already started");
+        }
+        _link.startReceiving(this);
+        sendSetup();
+    }
+
+    /**
+     * @brief Resumes a paused transfer, the peripheral must be ready again.
+     *
+     * Only the data that wasn't acknowledged before the transfer was paused is sent.
+     */
+    public synchronized void resume()
+    {
+        Log.v(TAG, "==> BulkTransfer::resume at " + _ackedBytes + " bytes");
+
+        if (_state != STATE_PAUSED)
+        {
+            throw new IllegalStateException("Transfer is not paused");
+        }
+        _setupRetries = 0;
+        sendSetup();
+    }
+
+    /**
+     * @brief Cancels the transfer, the failure callback is not called.
+     */
+    public synchronized void cancel()
+    {
+        Log.v(TAG, "==> BulkTransfer::cancel");
+
+        if ((_state != STATE_COMPLETED) && (_state != STATE_FAILED))
+        {
+            stopActiveTime();
+            _state = STATE_FAILED;
+            _link.removeCallbacks(_timeoutRunnable);
+            _link.stopReceiving();
+        }
+    }
+
+    /**
+     * @brief Indicates whether the transfer is paused.
+     */
+    public synchronized boolean isPaused()
+    {
+        return _state == STATE_PAUSED;
+    }
+
+    /**
+     * @brief Gets the number of bytes acknowledged by the die so far.
+     */
+    public synchronized int getAckedBytes()
+    {
+        return _ackedBytes;
+    }
+
+    /**
+     * @brief Gets the throughput of the transfer, the time spent paused being excluded.
+     *
+     * @return The number of acknowledged bytes per second.
+     */
+    public synchronized double getBytesPerSecond()
+    {
+        long activeMillis = _activeMillis;
+        if (_activeStartTime != 0)
+        {
+            activeMillis += _clock.elapsedMillis() - _activeStartTime;
+        }
+        return activeMillis <= 0 ? 0 : _ackedBytes * 1000.0 / activeMillis;
+    }
+
+    /**
+     * @brief Processes a message received from the die.
+     *
+     * @return Whether the message belongs to the transfer.
+     */
+    synchronized boolean onMessage(final byte[] message)
+    {
+        if ((message.length == 0) || ((message[0] != MESSAGE_BULK_SETUP_ACK) && (message[0] != MESSAGE_BULK_DATA_ACK)))
+        {
+            return false;
+        }
+
+        if ((_state == STATE_SETUP) && (message[0] == MESSAGE_BULK_SETUP_ACK))
+        {
+            _state = STATE_SENDING;
+            _setupRetries = 0;
+            sendChunks();
+        }
+        else if ((_state == STATE_SENDING) && (message[0] == MESSAGE_BULK_DATA_ACK) && (message.length >= 3))
+        {
+            int offset = (message[1] & 0xFF) | ((message[2] & 0xFF) << 8);
+            onDataAcked(offset);
+        }
+        // Late or duplicated acknowledgments are dropped
+        return true;
+    }
+
+    private void sendSetup()
+    {
+        _state = STATE_SETUP;
+        _setupSentTime = _clock.elapsedMillis();
+        if (_activeStartTime == 0)
+        {
+            _activeStartTime = _setupSentTime;
+        }
+
+        // Chunks in flight before a pause are lost
+        for (int i = 0; i < _chunksCount; ++i)
+        {
+            _sentTimes[i] = 0;
+        }
+        _inFlightCount = 0;
+
+        final int size = _data.length;
+        write(new byte[] { MESSAGE_BULK_SETUP, (byte)size, (byte)(size >> 8) });
+        scheduleTimeoutCheck();
+    }
+
+    private void sendChunks()
+    {
+        final long now = _clock.elapsedMillis();
+        for (int i = 0; (i < _chunksCount) && (_inFlightCount < _windowSize); ++i)
+        {
+            if ((!_acked[i]) && (_sentTimes[i] == 0))
+            {
+                sendChunk(i, now);
+                ++_inFlightCount;
+            }
+        }
+    }
+
+    private void sendChunk(final int index, final long now)
+    {
+        final int offset = index * CHUNK_SIZE;
+        final int length = Math.min(CHUNK_SIZE, _data.length - offset);
+        byte[] message = new byte[BULK_DATA_HEADER_SIZE + CHUNK_SIZE];
+        message[0] = MESSAGE_BULK_DATA;
+        message[1] = (byte)length;
+        message[2] = (byte)offset;
+        message[3] = (byte)(offset >> 8);
+        System.arraycopy(_data, offset, message, BULK_DATA_HEADER_SIZE, length);
+
+        _sentTimes[index] = now;
+        write(message);
+    }
+
+    private void onDataAcked(final int offset)
+    {
+        // The acknowledged offset is the end of a chunk, or the data size for the last chunk
+        if ((offset <= 0) || (offset > _data.length) || (((offset % CHUNK_SIZE) != 0) && (offset != _data.length)))
+        {
+            return;
+        }
+
+        // An acknowledgment covering a chunk that was never sent can't be trusted,
+        // it comes from a die that counted some data twice
+        final int count = (offset + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        for (int i = 0; i < count; ++i)
+        {
+            if (!_acked[i] && (_sentTimes[i] == 0))
+            {
+                Log.w(TAG, "Ignoring bulk data acknowledgment of unsent data at offset " + offset);
+                return;
+            }
+        }
+
+        // Acknowledge all the chunks up to that offset
+        final int ackedCount = _ackedCount;
+        for (int i = 0; i < count; ++i)
+        {
+            if (!_acked[i])
+            {
+                _acked[i] = true;
+                if (_sentTimes[i] != 0)
+                {
+                    _sentTimes[i] = 0;
+                    --_inFlightCount;
+                }
+                ++_ackedCount;
+                _ackedBytes += Math.min(CHUNK_SIZE, _data.length - i * CHUNK_SIZE);
+            }
+        }
+        if (_ackedCount == ackedCount)
+        {
+            // Duplicated acknowledgment
+            return;
+        }
+        _callback.onProgress(_ackedBytes, _data.length);
+
+        if (_ackedCount == _chunksCount)
+        {
+            Log.v(TAG, "Bulk transfer completed at " + Math.round(getBytesPerSecond()) + " bytes/s");
+
+            stopActiveTime();
+            _state = STATE_COMPLETED;
+            _link.removeCallbacks(_timeoutRunnable);
+            _link.stopReceiving();
+            _callback.onCompleted();
+        }
+        else
+        {
+            sendChunks();
+        }
+    }
+
+    private synchronized void onTimeoutCheck()
+    {
+        final long now = _clock.elapsedMillis();
+        if (_state == STATE_SETUP)
+        {
+            if (now - _setupSentTime >= ACK_TIMEOUT_MILLIS)
+            {
+                if (++_setupRetries > MAX_RETRIES)
+                {
+                    fail("No acknowledgment of bulk setup");
+                    return;
+                }
+                sendSetup();
+                return;
+            }
+        }
+        else if (_state == STATE_SENDING)
+        {
+            // Send again the chunks that were not acknowledged in time
+            for (int i = 0; i < _chunksCount; ++i)
+            {
+                if ((_sentTimes[i] != 0) && (now - _sentTimes[i] >= ACK_TIMEOUT_MILLIS))
+                {
+                    if (++_retries[i] > MAX_RETRIES)
+                    {
+                        fail("No acknowledgment of bulk data at offset " + (i * CHUNK_SIZE));
+                        return;
+                    }
+                    sendChunk(i, now);
+                }
+            }
+        }
+        else
+        {
+            return;
+        }
+        scheduleTimeoutCheck();
+    }
+
+    private void scheduleTimeoutCheck()
+    {
+        _link.removeCallbacks(_timeoutRunnable);
+        _link.postDelayed(_timeoutRunnable, ACK_TIMEOUT_MILLIS / 2);
+    }
+
+    private void write(final byte[] message)
+    {
+        _link.write(message, new Peripheral.RequestCallback()
+        {
+            @Override
+            public void onRequestCompleted(final BluetoothDevice device)
+            {
+            }
+
+            @Override
+            public void onRequestFailed(final BluetoothDevice device, final int status)
+            {
+                onWriteFailed(status);
+            }
+
+            @Override
+            public void onInvalidRequest()
+            {
+                onWriteFailed(FailCallback.REASON_NULL_ATTRIBUTE);
+            }
+        });
+    }
+
+    private synchronized void onWriteFailed(final int status)
+    {
+        if ((_state != STATE_SETUP) && (_state != STATE_SENDING))
+        {
+            return;
+        }
+
+        // Other errors are dealt with by the acknowledgment timeout
+        if ((status == FailCallback.REASON_DEVICE_DISCONNECTED)
+            || (status == FailCallback.REASON_CANCELLED)
+            || (status == FailCallback.REASON_NULL_ATTRIBUTE)
+            || (status == FailCallback.REASON_BLUETOOTH_DISABLED))
+        {
+            // The characteristic is released on disconnection, so this is also
+            // the error for writes queued before the link was lost
+            Log.w(TAG, "Bulk transfer paused at " + _ackedBytes + " bytes");
+
+            stopActiveTime();
+            _state = STATE_PAUSED;
+            _link.removeCallbacks(_timeoutRunnable);
+            _callback.onPaused();
+        }
+    }
+
+    private void fail(final String error)
+    {
+        Log.e(TAG, "Bulk transfer failed: " + error);
+
+        stopActiveTime();
+        _state = STATE_FAILED;
+        _link.removeCallbacks(_timeoutRunnable);
+        _link.stopReceiving();
+        _callback.onFailed(error);
+    }
+
+    private void stopActiveTime()
+    {
+        if (_activeStartTime != 0)
+        {
+            _activeMillis += _clock.elapsedMillis() - _activeStartTime;
+            _activeStartTime = 0;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.systemic.bluetoothle;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * @brief Static class that provides Android Handler objects running on background threads,
+ *        to be used for dispatching Bluetooth callbacks.
+ *
+ * By default Nordic's library runs the peripherals callbacks on the main thread, where they
+ * compete with the Unity player and the other Android components. A peripheral may instead
+ * be given a Handler from this class, see Peripheral(BluetoothDevice, ConnectionObserver, Handler).
+ *
+ * Handlers are either dedicated to a peripheral, or taken from a small pool of threads
+ * shared between peripherals.
+ */
+public final class CallbackHandlers
+{
+    private static final String TAG = "SystemicGames";
+
+    private static final Object _sync = new Object();
+    private static HandlerThread[] _sharedThreads;
+    private static Handler[] _sharedHandlers;
+    private static int _nextSharedIndex;
+
+    private CallbackHandlers() {}
+
+    /**
+     * @brief Creates a Handler running on a new thread.
+     *
+     * The thread runs until releaseDedicated() is called.
+     *
+     * @param name The name of the thread.
+     * @return A Handler for the new thread.
+     */
+    public static Handler createDedicated(final String name)
+    {
+        Log.v(TAG, "==> createDedicated " + name);
+
+        return new Handler(startThread(name).getLooper());
+    }
+
+    /**
+     * @brief Stops the thread of a Handler returned by createDedicated(),
+     *        once its pending callbacks have run.
+     *
+     * @param handler The Handler returned by createDedicated().
+     */
+    public static void releaseDedicated(final Handler handler)
+    {
+        Log.v(TAG, "==> releaseDedicated");
+
+        handler.getLooper().quitSafely();
+    }
+
+    /**
+     * @brief Gets a Handler from the pool of shared threads, in a round-robin fashion.
+     *
+     * The pool is created on the first call with the given size, the size is ignored
+     * on subsequent calls. The shared threads run for the lifetime of the application.
+     *
+     * @param poolSize The number of threads of the pool, must be greater than zero.
+     * @return A Handler running on one of the shared threads.
+     */
+    public static Handler getShared(final int poolSize)
+    {
+        if (poolSize <= 0)
+        {
+            throw new IllegalArgumentException("poolSize must be greater than zero");
+        }
+
+        synchronized (_sync)
+        {
+            if (_sharedHandlers == null)
+            {
+                Log.v(TAG, "==> Creating " + poolSize + " shared callback threads");
+
+                _sharedThreads = new HandlerThread[poolSize];
+                _sharedHandlers = new Handler[poolSize];
+                for (int i = 0; i < poolSize; ++i)
+                {
+                    _sharedThreads[i] = startThread("SystemicBle-" + i);
+                    _sharedHandlers[i] = new Handler(_sharedThreads[i].getLooper());
+                }
+            }
+
+            Handler handler = _sharedHandlers[_nextSharedIndex];
+            _nextSharedIndex = (_nextSharedIndex + 1) % _sharedHandlers.length;
+            return handler;
+        }
+    }
+
+    private static HandlerThread startThread(final String name)
+    {
+        // Bluetooth callbacks are short and latency sensitive
+        HandlerThread thread = new HandlerThread(name, Process.THREAD_PRIORITY_MORE_FAVORABLE);
+        thread.start();
+        return thread;
+    }
+}
\ No newline at end of file
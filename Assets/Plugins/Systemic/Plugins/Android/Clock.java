@@ -0,0 +1,18 @@
+package com.systemic.bluetoothle;
+
+import android.os.SystemClock;
+
+/**
+ * @brief Source of time for the classes implementing time based policies,
+ *        so they may be run with a fake clock.
+ */
+interface Clock
+{
+    //! The system clock, based on SystemClock.elapsedRealtime().
+    Clock SYSTEM = () -> SystemClock.elapsedRealtime();
+
+    /**
+     * @brief Gets the monotonic time in milliseconds.
+     */
+    long elapsedMillis();
+}
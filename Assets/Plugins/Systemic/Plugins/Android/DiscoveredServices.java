@@ -0,0 +1,148 @@
+package com.systemic.bluetoothle;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattService;
+
+/**
+ * @brief The services discovered on a peripheral connection, with the views
+ *        returned to user code built on first use and then reused.
+ *
+ * A new instance is created on each services discovery, so views never outlive
+ * the services they were built from.
+ *
+ * This class is thread safe.
+ */
+final class DiscoveredServices
+{
+    // Size in bytes of the GATT table entries, see Peripheral.getGattTable()
+    private static final int SERVICE_ENTRY_SIZE = 18;
+    private static final int CHARACTERISTIC_ENTRY_SIZE = 18;
+
+    private final List<BluetoothGattService> _services;
+    private String _servicesUuids;
+    private final HashMap<String, String> _characteristicsUuids = new HashMap<>();
+    private byte[] _gattTable;
+
+    /**
+     * @brief Initializes with the services of a discovery.
+     */
+    DiscoveredServices(final List<BluetoothGattService> services)
+    {
+        _services = services;
+    }
+
+    /**
+     * @brief Gets the comma separated list of the services UUIDs.
+     */
+    synchronized String getServicesUuids()
+    {
+        if (_servicesUuids == null)
+        {
+            // A UUID string is 36 characters long
+            StringBuilder sb = new StringBuilder(37 * _services.size());
+            for (BluetoothGattService service : _services)
+            {
+                if (sb.length() > 0) sb.append(",");
+                sb.append(service.getUuid());
+            }
+            _servicesUuids = sb.toString();
+        }
+        return _servicesUuids;
+    }
+
+    /**
+     * @brief Gets the comma separated list of the characteristics UUIDs of the given service.
+     *
+     * @param serviceUuid The service UUID string, as given by user code.
+     * @return The list of UUIDs, or null if there is no such service.
+     */
+    synchronized String getCharacteristicsUuids(final String serviceUuid)
+    {
+        // Cached by the given string to save from parsing it again
+        String uuids = _characteristicsUuids.get(serviceUuid);
+        if ((uuids == null) && !_characteristicsUuids.containsKey(serviceUuid))
+        {
+            BluetoothGattService service = getService(UUID.fromString(serviceUuid));
+            List<BluetoothGattCharacteristic> characteristics = service == null ? null : service.getCharacteristics();
+            if (characteristics != null)
+            {
+                StringBuilder sb = new StringBuilder(37 * characteristics.size());
+                for (BluetoothGattCharacteristic characteristic : characteristics)
+                {
+                    if (sb.length() > 0) sb.append(",");
+                    sb.append(characteristic.getUuid());
+                }
+                uuids = sb.toString();
+            }
+            _characteristicsUuids.put(serviceUuid, uuids);
+        }
+        return uuids;
+    }
+
+    /**
+     * @brief Gets the binary GATT table, see Peripheral.getGattTable() for its format.
+     */
+    synchronized byte[] getGattTable()
+    {
+        if (_gattTable == null)
+        {
+            int size = 2;
+            for (BluetoothGattService service : _services)
+            {
+                size += SERVICE_ENTRY_SIZE + CHARACTERISTIC_ENTRY_SIZE * service.getCharacteristics().size();
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putShort((short)_services.size());
+            for (BluetoothGattService service : _services)
+            {
+                List<BluetoothGattCharacteristic> characteristics = service.getCharacteristics();
+                putUuid(buffer, service.getUuid());
+                buffer.putShort((short)characteristics.size());
+                for (int i = 0; i < characteristics.size(); ++i)
+                {
+                    BluetoothGattCharacteristic characteristic = characteristics.get(i);
+                    UUID uuid = characteristic.getUuid();
+
+                    // Count the previous characteristics with the same UUID
+                    int instanceIndex = 0;
+                    for (int j = 0; j < i; ++j)
+                    {
+                        if (characteristics.get(j).getUuid().equals(uuid)) ++instanceIndex;
+                    }
+
+                    putUuid(buffer, uuid);
+                    buffer.put((byte)instanceIndex);
+                    buffer.put((byte)characteristic.getProperties());
+                }
+            }
+            _gattTable = buffer.array();
+        }
+        return _gattTable;
+    }
+
+    private BluetoothGattService getService(final UUID serviceUuid)
+    {
+        for (BluetoothGattService service : _services)
+        {
+            if (service.getUuid().equals(serviceUuid))
+            {
+                return service;
+            }
+        }
+        return null;
+    }
+
+    private static void putUuid(final ByteBuffer buffer, final UUID uuid)
+    {
+        // UUIDs are stored in their string order
+        buffer.putLong(Long.reverseBytes(uuid.getMostSignificantBits()));
+        buffer.putLong(Long.reverseBytes(uuid.getLeastSignificantBits()));
+    }
+}
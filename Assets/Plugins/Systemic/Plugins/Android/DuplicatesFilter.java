@@ -0,0 +1,124 @@
+package com.systemic.bluetoothle;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import android.os.ParcelUuid;
+import android.util.LongSparseArray;
+import android.util.SparseArray;
+
+import no.nordicsemi.android.support.v18.scanner.ScanRecord;
+import no.nordicsemi.android.support.v18.scanner.ScanResult;
+
+/**
+ * @brief Keeps track of the last advertisement notified for each device and
+ *        decides whether a new advertisement is worth notifying.
+ *
+ * An advertisement is considered a duplicate when its manufacturer and service data
+ * are unchanged, its RSSI didn't change by more than a given threshold and it was
+ * received before a given time interval has elapsed since the last notified advertisement.
+ *
+ * This class is not thread safe, it is meant to be used from the scan callback.
+ */
+final class DuplicatesFilter
+{
+    // Forget about all devices when reaching that many entries, this may happen
+    // with devices changing their address regularly (i.e. phones)
+    private static final int MAX_ENTRIES = 1024;
+
+    /**
+     * @brief Last notified advertisement for a device.
+     */
+    private static final class Entry
+    {
+        int dataHash;
+        int rssi;
+        long timestampMillis;
+    }
+
+    private final int _rssiThreshold;
+    private final long _reemitIntervalMillis;
+    private final LongSparseArray<Entry> _entries = new LongSparseArray<>();
+
+    /**
+     * @brief Initializes a filter with the given thresholds.
+     *
+     * @param rssiThreshold The RSSI change (in dBm) above which an advertisement
+     *                      is no longer considered a duplicate.
+     * @param reemitIntervalMillis The time interval after which an advertisement
+     *                             is no longer considered a duplicate.
+     */
+    DuplicatesFilter(final int rssiThreshold, final long reemitIntervalMillis)
+    {
+        _rssiThreshold = rssiThreshold;
+        _reemitIntervalMillis = reemitIntervalMillis;
+    }
+
+    /**
+     * @brief Checks if the given scan result is a duplicate of the last one notified
+     *        for the same device, and if not remember it as the last notified one.
+     *
+     * @param address The Bluetooth address of the device as a 48 bits integer.
+     * @param scanResult The scan result.
+     * @return Whether the scan result should be dropped.
+     */
+    boolean isDuplicate(final long address, final ScanResult scanResult)
+    {
+        final int dataHash = hashData(scanResult.getScanRecord());
+        final int rssi = scanResult.getRssi();
+        final long timestampMillis = scanResult.getTimestampNanos() / 1000000;
+
+        Entry entry = _entries.get(address);
+        if (entry == null)
+        {
+            if (_entries.size() >= MAX_ENTRIES)
+            {
+                _entries.clear();
+            }
+            entry = new Entry();
+            _entries.put(address, entry);
+        }
+        else if ((entry.dataHash == dataHash)
+                && (Math.abs(entry.rssi - rssi) <= _rssiThreshold)
+                && (timestampMillis - entry.timestampMillis < _reemitIntervalMillis))
+        {
+            return true;
+        }
+
+        entry.dataHash = dataHash;
+        entry.rssi = rssi;
+        entry.timestampMillis = timestampMillis;
+        return false;
+    }
+
+    /**
+     * @brief Computes a hash of the manufacturer and service data of the given scan record.
+     */
+    static int hashData(final ScanRecord scanRecord)
+    {
+        int hash = 1;
+        if (scanRecord != null)
+        {
+            SparseArray<byte[]> manufacturersData = scanRecord.getManufacturerSpecificData();
+            if (manufacturersData != null)
+            {
+                for (int i = 0; i < manufacturersData.size(); ++i)
+                {
+                    hash = 31 * hash + manufacturersData.keyAt(i);
+                    hash = 31 * hash + Arrays.hashCode(manufacturersData.valueAt(i));
+                }
+            }
+
+            Map<ParcelUuid, byte[]> servicesData = scanRecord.getServiceData();
+            if (servicesData != null)
+            {
+                for (Map.Entry<ParcelUuid, byte[]> entry : servicesData.entrySet())
+                {
+                    // Entries order may vary so combine them with a commutative operation
+                    hash += entry.getKey().hashCode() ^ Arrays.hashCode(entry.getValue());
+                }
+            }
+        }
+        return hash;
+    }
+}
\ No newline at end of file
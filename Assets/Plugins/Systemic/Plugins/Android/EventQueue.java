@@ -0,0 +1,303 @@
+package com.systemic.bluetoothle;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * @brief A queue of Bluetooth events stored in a ring buffer, to be drained
+ *        by user code at its own pace.
+ *
+ * Rather than being notified of each event through a callback, user code calls poll()
+ * periodically (typically once per frame) to retrieve all the pending events at once.
+ *
+ * Scan results, characteristic value changes and connection events may be pushed
+ * to a queue, see Scanner.startScan(String, EventQueue), Peripheral.subscribeCharacteristic(int, EventQueue, RequestCallback)
+ * and Peripheral.setEventQueue().
+ *
+ * Each event is made of a header followed by its payload.
+ * All multi-bytes integers are stored in little-endian order.
+ * | Offset | Type | Description                                        |
+ * |--------|------|----------------------------------------------------|
+ * | 0      | u16  | Total length of the event in bytes, header included |
+ * | 2      | u8   | Event type, see the EVENT_xxx constants            |
+ * | 3      | u8   | Reserved                                           |
+ * | 4      | i64  | Bluetooth address of the device                    |
+ *
+ * When the queue is full, new events are dropped and counted, see getDroppedCount().
+ *
+ * The consumer side (poll()) is lock free and must only be called from one thread
+ * at a time. Producers are serialized on a lock that is not shared with the consumer.
+ */
+public final class EventQueue
+{
+    //! Size in bytes of an event header.
+    public static final int HEADER_SIZE = 12;
+
+    //! A scan result, the payload is an advertisement record, see AdvertisementRecord.
+    public static final int EVENT_SCAN_RESULT = 1;
+
+    //! A characteristic value change, the payload is the characteristic handle (i32) followed by the value.
+    public static final int EVENT_VALUE_CHANGED = 2;
+
+    //! A connection event, the payload is the connection event (i32, see the CONNECTION_xxx constants)
+    //! followed by the reason (i32, one of Nordic's ConnectionObserver.REASON_xxx constants).
+    public static final int EVENT_CONNECTION = 3;
+
+    //! A scan failure, the payload is the error message, UTF-8 encoded.
+    public static final int EVENT_SCAN_FAILED = 4;
+
+    //! Connection event: the peripheral is connecting.
+    public static final int CONNECTION_CONNECTING = 0;
+    //! Connection event: the peripheral is connected.
+    public static final int CONNECTION_CONNECTED = 1;
+    //! Connection event: the peripheral failed to connect.
+    public static final int CONNECTION_FAILED_TO_CONNECT = 2;
+    //! Connection event: the peripheral is ready.
+    public static final int CONNECTION_READY = 3;
+    //! Connection event: the peripheral is disconnecting.
+    public static final int CONNECTION_DISCONNECTING = 4;
+    //! Connection event: the peripheral is disconnected.
+    public static final int CONNECTION_DISCONNECTED = 5;
+
+    //! Maximum size in bytes of an event, header included, as its length is stored on 2 bytes.
+    public static final int MAX_EVENT_SIZE = 0xFFFF;
+
+    private final ByteBuffer _ring;
+    // View of the ring with its own position and limit, only used by the consumer
+    private final ByteBuffer _consumerView;
+    private final int _mask;
+
+    // Total number of bytes written and read since creation, the consumer only writes
+    // to the read position and the producers only write to the write position
+    private volatile long _writePosition;
+    private volatile long _readPosition;
+
+    private final Object _producerLock = new Object();
+    private long _droppedCount;
+
+    /**
+     * @brief Initializes a queue with the given capacity.
+     *
+     * @param capacity The size of the ring buffer in bytes, rounded up to a power of two.
+     */
+    public EventQueue(final int capacity)
+    {
+        if ((capacity <= 0) || (capacity > (1 << 30)))
+        {
+            throw new IllegalArgumentException("capacity must be greater than zero and at most 2^30");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+        _ring = ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN);
+        _consumerView = _ring.duplicate();
+        _mask = size - 1;
+    }
+
+    /**
+     * @brief Copies as many pending events as possible to the given buffer.
+     *
+     * Events are copied whole, starting at the buffer position which is moved
+     * past the last copied event.
+     *
+     * If the next event is larger than the space remaining in the buffer, nothing is
+     * copied and the size of that event is returned as a negative number, so the caller
+     * may retry with a larger buffer. This never happens with a buffer having at least
+     * MAX_EVENT_SIZE bytes remaining.
+     *
+     * @param dest The buffer to copy the events to.
+     * @return The number of events copied, or minus the size in bytes of the next event
+     *         if it doesn't fit in the buffer.
+     */
+    public int poll(final ByteBuffer dest)
+    {
+        final long writePosition = _writePosition;
+        final long startPosition = _readPosition;
+        final int remaining = dest.remaining();
+
+        // Find how many whole events fit in the buffer
+        long endPosition = startPosition;
+        int count = 0;
+        while (endPosition < writePosition)
+        {
+            int length = (get(endPosition) & 0xFF) | ((get(endPosition + 1) & 0xFF) << 8);
+            if (endPosition + length - startPosition > remaining)
+            {
+                if (count == 0)
+                {
+                    return -length;
+                }
+                break;
+            }
+            endPosition += length;
+            ++count;
+        }
+
+        if (count > 0)
+        {
+            // Copy the events in one go, or in two if they wrap around the end of the ring
+            final int total = (int)(endPosition - startPosition);
+            final int start = (int)startPosition & _mask;
+            final int first = Math.min(total, _ring.capacity() - start);
+            _consumerView.clear();
+            _consumerView.position(start).limit(start + first);
+            dest.put(_consumerView);
+            if (first < total)
+            {
+                _consumerView.clear();
+                _consumerView.limit(total - first);
+                dest.put(_consumerView);
+            }
+
+            // Release space to producers
+            _readPosition = endPosition;
+        }
+        return count;
+    }
+
+    /**
+     * @brief Gets the number of bytes of pending events.
+     */
+    public int getPendingBytes()
+    {
+        return (int)(_writePosition - _readPosition);
+    }
+
+    /**
+     * @brief Gets the number of events dropped because the queue was full.
+     */
+    public long getDroppedCount()
+    {
+        synchronized (_producerLock)
+        {
+            return _droppedCount;
+        }
+    }
+
+    /**
+     * @brief Pushes an event with the given payload.
+     *
+     * @param type The event type.
+     * @param address The Bluetooth address of the device.
+     * @param payload The event payload, read from its position to its limit.
+     *                The buffer position is left unchanged.
+     * @return Whether the event was queued.
+     */
+    boolean offer(final int type, final long address, final ByteBuffer payload)
+    {
+        final int length = HEADER_SIZE + payload.remaining();
+        synchronized (_producerLock)
+        {
+            long position = reserve(length);
+            if (position < 0)
+            {
+                return false;
+            }
+            position = putHeader(position, length, type, address);
+            for (int i = payload.position(); i < payload.limit(); ++i)
+            {
+                put(position++, payload.get(i));
+            }
+            // Publish event to consumer
+            _writePosition = position;
+            return true;
+        }
+    }
+
+    /**
+     * @brief Pushes an event with an integer followed by the given bytes as its payload.
+     *
+     * @return Whether the event was queued.
+     */
+    boolean offer(final int type, final long address, final int value, final byte[] data)
+    {
+        final int length = HEADER_SIZE + 4 + data.length;
+        synchronized (_producerLock)
+        {
+            long position = reserve(length);
+            if (position < 0)
+            {
+                return false;
+            }
+            position = putHeader(position, length, type, address);
+            position = putInt(position, value);
+            for (int i = 0; i < data.length; ++i)
+            {
+                put(position++, data[i]);
+            }
+            _writePosition = position;
+            return true;
+        }
+    }
+
+    /**
+     * @brief Pushes an event with two integers as its payload.
+     *
+     * @return Whether the event was queued.
+     */
+    boolean offer(final int type, final long address, final int value1, final int value2)
+    {
+        final int length = HEADER_SIZE + 8;
+        synchronized (_producerLock)
+        {
+            long position = reserve(length);
+            if (position < 0)
+            {
+                return false;
+            }
+            position = putHeader(position, length, type, address);
+            position = putInt(position, value1);
+            position = putInt(position, value2);
+            _writePosition = position;
+            return true;
+        }
+    }
+
+    /**
+     * @brief Checks there is enough room for an event of the given length,
+     *        must be called with the producer lock held.
+     *
+     * @return The write position, or -1 if the event was dropped.
+     */
+    private long reserve(final int length)
+    {
+        final long position = _writePosition;
+        if ((length > MAX_EVENT_SIZE) || (position + length - _readPosition > _ring.capacity()))
+        {
+            ++_droppedCount;
+            return -1;
+        }
+        return position;
+    }
+
+    private long putHeader(long position, final int length, final int type, final long address)
+    {
+        put(position++, (byte)length);
+        put(position++, (byte)(length >> 8));
+        put(position++, (byte)type);
+        put(position++, (byte)0);
+        for (int shift = 0; shift < 64; shift += 8)
+        {
+            put(position++, (byte)(address >> shift));
+        }
+        return position;
+    }
+
+    private long putInt(long position, final int value)
+    {
+        for (int shift = 0; shift < 32; shift += 8)
+        {
+            put(position++, (byte)(value >> shift));
+        }
+        return position;
+    }
+
+    private void put(final long position, final byte value)
+    {
+        _ring.put((int)position & _mask, value);
+    }
+
+    private byte get(final long position)
+    {
+        return _ring.get((int)position & _mask);
+    }
+}
\ No newline at end of file
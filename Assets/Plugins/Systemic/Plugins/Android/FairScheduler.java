@@ -0,0 +1,198 @@
+package com.systemic.bluetoothle;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * @brief Runs asynchronous operations submitted for several owners, with a limit
+ *        on the number of operations running at the same time.
+ *
+ * Pending operations are started in a round-robin fashion between owners, and in
+ * submission order for a given owner. This way an owner with many operations
+ * can't starve the other ones.
+ *
+ * Each started operation must report its completion by calling complete(),
+ * only the first call for a given operation is taken into account.
+ *
+ * An exception thrown by an operation is never propagated, as it would be thrown
+ * into whichever thread completed another operation, the operation is instead
+ * notified with Operation.fail().
+ *
+ * This class is thread safe, operations are run outside of its lock and on the
+ * thread that either submitted an operation or completed one.
+ * It only depends on the Java runtime.
+ */
+final class FairScheduler
+{
+    /**
+     * @brief An asynchronous operation.
+     */
+    interface Operation
+    {
+        /**
+         * @brief Starts the operation, complete() must be called once it's done.
+         *
+         * If it throws, the operation is considered as completed and fail() is called.
+         */
+        void run();
+
+        /**
+         * @brief Notifies that run() threw the given exception.
+         */
+        void fail(RuntimeException exception);
+
+        /**
+         * @brief Notifies that the operation was dropped before being started.
+         */
+        void cancel();
+    }
+
+    private final int _maxRunning;
+    // Operations started and not completed yet
+    private final HashSet<Operation> _running = new HashSet<>();
+
+    // Owners with pending operations, in the order they will be served
+    private final ArrayDeque<Object> _readyOwners = new ArrayDeque<>();
+    private final HashMap<Object, ArrayDeque<Operation>> _pending = new HashMap<>();
+
+    /**
+     * @brief Initializes a scheduler with the given limit of running operations.
+     *
+     * @param maxRunning The maximum number of operations running at the same time,
+     *                   must be greater than zero.
+     */
+    FairScheduler(final int maxRunning)
+    {
+        if (maxRunning <= 0)
+        {
+            throw new IllegalArgumentException("maxRunning must be greater than zero");
+        }
+        _maxRunning = maxRunning;
+    }
+
+    /**
+     * @brief Queues an operation for the given owner, it is started immediately
+     *        if the limit of running operations isn't reached.
+     */
+    void submit(final Object owner, final Operation operation)
+    {
+        synchronized (this)
+        {
+            ArrayDeque<Operation> queue = _pending.get(owner);
+            if (queue == null)
+            {
+                queue = new ArrayDeque<>();
+                _pending.put(owner, queue);
+                _readyOwners.add(owner);
+            }
+            queue.add(operation);
+        }
+        runPending();
+    }
+
+    /**
+     * @brief Notifies that the given running operation has completed, and starts the next one if any.
+     *
+     * Calls for an operation that is not running, or that already completed, are ignored.
+     */
+    void complete(final Operation operation)
+    {
+        synchronized (this)
+        {
+            if (!_running.remove(operation))
+            {
+                return;
+            }
+        }
+        runPending();
+    }
+
+    /**
+     * @brief Drops all the pending operations of the given owner, they are notified
+     *        with Operation.cancel().
+     */
+    void cancel(final Object owner)
+    {
+        ArrayDeque<Operation> queue;
+        synchronized (this)
+        {
+            queue = _pending.remove(owner);
+            _readyOwners.remove(owner);
+        }
+        if (queue != null)
+        {
+            for (Operation operation : queue)
+            {
+                operation.cancel();
+            }
+        }
+    }
+
+    /**
+     * @brief Gets the number of operations running.
+     */
+    synchronized int getRunningCount()
+    {
+        return _running.size();
+    }
+
+    /**
+     * @brief Gets the number of operations waiting to be run.
+     */
+    synchronized int getPendingCount()
+    {
+        int count = 0;
+        for (ArrayDeque<Operation> queue : _pending.values())
+        {
+            count += queue.size();
+        }
+        return count;
+    }
+
+    /**
+     * @brief Starts pending operations as long as the limit of running operations isn't reached.
+     */
+    private void runPending()
+    {
+        while (true)
+        {
+            Operation operation;
+            synchronized (this)
+            {
+                if ((_running.size() >= _maxRunning) || _readyOwners.isEmpty())
+                {
+                    return;
+                }
+
+                // Take the next operation of the first owner in line,
+                // and put that owner back at the end of the line
+                Object owner = _readyOwners.poll();
+                ArrayDeque<Operation> queue = _pending.get(owner);
+                operation = queue.poll();
+                if (queue.isEmpty())
+                {
+                    _pending.remove(owner);
+                }
+                else
+                {
+                    _readyOwners.add(owner);
+                }
+                _running.add(operation);
+            }
+
+            try
+            {
+                operation.run();
+            }
+            catch (RuntimeException e)
+            {
+                synchronized (this)
+                {
+                    _running.remove(operation);
+                }
+                operation.fail(e);
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,165 @@
+package com.systemic.bluetoothle;
+
+/**
+ * @brief Histogram of durations with a bounded relative error, in the spirit of HdrHistogram.
+ *
+ * Values are counted in buckets whose width doubles with each power of two,
+ * each power of two being split in 8 linear sub-buckets. This gives a precision
+ * of 12.5% or better over the full range of values with a few hundred counters.
+ *
+ * Values are typically microseconds, and are clamped to about 19 hours in that case.
+ *
+ * This class is not thread safe.
+ * It only depends on the Java runtime.
+ */
+final class LatencyHistogram
+{
+    // Each power of two is split in 2^SUB_BUCKET_BITS sub-buckets
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 35;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    private final long[] _counts = new long[BUCKET_COUNT];
+    private long _totalCount;
+    private long _sum;
+    private long _min = Long.MAX_VALUE;
+    private long _max;
+
+    /**
+     * @brief Counts the given value, negative values are counted as zero.
+     */
+    void record(long value)
+    {
+        if (value < 0) value = 0;
+        if (value > MAX_VALUE) value = MAX_VALUE;
+
+        ++_counts[getBucketIndex(value)];
+        ++_totalCount;
+        _sum += value;
+        if (value < _min) _min = value;
+        if (value > _max) _max = value;
+    }
+
+    /**
+     * @brief Gets the number of recorded values.
+     */
+    long getCount()
+    {
+        return _totalCount;
+    }
+
+    /**
+     * @brief Gets the smallest recorded value, or zero if there is none.
+     */
+    long getMin()
+    {
+        return _totalCount == 0 ? 0 : _min;
+    }
+
+    /**
+     * @brief Gets the largest recorded value, or zero if there is none.
+     */
+    long getMax()
+    {
+        return _max;
+    }
+
+    /**
+     * @brief Gets the average of the recorded values, or zero if there is none.
+     */
+    long getMean()
+    {
+        return _totalCount == 0 ? 0 : _sum / _totalCount;
+    }
+
+    /**
+     * @brief Gets the value below which the given percentage of recorded values fall,
+     *        rounded down to the lower bound of its bucket.
+     *
+     * @param percentile A percentage between 0 and 100.
+     */
+    long getPercentile(final double percentile)
+    {
+        if (_totalCount == 0)
+        {
+            return 0;
+        }
+
+        long threshold = Math.max(1, (long)Math.ceil(_totalCount * percentile / 100));
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; ++i)
+        {
+            count += _counts[i];
+            if (count >= threshold)
+            {
+                return Math.max(_min, Math.min(_max, getBucketLowerBound(i)));
+            }
+        }
+        return _max;
+    }
+
+    /**
+     * @brief Appends the histogram as a JSON object to the given builder.
+     *
+     * Besides the summary values, the non empty buckets are listed as pairs
+     * of their lower bound and count.
+     */
+    void appendJson(final StringBuilder sb)
+    {
+        sb.append("{\"count\":");
+        sb.append(_totalCount);
+        sb.append(",\"min\":");
+        sb.append(getMin());
+        sb.append(",\"mean\":");
+        sb.append(getMean());
+        sb.append(",\"max\":");
+        sb.append(_max);
+        sb.append(",\"p50\":");
+        sb.append(getPercentile(50));
+        sb.append(",\"p90\":");
+        sb.append(getPercentile(90));
+        sb.append(",\"p99\":");
+        sb.append(getPercentile(99));
+        sb.append(",\"buckets\":[");
+        boolean first = true;
+        for (int i = 0; i < BUCKET_COUNT; ++i)
+        {
+            if (_counts[i] != 0)
+            {
+                if (!first) sb.append(",");
+                first = false;
+                sb.append("[");
+                sb.append(getBucketLowerBound(i));
+                sb.append(",");
+                sb.append(_counts[i]);
+                sb.append("]");
+            }
+        }
+        sb.append("]}");
+    }
+
+    private static int getBucketIndex(final long value)
+    {
+        if (value < SUB_BUCKET_COUNT)
+        {
+            return (int)value;
+        }
+        // Keep the most significant bits of the value
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int)(value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    private static long getBucketLowerBound(final int index)
+    {
+        if (index < SUB_BUCKET_COUNT)
+        {
+            return index;
+        }
+        int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+        long subBucket = index & (SUB_BUCKET_COUNT - 1);
+        return (SUB_BUCKET_COUNT + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+}
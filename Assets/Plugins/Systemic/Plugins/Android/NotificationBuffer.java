@@ -0,0 +1,83 @@
+package com.systemic.bluetoothle;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * @brief A ring of bytes stored in a direct buffer, to which characteristic
+ *        notifications are copied.
+ *
+ * User code retrieves the direct buffer once with getBuffer(), and is then only
+ * given the offset and length of each notification value in that buffer.
+ * This avoids marshaling a byte array for each notification.
+ *
+ * Each value is stored contiguously, when there isn't enough room left at the end
+ * of the buffer the value is stored at the beginning. Older values are overwritten
+ * as new ones are received, so user code must read a value before the buffer wraps
+ * around, the buffer capacity should be chosen accordingly.
+ *
+ * Values are written from the thread on which notifications are received.
+ */
+public final class NotificationBuffer
+{
+    private final ByteBuffer _buffer;
+    private int _writeOffset;
+
+    /**
+     * @brief Initializes a buffer with the given capacity.
+     *
+     * @param capacity The size of the buffer in bytes, must be larger than any notification value.
+     */
+    public NotificationBuffer(final int capacity)
+    {
+        if (capacity <= 0)
+        {
+            throw new IllegalArgumentException("capacity must be greater than zero");
+        }
+        _buffer = ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @brief Gets the direct buffer in which the values are stored.
+     *
+     * Its position and limit are not meaningful, values should be accessed with
+     * the offset and length given for each notification.
+     */
+    public ByteBuffer getBuffer()
+    {
+        return _buffer;
+    }
+
+    /**
+     * @brief Gets the capacity of the buffer in bytes.
+     */
+    public int getCapacity()
+    {
+        return _buffer.capacity();
+    }
+
+    /**
+     * @brief Copies the given value in the buffer.
+     *
+     * @param value The value to copy.
+     * @return The offset of the value in the buffer, or -1 if the value is larger than the buffer.
+     */
+    synchronized int write(final byte[] value)
+    {
+        if (value.length > _buffer.capacity())
+        {
+            return -1;
+        }
+
+        // Store value contiguously
+        if (_writeOffset + value.length > _buffer.capacity())
+        {
+            _writeOffset = 0;
+        }
+        int offset = _writeOffset;
+        _buffer.position(offset);
+        _buffer.put(value);
+        _writeOffset += value.length;
+        return offset;
+    }
+}
\ No newline at end of file
@@ -30,7 +30,9 @@ package com.systemic.bluetoothle;
 //!
 //! @see com.systemic.bluetoothle namespace.
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.UUID;
 import java.util.Objects;
@@ -39,6 +41,7 @@ import android.util.Log;
 import android.bluetooth.*;
 import android.content.Context;
 import android.os.Handler;
+import android.os.Looper;
 
 import no.nordicsemi.android.ble.*;
 import no.nordicsemi.android.ble.callback.*;
@@ -78,6 +81,13 @@ public final class Peripheral
 {
     private static final String TAG = "SystemicGames";
 
+    //! Request priority for connection control requests, they run before any other request.
+    public static final int PRIORITY_CONTROL = RequestScheduler.PRIORITY_CONTROL;
+    //! Request priority for user requests, the default for characteristic operations.
+    public static final int PRIORITY_USER = RequestScheduler.PRIORITY_USER;
+    //! Request priority for periodic requests, they run once no other request is pending.
+    public static final int PRIORITY_BACKGROUND = RequestScheduler.PRIORITY_BACKGROUND;
+
     /**
      * @brief Interface for most BLE request callbacks.
      */
@@ -98,6 +108,49 @@ public final class Peripheral
      */
 	public interface ReadValueRequestCallback extends DataReceivedCallback, FailCallback, InvalidRequestCallback {}
 
+    /**
+     * @brief Interface for chunked write request callbacks.
+     */
+	public interface WriteChunkedRequestCallback extends RequestCallback
+    {
+        /**
+         * @brief Called as the data is being sent, at most once per percent of the data sent.
+         *
+         * @param bytesSent The number of bytes sent so far.
+         * @param totalBytes The total number of bytes to send.
+         */
+        public void onProgress(int bytesSent, int totalBytes);
+    }
+
+    /**
+     * @brief Interface for characteristic's value changes notified through a NotificationBuffer.
+     */
+	public interface BufferedValueChangedCallback
+    {
+        /**
+         * @brief Called when the characteristic's value has changed.
+         *
+         * @param characteristicHandle The characteristic handle given when subscribing.
+         * @param offset The offset of the value in the NotificationBuffer.
+         * @param length The length of the value in bytes.
+         */
+        public void onValueChanged(int characteristicHandle, int offset, int length);
+    }
+
+    /**
+     * @brief Interface for transaction callbacks.
+     */
+	public interface TransactionCallback extends FailCallback, InvalidRequestCallback
+    {
+        /**
+         * @brief Called when all the operations of the transaction have succeeded.
+         *
+         * @param device The Android Bluetooth device object.
+         * @param results The packed results, see Transaction.
+         */
+        public void onTransactionCompleted(BluetoothDevice device, byte[] results);
+    }
+
     //public enum ConnectionStatus
     //{
     //    Disconnected(0), Connected(1);
@@ -116,7 +169,8 @@ public final class Peripheral
          */
         private class GattCallback extends BleManagerGattCallback
         {
-            private BluetoothGatt _gatt;
+            // Set on the callback thread, read from user code
+            private volatile BluetoothGatt _gatt;
 
             public GattCallback()
             {
@@ -140,19 +194,16 @@ public final class Peripheral
                 UUID[] servicesUuids = Peripheral.this._requiredServices;
                 if (servicesUuids != null)
                 {
+                    List<BluetoothGattService> services = gatt.getServices();
+                    HashSet<UUID> discoveredUuids = new HashSet<>(2 * services.size());
+                    for (BluetoothGattService service : services)
+                    {
+                        Log.v(TAG, "service " + service.getUuid());
+                        discoveredUuids.add(service.getUuid());
+                    }
                     for (UUID uuid : servicesUuids)
                     {
-                        boolean found = false;
-                        for (BluetoothGattService service : gatt.getServices())
-                        {
-                            Log.v(TAG, "service " + service.getUuid());
-                            if (service.getUuid().equals(uuid))
-                            {
-                                found = true;
-                                break;
-                            }
-                        }
-                        if (!found)
+                        if (!discoveredUuids.contains(uuid))
                         {
                             return false;
                         }
@@ -160,25 +211,64 @@ public final class Peripheral
                 }
 
                 _gatt = gatt;
+                Peripheral.this._discoveredServices = new DiscoveredServices(gatt.getServices());
+                Peripheral.this.resolveHandles(gatt);
                 return true;
             }
 
+            @Override
+            protected void initialize()
+            {
+                Log.v(TAG, "==> GattCallback::initialize");
+
+                // Those requests are queued before the device is reported as ready,
+                // so the link is already tuned when user code starts using it
+                Peripheral peripheral = Peripheral.this;
+                if (peripheral._profileMtu > 0)
+                {
+                    requestMtu(peripheral._profileMtu)
+                        .fail((device, status) -> Log.w(TAG, "Connection profile: MTU request failed with status " + status))
+                        .enqueue();
+                }
+                if (peripheral._profilePhyMask != 0)
+                {
+                    setPreferredPhy(peripheral._profilePhyMask, peripheral._profilePhyMask, PhyRequest.PHY_OPTION_NO_PREFERRED)
+                        .with((device, txPhy, rxPhy) ->
+                        {
+                            peripheral._txPhy = txPhy;
+                            peripheral._rxPhy = rxPhy;
+                        })
+                        .fail((device, status) -> Log.w(TAG, "Connection profile: PHY request failed with status " + status))
+                        .enqueue();
+                }
+                if (peripheral._profileConnectionPriority >= 0)
+                {
+                    requestConnectionPriority(peripheral._profileConnectionPriority)
+                        .fail((device, status) -> Log.w(TAG, "Connection profile: connection priority request failed with status " + status))
+                        .enqueue();
+                }
+            }
+
             @Override
             protected void onServicesInvalidated()
             {
                 Log.v(TAG, "==> GattCallback::onServicesInvalidated");
 
                 _gatt = null;
+                Peripheral.this._discoveredServices = null;
+                Peripheral.this.invalidateHandles();
             }
         }
 
         private GattCallback _callback;
 
-        public ClientManager(ConnectionObserver connectionObserver)
+        public ClientManager(ConnectionObserver connectionObserver, final Handler handler)
         {
-            // Use main thread looper (dispatcher)
-            super(UnityPlayer.currentActivity.getApplicationContext());
+            // Callbacks are run by the given handler
+            super(UnityPlayer.currentActivity.getApplicationContext(), handler);
             setConnectionObserver(connectionObserver);
+            // Keep track of the connection interval, only reported on Android 8 and above
+            setConnectionParametersListener((device, interval, latency, timeout) -> Peripheral.this._connectionInterval = interval);
         }
 
         public BluetoothGattService getService(final UUID serviceUuid)
@@ -236,6 +326,11 @@ public final class Peripheral
 		    return super.enableNotifications(characteristic);
         }
 
+        public RequestQueue beginAtomicRequestQueue()
+        {
+            return super.beginAtomicRequestQueue();
+        }
+
         public void cancelOperations()
         {
             super.cancelQueue();
@@ -254,13 +349,214 @@ public final class Peripheral
         }
     }
 
-    private BluetoothDevice _device;
-    private ClientManager _client;
-    private UUID[] _requiredServices;
+    /**
+     * @brief Forwards connection events to user code if it gave an observer,
+     *        and to the event queue if any.
+     */
+    private final class ConnectionEventsDispatcher implements ConnectionObserver
+    {
+        private final ConnectionObserver _observer;
+
+        public ConnectionEventsDispatcher(final ConnectionObserver observer)
+        {
+            _observer = observer;
+        }
+
+        @Override
+        public void onDeviceConnecting(final BluetoothDevice device)
+        {
+            pushEvent(EventQueue.CONNECTION_CONNECTING, REASON_SUCCESS);
+            if (_observer != null)
+            {
+                _observer.onDeviceConnecting(device);
+            }
+        }
+
+        @Override
+        public void onDeviceConnected(final BluetoothDevice device)
+        {
+            pushEvent(EventQueue.CONNECTION_CONNECTED, REASON_SUCCESS);
+            if (_observer != null)
+            {
+                _observer.onDeviceConnected(device);
+            }
+        }
+
+        @Override
+        public void onDeviceFailedToConnect(final BluetoothDevice device, final int reason)
+        {
+            pushEvent(EventQueue.CONNECTION_FAILED_TO_CONNECT, reason);
+            if (_observer != null)
+            {
+                _observer.onDeviceFailedToConnect(device, reason);
+            }
+            notifyDisconnected();
+        }
+
+        @Override
+        public void onDeviceReady(final BluetoothDevice device)
+        {
+            pushEvent(EventQueue.CONNECTION_READY, REASON_SUCCESS);
+            if (_observer != null)
+            {
+                _observer.onDeviceReady(device);
+            }
+
+            ReconnectPolicy policy = _reconnectPolicy;
+            if (policy != null)
+            {
+                policy.onReady();
+            }
+        }
+
+        @Override
+        public void onDeviceDisconnecting(final BluetoothDevice device)
+        {
+            pushEvent(EventQueue.CONNECTION_DISCONNECTING, REASON_SUCCESS);
+            if (_observer != null)
+            {
+                _observer.onDeviceDisconnecting(device);
+            }
+        }
+
+        @Override
+        public void onDeviceDisconnected(final BluetoothDevice device, final int reason)
+        {
+            pushEvent(EventQueue.CONNECTION_DISCONNECTED, reason);
+            if (_observer != null)
+            {
+                _observer.onDeviceDisconnected(device, reason);
+            }
+            notifyDisconnected();
+
+            ReconnectPolicy policy = _reconnectPolicy;
+            if (policy != null)
+            {
+                policy.onDisconnected(reason);
+            }
+        }
+
+        private void pushEvent(final int connectionEvent, final int reason)
+        {
+            EventQueue queue = _eventQueue;
+            if (queue != null)
+            {
+                queue.offer(EventQueue.EVENT_CONNECTION, _address, connectionEvent, reason);
+            }
+        }
+    }
+
+    /**
+     * @brief Interface for consuming the values notified by a characteristic
+     *        before they reach user code.
+     */
+    interface ValueInterceptor
+    {
+        /**
+         * @brief Called for each value notified by the intercepted characteristic.
+         *
+         * @return Whether the value was consumed, in which case it's not forwarded to user code.
+         */
+        boolean onValueReceived(final byte[] value);
+    }
+
+    /**
+     * @brief The value interceptor along with the handle of its characteristic.
+     */
+    private static final class InterceptorEntry
+    {
+        final int characteristicHandle;
+        final ValueInterceptor interceptor;
+
+        InterceptorEntry(final int characteristicHandle, final ValueInterceptor interceptor)
+        {
+            this.characteristicHandle = characteristicHandle;
+            this.interceptor = interceptor;
+        }
+    }
+
+    /**
+     * @brief Gives a reconnect policy access to the peripheral.
+     */
+    private final class ReconnectHost implements ReconnectPolicy.Host
+    {
+        @Override
+        public void connect(final boolean autoConnect, final long timeoutMillis, final RequestCallback callback)
+        {
+            Log.v(TAG, "==> reconnect" + (autoConnect ? " (auto connect)" : ""));
+
+            enqueueConnect(autoConnect, timeoutMillis, callback);
+        }
+
+        @Override
+        public void postDelayed(final Runnable runnable, final long delayMillis)
+        {
+            _callbackHandler.postDelayed(runnable, delayMillis);
+        }
+
+        @Override
+        public void removeCallbacks(final Runnable runnable)
+        {
+            _callbackHandler.removeCallbacks(runnable);
+        }
+    }
+
+    /**
+     * @brief A characteristic handle, the characteristic is resolved on each services discovery.
+     */
+    private static final class ResolvedHandle
+    {
+        final ServiceLayoutCache.Key key;
+        BluetoothGattCharacteristic characteristic;
+
+        ResolvedHandle(final ServiceLayoutCache.Key key)
+        {
+            this.key = key;
+        }
+    }
+
+    // A characteristic handle is made of the generation of handles and the index of
+    // the characteristic in the list of resolved characteristics
+    private static final int HANDLE_INDEX_BITS = 16;
+    private static final int HANDLE_INDEX_MASK = (1 << HANDLE_INDEX_BITS) - 1;
+    private static final int HANDLE_GENERATION_MASK = 0x7FFF;
+
+    // Coalescing key of RSSI reads
+    private static final Object RSSI_COALESCING_KEY = new Object();
+
+    private final BluetoothDevice _device;
+    private final long _address;
+    private final Handler _callbackHandler;
+    private final ClientManager _client;
+    private final RequestScheduler _scheduler;
+    private volatile EventQueue _eventQueue;
+    private volatile ReconnectPolicy _reconnectPolicy;
+    private final ReconnectHost _reconnectHost = new ReconnectHost();
+    // Callbacks of the disconnect requests waiting for an on-going disconnection
+    private final ArrayList<RequestCallback> _disconnectCallbacks = new ArrayList<>();
+    private volatile InterceptorEntry _valueInterceptor;
+    private volatile UUID[] _requiredServices;
+    private volatile DiscoveredServices _discoveredServices;
+    private final ArrayList<ResolvedHandle> _handles = new ArrayList<>();
+    private int _handlesGeneration;
+    private int _servicesLayoutHash;
+    private boolean _handlesStorePending;
+
+    // Connection profile, applied on each connection
+    private volatile int _profileMtu;
+    private volatile int _profilePhyMask;
+    private volatile int _profileConnectionPriority = -1;
+
+    // Negotiated link parameters
+    private volatile int _txPhy = PhyCallback.PHY_LE_1M;
+    private volatile int _rxPhy = PhyCallback.PHY_LE_1M;
+    private volatile int _connectionInterval;
 
     /**
      * @brief Gets the BluetoothDevice object for the given Bluetooth address.
      *
+     * See createFromAddress() to rather use the BluetoothDevice object of a recent scan.
+     *
      * @param bluetoothAddress The address of a Bluetooth device.
      * @return A BluetoothDevice or null if there is none for the given address.
      */
@@ -272,16 +568,46 @@ public final class Peripheral
         BluetoothManager bluetoothManager
             = (BluetoothManager)currentActivity.getSystemService(Context.BLUETOOTH_SERVICE);
 
-        // Convert the Bluetooth address to a string
-        StringBuilder sb = new StringBuilder();
-        for (int shift = 40; shift >= 0; shift -= 8)
+        // Returns the Bluetooth device
+        return bluetoothManager.getAdapter().getRemoteDevice(BluetoothAddress.toString(bluetoothAddress));
+    }
+
+    /**
+     * @brief Creates a peripheral for the given Bluetooth address.
+     *
+     * The BluetoothDevice object returned by a recent scan is used when available,
+     * otherwise it is retrieved with getDeviceFromAddress().
+     *
+     * @param bluetoothAddress The address of a Bluetooth device.
+     * @param connectionObserver The callback for notifying of changes of the connection status of the peripheral,
+     *                           may be null when the connection events are read from an event queue,
+     *                           see setEventQueue().
+     * @return A Peripheral or null if there is no device for the given address.
+     */
+    public static Peripheral createFromAddress(final long bluetoothAddress, final ConnectionObserver connectionObserver)
+    {
+        return createFromAddress(bluetoothAddress, connectionObserver, null);
+    }
+
+    /**
+     * @brief Creates a peripheral for the given Bluetooth address, with its callbacks
+     *        run by the given handler.
+     *
+     * @param bluetoothAddress The address of a Bluetooth device.
+     * @param connectionObserver The callback for notifying of changes of the connection status of the peripheral,
+     *                           may be null when the connection events are read from an event queue,
+     *                           see setEventQueue().
+     * @param callbackHandler The handler running the callbacks, or null to run them on the main thread.
+     * @return A Peripheral or null if there is no device for the given address.
+     */
+    public static Peripheral createFromAddress(final long bluetoothAddress, final ConnectionObserver connectionObserver, final Handler callbackHandler)
+    {
+        BluetoothDevice device = Scanner.getScannedDevice(bluetoothAddress);
+        if (device == null)
         {
-            if (sb.length() > 0) sb.append(":");
-            sb.append(String.format("%02X", (bluetoothAddress >> shift) & 0xFF));
+            device = getDeviceFromAddress(bluetoothAddress);
         }
-
-        // Returns the Bluetooth device
-        return bluetoothManager.getAdapter().getRemoteDevice(sb.toString());
+        return device == null ? null : new Peripheral(device, connectionObserver, callbackHandler);
     }
 
     //! \name Constructor
@@ -294,28 +620,92 @@ public final class Peripheral
      * BluetoothDevice may be retrieved either with from a scan using the Scanner class
      * or with their Bluetooth address using the getDeviceFromAddress() static method.
      *
+     * Callbacks are run on the main thread.
+     *
      * @param device The Android Bluetooth device object for the BLE peripheral.
-     * @param connectionObserver The callback for notifying of changes of the connection status of the peripheral.
+     * @param connectionObserver The callback for notifying of changes of the connection status of the peripheral,
+     *                           may be null when the connection events are read from an event queue,
+     *                           see setEventQueue().
      */
     public Peripheral(final BluetoothDevice device, final ConnectionObserver connectionObserver)
+    {
+        this(device, connectionObserver, null);
+    }
+
+    /**
+     * @brief Initializes a peripheral for the given Android BluetoothDevice object
+     *        and with a connection observer, with its callbacks run by the given handler.
+     *
+     * Running the callbacks on a background thread keeps them from competing with
+     * the Unity player and the other components running on the main thread.
+     * See CallbackHandlers to get a handler running on a dedicated or shared thread.
+     *
+     * All the callbacks passed to this peripheral, connection observer included,
+     * are then invoked from the handler's thread.
+     *
+     * @param device The Android Bluetooth device object for the BLE peripheral.
+     * @param connectionObserver The callback for notifying of changes of the connection status of the peripheral,
+     *                           may be null when the connection events are read from an event queue,
+     *                           see setEventQueue().
+     * @param callbackHandler The handler running the callbacks, or null to run them on the main thread.
+     */
+    public Peripheral(final BluetoothDevice device, final ConnectionObserver connectionObserver, final Handler callbackHandler)
     {
         Log.v(TAG, "==> createPeripheral");
 
         // Check arguments
         Objects.requireNonNull(device);
-        Objects.requireNonNull(connectionObserver);
 
         // Store device
         _device = device;
+        _address = BluetoothAddress.toLong(device.getAddress());
+
+        // Default to main thread looper (dispatcher)
+        _callbackHandler = callbackHandler != null ? callbackHandler : new Handler(Looper.getMainLooper());
 
         // Create client manager
-        _client = new ClientManager(connectionObserver);
+        _client = new ClientManager(new ConnectionEventsDispatcher(connectionObserver), _callbackHandler);
+        _scheduler = new RequestScheduler(_device, _callbackHandler);
+
+        // Get back the handles of the previous connections to this device
+        loadHandles();
     }
 
     //! @}
     //! \name Connection and disconnection
     //! @{
 
+    /**
+     * @brief Sets the link parameters to request on each connection, before the peripheral
+     *        is reported as ready.
+     *
+     * This saves user code from requesting them separately once connected.
+     * The negotiated values may be retrieved with getMtu(), getTxPhy(), getRxPhy()
+     * and getConnectionInterval() once the peripheral is ready.
+     * Failing to negotiate a parameter doesn't prevent the connection.
+     *
+     * @param mtu The MTU to request, must be between 23 and 517 included, or zero to keep the default.
+     * @param phyMask The preferred PHYs as a combination of BluetoothDevice.PHY_LE_1M_MASK,
+     *                PHY_LE_2M_MASK and PHY_LE_CODED_MASK, or zero to keep the default.
+     *                Only supported on Android 8 and above.
+     * @param connectionPriority One of BluetoothGatt.CONNECTION_PRIORITY_BALANCED,
+     *                           CONNECTION_PRIORITY_HIGH and CONNECTION_PRIORITY_LOW_POWER,
+     *                           or -1 to keep the default.
+     */
+    public void setConnectionProfile(final int mtu, final int phyMask, final int connectionPriority)
+    {
+        Log.v(TAG, "==> setConnectionProfile");
+
+        if ((mtu != 0) && ((mtu < 23) || (mtu > 517)))
+        {
+            throw new IllegalArgumentException("mtu must be zero or between 23 and 517");
+        }
+
+        _profileMtu = mtu;
+        _profilePhyMask = phyMask;
+        _profileConnectionPriority = connectionPriority;
+    }
+
     /**
      * @brief Queues a request to connect to the peripheral.
      *
@@ -332,36 +722,52 @@ public final class Peripheral
         Log.v(TAG, "==> connect");
 
         // Convert the comma separated list of UUIDs
-        UUID[] requiredServices = null;
-        if (requiredServicesUuids != null)
-        {
-            String[] uuids = requiredServicesUuids.split(",");
-            if (uuids.length > 0)
-            {
-                requiredServices = new UUID[uuids.length];
-                for (int i = 0; i < uuids.length; ++i)
-                {
-                    try
-                    {
-                        requiredServices[i] = UUID.fromString(uuids[i]);
-                    }
-                    catch (IllegalArgumentException e)
-                    {
-                        throw new IllegalArgumentException("requiredServicesUuids must be either null, an empty string or a comma separated list of UUIDs");
-                    }
-                }
-            }
-        }
+        connect(UuidUtils.parseList(requiredServicesUuids, "requiredServicesUuids"), autoReconnect, requestCallback);
+    }
+
+    /**
+     * @brief Queues a request to connect to the peripheral, with the required services
+     *        given by their UuidRegistry identifiers.
+     *
+     * See connect(String, boolean, RequestCallback) for details.
+     *
+     * @param requiredServicesIds Identifiers of the services UUIDs that the peripheral
+     *                            should support, may be null or empty.
+     * @param autoReconnect Whether to automatically reconnect after an unexpected disconnection.
+     * @param requestCallback The callback for notifying of the request result.
+     */
+    public void connect(final int[] requiredServicesIds, final boolean autoReconnect, final RequestCallback requestCallback)
+    {
+        Log.v(TAG, "==> connect (ids)");
+
+        connect(UuidRegistry.getList(requiredServicesIds), autoReconnect, requestCallback);
+    }
 
+    /**
+     * @brief Queues a request to connect to the peripheral with the given required services.
+     */
+    void connect(final UUID[] requiredServices, final boolean autoReconnect, final RequestCallback requestCallback)
+    {
         // Store required services for later retrieval (once we know more about the peripheral)
         _requiredServices = requiredServices;
 
+        // User code takes over
+        cancelReconnection();
+
         // Connect
-        _client.connect(_device)
-            .useAutoConnect(autoReconnect)
-            .timeout(0) // Actually it times out after 30s
-            .done(requestCallback).fail(requestCallback).invalid(requestCallback)
-            .enqueue();
+        enqueueConnect(autoReconnect, 0, requestCallback); // Actually it times out after 30s
+    }
+
+    /**
+     * @brief Queues a connection request with the given timeout, zero for none.
+     */
+    private void enqueueConnect(final boolean autoConnect, final long timeoutMillis, final RequestCallback requestCallback)
+    {
+        enqueue(_client.connect(_device)
+            .useAutoConnect(autoConnect)
+            .timeout(timeoutMillis)
+            .done(requestCallback),
+            PRIORITY_CONTROL, RequestMetrics.track(_address, RequestMetrics.OP_CONNECT, 0, requestCallback), requestCallback);
     }
 
     /**
@@ -370,30 +776,113 @@ public final class Peripheral
      * As a consequence any on-going request either fails or is canceled, including connection requests.
      * Any pending request is dropped.
      *
+     * If the peripheral is already disconnecting, which happens when canceling a connection
+     * that was being initialized, the request succeeds once the peripheral is disconnected.
+     *
      * @param requestCallback The callback for notifying of the request result.
      */
     public void disconnect(final RequestCallback requestCallback)
     {
         Log.v(TAG, "==> disconnect");
 
-        // Cancel all on-going operations so the disconnect can happen immediately
+        // Cancel all on-going and pending operations so the disconnect can happen immediately
+        cancelReconnection();
+        // Drop the scheduled requests first, so none is dispatched when Nordic's queue is canceled
+        _scheduler.cancelAll();
         _client.cancelOperations();
 
         // Disconnect (the request is ignored if we are disconnecting)
         if (_client.getConnectionState() != BluetoothProfile.STATE_DISCONNECTING)
         {
-            _client.disconnect()
-                .done(requestCallback).fail(requestCallback).invalid(requestCallback)
-                .enqueue();
+            enqueue(_client.disconnect()
+                .done(requestCallback),
+                PRIORITY_CONTROL, RequestMetrics.track(_address, RequestMetrics.OP_DISCONNECT, 0, requestCallback), requestCallback);
         }
         else if (requestCallback != null)
         {
-            //TODO this will happen if device was connecting, we should return a success once disconnected!
-            // Immediately Notify invalid request
-            requestCallback.onInvalidRequest();
+            // This happens if the device was connecting, notify once disconnected
+            synchronized (_disconnectCallbacks)
+            {
+                _disconnectCallbacks.add(requestCallback);
+            }
+            if (_client.getConnectionState() == BluetoothProfile.STATE_DISCONNECTED)
+            {
+                // Disconnected in the meantime
+                _callbackHandler.post(this::notifyDisconnected);
+            }
+        }
+    }
+
+    /**
+     * @brief Notifies the callbacks of the disconnect requests made while
+     *        the device was disconnecting.
+     */
+    private void notifyDisconnected()
+    {
+        ArrayList<RequestCallback> callbacks;
+        synchronized (_disconnectCallbacks)
+        {
+            if (_disconnectCallbacks.isEmpty())
+            {
+                return;
+            }
+            callbacks = new ArrayList<>(_disconnectCallbacks);
+            _disconnectCallbacks.clear();
+        }
+        for (RequestCallback callback : callbacks)
+        {
+            callback.onRequestCompleted(_device);
         }
     }
 
+    /**
+     * @brief Sets the queue to which connection events are pushed, in addition
+     *        to being notified to the connection observer if any.
+     *
+     * @param eventQueue The event queue, or null to stop pushing connection events.
+     */
+    public void setEventQueue(final EventQueue eventQueue)
+    {
+        _eventQueue = eventQueue;
+    }
+
+    /**
+     * @brief Sets the policy for reconnecting the peripheral after a connection loss.
+     *
+     * The peripheral should be connected without auto reconnect when using a policy.
+     * Any reconnection in progress with the previous policy is stopped.
+     * Calling connect() or disconnect() also stops a reconnection in progress.
+     *
+     * @param reconnectPolicy The policy, may be null to not reconnect. A policy may only
+     *                        be set to one peripheral at a time.
+     */
+    public void setReconnectPolicy(final ReconnectPolicy reconnectPolicy)
+    {
+        Log.v(TAG, "==> setReconnectPolicy");
+
+        synchronized (_reconnectHost)
+        {
+            if (reconnectPolicy != null)
+            {
+                reconnectPolicy.attach(_reconnectHost);
+            }
+            ReconnectPolicy previous = _reconnectPolicy;
+            if ((previous != null) && (previous != reconnectPolicy))
+            {
+                previous.attach(null);
+            }
+            _reconnectPolicy = reconnectPolicy;
+        }
+    }
+
+    /**
+     * @brief Gets the policy for reconnecting the peripheral, or null if there is none.
+     */
+    public ReconnectPolicy getReconnectPolicy()
+    {
+        return _reconnectPolicy;
+    }
+
     //! @}
     //! \name Getters valid even when not connected
     //! @{
@@ -418,6 +907,16 @@ public final class Peripheral
         return _device.getName();
     }
 
+    /**
+     * @brief Gets the handler running the peripheral callbacks.
+     *
+     * @return The handler given on creation, or a handler for the main thread if none was given.
+     */
+    public Handler getCallbackHandler()
+    {
+        return _callbackHandler;
+    }
+
     /**
      * @brief Indicates whether the peripheral is connected.
      *
@@ -470,13 +969,43 @@ public final class Peripheral
     {
         Log.v(TAG, "==> requestMtu " + mtu);
 
-        _client.requestMtu(mtu)
-            .with(mtuChangedCallback).fail(mtuChangedCallback).invalid(mtuChangedCallback)
-            .enqueue();
+        enqueue(_client.requestMtu(mtu)
+            .with(mtuChangedCallback),
+            PRIORITY_CONTROL, RequestMetrics.track(_address, RequestMetrics.OP_REQUEST_MTU, 0, mtuChangedCallback), mtuChangedCallback);
     }
 
     /**
-     * @brief Queues a request to read the Received Signal Strength Indicator (RSSI).
+     * @brief Gets the transmitter PHY in use.
+     *
+     * @return One of PhyCallback.PHY_LE_1M, PHY_LE_2M or PHY_LE_CODED.
+     */
+    public int getTxPhy()
+    {
+        return _txPhy;
+    }
+
+    /**
+     * @brief Gets the receiver PHY in use.
+     *
+     * @return One of PhyCallback.PHY_LE_1M, PHY_LE_2M or PHY_LE_CODED.
+     */
+    public int getRxPhy()
+    {
+        return _rxPhy;
+    }
+
+    /**
+     * @brief Gets the connection interval in units of 1.25ms.
+     *
+     * @return The connection interval, or zero if unknown (always the case before Android 8).
+     */
+    public int getConnectionInterval()
+    {
+        return _connectionInterval;
+    }
+
+    /**
+     * @brief Queues a request to read the Received Signal Strength Indicator (RSSI).
      *
      * @param rssiReadCallback The callback for notifying of the read RSSI and the request status.
      */
@@ -484,9 +1013,30 @@ public final class Peripheral
     {
         Log.v(TAG, "==> readRssi");
 
-        _client.readRssi()
-            .with(rssiReadCallback).fail(rssiReadCallback).invalid(rssiReadCallback)
-            .enqueue();
+        enqueue(_client.readRssi()
+            .with(rssiReadCallback),
+            PRIORITY_USER, RequestMetrics.track(_address, RequestMetrics.OP_READ_RSSI, 0, rssiReadCallback), rssiReadCallback);
+    }
+
+    /**
+     * @brief Queues a request to read the RSSI with the given priority.
+     *
+     * A pending RSSI read queued with this method is replaced by the new one,
+     * and fails with FailCallback.REASON_CANCELLED.
+     *
+     * @param priority The request priority, one of the PRIORITY_xxx constants.
+     * @param timeoutMillis Maximum time the request may wait in the queue before failing with
+     *                      FailCallback.REASON_TIMEOUT, zero for no limit.
+     * @param rssiReadCallback The callback for notifying of the read RSSI and the request status.
+     */
+    public void readRssi(final int priority, final long timeoutMillis, final ReadRssiRequestCallback rssiReadCallback)
+    {
+        Log.v(TAG, "==> readRssi (priority " + priority + ")");
+
+        enqueue(_client.readRssi()
+            .with(rssiReadCallback),
+            priority, RSSI_COALESCING_KEY, timeoutMillis,
+            RequestMetrics.track(_address, RequestMetrics.OP_READ_RSSI, 0, rssiReadCallback), rssiReadCallback);
     }
 
     //! @}
@@ -503,23 +1053,9 @@ public final class Peripheral
     {
         Log.v(TAG, "==> getDiscoveredServices");
 
-        // Get services
-        List<BluetoothGattService> services = _client.getServices();
-        if (services == null)
-        {
-            return null;
-        }
-        else
-        {
-            // Convert to a comma separated list
-            StringBuilder sb = new StringBuilder();
-            for (BluetoothGattService serv : services)
-            {
-                if (sb.length() > 0) sb.append(",");
-                sb.append(serv.getUuid());
-            }
-            return sb.toString();
-        }
+        // The list is built once per services discovery
+        DiscoveredServices services = _discoveredServices;
+        return services == null ? null : services.getServicesUuids();
     }
 
     /**
@@ -534,25 +1070,29 @@ public final class Peripheral
     {
         Log.v(TAG, "==> getServiceCharacteristics " + serviceUuid);
 
-        // Get the service
-        BluetoothGattService service = getService(serviceUuid);
-        if (service != null)
-        {
-            // Get the list of characteristics
-            List<BluetoothGattCharacteristic> characteristics = service.getCharacteristics();
-            if (characteristics != null)
-            {
-                // Convert to a comma separated list
-                StringBuilder sb = new StringBuilder();
-                for (BluetoothGattCharacteristic charac : characteristics)
-                {
-                    if (sb.length() > 0) sb.append(",");
-                    sb.append(charac.getUuid());
-                }
-                return sb.toString();
-            }
-        }
-        return null;
+        DiscoveredServices services = _discoveredServices;
+        return services == null ? null : services.getCharacteristicsUuids(serviceUuid);
+    }
+
+    /**
+     * @brief Gets all the discovered services and their characteristics in a single call.
+     *
+     * The table starts with the number of services (u16), followed by the services.
+     * Each service is made of its UUID and the number of its characteristics (u16),
+     * followed by the characteristics, each one being made of its UUID, its instance index (u8)
+     * and its standard BLE properties (u8, see getCharacteristicProperties()).
+     *
+     * Integers are stored in little-endian order, and UUIDs as 16 bytes in the order
+     * of their string representation.
+     *
+     * @return The binary table, or null if the services are not discovered.
+     */
+    public byte[] getGattTable()
+    {
+        Log.v(TAG, "==> getGattTable");
+
+        DiscoveredServices services = _discoveredServices;
+        return services == null ? null : services.getGattTable().clone();
     }
 
     //! @}
@@ -601,10 +1141,7 @@ public final class Peripheral
         BluetoothGattCharacteristic characteristic
             = getCharacteristic(serviceUuid, characteristicUuid, instanceIndex);
 
-        // Send the read request
-        _client.readCharacteristic(characteristic)
-            .with(valueReadCallback).fail(valueReadCallback).invalid(valueReadCallback)
-            .enqueue();
+        readCharacteristic(characteristic, valueReadCallback);
     }
 
     /**
@@ -627,14 +1164,8 @@ public final class Peripheral
         // Get the characteristic
         BluetoothGattCharacteristic characteristic
             = getCharacteristic(serviceUuid, characteristicUuid, instanceIndex);
-        int writeType = withoutResponse
-            ? BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE
-            : BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT;
 
-        // Send the write request
-        _client.writeCharacteristic(characteristic, data, writeType)
-            .done(requestCallback).fail(requestCallback).invalid(requestCallback)
-            .enqueue();
+        writeCharacteristic(characteristic, data, withoutResponse, requestCallback);
     }
 
     /**
@@ -658,14 +1189,7 @@ public final class Peripheral
         BluetoothGattCharacteristic characteristic
             = getCharacteristic(serviceUuid, characteristicUuid, instanceIndex);
 
-        // Subscribe to notifications
-        _client.setNotificationCallback(characteristic)
-            .with(valueChangedCallback);
-
-        // And turn them on
-        _client.enableNotifications(characteristic)
-            .done(requestCallback).fail(requestCallback).invalid(requestCallback)
-            .enqueue();
+        subscribeCharacteristic(characteristic, valueChangedCallback, requestCallback);
     }
 
     /**
@@ -685,32 +1209,859 @@ public final class Peripheral
         BluetoothGattCharacteristic characteristic
             = getCharacteristic(serviceUuid, characteristicUuid, instanceIndex);
 
+        unsubscribeCharacteristic(characteristic, requestCallback);
+    }
+
+    //! @}
+    //! \name Characteristic operations with UUID identifiers
+    //! Same as the above methods but with the services and characteristics UUIDs
+    //! given by their UuidRegistry identifiers.
+    //! Valid only for peripherals in ready state.
+    //! @{
+
+    /**
+     * @brief Gets the standard BLE properties of the specified service's characteristic.
+     *
+     * @param serviceId The service UUID identifier.
+     * @param characteristicId The characteristic UUID identifier.
+     * @param instanceIndex The instance index of the characteristic if listed more than once
+     *                      for the service, otherwise zero.
+     * @return The standard BLE properties of a service's characteristic, or zero if the call failed.
+     */
+    public int getCharacteristicProperties(final int serviceId, final int characteristicId, final int instanceIndex)
+    {
+        BluetoothGattCharacteristic characteristic
+            = getCharacteristic(UuidRegistry.get(serviceId), UuidRegistry.get(characteristicId), instanceIndex);
+
+        return characteristic == null ? 0 : characteristic.getProperties();
+    }
+
+    /**
+     * @brief Queues a request to read the value of the specified service's characteristic.
+     *
+     * @param serviceId The service UUID identifier.
+     * @param characteristicId The characteristic UUID identifier.
+     * @param instanceIndex The instance index of the characteristic if listed more than once
+     *                      for the service, otherwise zero.
+     * @param valueReadCallback The callback for notifying of the read value and the request status.
+     */
+    public void readCharacteristic(final int serviceId, final int characteristicId, final int instanceIndex, final ReadValueRequestCallback valueReadCallback)
+    {
+        readCharacteristic(getCharacteristic(UuidRegistry.get(serviceId), UuidRegistry.get(characteristicId), instanceIndex), valueReadCallback);
+    }
+
+    /**
+     * @brief Queues a request to write the value of specified service's characteristic.
+     *
+     * @param serviceId The service UUID identifier.
+     * @param characteristicId The characteristic UUID identifier.
+     * @param instanceIndex The instance index of the characteristic if listed more than once
+     *                      for the service, otherwise zero.
+     * @param data The data to write to the characteristic (may be empty but not null).
+     * @param withoutResponse Whether to wait for the peripheral to respond.
+     * @param requestCallback The callback for notifying of the request result.
+     */
+    public void writeCharacteristic(final int serviceId, final int characteristicId, final int instanceIndex, final byte[] data, boolean withoutResponse, final RequestCallback requestCallback)
+    {
+        writeCharacteristic(getCharacteristic(UuidRegistry.get(serviceId), UuidRegistry.get(characteristicId), instanceIndex), data, withoutResponse, requestCallback);
+    }
+
+    /**
+     * @brief Queues a request to subscribe for value changes of the specified service's characteristic.
+     *
+     * @param serviceId The service UUID identifier.
+     * @param characteristicId The characteristic UUID identifier.
+     * @param instanceIndex The instance index of the characteristic if listed more than once
+     *                      for the service, otherwise zero.
+     * @param valueChangedCallback The callback for notifying of the characteristic's value changes.
+     * @param requestCallback The callback for notifying of the request result.
+     */
+    public void subscribeCharacteristic(final int serviceId, final int characteristicId, final int instanceIndex, final DataReceivedCallback valueChangedCallback, final RequestCallback requestCallback)
+    {
+        subscribeCharacteristic(getCharacteristic(UuidRegistry.get(serviceId), UuidRegistry.get(characteristicId), instanceIndex), valueChangedCallback, requestCallback);
+    }
+
+    /**
+     * @brief Queues a request to unsubscribe from the specified service's characteristic.
+     *
+     * @param serviceId The service UUID identifier.
+     * @param characteristicId The characteristic UUID identifier.
+     * @param instanceIndex The instance index of the characteristic if listed more than once
+     *                      for the service, otherwise zero.
+     * @param requestCallback The callback for notifying of the request result.
+     */
+    public void unsubscribeCharacteristic(final int serviceId, final int characteristicId, final int instanceIndex, final RequestCallback requestCallback)
+    {
+        unsubscribeCharacteristic(getCharacteristic(UuidRegistry.get(serviceId), UuidRegistry.get(characteristicId), instanceIndex), requestCallback);
+    }
+
+    //! @}
+    //! \name Characteristic operations with handles
+    //! Faster alternatives to the above methods for frequently accessed characteristics.
+    //! A handle is returned by resolveCharacteristic() and stays the same across reconnections,
+    //! including with other Peripheral instances for the same device.
+    //! Valid only for peripherals in ready state.
+    //! @{
+
+    /**
+     * @brief Gets a handle for the specified service's characteristic to be used with
+     *        the characteristic operations taking a handle.
+     *
+     * Resolved handles are remembered for each device (and persisted across application
+     * runs) and are resolved again as soon as the services are discovered on reconnection.
+     * A handle becomes invalid if the layout of the device services changes, after what
+     * the characteristic must be resolved again.
+     *
+     * @param serviceUuid The service UUID.
+     * @param characteristicUuid The characteristic UUID.
+     * @param instanceIndex The instance index of the characteristic if listed more than once
+     *                      for the service, otherwise zero.
+     * @return A positive handle, or -1 if the characteristic wasn't found.
+     */
+    public int resolveCharacteristic(final String serviceUuid, final String characteristicUuid, final int instanceIndex)
+    {
+        Log.v(TAG, "==> resolveCharacteristic " + characteristicUuid);
+
+        return resolveCharacteristic(UUID.fromString(serviceUuid), UUID.fromString(characteristicUuid), instanceIndex);
+    }
+
+    /**
+     * @brief Gets a handle for the specified service's characteristic, with the UUIDs
+     *        given by their UuidRegistry identifiers.
+     *
+     * @param serviceId The service UUID identifier.
+     * @param characteristicId The characteristic UUID identifier.
+     * @param instanceIndex The instance index of the characteristic if listed more than once
+     *                      for the service, otherwise zero.
+     * @return A positive handle, or -1 if the characteristic wasn't found.
+     */
+    public int resolveCharacteristic(final int serviceId, final int characteristicId, final int instanceIndex)
+    {
+        return resolveCharacteristic(UuidRegistry.get(serviceId), UuidRegistry.get(characteristicId), instanceIndex);
+    }
+
+    /**
+     * @brief Gets a handle for the specified service's characteristic, with the UUIDs
+     *        given by their 128 bits value.
+     *
+     * @param serviceUuidMsb The most significant 64 bits of the service UUID.
+     * @param serviceUuidLsb The least significant 64 bits of the service UUID.
+     * @param characteristicUuidMsb The most significant 64 bits of the characteristic UUID.
+     * @param characteristicUuidLsb The least significant 64 bits of the characteristic UUID.
+     * @param instanceIndex The instance index of the characteristic if listed more than once
+     *                      for the service, otherwise zero.
+     * @return A positive handle, or -1 if the characteristic wasn't found.
+     */
+    public int resolveCharacteristic(final long serviceUuidMsb, final long serviceUuidLsb, final long characteristicUuidMsb, final long characteristicUuidLsb, final int instanceIndex)
+    {
+        return resolveCharacteristic(
+            new UUID(serviceUuidMsb, serviceUuidLsb), new UUID(characteristicUuidMsb, characteristicUuidLsb), instanceIndex);
+    }
+
+    /**
+     * @brief Gets a handle for the given characteristic.
+     */
+    private int resolveCharacteristic(final UUID serviceUuid, final UUID characteristicUuid, final int instanceIndex)
+    {
+        BluetoothGattCharacteristic characteristic
+            = getCharacteristic(serviceUuid, characteristicUuid, instanceIndex);
+        if (characteristic == null)
+        {
+            return -1;
+        }
+
+        ServiceLayoutCache.Key key = new ServiceLayoutCache.Key(serviceUuid, characteristicUuid, instanceIndex);
+        synchronized (_handles)
+        {
+            // Re-use existing handle if the characteristic was already resolved
+            int index = indexOfHandle(key);
+            if (index < 0)
+            {
+                if (_handles.size() > HANDLE_INDEX_MASK)
+                {
+                    return -1;
+                }
+                index = _handles.size();
+                _handles.add(new ResolvedHandle(key));
+                storeHandles();
+            }
+            _handles.get(index).characteristic = characteristic;
+            return (_handlesGeneration << HANDLE_INDEX_BITS) | index;
+        }
+    }
+
+    /**
+     * @brief Gets the standard BLE properties of the characteristic with the given handle.
+     *
+     * @param characteristicHandle The characteristic handle returned by resolveCharacteristic().
+     * @return The standard BLE properties of a service's characteristic, or zero if the call failed.
+     */
+    public int getCharacteristicProperties(final int characteristicHandle)
+    {
+        BluetoothGattCharacteristic characteristic = getCharacteristic(characteristicHandle);
+        return characteristic == null ? 0 : characteristic.getProperties();
+    }
+
+    /**
+     * @brief Queues a request to read the value of the characteristic with the given handle.
+     *
+     * The call fails if the characteristic is not readable.
+     *
+     * @param characteristicHandle The characteristic handle returned by resolveCharacteristic().
+     * @param valueReadCallback The callback for notifying of the read value and the request status.
+     */
+    public void readCharacteristic(final int characteristicHandle, final ReadValueRequestCallback valueReadCallback)
+    {
+        readCharacteristic(getCharacteristic(characteristicHandle), valueReadCallback);
+    }
+
+    /**
+     * @brief Queues a request to write the value of the characteristic with the given handle.
+     *
+     * The call fails if the characteristic is not writable.
+     *
+     * @param characteristicHandle The characteristic handle returned by resolveCharacteristic().
+     * @param data The data to write to the characteristic (may be empty but not null).
+     * @param withoutResponse Whether to wait for the peripheral to respond.
+     * @param requestCallback The callback for notifying of the request result.
+     */
+    public void writeCharacteristic(final int characteristicHandle, final byte[] data, boolean withoutResponse, final RequestCallback requestCallback)
+    {
+        writeCharacteristic(getCharacteristic(characteristicHandle), data, withoutResponse, requestCallback);
+    }
+
+    /**
+     * @brief Queues a request to write the value of the characteristic with the given handle,
+     *        with the given priority.
+     *
+     * When coalescing, a pending write to the same characteristic that was also queued
+     * with coalescing is replaced by the new one, and fails with FailCallback.REASON_CANCELLED.
+     * This is meant for writing a state, when only the latest value matters.
+     *
+     * The call fails if the characteristic is not writable.
+     *
+     * @param characteristicHandle The characteristic handle returned by resolveCharacteristic().
+     * @param data The data to write to the characteristic (may be empty but not null).
+     * @param withoutResponse Whether to wait for the peripheral to respond.
+     * @param priority The request priority, one of the PRIORITY_xxx constants.
+     * @param coalesce Whether the write may replace a pending write to the same characteristic.
+     * @param timeoutMillis Maximum time the request may wait in the queue before failing with
+     *                      FailCallback.REASON_TIMEOUT, zero for no limit.
+     * @param requestCallback The callback for notifying of the request result.
+     */
+    public void writeCharacteristic(final int characteristicHandle, final byte[] data, boolean withoutResponse, final int priority, final boolean coalesce, final long timeoutMillis, final RequestCallback requestCallback)
+    {
+        BluetoothGattCharacteristic characteristic = getCharacteristic(characteristicHandle);
+        int writeType = withoutResponse
+            ? BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE
+            : BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT;
+
+        // Send the write request
+        enqueue(_client.writeCharacteristic(characteristic, data, writeType)
+            .done(requestCallback),
+            priority, coalesce ? characteristic : null, timeoutMillis,
+            RequestMetrics.track(_address, RequestMetrics.OP_WRITE, data.length, requestCallback), requestCallback);
+    }
+
+    /**
+     * @brief Queues a request to subscribe for value changes of the characteristic with the given handle.
+     *
+     * Replaces a previously registered value change callback for the same characteristic.
+     * The call fails if the characteristic doesn't support notifications.
+     *
+     * @param characteristicHandle The characteristic handle returned by resolveCharacteristic().
+     * @param valueChangedCallback The callback for notifying of the characteristic's value changes.
+     * @param requestCallback The callback for notifying of the request result.
+     */
+    public void subscribeCharacteristic(final int characteristicHandle, final DataReceivedCallback valueChangedCallback, final RequestCallback requestCallback)
+    {
+        subscribeCharacteristic(getCharacteristic(characteristicHandle), valueChangedCallback, requestCallback);
+    }
+
+    /**
+     * @brief Queues a request to subscribe for value changes of the characteristic with the given handle,
+     *        with the values copied to a NotificationBuffer.
+     *
+     * Only the offset and length of each value in the buffer are passed to the callback,
+     * see NotificationBuffer for details.
+     * Values that don't fit in the buffer are dropped.
+     *
+     * Replaces a previously registered value change callback for the same characteristic.
+     * The call fails if the characteristic doesn't support notifications.
+     *
+     * @param characteristicHandle The characteristic handle returned by resolveCharacteristic().
+     * @param notificationBuffer The buffer to which the characteristic's values are copied,
+     *                           may be shared between several characteristics and peripherals.
+     * @param valueChangedCallback The callback for notifying of the characteristic's value changes.
+     * @param requestCallback The callback for notifying of the request result.
+     */
+    public void subscribeCharacteristic(final int characteristicHandle, final NotificationBuffer notificationBuffer, final BufferedValueChangedCallback valueChangedCallback, final RequestCallback requestCallback)
+    {
+        Objects.requireNonNull(notificationBuffer);
+        Objects.requireNonNull(valueChangedCallback);
+
+        subscribeCharacteristic(getCharacteristic(characteristicHandle), new DataReceivedCallback()
+        {
+            @Override
+            public void onDataReceived(final BluetoothDevice device, final Data data)
+            {
+                byte[] value = data.getValue();
+                if (value != null)
+                {
+                    int offset = notificationBuffer.write(value);
+                    if (offset >= 0)
+                    {
+                        valueChangedCallback.onValueChanged(characteristicHandle, offset, value.length);
+                    }
+                    else
+                    {
+                        Log.w(TAG, "Dropping notification of " + value.length + " bytes, too large for buffer");
+                    }
+                }
+            }
+        }, requestCallback);
+    }
+
+    /**
+     * @brief Queues a request to subscribe for value changes of the characteristic with the given handle,
+     *        with the values pushed to an EventQueue.
+     *
+     * Values that don't fit in the queue are dropped.
+     *
+     * Replaces a previously registered value change callback for the same characteristic.
+     * The call fails if the characteristic doesn't support notifications.
+     *
+     * @param characteristicHandle The characteristic handle returned by resolveCharacteristic().
+     * @param eventQueue The queue to which the characteristic's values are pushed,
+     *                   see EventQueue.EVENT_VALUE_CHANGED.
+     * @param requestCallback The callback for notifying of the request result.
+     */
+    public void subscribeCharacteristic(final int characteristicHandle, final EventQueue eventQueue, final RequestCallback requestCallback)
+    {
+        Objects.requireNonNull(eventQueue);
+
+        subscribeCharacteristic(getCharacteristic(characteristicHandle), new DataReceivedCallback()
+        {
+            @Override
+            public void onDataReceived(final BluetoothDevice device, final Data data)
+            {
+                byte[] value = data.getValue();
+                if (value != null)
+                {
+                    eventQueue.offer(EventQueue.EVENT_VALUE_CHANGED, _address, characteristicHandle, value);
+                }
+            }
+        }, requestCallback);
+    }
+
+    /**
+     * @brief Queues a request to unsubscribe from the characteristic with the given handle.
+     *
+     * @param characteristicHandle The characteristic handle returned by resolveCharacteristic().
+     * @param requestCallback The callback for notifying of the request result.
+     */
+    public void unsubscribeCharacteristic(final int characteristicHandle, final RequestCallback requestCallback)
+    {
+        unsubscribeCharacteristic(getCharacteristic(characteristicHandle), requestCallback);
+    }
+
+    /**
+     * @brief Queues a request to write a large amount of data to the characteristic
+     *        with the given handle, split in chunks.
+     *
+     * The data is split in chunks of the current MTU size (minus the 3 bytes ATT header)
+     * which are written without response, as a single request so no other request of
+     * the peripheral runs in between. Chunks are written one at a time: the next chunk
+     * is given to the Bluetooth stack once it has accepted the previous one, there is no
+     * window of several chunks in flight. The peripheral doesn't acknowledge the chunks,
+     * so it must be able to process them at the rate they arrive.
+     *
+     * The characteristic must support write without response.
+     * Progress and completion are notified through the same callback.
+     *
+     * @param characteristicHandle The characteristic handle returned by resolveCharacteristic().
+     * @param data The data to write to the characteristic (may be empty but not null).
+     * @param requestCallback The callback for notifying of the progress and of the request result.
+     */
+    public void writeCharacteristicChunked(final int characteristicHandle, final byte[] data, final WriteChunkedRequestCallback requestCallback)
+    {
+        Log.v(TAG, "==> writeCharacteristicChunked " + data.length + " bytes");
+
+        final BluetoothGattCharacteristic characteristic = getCharacteristic(characteristicHandle);
+        final int totalBytes = data.length;
+
+        // Send the write request, split in MTU size chunks
+        enqueue(_client.writeCharacteristic(characteristic, data, BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE)
+            .split(new WriteProgressCallback()
+            {
+                private int _bytesSent;
+                private int _lastPercent;
+
+                @Override
+                public void onPacketSent(final BluetoothDevice device, final byte[] packet, final int index)
+                {
+                    _bytesSent += packet.length;
+
+                    // Throttle notifications as each one may go through JNI
+                    int percent = totalBytes == 0 ? 100 : (int)(100L * _bytesSent / totalBytes);
+                    if ((percent > _lastPercent) && (requestCallback != null))
+                    {
+                        _lastPercent = percent;
+                        requestCallback.onProgress(_bytesSent, totalBytes);
+                    }
+                }
+            })
+            .done(requestCallback),
+            PRIORITY_USER, RequestMetrics.track(_address, RequestMetrics.OP_WRITE, totalBytes, requestCallback), requestCallback);
+    }
+
+    /**
+     * @brief Queues a request to write a large amount of data to the characteristic
+     *        with the given handle, split in chunks.
+     *
+     * Same as writeCharacteristicChunked(int, byte[], WriteChunkedRequestCallback) but with the data
+     * read from the buffer's position to its limit. The buffer position is moved to its limit.
+     *
+     * @param characteristicHandle The characteristic handle returned by resolveCharacteristic().
+     * @param data The buffer with the data to write to the characteristic.
+     * @param requestCallback The callback for notifying of the progress and of the request result.
+     */
+    public void writeCharacteristicChunked(final int characteristicHandle, final ByteBuffer data, final WriteChunkedRequestCallback requestCallback)
+    {
+        // The request must own its data as it's sent asynchronously
+        byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+        writeCharacteristicChunked(characteristicHandle, bytes, requestCallback);
+    }
+
+    /**
+     * @brief Queues a transaction of characteristic reads and writes, run as a single request.
+     *
+     * The operations are run in order, without any other request of the peripheral running
+     * in between. If an operation fails, the remaining ones are skipped and the transaction
+     * fails as a whole. The values read are returned all together once all the operations
+     * have succeeded.
+     *
+     * The transaction is invalid if one of the handles isn't valid.
+     *
+     * @param descriptor The packed operations, see Transaction for the format.
+     * @param timeoutMillis Maximum time the transaction may wait in the queue before failing with
+     *                      FailCallback.REASON_TIMEOUT, zero for no limit.
+     * @param transactionCallback The callback for notifying of the results and of the transaction status.
+     */
+    public void executeTransaction(final byte[] descriptor, final long timeoutMillis, final TransactionCallback transactionCallback)
+    {
+        Log.v(TAG, "==> executeTransaction");
+
+        Objects.requireNonNull(transactionCallback);
+
+        final Transaction transaction = Transaction.parse(descriptor);
+        final int count = transaction.getOperationsCount();
+        final byte[][] values = new byte[count][];
+        final RequestMetrics.Tracker tracker = RequestMetrics.track(
+            _address, RequestMetrics.OP_TRANSACTION, transaction.getWrittenBytes(), transactionCallback);
+
+        RequestQueue queue = _client.beginAtomicRequestQueue();
+        for (int i = 0; i < count; ++i)
+        {
+            BluetoothGattCharacteristic characteristic = getCharacteristic(transaction.getHandle(i));
+            if (characteristic == null)
+            {
+                Log.w(TAG, "Invalid handle for transaction operation " + i);
+                transactionCallback.onInvalidRequest();
+                return;
+            }
+
+            final int index = i;
+            switch (transaction.getType(i))
+            {
+                case Transaction.OP_READ:
+                    queue.add(_client.readCharacteristic(characteristic)
+                        .with((device, data) -> values[index] = data.getValue()));
+                    break;
+                case Transaction.OP_WRITE:
+                    queue.add(_client.writeCharacteristic(characteristic, transaction.getData(i), BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT));
+                    break;
+                default:
+                    queue.add(_client.writeCharacteristic(characteristic, transaction.getData(i), BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE));
+                    break;
+            }
+        }
+
+        enqueue(queue.done(device ->
+            {
+                byte[] results = Transaction.packResults(values);
+                tracker.setBytes(transaction.getWrittenBytes() + results.length - 2 * count);
+                transactionCallback.onTransactionCompleted(device, results);
+            }),
+            PRIORITY_USER, null, timeoutMillis, tracker, transactionCallback);
+    }
+
+    //! @}
+
+    /**
+     * @brief Queues a request to read the value of the given characteristic.
+     */
+    private void readCharacteristic(final BluetoothGattCharacteristic characteristic, final ReadValueRequestCallback valueReadCallback)
+    {
+        RequestMetrics.Tracker tracker = RequestMetrics.track(_address, RequestMetrics.OP_READ, 0, valueReadCallback);
+
+        // Send the read request
+        enqueue(_client.readCharacteristic(characteristic)
+            .with((device, data) ->
+            {
+                tracker.setBytes(data.size());
+                if (valueReadCallback != null)
+                {
+                    valueReadCallback.onDataReceived(device, data);
+                }
+            }),
+            PRIORITY_USER, tracker, valueReadCallback);
+    }
+
+    /**
+     * @brief Queues a request to write the value of the given characteristic.
+     */
+    private void writeCharacteristic(final BluetoothGattCharacteristic characteristic, final byte[] data, boolean withoutResponse, final RequestCallback requestCallback)
+    {
+        int writeType = withoutResponse
+            ? BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE
+            : BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT;
+
+        // Send the write request
+        enqueue(_client.writeCharacteristic(characteristic, data, writeType)
+            .done(requestCallback),
+            PRIORITY_USER, RequestMetrics.track(_address, RequestMetrics.OP_WRITE, data.length, requestCallback), requestCallback);
+    }
+
+    /**
+     * @brief Queues a request to subscribe for value changes of the given characteristic.
+     */
+    private void subscribeCharacteristic(final BluetoothGattCharacteristic characteristic, final DataReceivedCallback valueChangedCallback, final RequestCallback requestCallback)
+    {
+        // Subscribe to notifications, values may be consumed by the interceptor first
+        _client.setNotificationCallback(characteristic)
+            .with((device, data) ->
+            {
+                if ((!interceptValue(characteristic, data)) && (valueChangedCallback != null))
+                {
+                    valueChangedCallback.onDataReceived(device, data);
+                }
+            });
+
+        // And turn them on
+        enqueue(_client.enableNotifications(characteristic)
+            .done(requestCallback),
+            PRIORITY_USER, RequestMetrics.track(_address, RequestMetrics.OP_ENABLE_NOTIFICATIONS, 0, requestCallback), requestCallback);
+    }
+
+    /**
+     * @brief Queues a request to unsubscribe from the given characteristic.
+     */
+    private void unsubscribeCharacteristic(final BluetoothGattCharacteristic characteristic, final RequestCallback requestCallback)
+    {
         // Unsubscribe from notifications
         _client.removeNotificationCallback(characteristic);
 
         // And turn them of
-        _client.disableNotifications(characteristic)
-            .done(requestCallback).fail(requestCallback).invalid(requestCallback)
-            .enqueue();
+        enqueue(_client.disableNotifications(characteristic)
+            .done(requestCallback),
+            PRIORITY_USER, RequestMetrics.track(_address, RequestMetrics.OP_DISABLE_NOTIFICATIONS, 0, requestCallback), requestCallback);
     }
 
-    //! @}
+    /**
+     * @brief Stops the reconnection in progress, if any.
+     */
+    private void cancelReconnection()
+    {
+        ReconnectPolicy policy = _reconnectPolicy;
+        if (policy != null)
+        {
+            policy.cancel();
+        }
+    }
+
+    /**
+     * @brief Schedules the given request with the given priority, with its timings
+     *        recorded by the tracker.
+     *
+     * The tracker is set as the request fail callback and forwards failures to user code.
+     */
+    private void enqueue(final Request request, final int priority, final RequestMetrics.Tracker tracker, final InvalidRequestCallback invalidCallback)
+    {
+        enqueue(request, priority, null, 0, tracker, invalidCallback);
+    }
+
+    /**
+     * @brief Schedules the given request, see RequestScheduler.schedule() for details.
+     */
+    private void enqueue(final Request request, final int priority, final Object coalescingKey, final long timeoutMillis, final RequestMetrics.Tracker tracker, final InvalidRequestCallback invalidCallback)
+    {
+        _scheduler.schedule(request, priority, coalescingKey, timeoutMillis, tracker, invalidCallback);
+    }
 
     /**
-     * @brief Gets the Android gatt service object for the given service UUID.
+     * @brief Gets the Android gatt characteristic object for the given handle.
      */
-    private BluetoothGattService getService(final String serviceUuid)
+    private BluetoothGattCharacteristic getCharacteristic(final int characteristicHandle)
     {
-        return _client.getService(UUID.fromString(serviceUuid));
+        synchronized (_handles)
+        {
+            int index = characteristicHandle & HANDLE_INDEX_MASK;
+            if ((characteristicHandle >= 0)
+                && ((characteristicHandle >>> HANDLE_INDEX_BITS) == _handlesGeneration)
+                && (index < _handles.size()))
+            {
+                return _handles.get(index).characteristic;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * @brief Releases the characteristics of all the handles, they are resolved again
+     *        on the next services discovery.
+     *
+     * This happens on each disconnection, the handles are kept as they are and calls
+     * made with them are rejected until the characteristics are resolved again.
+     * The handles generation only changes if the services layout has changed by then,
+     * see resolveHandles().
+     */
+    private void invalidateHandles()
+    {
+        synchronized (_handles)
+        {
+            for (ResolvedHandle handle : _handles)
+            {
+                handle.characteristic = null;
+            }
+        }
+    }
+
+    /**
+     * @brief Resolves the characteristics of all the handles with the newly discovered services.
+     *
+     * Handles are dropped if the services layout has changed since they were resolved.
+     */
+    private void resolveHandles(final BluetoothGatt gatt)
+    {
+        final int layoutHash = computeLayoutHash(gatt.getServices());
+        synchronized (_handles)
+        {
+            final boolean layoutChanged = layoutHash != _servicesLayoutHash;
+            if (layoutChanged && (_servicesLayoutHash != 0))
+            {
+                Log.v(TAG, "Services layout has changed, dropping characteristic handles");
+
+                // Handles obtained before are rejected as stale, and must stay positive
+                _handles.clear();
+                _handlesGeneration = (_handlesGeneration + 1) & HANDLE_GENERATION_MASK;
+            }
+            _servicesLayoutHash = layoutHash;
+
+            for (ResolvedHandle handle : _handles)
+            {
+                ServiceLayoutCache.Key key = handle.key;
+                handle.characteristic = findCharacteristic(gatt.getService(key.serviceUuid), key.characteristicUuid, key.instanceIndex);
+            }
+
+            if (layoutChanged)
+            {
+                storeHandles();
+            }
+        }
+    }
+
+    /**
+     * @brief Loads the handles of the device from the cache, on the cache thread.
+     */
+    private void loadHandles()
+    {
+        ServiceLayoutCache.post(() ->
+        {
+            ServiceLayoutCache cache = ServiceLayoutCache.getInstance();
+            ServiceLayoutCache.Entry entry = cache == null ? null : cache.load(_address);
+            if (entry != null)
+            {
+                onHandlesLoaded(entry);
+            }
+        });
+    }
+
+    /**
+     * @brief Merges the handles loaded from the cache with the handles resolved
+     *        in the meantime.
+     */
+    private void onHandlesLoaded(final ServiceLayoutCache.Entry entry)
+    {
+        synchronized (_handles)
+        {
+            if (_servicesLayoutHash == 0)
+            {
+                // Services not discovered yet, so no handle was given out
+                _servicesLayoutHash = entry.layoutHash;
+                _handlesGeneration = entry.generation & HANDLE_GENERATION_MASK;
+            }
+            else if (entry.layoutHash != _servicesLayoutHash)
+            {
+                // Cached handles are for another services layout
+                return;
+            }
+
+            // Keep the indices of the handles already given out and append the other keys
+            for (ServiceLayoutCache.Key key : entry.keys)
+            {
+                if ((_handles.size() <= HANDLE_INDEX_MASK) && (indexOfHandle(key) < 0))
+                {
+                    ResolvedHandle handle = new ResolvedHandle(key);
+                    handle.characteristic = getCharacteristic(key.serviceUuid, key.characteristicUuid, key.instanceIndex);
+                    _handles.add(handle);
+                }
+            }
+        }
+    }
+
+    /**
+     * @brief Schedules storing the handles of the device in the cache,
+     *        must be called with the handles lock held.
+     *
+     * The handles are copied and written to the cache on the cache thread, so the disk I/O
+     * runs outside of the lock. Successive changes are coalesced into a single write.
+     */
+    private void storeHandles()
+    {
+        if (!_handlesStorePending)
+        {
+            _handlesStorePending = true;
+            ServiceLayoutCache.post(() ->
+            {
+                final int layoutHash;
+                final int generation;
+                final ArrayList<ServiceLayoutCache.Key> keys;
+                synchronized (_handles)
+                {
+                    _handlesStorePending = false;
+                    layoutHash = _servicesLayoutHash;
+                    generation = _handlesGeneration;
+                    keys = new ArrayList<>(_handles.size());
+                    for (ResolvedHandle handle : _handles)
+                    {
+                        keys.add(handle.key);
+                    }
+                }
+
+                ServiceLayoutCache cache = ServiceLayoutCache.getInstance();
+                if (cache != null)
+                {
+                    cache.store(_address, layoutHash, generation, keys);
+                }
+            });
+        }
+    }
+
+    /**
+     * @brief Gets the index of the handle with the given key, or -1,
+     *        must be called with the handles lock held.
+     */
+    private int indexOfHandle(final ServiceLayoutCache.Key key)
+    {
+        for (int i = 0; i < _handles.size(); ++i)
+        {
+            if (_handles.get(i).key.equals(key))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @brief Computes a hash of the services and characteristics UUIDs, never zero.
+     */
+    private static int computeLayoutHash(final List<BluetoothGattService> services)
+    {
+        int hash = 1;
+        for (BluetoothGattService service : services)
+        {
+            hash = 31 * hash + service.getUuid().hashCode();
+            for (BluetoothGattCharacteristic characteristic : service.getCharacteristics())
+            {
+                hash = 31 * hash + characteristic.getUuid().hashCode();
+            }
+        }
+        // Zero stands for an unknown layout
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * @brief Gets the Android Bluetooth device object of the peripheral.
+     */
+    BluetoothDevice getDevice()
+    {
+        return _device;
+    }
+
+    /**
+     * @brief Sets the interceptor of the values notified by the characteristic with the given handle,
+     *        replacing the previous one.
+     *
+     * The characteristic must be subscribed for the interceptor to receive its values.
+     *
+     * @param characteristicHandle The characteristic handle returned by resolveCharacteristic().
+     * @param interceptor The interceptor, or null to remove it.
+     */
+    void setValueInterceptor(final int characteristicHandle, final ValueInterceptor interceptor)
+    {
+        _valueInterceptor = interceptor == null ? null : new InterceptorEntry(characteristicHandle, interceptor);
+    }
+
+    /**
+     * @brief Passes the given value to the interceptor if it's set for the given characteristic.
+     *
+     * @return Whether the value was consumed.
+     */
+    private boolean interceptValue(final BluetoothGattCharacteristic characteristic, final Data data)
+    {
+        InterceptorEntry entry = _valueInterceptor;
+        if ((entry == null) || (getCharacteristic(entry.characteristicHandle) != characteristic))
+        {
+            return false;
+        }
+        byte[] value = data.getValue();
+        return (value != null) && entry.interceptor.onValueReceived(value);
+    }
+
+    /**
+     * @brief Gets the Bluetooth address of the peripheral as a 64 bits integer.
+     */
+    long getBluetoothAddress()
+    {
+        return _address;
     }
 
     /**
      * @brief Gets the Android gatt characteristic object for the given characteristic UUID.
      */
     private BluetoothGattCharacteristic getCharacteristic(final String serviceUuid, final String characteristicUuid, final int instanceIndex)
+    {
+        return getCharacteristic(UUID.fromString(serviceUuid), UUID.fromString(characteristicUuid), instanceIndex);
+    }
+
+    /**
+     * @brief Gets the Android gatt characteristic object for the given characteristic UUID.
+     */
+    private BluetoothGattCharacteristic getCharacteristic(final UUID serviceUuid, final UUID uuid, final int instanceIndex)
     {
         // Get the service
-        BluetoothGattService service = getService(serviceUuid);
+        return findCharacteristic(_client.getService(serviceUuid), uuid, instanceIndex);
+    }
+
+    /**
+     * @brief Gets the Android gatt characteristic object for the given characteristic UUID
+     *        in the given service.
+     */
+    private static BluetoothGattCharacteristic findCharacteristic(final BluetoothGattService service, final UUID uuid, final int instanceIndex)
+    {
         if (service != null)
         {
             // Get the list of characteristics
@@ -718,7 +2069,6 @@ public final class Peripheral
             if (characteristics != null)
             {
                 // Look-up for the characteristic with the specified index
-                UUID uuid = UUID.fromString(characteristicUuid);
                 int counter = 0;
                 for (BluetoothGattCharacteristic charac : characteristics)
                 {
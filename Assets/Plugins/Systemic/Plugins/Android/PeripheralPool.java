@@ -0,0 +1,368 @@
+package com.systemic.bluetoothle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+import android.bluetooth.BluetoothDevice;
+import android.os.Handler;
+import android.util.Log;
+
+import no.nordicsemi.android.ble.callback.FailCallback;
+import no.nordicsemi.android.ble.data.Data;
+import no.nordicsemi.android.ble.observer.ConnectionObserver;
+
+/**
+ * @brief Coordinates requests sent to many peripherals.
+ *
+ * Android Bluetooth stacks are known to misbehave when connecting to more than
+ * a few devices at the same time, and a peripheral with many queued requests
+ * (for example during a large data transfer) may delay the requests of
+ * the other peripherals.
+ *
+ * This class limits the number of simultaneous connection requests, and runs
+ * the characteristic requests of its peripherals in a round-robin fashion
+ * with a limit on the number of requests running at the same time.
+ * Requests are queued until they may be run.
+ *
+ * Only the requests made through this class are coordinated, requests made directly
+ * on a Peripheral instance are sent immediately to the peripheral's own queue.
+ *
+ * The pool may run the callbacks of its peripherals on a few threads shared between
+ * them rather than on the main thread, see CallbackHandlers.
+ */
+public final class PeripheralPool
+{
+    private static final String TAG = "SystemicGames";
+
+    private final FairScheduler _connections;
+    private final FairScheduler _operations;
+    private final int _callbackThreadsCount;
+    private final List<Peripheral> _peripherals = new ArrayList<>();
+
+    /**
+     * @brief Base class for coordinated requests, forwards the request result to user code
+     *        and notifies the scheduler of its completion.
+     */
+    private static abstract class PooledRequest implements FairScheduler.Operation
+    {
+        private final FairScheduler _scheduler;
+        private final BluetoothDevice _device;
+        private final FailCallback _failCallback;
+
+        PooledRequest(final FairScheduler scheduler, final Peripheral peripheral, final FailCallback failCallback)
+        {
+            _scheduler = scheduler;
+            _device = peripheral.getDevice();
+            _failCallback = failCallback;
+        }
+
+        @Override
+        public void cancel()
+        {
+            if (_failCallback != null)
+            {
+                _failCallback.onRequestFailed(_device, FailCallback.REASON_CANCELLED);
+            }
+        }
+
+        @Override
+        public void fail(final RuntimeException exception)
+        {
+            Log.e(TAG, "Coordinated request failed to run", exception);
+            onInvalidRequest();
+        }
+
+        /**
+         * @brief Notifies that the request couldn't be run.
+         */
+        public abstract void onInvalidRequest();
+
+        /**
+         * @brief Must be called once the request has completed, successfully or not,
+         *        the scheduler ignores any extra call.
+         */
+        protected void complete()
+        {
+            _scheduler.complete(this);
+        }
+    }
+
+    /**
+     * @brief A coordinated request without a value.
+     */
+    private static abstract class PooledSimpleRequest extends PooledRequest implements Peripheral.RequestCallback
+    {
+        private final Peripheral.RequestCallback _callback;
+
+        PooledSimpleRequest(final FairScheduler scheduler, final Peripheral peripheral, final Peripheral.RequestCallback callback)
+        {
+            super(scheduler, peripheral, callback);
+            _callback = callback;
+        }
+
+        @Override
+        public void onRequestCompleted(final BluetoothDevice device)
+        {
+            complete();
+            if (_callback != null) _callback.onRequestCompleted(device);
+        }
+
+        @Override
+        public void onRequestFailed(final BluetoothDevice device, final int status)
+        {
+            complete();
+            if (_callback != null) _callback.onRequestFailed(device, status);
+        }
+
+        @Override
+        public void onInvalidRequest()
+        {
+            complete();
+            if (_callback != null) _callback.onInvalidRequest();
+        }
+    }
+
+    /**
+     * @brief A coordinated characteristic read request.
+     */
+    private static abstract class PooledReadRequest extends PooledRequest implements Peripheral.ReadValueRequestCallback
+    {
+        private final Peripheral.ReadValueRequestCallback _callback;
+
+        PooledReadRequest(final FairScheduler scheduler, final Peripheral peripheral, final Peripheral.ReadValueRequestCallback callback)
+        {
+            super(scheduler, peripheral, callback);
+            _callback = callback;
+        }
+
+        @Override
+        public void onDataReceived(final BluetoothDevice device, final Data data)
+        {
+            complete();
+            if (_callback != null) _callback.onDataReceived(device, data);
+        }
+
+        @Override
+        public void onRequestFailed(final BluetoothDevice device, final int status)
+        {
+            complete();
+            if (_callback != null) _callback.onRequestFailed(device, status);
+        }
+
+        @Override
+        public void onInvalidRequest()
+        {
+            complete();
+            if (_callback != null) _callback.onInvalidRequest();
+        }
+    }
+
+    /**
+     * @brief Initializes a pool with the given limits.
+     *
+     * @param maxConcurrentConnections The maximum number of connection requests running
+     *                                 at the same time, must be greater than zero.
+     * @param maxConcurrentRequests The maximum number of characteristic requests running
+     *                              at the same time across all peripherals, must be greater than zero.
+     */
+    public PeripheralPool(final int maxConcurrentConnections, final int maxConcurrentRequests)
+    {
+        this(maxConcurrentConnections, maxConcurrentRequests, 0);
+    }
+
+    /**
+     * @brief Initializes a pool with the given limits, and with the callbacks of its
+     *        peripherals run on shared threads.
+     *
+     * @param maxConcurrentConnections The maximum number of connection requests running
+     *                                 at the same time, must be greater than zero.
+     * @param maxConcurrentRequests The maximum number of characteristic requests running
+     *                              at the same time across all peripherals, must be greater than zero.
+     * @param callbackThreadsCount The number of threads of the shared pool given to
+     *                             CallbackHandlers.getShared(), or zero to run the callbacks
+     *                             on the main thread.
+     */
+    public PeripheralPool(final int maxConcurrentConnections, final int maxConcurrentRequests, final int callbackThreadsCount)
+    {
+        Log.v(TAG, "==> createPeripheralPool");
+
+        if (maxConcurrentConnections <= 0)
+        {
+            throw new IllegalArgumentException("maxConcurrentConnections must be greater than zero");
+        }
+        if (maxConcurrentRequests <= 0)
+        {
+            throw new IllegalArgumentException("maxConcurrentRequests must be greater than zero");
+        }
+        if (callbackThreadsCount < 0)
+        {
+            throw new IllegalArgumentException("callbackThreadsCount must be zero or greater");
+        }
+
+        _callbackThreadsCount = callbackThreadsCount;
+        _connections = new FairScheduler(maxConcurrentConnections);
+        _operations = new FairScheduler(maxConcurrentRequests);
+    }
+
+    //! \name Peripherals management
+    //! @{
+
+    /**
+     * @brief Creates a peripheral owned by this pool.
+     *
+     * Its callbacks are run on one of the shared threads if the pool was created with
+     * callback threads, or on the main thread otherwise.
+     *
+     * @param device The Android Bluetooth device object for the BLE peripheral.
+     * @param connectionObserver The callback for notifying of changes of the connection status of the peripheral,
+     *                           may be null when the connection events are read from an event queue,
+     *                           see setEventQueue().
+     * @return The new peripheral.
+     */
+    public Peripheral createPeripheral(final BluetoothDevice device, final ConnectionObserver connectionObserver)
+    {
+        Handler handler = _callbackThreadsCount > 0 ? CallbackHandlers.getShared(_callbackThreadsCount) : null;
+        return createPeripheral(device, connectionObserver, handler);
+    }
+
+    /**
+     * @brief Creates a peripheral owned by this pool, with its callbacks run by the given handler.
+     *
+     * @param device The Android Bluetooth device object for the BLE peripheral.
+     * @param connectionObserver The callback for notifying of changes of the connection status of the peripheral,
+     *                           may be null when the connection events are read from an event queue,
+     *                           see setEventQueue().
+     * @param callbackHandler The handler running the callbacks, for example one returned by
+     *                        CallbackHandlers.createDedicated(), or null to run them on the main thread.
+     * @return The new peripheral.
+     */
+    public Peripheral createPeripheral(final BluetoothDevice device, final ConnectionObserver connectionObserver, final Handler callbackHandler)
+    {
+        Peripheral peripheral = new Peripheral(device, connectionObserver, callbackHandler);
+        synchronized (_peripherals)
+        {
+            _peripherals.add(peripheral);
+        }
+        return peripheral;
+    }
+
+    /**
+     * @brief Removes a peripheral from this pool, its pending requests are canceled.
+     *
+     * The peripheral is not disconnected.
+     *
+     * @param peripheral The peripheral to remove.
+     */
+    public void releasePeripheral(final Peripheral peripheral)
+    {
+        synchronized (_peripherals)
+        {
+            _peripherals.remove(peripheral);
+        }
+        _connections.cancel(peripheral);
+        _operations.cancel(peripheral);
+    }
+
+    /**
+     * @brief Gets the number of peripherals owned by this pool.
+     */
+    public int getPeripheralsCount()
+    {
+        synchronized (_peripherals)
+        {
+            return _peripherals.size();
+        }
+    }
+
+    /**
+     * @brief Gets the number of requests (connections included) waiting to be run.
+     */
+    public int getPendingRequestsCount()
+    {
+        return _connections.getPendingCount() + _operations.getPendingCount();
+    }
+
+    //! @}
+    //! \name Coordinated requests
+    //! See the Peripheral methods of the same name for details.
+    //! @{
+
+    /**
+     * @brief Queues a request to connect to the given peripheral, it is run once
+     *        the number of running connection requests is below the limit.
+     *
+     * A connection request with auto reconnect counts against the limit until the
+     * peripheral is connected, which may take a long time.
+     *
+     * @param peripheral The peripheral to connect to.
+     * @param requiredServicesUuids Comma separated list of services UUIDs that the peripheral
+     *                              should support, may be null or empty.
+     * @param autoReconnect Whether to automatically reconnect after an unexpected disconnection.
+     * @param requestCallback The callback for notifying of the request result.
+     */
+    public void connect(final Peripheral peripheral, final String requiredServicesUuids, final boolean autoReconnect, final Peripheral.RequestCallback requestCallback)
+    {
+        Objects.requireNonNull(peripheral);
+
+        // Parse now so an invalid list throws in the caller's thread
+        final UUID[] requiredServices = UuidUtils.parseList(requiredServicesUuids, "requiredServicesUuids");
+
+        _connections.submit(peripheral, new PooledSimpleRequest(_connections, peripheral, requestCallback)
+        {
+            @Override
+            public void run()
+            {
+                peripheral.connect(requiredServices, autoReconnect, this);
+            }
+        });
+    }
+
+    /**
+     * @brief Queues a request to read the value of the characteristic with the given handle.
+     *
+     * @param peripheral The peripheral to read from.
+     * @param characteristicHandle The characteristic handle returned by Peripheral.resolveCharacteristic().
+     * @param valueReadCallback The callback for notifying of the read value and the request status.
+     */
+    public void readCharacteristic(final Peripheral peripheral, final int characteristicHandle, final Peripheral.ReadValueRequestCallback valueReadCallback)
+    {
+        Objects.requireNonNull(peripheral);
+
+        _operations.submit(peripheral, new PooledReadRequest(_operations, peripheral, valueReadCallback)
+        {
+            @Override
+            public void run()
+            {
+                peripheral.readCharacteristic(characteristicHandle, this);
+            }
+        });
+    }
+
+    /**
+     * @brief Queues a request to write the value of the characteristic with the given handle.
+     *
+     * @param peripheral The peripheral to write to.
+     * @param characteristicHandle The characteristic handle returned by Peripheral.resolveCharacteristic().
+     * @param data The data to write to the characteristic (may be empty but not null).
+     * @param withoutResponse Whether to wait for the peripheral to respond.
+     * @param requestCallback The callback for notifying of the request result.
+     */
+    public void writeCharacteristic(final Peripheral peripheral, final int characteristicHandle, final byte[] data, final boolean withoutResponse, final Peripheral.RequestCallback requestCallback)
+    {
+        Objects.requireNonNull(peripheral);
+        Objects.requireNonNull(data);
+
+        _operations.submit(peripheral, new PooledSimpleRequest(_operations, peripheral, requestCallback)
+        {
+            @Override
+            public void run()
+            {
+                peripheral.writeCharacteristic(characteristicHandle, data, withoutResponse, this);
+            }
+        });
+    }
+
+    //! @}
+}
\ No newline at end of file
@@ -0,0 +1,316 @@
+package com.systemic.bluetoothle;
+
+import java.util.Random;
+
+import android.bluetooth.BluetoothDevice;
+import android.util.Log;
+
+import no.nordicsemi.android.ble.observer.ConnectionObserver;
+
+/**
+ * @brief Reconnects a peripheral after an unexpected disconnection, see Peripheral.setReconnectPolicy().
+ *
+ * On a link loss (or a supervision timeout) the policy first tries a direct connection
+ * with a short timeout, which is the fastest way to reconnect to a device that is
+ * still in range. If it fails, the policy keeps trying with background connections
+ * (Android's autoConnect), each one lasting up to a given timeout, waiting between two
+ * attempts for a delay that doubles after each failed attempt, up to a maximum, with
+ * a random jitter so many devices don't retry in lockstep.
+ *
+ * Disconnections requested by user code and disconnections by the device don't trigger
+ * a reconnection. A peripheral should be connected without auto reconnect when using
+ * a policy, as Android would otherwise also try to reconnect on its own.
+ *
+ * The number of attempts and the time to reconnect are recorded, see getMetrics().
+ *
+ * A policy is attached to a single peripheral at a time.
+ * This class is thread safe.
+ */
+public final class ReconnectPolicy
+{
+    private static final String TAG = "SystemicGames";
+
+    /**
+     * @brief The operations needed by the policy, implemented by Peripheral.
+     */
+    interface Host
+    {
+        /**
+         * @brief Queues a connection request.
+         *
+         * @param autoConnect Whether to use a background connection.
+         * @param timeoutMillis The request timeout, zero for none.
+         * @param callback The callback for notifying of the request result.
+         */
+        void connect(final boolean autoConnect, final long timeoutMillis, final Peripheral.RequestCallback callback);
+
+        /**
+         * @brief Runs the given runnable after the given delay.
+         */
+        void postDelayed(final Runnable runnable, final long delayMillis);
+
+        /**
+         * @brief Removes the given runnable if it's pending.
+         */
+        void removeCallbacks(final Runnable runnable);
+    }
+
+    private static final int STATE_IDLE = 0;
+    private static final int STATE_CONNECTING = 1;
+    private static final int STATE_WAITING = 2;
+
+    private final long _directTimeoutMillis;
+    private final long _autoConnectTimeoutMillis;
+    private final long _initialBackoffMillis;
+    private final long _maxBackoffMillis;
+    private final int _maxAttempts;
+    private final Clock _clock;
+    private final Random _random;
+    private final Runnable _retryRunnable = this::onRetry;
+
+    private Host _host;
+    private int _state = STATE_IDLE;
+    private int _attempt;
+    // Incremented on each attempt and on cancellation, to ignore results of obsolete attempts
+    private int _sequence;
+    private long _disconnectTime;
+
+    // Metrics
+    private long _reconnectionsCount;
+    private long _directReconnectionsCount;
+    private long _attemptsCount;
+    private long _failedAttemptsCount;
+    private long _abandonedCount;
+    private final LatencyHistogram _reconnectMillis = new LatencyHistogram();
+
+    /**
+     * @brief Initializes a policy with the given settings.
+     *
+     * @param directTimeoutMillis The timeout of the first, direct, connection attempt.
+     * @param autoConnectTimeoutMillis The timeout of each background connection attempt.
+     * @param initialBackoffMillis The delay before the first background connection attempt.
+     * @param maxBackoffMillis The maximum delay between two attempts, at least initialBackoffMillis.
+     * @param maxAttempts The maximum number of attempts before giving up, zero for no limit.
+     */
+    public ReconnectPolicy(final long directTimeoutMillis, final long autoConnectTimeoutMillis, final long initialBackoffMillis, final long maxBackoffMillis, final int maxAttempts)
+    {
+        this(directTimeoutMillis, autoConnectTimeoutMillis, initialBackoffMillis, maxBackoffMillis, maxAttempts, Clock.SYSTEM, new Random());
+    }
+
+    ReconnectPolicy(final long directTimeoutMillis, final long autoConnectTimeoutMillis, final long initialBackoffMillis, final long maxBackoffMillis, final int maxAttempts, final Clock clock, final Random random)
+    {
+        if (directTimeoutMillis <= 0)
+        {
+            throw new IllegalArgumentException("directTimeoutMillis must be greater than zero");
+        }
+        if (autoConnectTimeoutMillis <= 0)
+        {
+            throw new IllegalArgumentException("autoConnectTimeoutMillis must be greater than zero");
+        }
+        if (initialBackoffMillis <= 0)
+        {
+            throw new IllegalArgumentException("initialBackoffMillis must be greater than zero");
+        }
+        if (maxBackoffMillis < initialBackoffMillis)
+        {
+            throw new IllegalArgumentException("maxBackoffMillis must be at least initialBackoffMillis");
+        }
+        if (maxAttempts < 0)
+        {
+            throw new IllegalArgumentException("maxAttempts must be zero or greater");
+        }
+
+        _directTimeoutMillis = directTimeoutMillis;
+        _autoConnectTimeoutMillis = autoConnectTimeoutMillis;
+        _initialBackoffMillis = initialBackoffMillis;
+        _maxBackoffMillis = maxBackoffMillis;
+        _maxAttempts = maxAttempts;
+        _clock = clock;
+        _random = random;
+    }
+
+    /**
+     * @brief Indicates whether the policy is trying to reconnect its peripheral.
+     */
+    public synchronized boolean isReconnecting()
+    {
+        return _state != STATE_IDLE;
+    }
+
+    /**
+     * @brief Gets the reconnection metrics.
+     *
+     * The returned JSON object has the number of "reconnections", of reconnections on
+     * the first direct attempt ("directReconnections"), of "attempts", of "failedAttempts"
+     * and of reconnections given up after the maximum number of attempts ("abandoned").
+     * The time from the disconnection to the peripheral being ready again is given by
+     * the "reconnectMillis" histogram, see RequestMetrics.getSnapshot() for its format.
+     *
+     * @return A JSON string.
+     */
+    public synchronized String getMetrics()
+    {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("{\"reconnections\":");
+        sb.append(_reconnectionsCount);
+        sb.append(",\"directReconnections\":");
+        sb.append(_directReconnectionsCount);
+        sb.append(",\"attempts\":");
+        sb.append(_attemptsCount);
+        sb.append(",\"failedAttempts\":");
+        sb.append(_failedAttemptsCount);
+        sb.append(",\"abandoned\":");
+        sb.append(_abandonedCount);
+        sb.append(",\"reconnectMillis\":");
+        _reconnectMillis.appendJson(sb);
+        sb.append("}");
+        return sb.toString();
+    }
+
+    /**
+     * @brief Attaches the policy to the given host, or detaches it if null.
+     *
+     * Any on-going reconnection is canceled.
+     */
+    synchronized void attach(final Host host)
+    {
+        if ((host != null) && (_host != null) && (_host != host))
+        {
+            throw new IllegalStateException("ReconnectPolicy is already attached to another peripheral");
+        }
+        cancel();
+        _host = host;
+    }
+
+    /**
+     * @brief Stops any on-going reconnection, to be called when user code
+     *        connects or disconnects the peripheral.
+     */
+    synchronized void cancel()
+    {
+        ++_sequence;
+        if (_state == STATE_WAITING)
+        {
+            _host.removeCallbacks(_retryRunnable);
+        }
+        _state = STATE_IDLE;
+    }
+
+    /**
+     * @brief Notifies of the peripheral disconnection, starts reconnecting if the reason
+     *        is a connection loss.
+     */
+    synchronized void onDisconnected(final int reason)
+    {
+        if ((_host == null) || (_state != STATE_IDLE))
+        {
+            // Not attached or already reconnecting
+            return;
+        }
+        if ((reason != ConnectionObserver.REASON_LINK_LOSS)
+            && (reason != ConnectionObserver.REASON_TIMEOUT)
+            && (reason != ConnectionObserver.REASON_UNKNOWN))
+        {
+            return;
+        }
+
+        Log.v(TAG, "Connection lost with reason " + reason + ", reconnecting");
+
+        _disconnectTime = _clock.elapsedMillis();
+        _attempt = 0;
+        startAttempt();
+    }
+
+    /**
+     * @brief Notifies that the peripheral is ready.
+     */
+    synchronized void onReady()
+    {
+        if (_state == STATE_IDLE)
+        {
+            // Connection made by user code
+            return;
+        }
+
+        ++_reconnectionsCount;
+        if (_attempt == 1)
+        {
+            ++_directReconnectionsCount;
+        }
+        _reconnectMillis.record(_clock.elapsedMillis() - _disconnectTime);
+        cancel();
+    }
+
+    /**
+     * @brief Gets the delay before the given attempt, the second attempt being
+     *        the first one with a delay.
+     */
+    long getBackoffMillis(final int attempt)
+    {
+        // Double the delay for each attempt, with a jitter of up to half the delay
+        final int shift = Math.min(attempt - 2, 30);
+        final long delay = Math.min(_maxBackoffMillis, _initialBackoffMillis << shift);
+        return delay - (long)(_random.nextDouble() * (delay / 2));
+    }
+
+    private void startAttempt()
+    {
+        ++_attempt;
+        ++_attemptsCount;
+        _state = STATE_CONNECTING;
+
+        // First try a direct connection, for a device still in range.
+        // Background connections also time out, so a failed attempt moves on to the next backoff
+        final boolean autoConnect = _attempt > 1;
+        final int sequence = ++_sequence;
+        _host.connect(autoConnect, autoConnect ? _autoConnectTimeoutMillis : _directTimeoutMillis, new Peripheral.RequestCallback()
+        {
+            @Override
+            public void onRequestCompleted(final BluetoothDevice device)
+            {
+                // Success is notified with onReady()
+            }
+
+            @Override
+            public void onRequestFailed(final BluetoothDevice device, final int status)
+            {
+                onAttemptFailed(sequence);
+            }
+
+            @Override
+            public void onInvalidRequest()
+            {
+                onAttemptFailed(sequence);
+            }
+        });
+    }
+
+    private synchronized void onAttemptFailed(final int sequence)
+    {
+        if ((sequence != _sequence) || (_state != STATE_CONNECTING))
+        {
+            // Obsolete attempt
+            return;
+        }
+
+        ++_failedAttemptsCount;
+        if ((_maxAttempts > 0) && (_attempt >= _maxAttempts))
+        {
+            Log.w(TAG, "Giving up reconnecting after " + _attempt + " attempts");
+            ++_abandonedCount;
+            _state = STATE_IDLE;
+            return;
+        }
+
+        _state = STATE_WAITING;
+        _host.postDelayed(_retryRunnable, getBackoffMillis(_attempt + 1));
+    }
+
+    private synchronized void onRetry()
+    {
+        if (_state == STATE_WAITING)
+        {
+            startAttempt();
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.systemic.bluetoothle;
+
+import android.bluetooth.BluetoothDevice;
+import android.os.SystemClock;
+import android.util.LongSparseArray;
+
+import no.nordicsemi.android.ble.callback.AfterCallback;
+import no.nordicsemi.android.ble.callback.BeforeCallback;
+import no.nordicsemi.android.ble.callback.FailCallback;
+
+/**
+ * @brief Static class that collects latency and throughput metrics of the requests
+ *        sent to peripherals.
+ *
+ * For each request, the time spent waiting in the peripheral's queue (from enqueue to start)
+ * and the time spent running (from start to completion) are recorded in histograms,
+ * along with the number of succeeded and failed requests and the number of bytes transferred.
+ * Metrics are kept for each type of operation, both overall and for each device.
+ *
+ * Durations are in microseconds.
+ *
+ * Collecting metrics is disabled by default, see setEnabled().
+ * The collected metrics are retrieved as a JSON string with getSnapshot().
+ */
+public final class RequestMetrics
+{
+    //! Operation type: connection.
+    public static final int OP_CONNECT = 0;
+    //! Operation type: disconnection.
+    public static final int OP_DISCONNECT = 1;
+    //! Operation type: MTU request.
+    public static final int OP_REQUEST_MTU = 2;
+    //! Operation type: RSSI read.
+    public static final int OP_READ_RSSI = 3;
+    //! Operation type: characteristic read.
+    public static final int OP_READ = 4;
+    //! Operation type: characteristic write.
+    public static final int OP_WRITE = 5;
+    //! Operation type: subscription to a characteristic.
+    public static final int OP_ENABLE_NOTIFICATIONS = 6;
+    //! Operation type: unsubscription from a characteristic.
+    public static final int OP_DISABLE_NOTIFICATIONS = 7;
+    //! Operation type: transaction of characteristic reads and writes.
+    public static final int OP_TRANSACTION = 8;
+
+    private static final int OPERATIONS_COUNT = 9;
+    private static final String[] OPERATIONS_NAMES = {
+        "connect", "disconnect", "requestMtu", "readRssi", "read", "write", "enableNotifications", "disableNotifications", "transaction"
+    };
+
+    /**
+     * @brief The metrics of one type of operation.
+     */
+    private static final class OperationStats
+    {
+        final LatencyHistogram queued = new LatencyHistogram();
+        final LatencyHistogram running = new LatencyHistogram();
+        long successCount;
+        long failureCount;
+        long bytes;
+
+        void appendJson(final StringBuilder sb)
+        {
+            sb.append("{\"success\":");
+            sb.append(successCount);
+            sb.append(",\"failure\":");
+            sb.append(failureCount);
+            sb.append(",\"bytes\":");
+            sb.append(bytes);
+            sb.append(",\"queued\":");
+            queued.appendJson(sb);
+            sb.append(",\"running\":");
+            running.appendJson(sb);
+            sb.append("}");
+        }
+    }
+
+    /**
+     * @brief Tracks the timestamps of a request and records them once it has completed.
+     *
+     * It must be set as the request's before, fail and then callbacks,
+     * the user fail callback is forwarded.
+     * Nothing is recorded if metrics were disabled when the tracker was created.
+     */
+    static final class Tracker implements BeforeCallback, FailCallback, AfterCallback
+    {
+        private final long _address;
+        private final int _operation;
+        private final FailCallback _failCallback;
+        private final boolean _active;
+        private final long _enqueueTime;
+        private long _startTime;
+        private int _bytes;
+        private boolean _failed;
+
+        private Tracker(final long address, final int operation, final int bytes, final FailCallback failCallback)
+        {
+            _address = address;
+            _operation = operation;
+            _bytes = bytes;
+            _failCallback = failCallback;
+            _active = _enabled;
+            _enqueueTime = _active ? SystemClock.elapsedRealtimeNanos() : 0;
+        }
+
+        /**
+         * @brief Sets the number of bytes transferred by the request, for requests
+         *        for which it's only known once completed.
+         */
+        void setBytes(final int bytes)
+        {
+            _bytes = bytes;
+        }
+
+        @Override
+        public void onRequestStarted(final BluetoothDevice device)
+        {
+            if (_active)
+            {
+                _startTime = SystemClock.elapsedRealtimeNanos();
+            }
+        }
+
+        @Override
+        public void onRequestFailed(final BluetoothDevice device, final int status)
+        {
+            _failed = true;
+            if (_failCallback != null)
+            {
+                _failCallback.onRequestFailed(device, status);
+            }
+        }
+
+        @Override
+        public void onRequestFinished(final BluetoothDevice device)
+        {
+            if (!_active)
+            {
+                return;
+            }
+            long now = SystemClock.elapsedRealtimeNanos();
+            // A request that never started has spent all its time in the queue
+            long startTime = _startTime != 0 ? _startTime : now;
+            record(_address, _operation, (startTime - _enqueueTime) / 1000, (now - startTime) / 1000, _failed, _bytes);
+        }
+    }
+
+    private static final Object _sync = new Object();
+    private static volatile boolean _enabled;
+    private static final OperationStats[] _totals = createStats();
+    private static final LongSparseArray<OperationStats[]> _devicesStats = new LongSparseArray<>();
+
+    private RequestMetrics() {}
+
+    /**
+     * @brief Enables or disables the collection of metrics.
+     *
+     * Only requests enqueued while enabled are measured. Metrics collected so far are kept.
+     */
+    public static void setEnabled(final boolean enabled)
+    {
+        _enabled = enabled;
+    }
+
+    /**
+     * @brief Indicates whether metrics are being collected.
+     */
+    public static boolean isEnabled()
+    {
+        return _enabled;
+    }
+
+    /**
+     * @brief Clears all the collected metrics.
+     */
+    public static void reset()
+    {
+        synchronized (_sync)
+        {
+            for (int i = 0; i < OPERATIONS_COUNT; ++i)
+            {
+                _totals[i] = new OperationStats();
+            }
+            _devicesStats.clear();
+        }
+    }
+
+    /**
+     * @brief Gets a snapshot of the collected metrics.
+     *
+     * The returned JSON object has a "totals" object and a "devices" array of objects,
+     * each with the device "address" and its metrics. Metrics are given for each type
+     * of operation with at least one recorded request, each with the number of succeeded
+     * and failed requests, the number of bytes transferred and two histograms of durations,
+     * "queued" and "running". Histograms give the count, min, mean, max, 50th, 90th and 99th
+     * percentiles and their non empty buckets as [lower bound, count] pairs.
+     *
+     * @return A JSON string.
+     */
+    public static String getSnapshot()
+    {
+        synchronized (_sync)
+        {
+            StringBuilder sb = new StringBuilder(1024);
+            sb.append("{\"totals\":");
+            appendJson(sb, _totals);
+            sb.append(",\"devices\":[");
+            for (int i = 0; i < _devicesStats.size(); ++i)
+            {
+                if (i > 0) sb.append(",");
+                sb.append("{\"address\":");
+                sb.append(_devicesStats.keyAt(i));
+                sb.append(",\"operations\":");
+                appendJson(sb, _devicesStats.valueAt(i));
+                sb.append("}");
+            }
+            sb.append("]}");
+            return sb.toString();
+        }
+    }
+
+    /**
+     * @brief Creates a tracker for a request about to be enqueued.
+     *
+     * @param address The Bluetooth address of the device.
+     * @param operation The type of operation, see the OP_xxx constants.
+     * @param bytes The number of bytes transferred by the request, if known.
+     * @param failCallback The user fail callback, may be null.
+     * @return A tracker, inactive if metrics are disabled.
+     */
+    static Tracker track(final long address, final int operation, final int bytes, final FailCallback failCallback)
+    {
+        return new Tracker(address, operation, bytes, failCallback);
+    }
+
+    private static void record(final long address, final int operation, final long queuedMicros, final long runningMicros, final boolean failed, final int bytes)
+    {
+        synchronized (_sync)
+        {
+            OperationStats[] deviceStats = _devicesStats.get(address);
+            if (deviceStats == null)
+            {
+                deviceStats = createStats();
+                _devicesStats.put(address, deviceStats);
+            }
+            record(_totals[operation], queuedMicros, runningMicros, failed, bytes);
+            record(deviceStats[operation], queuedMicros, runningMicros, failed, bytes);
+        }
+    }
+
+    private static void record(final OperationStats stats, final long queuedMicros, final long runningMicros, final boolean failed, final int bytes)
+    {
+        stats.queued.record(queuedMicros);
+        stats.running.record(runningMicros);
+        if (failed)
+        {
+            ++stats.failureCount;
+        }
+        else
+        {
+            ++stats.successCount;
+            stats.bytes += bytes;
+        }
+    }
+
+    private static OperationStats[] createStats()
+    {
+        OperationStats[] stats = new OperationStats[OPERATIONS_COUNT];
+        for (int i = 0; i < OPERATIONS_COUNT; ++i)
+        {
+            stats[i] = new OperationStats();
+        }
+        return stats;
+    }
+
+    private static void appendJson(final StringBuilder sb, final OperationStats[] stats)
+    {
+        sb.append("{");
+        boolean first = true;
+        for (int i = 0; i < OPERATIONS_COUNT; ++i)
+        {
+            if ((stats[i].successCount + stats[i].failureCount) > 0)
+            {
+                if (!first) sb.append(",");
+                first = false;
+                sb.append("\"");
+                sb.append(OPERATIONS_NAMES[i]);
+                sb.append("\":");
+                stats[i].appendJson(sb);
+            }
+        }
+        sb.append("}");
+    }
+}
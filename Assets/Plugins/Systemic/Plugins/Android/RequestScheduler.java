@@ -0,0 +1,276 @@
+package com.systemic.bluetoothle;
+
+import java.util.ArrayList;
+
+import android.bluetooth.BluetoothDevice;
+import android.os.Handler;
+
+import no.nordicsemi.android.ble.ConnectRequest;
+import no.nordicsemi.android.ble.Request;
+import no.nordicsemi.android.ble.callback.FailCallback;
+import no.nordicsemi.android.ble.callback.InvalidRequestCallback;
+
+/**
+ * @brief Schedules the requests of a peripheral before they are handed to Nordic's queue.
+ *
+ * Nordic's queue runs requests in order, so a request can't overtake the ones
+ * already queued. Instead, requests are kept here and passed to Nordic one at a time,
+ * picking the next request once the previous one has completed:
+ * - Requests with a higher priority run first, requests with the same priority
+ *   run in order.
+ * - A request with a coalescing key replaces the pending request with the same key,
+ *   which fails with FailCallback.REASON_CANCELLED.
+ * - A request with a deadline that is still pending when its deadline passes
+ *   fails with FailCallback.REASON_TIMEOUT instead of running late.
+ *
+ * Connection requests don't take part in the one at a time dispatching, as a background
+ * connection may not complete for a long time. They are passed to Nordic's queue right
+ * away, and the other requests stay pending until no connection request is in progress.
+ *
+ * Failures are notified on the peripheral callback handler.
+ * This class is thread safe.
+ */
+final class RequestScheduler
+{
+    //! Priority for requests controlling the connection, they run first.
+    static final int PRIORITY_CONTROL = 0;
+    //! Priority for requests issued by user code.
+    static final int PRIORITY_USER = 1;
+    //! Priority for periodic or maintenance requests, they run last.
+    static final int PRIORITY_BACKGROUND = 2;
+
+    /**
+     * @brief A request waiting to be passed to Nordic's queue.
+     *
+     * Runs the deadline check when posted to the handler.
+     */
+    private final class Entry implements Runnable
+    {
+        final Request request;
+        final int priority;
+        final Object coalescingKey;
+        final RequestMetrics.Tracker tracker;
+        final InvalidRequestCallback invalidCallback;
+
+        Entry(final Request request, final int priority, final Object coalescingKey,
+              final RequestMetrics.Tracker tracker, final InvalidRequestCallback invalidCallback)
+        {
+            this.request = request;
+            this.priority = priority;
+            this.coalescingKey = coalescingKey;
+            this.tracker = tracker;
+            this.invalidCallback = invalidCallback;
+        }
+
+        @Override
+        public void run()
+        {
+            onDeadline(this);
+        }
+    }
+
+    private final BluetoothDevice _device;
+    private final Handler _handler;
+    // Sorted by priority, and then in scheduling order
+    private final ArrayList<Entry> _pending = new ArrayList<>();
+    private Entry _running;
+    // Connection requests passed to Nordic's queue and not finished yet
+    private final ArrayList<Entry> _connecting = new ArrayList<>();
+
+    /**
+     * @brief Initializes a scheduler for the given device.
+     *
+     * @param device The device, passed to the fail callbacks.
+     * @param handler The handler on which failures and deadlines are processed.
+     */
+    RequestScheduler(final BluetoothDevice device, final Handler handler)
+    {
+        _device = device;
+        _handler = handler;
+    }
+
+    /**
+     * @brief Schedules the given request.
+     *
+     * The request must not have its before, fail, invalid or then callbacks set,
+     * they are set by the scheduler.
+     *
+     * @param request The request to run.
+     * @param priority One of the PRIORITY_xxx constants.
+     * @param coalescingKey Key identifying requests that may replace each other, may be null.
+     * @param timeoutMillis Maximum time the request may stay pending, zero for no limit.
+     * @param tracker The request tracker, which forwards failures to user code.
+     * @param invalidCallback The user invalid request callback, may be null.
+     */
+    void schedule(final Request request, final int priority, final Object coalescingKey, final long timeoutMillis,
+                  final RequestMetrics.Tracker tracker, final InvalidRequestCallback invalidCallback)
+    {
+        if ((priority < PRIORITY_CONTROL) || (priority > PRIORITY_BACKGROUND))
+        {
+            throw new IllegalArgumentException("Invalid request priority: " + priority);
+        }
+        if (timeoutMillis < 0)
+        {
+            throw new IllegalArgumentException("timeoutMillis must be positive or zero");
+        }
+
+        final Entry entry = new Entry(request, priority, coalescingKey, tracker, invalidCallback);
+        if (request instanceof ConnectRequest)
+        {
+            synchronized (this)
+            {
+                _connecting.add(entry);
+            }
+            dispatch(entry);
+            return;
+        }
+
+        Entry replaced = null;
+        synchronized (this)
+        {
+            if (coalescingKey != null)
+            {
+                for (int i = 0; i < _pending.size(); ++i)
+                {
+                    if (coalescingKey.equals(_pending.get(i).coalescingKey))
+                    {
+                        replaced = _pending.remove(i);
+                        break;
+                    }
+                }
+            }
+
+            // Insert after the last request with the same or a higher priority
+            int index = _pending.size();
+            while ((index > 0) && (_pending.get(index - 1).priority > priority))
+            {
+                --index;
+            }
+            _pending.add(index, entry);
+        }
+
+        if (replaced != null)
+        {
+            _handler.removeCallbacks(replaced);
+            notifyFailed(replaced, FailCallback.REASON_CANCELLED);
+        }
+        if (timeoutMillis > 0)
+        {
+            _handler.postDelayed(entry, timeoutMillis);
+        }
+
+        dispatchNext();
+    }
+
+    /**
+     * @brief Fails all the pending requests with FailCallback.REASON_CANCELLED
+     *        and forgets about the running one.
+     *
+     * To be called when Nordic's queue is canceled.
+     */
+    void cancelAll()
+    {
+        ArrayList<Entry> canceled;
+        synchronized (this)
+        {
+            canceled = new ArrayList<>(_pending);
+            _pending.clear();
+            _running = null;
+            _connecting.clear();
+        }
+
+        for (Entry entry : canceled)
+        {
+            _handler.removeCallbacks(entry);
+            notifyFailed(entry, FailCallback.REASON_CANCELLED);
+        }
+    }
+
+    /**
+     * @brief Passes the next pending request to Nordic's queue if no request is running
+     *        and no connection request is in progress.
+     */
+    private void dispatchNext()
+    {
+        final Entry entry;
+        synchronized (this)
+        {
+            if ((_running != null) || (!_connecting.isEmpty()) || _pending.isEmpty())
+            {
+                return;
+            }
+            entry = _pending.remove(0);
+            _running = entry;
+        }
+
+        _handler.removeCallbacks(entry);
+        dispatch(entry);
+    }
+
+    /**
+     * @brief Passes the given request to Nordic's queue.
+     */
+    private void dispatch(final Entry entry)
+    {
+        // Nordic's queue is not called with the lock held, its callbacks are posted on the handler
+        entry.request
+            .before(entry.tracker)
+            .fail(entry.tracker)
+            .invalid(() ->
+            {
+                // The then callback isn't called for invalid requests
+                if (entry.invalidCallback != null)
+                {
+                    entry.invalidCallback.onInvalidRequest();
+                }
+                onFinished(entry);
+            })
+            .then(device ->
+            {
+                entry.tracker.onRequestFinished(device);
+                onFinished(entry);
+            })
+            .enqueue();
+    }
+
+    private void onFinished(final Entry entry)
+    {
+        synchronized (this)
+        {
+            // Ignore requests that were running when the queue got canceled
+            if (_running == entry)
+            {
+                _running = null;
+            }
+            else if (!_connecting.remove(entry))
+            {
+                return;
+            }
+        }
+
+        dispatchNext();
+    }
+
+    private void onDeadline(final Entry entry)
+    {
+        synchronized (this)
+        {
+            if (!_pending.remove(entry))
+            {
+                // Already running
+                return;
+            }
+        }
+
+        notifyFailed(entry, FailCallback.REASON_TIMEOUT);
+    }
+
+    private void notifyFailed(final Entry entry, final int status)
+    {
+        _handler.post(() ->
+        {
+            entry.tracker.onRequestFailed(_device, status);
+            entry.tracker.onRequestFinished(_device);
+        });
+    }
+}
@@ -0,0 +1,336 @@
+package com.systemic.bluetoothle;
+
+import java.util.ArrayList;
+import java.util.Objects;
+
+import android.bluetooth.BluetoothDevice;
+import android.os.Handler;
+import android.util.Log;
+
+/**
+ * @brief Periodically reads the RSSI of a set of peripherals and reports the smoothed
+ *        values of all of them at once.
+ *
+ * This saves user code from sending a RSSI read request to each peripheral and
+ * receiving each result through its own callback.
+ *
+ * On each tick the connected peripherals that are due for a sample are sent a RSSI read
+ * request with the background priority, see Peripheral.readRssi(int, long, ReadRssiRequestCallback).
+ * Read values are smoothed with an exponential moving average, and the values updated since
+ * the previous tick are reported together in a single array.
+ *
+ * A peripheral is sampled every tick as long as its RSSI changes. Once its smoothed RSSI
+ * is stable, the time between two samples is doubled on each sample, up to the given
+ * maximum interval, and it's reset as soon as the RSSI changes again.
+ *
+ * The sampler runs on its own thread, on which the samples callback is invoked.
+ */
+public final class RssiSampler
+{
+    private static final String TAG = "SystemicGames";
+
+    //! Number of values per sample in the array passed to SamplesCallback.
+    public static final int SAMPLE_LENGTH = 3;
+
+    // Smoothed values closer than this to the reference value are considered stable, in dBm
+    private static final double STABLE_RSSI_DELTA = 2;
+
+    /**
+     * @brief Interface for the callback receiving the RSSI samples.
+     */
+    public interface SamplesCallback
+    {
+        /**
+         * @brief Called on each tick with the samples updated since the previous tick,
+         *        not called if there is none.
+         *
+         * The samples are packed in a single array, with SAMPLE_LENGTH values per sample:
+         * the Bluetooth address of the peripheral, its smoothed RSSI in dBm and the time
+         * of the last read in milliseconds (see SystemClock.elapsedRealtime()).
+         *
+         * @param samples The packed samples.
+         */
+        void onRssiSamples(final long[] samples);
+    }
+
+    /**
+     * @brief The sampling state of one peripheral, receives the RSSI read results.
+     */
+    private final class SampledPeripheral implements Peripheral.ReadRssiRequestCallback
+    {
+        final Peripheral peripheral;
+        final long address;
+        double smoothedRssi;
+        // Reference value for detecting changes
+        double stableRssi;
+        boolean hasValue;
+        boolean updated;
+        long timestamp;
+        long intervalMillis;
+        long nextSampleTime;
+        boolean reading;
+
+        SampledPeripheral(final Peripheral peripheral)
+        {
+            this.peripheral = peripheral;
+            this.address = peripheral.getBluetoothAddress();
+            this.intervalMillis = _intervalMillis;
+        }
+
+        @Override
+        public void onRssiRead(final BluetoothDevice device, final int rssi)
+        {
+            onSample(this, rssi);
+        }
+
+        @Override
+        public void onRequestFailed(final BluetoothDevice device, final int status)
+        {
+            synchronized (_peripherals)
+            {
+                reading = false;
+            }
+        }
+
+        @Override
+        public void onInvalidRequest()
+        {
+            synchronized (_peripherals)
+            {
+                reading = false;
+            }
+        }
+    }
+
+    private final long _intervalMillis;
+    private final long _maxIntervalMillis;
+    private final double _smoothingFactor;
+    private final SamplesCallback _callback;
+    private final Clock _clock;
+    private final ArrayList<SampledPeripheral> _peripherals = new ArrayList<>();
+    private final Runnable _tickRunnable = this::tick;
+    private Handler _handler;
+
+    /**
+     * @brief Initializes a sampler with the given settings.
+     *
+     * @param intervalMillis The time between two ticks, in milliseconds.
+     * @param maxIntervalMillis The maximum time between two samples of a peripheral
+     *                          with a stable RSSI, at least intervalMillis.
+     * @param smoothingFactor The weight of a new value in the moving average,
+     *                        greater than zero and up to 1 (no smoothing).
+     * @param callback The callback receiving the samples.
+     */
+    public RssiSampler(final long intervalMillis, final long maxIntervalMillis, final double smoothingFactor, final SamplesCallback callback)
+    {
+        this(intervalMillis, maxIntervalMillis, smoothingFactor, callback, Clock.SYSTEM);
+    }
+
+    RssiSampler(final long intervalMillis, final long maxIntervalMillis, final double smoothingFactor, final SamplesCallback callback, final Clock clock)
+    {
+        Objects.requireNonNull(callback);
+        if (intervalMillis <= 0)
+        {
+            throw new IllegalArgumentException("intervalMillis must be greater than zero");
+        }
+        if (maxIntervalMillis < intervalMillis)
+        {
+            throw new IllegalArgumentException("maxIntervalMillis must be at least intervalMillis");
+        }
+        if ((smoothingFactor <= 0) || (smoothingFactor > 1))
+        {
+            throw new IllegalArgumentException("smoothingFactor must be greater than zero and up to 1");
+        }
+
+        _intervalMillis = intervalMillis;
+        _maxIntervalMillis = maxIntervalMillis;
+        _smoothingFactor = smoothingFactor;
+        _callback = callback;
+        _clock = clock;
+    }
+
+    /**
+     * @brief Adds a peripheral to sample, it is sampled on the next tick if connected.
+     *
+     * Does nothing if the peripheral was already added.
+     *
+     * @param peripheral The peripheral to sample.
+     */
+    public void add(final Peripheral peripheral)
+    {
+        Objects.requireNonNull(peripheral);
+
+        synchronized (_peripherals)
+        {
+            if (find(peripheral) < 0)
+            {
+                _peripherals.add(new SampledPeripheral(peripheral));
+            }
+        }
+    }
+
+    /**
+     * @brief Stops sampling the given peripheral.
+     *
+     * @param peripheral The peripheral to remove.
+     */
+    public void remove(final Peripheral peripheral)
+    {
+        synchronized (_peripherals)
+        {
+            int index = find(peripheral);
+            if (index >= 0)
+            {
+                _peripherals.remove(index);
+            }
+        }
+    }
+
+    /**
+     * @brief Starts sampling, does nothing if already started.
+     */
+    public void start()
+    {
+        Log.v(TAG, "==> RssiSampler::start");
+
+        synchronized (_peripherals)
+        {
+            if (_handler == null)
+            {
+                _handler = CallbackHandlers.createDedicated("RssiSampler");
+                _handler.post(_tickRunnable);
+            }
+        }
+    }
+
+    /**
+     * @brief Stops sampling, read requests already sent are left to complete.
+     */
+    public void stop()
+    {
+        Log.v(TAG, "==> RssiSampler::stop");
+
+        synchronized (_peripherals)
+        {
+            if (_handler != null)
+            {
+                _handler.removeCallbacks(_tickRunnable);
+                CallbackHandlers.releaseDedicated(_handler);
+                _handler = null;
+            }
+        }
+    }
+
+    /**
+     * @brief Indicates whether the sampler is started.
+     */
+    public boolean isStarted()
+    {
+        synchronized (_peripherals)
+        {
+            return _handler != null;
+        }
+    }
+
+    private void tick()
+    {
+        final long now = _clock.elapsedMillis();
+        ArrayList<SampledPeripheral> toRead = new ArrayList<>();
+        long[] samples = null;
+        synchronized (_peripherals)
+        {
+            if (_handler == null)
+            {
+                // Stopped
+                return;
+            }
+
+            int updatedCount = 0;
+            for (SampledPeripheral sampled : _peripherals)
+            {
+                if (sampled.updated) ++updatedCount;
+                if ((!sampled.reading) && (now >= sampled.nextSampleTime) && sampled.peripheral.isConnected())
+                {
+                    sampled.reading = true;
+                    sampled.nextSampleTime = now + sampled.intervalMillis;
+                    toRead.add(sampled);
+                }
+            }
+
+            if (updatedCount > 0)
+            {
+                samples = new long[SAMPLE_LENGTH * updatedCount];
+                int i = 0;
+                for (SampledPeripheral sampled : _peripherals)
+                {
+                    if (sampled.updated)
+                    {
+                        sampled.updated = false;
+                        samples[i++] = sampled.address;
+                        samples[i++] = Math.round(sampled.smoothedRssi);
+                        samples[i++] = sampled.timestamp;
+                    }
+                }
+            }
+
+            _handler.postDelayed(_tickRunnable, _intervalMillis);
+        }
+
+        // Requests are not sent with the lock held as their callbacks take it,
+        // a request that is still pending on the next tick is dropped rather than running late
+        for (SampledPeripheral sampled : toRead)
+        {
+            sampled.peripheral.readRssi(Peripheral.PRIORITY_BACKGROUND, _intervalMillis, sampled);
+        }
+
+        if (samples != null)
+        {
+            _callback.onRssiSamples(samples);
+        }
+    }
+
+    private void onSample(final SampledPeripheral sampled, final int rssi)
+    {
+        final long now = _clock.elapsedMillis();
+        synchronized (_peripherals)
+        {
+            sampled.reading = false;
+            sampled.timestamp = now;
+            sampled.updated = true;
+            if (!sampled.hasValue)
+            {
+                sampled.hasValue = true;
+                sampled.smoothedRssi = rssi;
+                sampled.stableRssi = rssi;
+            }
+            else
+            {
+                sampled.smoothedRssi += _smoothingFactor * (rssi - sampled.smoothedRssi);
+                if (Math.abs(sampled.smoothedRssi - sampled.stableRssi) >= STABLE_RSSI_DELTA)
+                {
+                    // The value has changed, sample again at the base rate
+                    sampled.stableRssi = sampled.smoothedRssi;
+                    sampled.intervalMillis = _intervalMillis;
+                }
+                else
+                {
+                    // Stable value, back off
+                    sampled.intervalMillis = Math.min(2 * sampled.intervalMillis, _maxIntervalMillis);
+                }
+            }
+            sampled.nextSampleTime = now + sampled.intervalMillis;
+        }
+    }
+
+    private int find(final Peripheral peripheral)
+    {
+        for (int i = 0; i < _peripherals.size(); ++i)
+        {
+            if (_peripherals.get(i).peripheral == peripheral)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,137 @@
+package com.systemic.bluetoothle;
+
+import android.util.LongSparseArray;
+
+import no.nordicsemi.android.support.v18.scanner.ScanSettings;
+
+/**
+ * @brief Decides which scan mode to use for long running scans, trading
+ *        latency for battery when nothing new is being advertised.
+ *
+ * The scan starts in low latency mode, and drops to balanced then to low power mode
+ * once no new device and no advertisement data change was seen for the configured
+ * durations. It goes back to low latency as soon as there is some activity.
+ *
+ * Changing the scan mode requires restarting the scan, which is only allowed when
+ * it won't exceed Android's limit of scan starts. One start is always kept in reserve
+ * for going back to low latency mode.
+ *
+ * This class is thread safe.
+ */
+final class ScanModePolicy
+{
+    // Forget about all devices when reaching that many entries, as in DuplicatesFilter
+    private static final int MAX_ENTRIES = 1024;
+
+    /**
+     * @brief Last advertisement data seen for a device.
+     */
+    private static final class Entry
+    {
+        int dataHash;
+    }
+
+    private final Clock _clock;
+    private final ScanStartsLimiter _startsLimiter;
+    private final long _idleToBalancedMillis;
+    private final long _idleToLowPowerMillis;
+    private final LongSparseArray<Entry> _entries = new LongSparseArray<>();
+    private int _scanMode = ScanSettings.SCAN_MODE_LOW_LATENCY;
+    private long _lastActivityTimestamp;
+
+    /**
+     * @brief Initializes a policy with the given idle durations.
+     *
+     * @param clock The source of time.
+     * @param startsLimiter Keeps track of the scan starts of the application.
+     * @param idleToBalancedMillis The idle duration after which the balanced mode is used, zero to skip that mode.
+     * @param idleToLowPowerMillis The idle duration after which the low power mode is used, zero to never use it.
+     */
+    ScanModePolicy(final Clock clock, final ScanStartsLimiter startsLimiter, final long idleToBalancedMillis, final long idleToLowPowerMillis)
+    {
+        _clock = clock;
+        _startsLimiter = startsLimiter;
+        _idleToBalancedMillis = idleToBalancedMillis;
+        _idleToLowPowerMillis = idleToLowPowerMillis;
+        _lastActivityTimestamp = clock.elapsedMillis();
+    }
+
+    /**
+     * @brief Gets the scan mode in use.
+     */
+    synchronized int getScanMode()
+    {
+        return _scanMode;
+    }
+
+    /**
+     * @brief Notifies that the scan was (re)started with the given mode.
+     */
+    synchronized void onScanStarted(final int scanMode)
+    {
+        _scanMode = scanMode;
+    }
+
+    /**
+     * @brief Notifies of an advertisement packet.
+     *
+     * @param address The Bluetooth address of the device as a 48 bits integer.
+     * @param dataHash A hash of the advertisement data.
+     * @return Whether the packet is from a new device or has new data, and the scan
+     *         isn't running in low latency mode.
+     */
+    synchronized boolean onScanResult(final long address, final int dataHash)
+    {
+        Entry entry = _entries.get(address);
+        if ((entry != null) && (entry.dataHash == dataHash))
+        {
+            return false;
+        }
+
+        if (entry == null)
+        {
+            if (_entries.size() >= MAX_ENTRIES)
+            {
+                _entries.clear();
+            }
+            entry = new Entry();
+            _entries.put(address, entry);
+        }
+        entry.dataHash = dataHash;
+        _lastActivityTimestamp = _clock.elapsedMillis();
+        return _scanMode != ScanSettings.SCAN_MODE_LOW_LATENCY;
+    }
+
+    /**
+     * @brief Gets the scan mode that should be used now, taking into account
+     *        the limit of scan starts.
+     *
+     * @return The scan mode to switch to, or the current one if it shouldn't change.
+     */
+    synchronized int getNextScanMode()
+    {
+        final int mode = getDesiredScanMode();
+        if (mode == _scanMode)
+        {
+            return _scanMode;
+        }
+
+        // Keep a start in reserve for switching back to low latency
+        final int requiredStarts = mode == ScanSettings.SCAN_MODE_LOW_LATENCY ? 1 : 2;
+        return _startsLimiter.getAvailableStarts() >= requiredStarts ? mode : _scanMode;
+    }
+
+    private int getDesiredScanMode()
+    {
+        final long idleMillis = _clock.elapsedMillis() - _lastActivityTimestamp;
+        if ((_idleToLowPowerMillis > 0) && (idleMillis >= _idleToLowPowerMillis))
+        {
+            return ScanSettings.SCAN_MODE_LOW_POWER;
+        }
+        if ((_idleToBalancedMillis > 0) && (idleMillis >= _idleToBalancedMillis))
+        {
+            return ScanSettings.SCAN_MODE_BALANCED;
+        }
+        return ScanSettings.SCAN_MODE_LOW_LATENCY;
+    }
+}
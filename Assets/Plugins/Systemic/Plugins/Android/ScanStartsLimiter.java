@@ -0,0 +1,64 @@
+package com.systemic.bluetoothle;
+
+import java.util.Arrays;
+
+/**
+ * @brief Keeps track of the recent scan starts to respect Android's limit
+ *        on the number of scans started over a period of time.
+ *
+ * Since Android 7, an application starting more than 5 scans within 30 seconds
+ * silently gets no scan results until the period has elapsed.
+ *
+ * This class is thread safe.
+ * It only depends on the Java runtime.
+ */
+final class ScanStartsLimiter
+{
+    private final Clock _clock;
+    private final long _windowMillis;
+    // Timestamps of the last scan starts, oldest first starting from _oldestIndex
+    private final long[] _timestamps;
+    private int _oldestIndex;
+
+    /**
+     * @brief Initializes a limiter allowing the given number of scan starts over the given period.
+     */
+    ScanStartsLimiter(final Clock clock, final int maxStarts, final long windowMillis)
+    {
+        if (maxStarts <= 0)
+        {
+            throw new IllegalArgumentException("maxStarts must be greater than zero");
+        }
+        _clock = clock;
+        _windowMillis = windowMillis;
+        _timestamps = new long[maxStarts];
+        // No recent start
+        Arrays.fill(_timestamps, Long.MIN_VALUE / 2);
+    }
+
+    /**
+     * @brief Gets the number of scans that may be started right now without exceeding the limit.
+     */
+    synchronized int getAvailableStarts()
+    {
+        final long now = _clock.elapsedMillis();
+        int count = 0;
+        for (long timestamp : _timestamps)
+        {
+            if (now - timestamp >= _windowMillis)
+            {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @brief Records a scan start.
+     */
+    synchronized void onScanStarted()
+    {
+        _timestamps[_oldestIndex] = _clock.elapsedMillis();
+        _oldestIndex = (_oldestIndex + 1) % _timestamps.length;
+    }
+}
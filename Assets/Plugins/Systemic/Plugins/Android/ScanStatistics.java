@@ -0,0 +1,221 @@
+package com.systemic.bluetoothle;
+
+import android.util.LongSparseArray;
+
+/**
+ * @brief Counters and rate meters for the advertisement packets received during a scan.
+ *
+ * Packets are counted overall and for each device, see Scanner.getStatistics().
+ *
+ * Timestamps are given by the caller, in milliseconds.
+ * This class is thread safe.
+ */
+final class ScanStatistics
+{
+    // Limit memory usage in crowded environments, packets of additional devices
+    // are only counted overall
+    private static final int MAX_DEVICES = 1024;
+
+    // Duration over which the recent packet rate is measured
+    private static final long RATE_WINDOW_MILLIS = 1000;
+
+    /**
+     * @brief The statistics of one device.
+     */
+    private static final class DeviceStats
+    {
+        long packetsCount;
+        long firstTimestamp;
+        int rssiMin = Integer.MAX_VALUE;
+        int rssiMax = Integer.MIN_VALUE;
+        long rssiSum;
+    }
+
+    private final long _startTimestamp;
+    private long _stopTimestamp;
+
+    private long _receivedCount;
+    private long _nonLeCount;
+    private long _filteredOutCount;
+    private long _duplicatesCount;
+    private long _forwardedCount;
+    private long _untrackedDevicesPacketsCount;
+
+    private long _windowTimestamp;
+    private long _windowCount;
+    private long _recentRate;
+
+    private final LatencyHistogram _callbackTimes = new LatencyHistogram();
+    private final LatencyHistogram _batchSizes = new LatencyHistogram();
+    private final LongSparseArray<DeviceStats> _devices = new LongSparseArray<>();
+
+    /**
+     * @brief Initializes the statistics of a scan started at the given time.
+     */
+    ScanStatistics(final long startTimestamp)
+    {
+        _startTimestamp = startTimestamp;
+        _windowTimestamp = startTimestamp;
+    }
+
+    /**
+     * @brief Counts a packet received from the Bluetooth stack, before any filtering.
+     */
+    synchronized void onPacketReceived(final long timestamp)
+    {
+        ++_receivedCount;
+
+        // Measure the rate over fixed windows
+        if (timestamp - _windowTimestamp >= RATE_WINDOW_MILLIS)
+        {
+            _recentRate = _windowCount * 1000 / (timestamp - _windowTimestamp);
+            _windowTimestamp = timestamp;
+            _windowCount = 0;
+        }
+        ++_windowCount;
+    }
+
+    /**
+     * @brief Counts a packet dropped because it's not from a BLE device.
+     */
+    synchronized void onNonLeDropped()
+    {
+        ++_nonLeCount;
+    }
+
+    /**
+     * @brief Counts a packet from a BLE device with the given signal strength.
+     */
+    synchronized void onDevicePacket(final long address, final int rssi, final long timestamp)
+    {
+        DeviceStats stats = _devices.get(address);
+        if (stats == null)
+        {
+            if (_devices.size() >= MAX_DEVICES)
+            {
+                ++_untrackedDevicesPacketsCount;
+                return;
+            }
+            stats = new DeviceStats();
+            stats.firstTimestamp = timestamp;
+            _devices.put(address, stats);
+        }
+        ++stats.packetsCount;
+        stats.rssiSum += rssi;
+        if (rssi < stats.rssiMin) stats.rssiMin = rssi;
+        if (rssi > stats.rssiMax) stats.rssiMax = rssi;
+    }
+
+    /**
+     * @brief Counts a packet dropped because it didn't match the advertisement filters.
+     */
+    synchronized void onFilteredOut()
+    {
+        ++_filteredOutCount;
+    }
+
+    /**
+     * @brief Counts a packet dropped as a duplicate.
+     */
+    synchronized void onDuplicateDropped()
+    {
+        ++_duplicatesCount;
+    }
+
+    /**
+     * @brief Counts a packet forwarded to user code.
+     *
+     * @param callbackMicros The time spent in the scan result callback, in microseconds.
+     */
+    synchronized void onForwarded(final long callbackMicros)
+    {
+        ++_forwardedCount;
+        _callbackTimes.record(callbackMicros);
+    }
+
+    /**
+     * @brief Counts a batch of scan results reported by the Bluetooth stack.
+     */
+    synchronized void onBatchReceived(final int size)
+    {
+        _batchSizes.record(size);
+    }
+
+    /**
+     * @brief Notifies that the scan was stopped at the given time.
+     */
+    synchronized void onStopped(final long timestamp)
+    {
+        if (_stopTimestamp == 0)
+        {
+            _stopTimestamp = timestamp;
+        }
+    }
+
+    /**
+     * @brief Gets the statistics as a JSON string.
+     *
+     * @param timestamp The current time, used to compute the rates of an on-going scan.
+     */
+    synchronized String toJson(final long timestamp)
+    {
+        final long endTimestamp = _stopTimestamp != 0 ? _stopTimestamp : timestamp;
+        final long durationMillis = Math.max(0, endTimestamp - _startTimestamp);
+
+        StringBuilder sb = new StringBuilder(256 + 128 * _devices.size());
+        sb.append("{\"isScanning\":");
+        sb.append(_stopTimestamp == 0);
+        sb.append(",\"durationMillis\":");
+        sb.append(durationMillis);
+        sb.append(",\"received\":");
+        sb.append(_receivedCount);
+        sb.append(",\"nonLeDropped\":");
+        sb.append(_nonLeCount);
+        sb.append(",\"filteredOut\":");
+        sb.append(_filteredOutCount);
+        sb.append(",\"duplicatesDropped\":");
+        sb.append(_duplicatesCount);
+        sb.append(",\"forwarded\":");
+        sb.append(_forwardedCount);
+        sb.append(",\"untrackedDevicesPackets\":");
+        sb.append(_untrackedDevicesPacketsCount);
+        sb.append(",\"packetsPerSecond\":");
+        sb.append(getRate(_receivedCount, durationMillis));
+        sb.append(",\"recentPacketsPerSecond\":");
+        // Last window rate is obsolete if no packet was received since
+        sb.append(endTimestamp - _windowTimestamp < 2 * RATE_WINDOW_MILLIS ? _recentRate : 0);
+        sb.append(",\"callbackMicros\":");
+        _callbackTimes.appendJson(sb);
+        sb.append(",\"batchSizes\":");
+        _batchSizes.appendJson(sb);
+        sb.append(",\"devices\":[");
+        for (int i = 0; i < _devices.size(); ++i)
+        {
+            DeviceStats stats = _devices.valueAt(i);
+            if (i > 0) sb.append(",");
+            sb.append("{\"address\":");
+            sb.append(_devices.keyAt(i));
+            sb.append(",\"packets\":");
+            sb.append(stats.packetsCount);
+            sb.append(",\"packetsPerSecond\":");
+            sb.append(getRate(stats.packetsCount, endTimestamp - stats.firstTimestamp));
+            sb.append(",\"rssiMin\":");
+            sb.append(stats.rssiMin);
+            sb.append(",\"rssiAvg\":");
+            sb.append(stats.rssiSum / stats.packetsCount);
+            sb.append(",\"rssiMax\":");
+            sb.append(stats.rssiMax);
+            sb.append("}");
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
+    /**
+     * @brief Gets the number of events per second, with two decimals.
+     */
+    private static double getRate(final long count, final long durationMillis)
+    {
+        return durationMillis <= 0 ? 0 : Math.round(count * 100000.0 / durationMillis) / 100.0;
+    }
+}
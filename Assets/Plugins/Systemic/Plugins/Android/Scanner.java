@@ -1,11 +1,18 @@
 package com.systemic.bluetoothle;
 
 import java.lang.StringBuilder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.os.ParcelUuid;
+import android.os.SystemClock;
 import android.util.Log;
 import android.util.SparseArray;
 import android.bluetooth.BluetoothDevice;
@@ -18,6 +25,8 @@ import no.nordicsemi.android.support.v18.scanner.*;
  * @note This class was designed to work in a Unity plugin and its marshaling
  *       mechanism, and as such the advertisement data returned by a scan is passed
  *       as JSON string rather than a complex object.
+ *       Alternatively the advertisement data may be returned as a binary record,
+ *       see BinaryScannerCallback.
  *
  * It relies on Nordic's Android-Scanner-Compat-Library library for most of the work.
  * @see https://github.com/NordicSemiconductor/Android-Scanner-Compat-Library
@@ -46,9 +55,182 @@ public final class Scanner
         public void onScanFailed(String error);
     }
 
+    /**
+     * @brief Interface for scan results callbacks with the advertisement data
+     *        passed as a binary record.
+     *
+     * This avoids the cost of building and parsing a JSON string for each
+     * advertisement packet.
+     */
+    public interface BinaryScannerCallback
+    {
+        /**
+         * @brief A callback invoked when an advertisement packet is received
+         *        from a Bluetooth device.
+         *
+         * The buffer is reused for the next advertisement packet so its contents
+         * must be consumed before returning from the callback.
+         *
+         * @param device The Android BluetoothDevice which send the advertisement data.
+         * @param advertisementData A direct buffer with the advertisement data, positioned
+         *                          at the start of the record, see AdvertisementRecord
+         *                          for the format.
+         */
+        public void onScanResult(BluetoothDevice device, ByteBuffer advertisementData);
+
+        /**
+         * @brief A callback invoked when the scan fails.
+         *
+         * @param error A string with the error that caused the scan to fail.
+         */
+        public void onScanFailed(String error);
+    }
+
+    /**
+     * @brief Interface for scan results callbacks with the advertisement data
+     *        of several packets passed at once as binary records.
+     *
+     * This limits the number of calls to user code when many devices are advertising.
+     */
+    public interface BatchScannerCallback
+    {
+        /**
+         * @brief A callback invoked with a batch of advertisement packets.
+         *
+         * The buffer is reused for the next batch so its contents must be consumed
+         * before returning from the callback.
+         *
+         * @param advertisementRecords A direct buffer with the advertisement records
+         *                             packed one after another, see AdvertisementRecord
+         *                             for the format.
+         * @param count The number of records in the buffer.
+         */
+        public void onScanResults(ByteBuffer advertisementRecords, int count);
+
+        /**
+         * @brief A callback invoked when the scan fails.
+         *
+         * @param error A string with the error that caused the scan to fail.
+         */
+        public void onScanFailed(String error);
+    }
+
     private static String TAG = "SystemicGames";
-    private static ScanCallback _scanCallback;
+    private static ScanCallbackBase _scanCallback;
     private static Object _scanSync = new Object();
+    // Statistics of the current or last scan
+    private static ScanStatistics _statistics;
+
+    // Android doesn't allow for more than 5 scan starts within 30 seconds
+    private static final int MAX_SCAN_STARTS = 5;
+    private static final long SCAN_STARTS_WINDOW_MILLIS = 30000;
+    private static final ScanStartsLimiter _startsLimiter
+        = new ScanStartsLimiter(Clock.SYSTEM, MAX_SCAN_STARTS, SCAN_STARTS_WINDOW_MILLIS);
+
+    // Current scan parameters, kept for restarting the scan with another mode
+    private static List<ScanFilter> _scanFilters;
+    private static long _scanReportDelayMillis;
+    private static ScanModePolicy _scanModePolicy;
+
+    // Scan results are notified on the main thread, so is the scan mode update
+    private static final long SCAN_MODE_CHECK_INTERVAL_MILLIS = 1000;
+    private static final Handler _scanModeHandler = new Handler(Looper.getMainLooper());
+    private static final Runnable _scanModeRunnable = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            updateScanMode();
+        }
+    };
+    // Most recently scanned devices, in least recently used order
+    private static final int MAX_SCANNED_DEVICES = 256;
+    private static final LinkedHashMap<Long, BluetoothDevice> _scannedDevices
+        = new LinkedHashMap<Long, BluetoothDevice>(64, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Long, BluetoothDevice> eldest)
+            {
+                return size() > MAX_SCANNED_DEVICES;
+            }
+        };
+
+    private static boolean _filterDuplicates;
+    private static int _duplicatesRssiThreshold;
+    private static long _duplicatesReemitIntervalMillis;
+    private static AdvertisementFilter[] _advertisementFilters;
+
+    /**
+     * @brief Enables dropping duplicate advertisement packets for the next scans.
+     *
+     * An advertisement packet is considered a duplicate of the last one notified for
+     * the same device when its manufacturer and service data are unchanged, its RSSI
+     * didn't change by more than the given threshold and the given time interval
+     * hasn't elapsed yet.
+     *
+     * @param rssiThreshold The RSSI change (in dBm) above which an advertisement packet
+     *                      is always notified.
+     * @param reemitIntervalMillis The time interval (in milliseconds) after which
+     *                             an advertisement packet is always notified.
+     */
+    public static void enableDuplicatesFilter(final int rssiThreshold, final long reemitIntervalMillis)
+    {
+        Log.v(TAG, "==> enableDuplicatesFilter");
+
+        if (rssiThreshold < 0)
+        {
+            throw new IllegalArgumentException("rssiThreshold must be positive or zero");
+        }
+        if (reemitIntervalMillis < 0)
+        {
+            throw new IllegalArgumentException("reemitIntervalMillis must be positive or zero");
+        }
+
+        synchronized (_scanSync)
+        {
+            _filterDuplicates = true;
+            _duplicatesRssiThreshold = rssiThreshold;
+            _duplicatesReemitIntervalMillis = reemitIntervalMillis;
+        }
+    }
+
+    /**
+     * @brief Disables dropping duplicate advertisement packets for the next scans.
+     *
+     * This is the default.
+     */
+    public static void disableDuplicatesFilter()
+    {
+        Log.v(TAG, "==> disableDuplicatesFilter");
+
+        synchronized (_scanSync)
+        {
+            _filterDuplicates = false;
+        }
+    }
+
+    /**
+     * @brief Sets the filters that advertisement packets must match to be notified,
+     *        for the next scans.
+     *
+     * A packet is notified if it matches at least one of the filters, and if it
+     * advertises one of the services given when starting the scan (if any).
+     *
+     * The filter criteria supported by the Bluetooth controller are offloaded to it,
+     * the other ones are checked before the advertisement data is serialized.
+     * See AdvertisementFilter for details.
+     *
+     * @param filters The list of filters, may be null or empty to notify all packets.
+     */
+    public static void setAdvertisementFilters(final AdvertisementFilter[] filters)
+    {
+        Log.v(TAG, "==> setAdvertisementFilters");
+
+        synchronized (_scanSync)
+        {
+            _advertisementFilters = ((filters == null) || (filters.length == 0)) ? null : filters.clone();
+        }
+    }
 
     /**
      * @brief Starts scanning for BLE peripherals advertising the given list of services.
@@ -68,42 +250,344 @@ public final class Scanner
             throw new IllegalArgumentException("callback is null");
         }
 
-        // Build scan settings
-        ScanSettings settings = new ScanSettings.Builder()
-            .setLegacy(false) // Default is true for compatibility with older apps, but we all type of advertisements, not just legacy
-            .setScanMode(ScanSettings.SCAN_MODE_LOW_LATENCY) // Default is low power which is good for long scans, in our use case we do short scans and we prefer having quick results
-            .build(); // Other defaults are great for us
+        startScan(requiredServicesUuids, 0, createCallback(callback), null);
+    }
+
+    /**
+     * @brief Starts scanning for BLE peripherals advertising the given list of services,
+     *        with a scan mode that adapts to the activity of the advertising devices.
+     *
+     * This overload is meant for scans running for a long time. The scan starts in low latency
+     * mode and drops to balanced then to low power mode when no new device and no change in
+     * advertisement data were seen for the given durations. It goes back to low latency mode
+     * as soon as there is some activity.
+     *
+     * The scan is restarted to change its mode, without exceeding Android's limit of
+     * 5 scan starts within 30 seconds (scans started by the other overloads count too).
+     * As a consequence mode changes may be delayed.
+     *
+     * If a scan is already running, it is stopped before starting the new one.
+     *
+     * @param requiredServicesUuids Comma separated list of services UUIDs that the peripheral
+     *                              should advertise, may be null or empty.
+     * @param idleToBalancedMillis Duration without activity after which the balanced mode is used,
+     *                             zero to skip that mode.
+     * @param idleToLowPowerMillis Duration without activity after which the low power mode is used,
+     *                             zero to never use it.
+     * @param callback The callback for notifying of the scan results (called for each advertisement packet).
+     */
+    public static void startScan(final String requiredServicesUuids, final long idleToBalancedMillis, final long idleToLowPowerMillis, final ScannerCallback callback)
+    {
+        Log.v(TAG, "==> startScan (adaptive)");
+
+        if (callback == null)
+        {
+            throw new IllegalArgumentException("callback is null");
+        }
+        if ((idleToBalancedMillis < 0) || (idleToLowPowerMillis < 0))
+        {
+            throw new IllegalArgumentException("idle durations must be positive or zero");
+        }
+        if ((idleToBalancedMillis > 0) && (idleToLowPowerMillis > 0) && (idleToLowPowerMillis < idleToBalancedMillis))
+        {
+            throw new IllegalArgumentException("idleToLowPowerMillis must be greater than idleToBalancedMillis");
+        }
 
+        ScanModePolicy policy = new ScanModePolicy(Clock.SYSTEM, _startsLimiter, idleToBalancedMillis, idleToLowPowerMillis);
+        startScan(requiredServicesUuids, 0, createCallback(callback), policy);
+    }
+
+    /**
+     * @brief Starts scanning for BLE peripherals advertising the given list of services,
+     *        with the services given by their UuidRegistry identifiers.
+     *
+     * See startScan(String, ScannerCallback) for details.
+     *
+     * @param requiredServicesIds Identifiers of the services UUIDs that the peripheral
+     *                            should advertise, may be null or empty.
+     * @param callback The callback for notifying of the scan results (called for each advertisement packet).
+     */
+    public static void startScan(final int[] requiredServicesIds, final ScannerCallback callback)
+    {
+        Log.v(TAG, "==> startScan (ids)");
+
+        if (callback == null)
+        {
+            throw new IllegalArgumentException("callback is null");
+        }
+
+        startScan(UuidRegistry.getList(requiredServicesIds), 0, createCallback(callback), null);
+    }
+
+    /**
+     * @brief Starts scanning for BLE peripherals advertising the given list of services,
+     *        with the advertisement data returned as binary records.
+     *
+     * If a scan is already running, it is stopped before starting the new one.
+     *
+     * @param requiredServicesUuids Comma separated list of services UUIDs that the peripheral
+     *                              should advertise, may be null or empty.
+     * @param callback The callback for notifying of the scan results (called for each advertisement packet).
+     */
+    public static void startScan(final String requiredServicesUuids, final BinaryScannerCallback callback)
+    {
+        Log.v(TAG, "==> startScan (binary)");
+
+        if (callback == null)
+        {
+            throw new IllegalArgumentException("callback is null");
+        }
+
+        startScan(requiredServicesUuids, 0, createBinaryCallback(callback), null);
+    }
+
+    /**
+     * @brief Starts scanning for BLE peripherals advertising the given list of services,
+     *        with the services given by their UuidRegistry identifiers and the advertisement
+     *        data returned as binary records.
+     *
+     * See startScan(String, BinaryScannerCallback) for details.
+     *
+     * @param requiredServicesIds Identifiers of the services UUIDs that the peripheral
+     *                            should advertise, may be null or empty.
+     * @param callback The callback for notifying of the scan results (called for each advertisement packet).
+     */
+    public static void startScan(final int[] requiredServicesIds, final BinaryScannerCallback callback)
+    {
+        Log.v(TAG, "==> startScan (ids, binary)");
+
+        if (callback == null)
+        {
+            throw new IllegalArgumentException("callback is null");
+        }
+
+        startScan(UuidRegistry.getList(requiredServicesIds), 0, createBinaryCallback(callback), null);
+    }
+
+    /**
+     * @brief Starts scanning for BLE peripherals advertising the given list of services,
+     *        with the advertisement data pushed to an event queue.
+     *
+     * Scan results are pushed as binary records, see EventQueue.EVENT_SCAN_RESULT,
+     * and a scan failure is pushed as an EventQueue.EVENT_SCAN_FAILED event.
+     * Results that don't fit in the queue are dropped.
+     *
+     * If a scan is already running, it is stopped before starting the new one.
+     *
+     * @param requiredServicesUuids Comma separated list of services UUIDs that the peripheral
+     *                              should advertise, may be null or empty.
+     * @param eventQueue The queue to which scan results are pushed.
+     */
+    public static void startScan(final String requiredServicesUuids, final EventQueue eventQueue)
+    {
+        Log.v(TAG, "==> startScan (event queue)");
+
+        if (eventQueue == null)
+        {
+            throw new IllegalArgumentException("eventQueue is null");
+        }
+
+        startScan(requiredServicesUuids, 0, createEventQueueCallback(eventQueue), null);
+    }
+
+    /**
+     * @brief Starts scanning for BLE peripherals advertising the given list of services,
+     *        with the services given by their UuidRegistry identifiers and the advertisement
+     *        data pushed to an event queue.
+     *
+     * See startScan(String, EventQueue) for details.
+     *
+     * @param requiredServicesIds Identifiers of the services UUIDs that the peripheral
+     *                            should advertise, may be null or empty.
+     * @param eventQueue The queue to which scan results are pushed.
+     */
+    public static void startScan(final int[] requiredServicesIds, final EventQueue eventQueue)
+    {
+        Log.v(TAG, "==> startScan (ids, event queue)");
+
+        if (eventQueue == null)
+        {
+            throw new IllegalArgumentException("eventQueue is null");
+        }
+
+        startScan(UuidRegistry.getList(requiredServicesIds), 0, createEventQueueCallback(eventQueue), null);
+    }
+
+    /**
+     * @brief Starts scanning for BLE peripherals advertising the given list of services,
+     *        with the advertisement data returned in batches of binary records.
+     *
+     * Scan results are accumulated and notified at once, either when the flush interval
+     * has elapsed since the first accumulated result or when the maximum batch size is reached.
+     *
+     * If a scan is already running, it is stopped before starting the new one.
+     *
+     * @param requiredServicesUuids Comma separated list of services UUIDs that the peripheral
+     *                              should advertise, may be null or empty.
+     * @param reportDelayMillis Delay in milliseconds for the Bluetooth stack to report scan results,
+     *                          hardware batching is used when supported. Zero for immediate reports.
+     * @param flushIntervalMillis Maximum time in milliseconds during which scan results are accumulated
+     *                            before being notified.
+     * @param maxBatchSize Maximum number of scan results notified in one batch, must be greater than zero.
+     * @param callback The callback for notifying of the scan results (called for each batch).
+     */
+    public static void startScan(final String requiredServicesUuids, final long reportDelayMillis, final int flushIntervalMillis, final int maxBatchSize, final BatchScannerCallback callback)
+    {
+        Log.v(TAG, "==> startScan (batch)");
+
+        if (callback == null)
+        {
+            throw new IllegalArgumentException("callback is null");
+        }
+        if (reportDelayMillis < 0)
+        {
+            throw new IllegalArgumentException("reportDelayMillis must be positive or zero");
+        }
+        if (flushIntervalMillis < 0)
+        {
+            throw new IllegalArgumentException("flushIntervalMillis must be positive or zero");
+        }
+        if (maxBatchSize <= 0)
+        {
+            throw new IllegalArgumentException("maxBatchSize must be greater than zero");
+        }
+
+        startScan(requiredServicesUuids, reportDelayMillis, createBatchCallback(flushIntervalMillis, maxBatchSize, callback), null);
+    }
+
+    /**
+     * @brief Starts scanning with the given scan callback, stopping the current scan if any.
+     *
+     * The scan runs in low latency mode unless a scan mode policy is given.
+     */
+    private static void startScan(final String requiredServicesUuids, final long reportDelayMillis, final ScanCallbackBase scanCallback, final ScanModePolicy scanModePolicy)
+    {
         // Convert the comma separated list of UUIDs
-        List<ScanFilter> filters = null;
-        if (requiredServicesUuids != null)
+        startScan(UuidUtils.parseList(requiredServicesUuids, "requiredServicesUuids"), reportDelayMillis, scanCallback, scanModePolicy);
+    }
+
+    /**
+     * @brief Starts scanning for the given services with the given scan callback,
+     *        stopping the current scan if any.
+     */
+    private static void startScan(final UUID[] uuids, final long reportDelayMillis, final ScanCallbackBase scanCallback, final ScanModePolicy scanModePolicy)
+    {
+        synchronized (_scanSync)
         {
-            filters = new ArrayList<>();
-            for (String uuidStr : requiredServicesUuids.split(","))
+            List<ScanFilter> filters = buildFilters(uuids, _advertisementFilters);
+
+            // Only one scan at a time
+            if (_scanCallback != null)
             {
-                try
+    	        BluetoothLeScannerCompat.getScanner().stopScan(_scanCallback);
+                _scanCallback.stop();
+            }
+            _scanModeHandler.removeCallbacks(_scanModeRunnable);
+
+            // Start scanning
+            _scanCallback = scanCallback;
+            _scanFilters = filters;
+            _scanReportDelayMillis = reportDelayMillis;
+            _scanModePolicy = scanModePolicy;
+            _statistics = scanCallback.getStatistics();
+            scanCallback.setScanModePolicy(scanModePolicy);
+
+            int scanMode = scanModePolicy != null ? scanModePolicy.getScanMode() : ScanSettings.SCAN_MODE_LOW_LATENCY;
+            BluetoothLeScannerCompat.getScanner().startScan(filters, buildSettings(scanMode, reportDelayMillis), _scanCallback);
+            _startsLimiter.onScanStarted();
+
+            if (scanModePolicy != null)
+            {
+                _scanModeHandler.postDelayed(_scanModeRunnable, SCAN_MODE_CHECK_INTERVAL_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * @brief Builds the Android scan filters for the given services and advertisement filters.
+     *
+     * Each advertisement filter is combined with each service so that a device
+     * must advertise one of the services and match one of the advertisement filters.
+     *
+     * @return The list of scan filters, or null if there is nothing to filter.
+     */
+    private static List<ScanFilter> buildFilters(final UUID[] uuids, final AdvertisementFilter[] advertisementFilters)
+    {
+        if (advertisementFilters == null)
+        {
+            if (uuids == null)
+            {
+                return null;
+            }
+            List<ScanFilter> filters = new ArrayList<>(uuids.length);
+            for (UUID uuid : uuids)
+            {
+                filters.add(new ScanFilter.Builder().setServiceUuid(new ParcelUuid(uuid)).build());
+            }
+            return filters;
+        }
+        else
+        {
+            List<ScanFilter> filters = new ArrayList<>(advertisementFilters.length * (uuids == null ? 1 : uuids.length));
+            for (AdvertisementFilter filter : advertisementFilters)
+            {
+                if (uuids == null)
                 {
-                    ParcelUuid uuid = ParcelUuid.fromString(uuidStr);
-                    filters.add(new ScanFilter.Builder().setServiceUuid(uuid).build());
+                    filters.add(filter.toScanFilter(null));
                 }
-                catch (IllegalArgumentException e)
+                else
                 {
-                    throw new IllegalArgumentException("requiredServicesUuids must be either null, an empty string or a comma separated list of UUIDs");
+                    for (UUID uuid : uuids)
+                    {
+                        filters.add(filter.toScanFilter(uuid));
+                    }
                 }
             }
+            return filters;
         }
+    }
+
+    /**
+     * @brief Builds the scan settings for the given scan mode.
+     */
+    private static ScanSettings buildSettings(final int scanMode, final long reportDelayMillis)
+    {
+        return new ScanSettings.Builder()
+            .setLegacy(false) // Default is true for compatibility with older apps, but we all type of advertisements, not just legacy
+            .setScanMode(scanMode) // Default is low power which is good for long scans, in our use case we mostly do short scans and we prefer having quick results
+            .setReportDelay(reportDelayMillis) // Zero by default, otherwise results are batched (by the hardware if supported)
+            .build(); // Other defaults are great for us
+    }
 
+    /**
+     * @brief Restarts the current scan if its scan mode policy requires another mode.
+     *
+     * Runs periodically on the main thread while a scan with a policy is running.
+     */
+    private static void updateScanMode()
+    {
         synchronized (_scanSync)
         {
-            // Only one scan at a time
-            if (_scanCallback != null)
+            _scanModeHandler.removeCallbacks(_scanModeRunnable);
+            if ((_scanCallback == null) || (_scanModePolicy == null))
             {
-    	        BluetoothLeScannerCompat.getScanner().stopScan(_scanCallback);
+                return;
             }
 
-            // Start scanning
-            _scanCallback = createCallback(callback);
-            BluetoothLeScannerCompat.getScanner().startScan(filters, settings, _scanCallback);
+            int scanMode = _scanModePolicy.getNextScanMode();
+            if (scanMode != _scanModePolicy.getScanMode())
+            {
+                Log.v(TAG, "Switching to scan mode " + scanMode);
+
+                // Scan settings can't be changed while scanning
+                BluetoothLeScannerCompat scanner = BluetoothLeScannerCompat.getScanner();
+                scanner.stopScan(_scanCallback);
+                scanner.startScan(_scanFilters, buildSettings(scanMode, _scanReportDelayMillis), _scanCallback);
+                _startsLimiter.onScanStarted();
+                _scanModePolicy.onScanStarted(scanMode);
+            }
+
+            _scanModeHandler.postDelayed(_scanModeRunnable, SCAN_MODE_CHECK_INTERVAL_MILLIS);
         }
     }
 
@@ -119,173 +603,501 @@ public final class Scanner
             if (_scanCallback != null)
             {
     	        BluetoothLeScannerCompat.getScanner().stopScan(_scanCallback);
+                _scanCallback.stop();
                 _scanCallback = null;
+                _scanModePolicy = null;
             }
+            _scanModeHandler.removeCallbacks(_scanModeRunnable);
         }
     }
 
     /**
-     * @brief Gets a ScanCallback instance that notify scan results to user code.
+     * @brief Gets statistics about the advertisement packets received during the current scan,
+     *        or the last one if no scan is running.
+     *
+     * Statistics are reset when a scan is started.
+     *
+     * The returned JSON object has the following values:
+     * - "isScanning": whether the scan is still running
+     * - "durationMillis": the scan duration so far
+     * - "received": the number of packets received from the Bluetooth stack
+     * - "nonLeDropped": the number of packets dropped because not from a BLE device
+     * - "filteredOut": the number of packets dropped by the advertisement filters
+     * - "duplicatesDropped": the number of packets dropped by the duplicates filter
+     * - "forwarded": the number of packets notified to user code
+     * - "untrackedDevicesPackets": the number of packets of devices without their own statistics,
+     *   only the first thousand devices are tracked
+     * - "packetsPerSecond": the average number of received packets per second
+     * - "recentPacketsPerSecond": the number of received packets per second over the last second or so
+     * - "callbackMicros": histogram of the time spent notifying each packet to user code,
+     *   including the serialization of the advertisement data
+     * - "batchSizes": histogram of the sizes of the batches reported by the Bluetooth stack
+     * - "devices": array with the "address", "packets", "packetsPerSecond", "rssiMin",
+     *   "rssiAvg" and "rssiMax" of each device
+     *
+     * Histograms are given as in RequestMetrics.getSnapshot().
+     *
+     * @return A JSON string, or null if no scan was ever started.
      */
-    private static ScanCallback createCallback(final ScannerCallback callback)
+    public static String getStatistics()
     {
-        return new ScanCallback()
+        ScanStatistics statistics;
+        synchronized (_scanSync)
         {
-            @Override
-            public void onScanResult(final int callbackType, final ScanResult result)
+            statistics = _statistics;
+        }
+        return statistics == null ? null : statistics.toJson(SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * @brief Gets the BluetoothDevice object of a recently scanned device.
+     *
+     * The last few hundreds scanned devices are remembered, including across scans.
+     * Using the device object returned by a scan rather than getting one from
+     * the Bluetooth adapter preserves the address type advertised by the device.
+     *
+     * @param bluetoothAddress The address of a Bluetooth device.
+     * @return The BluetoothDevice or null if no device with that address was scanned recently.
+     */
+    public static BluetoothDevice getScannedDevice(final long bluetoothAddress)
+    {
+        synchronized (_scannedDevices)
+        {
+            return _scannedDevices.get(bluetoothAddress);
+        }
+    }
+
+    /**
+     * @brief Base class for our ScanCallback implementations, filters out non BLE devices
+     *        and unrolls batches of scan results.
+     *
+     * Scan results are notified on the main thread.
+     */
+    private static abstract class ScanCallbackBase extends ScanCallback
+    {
+        private final DuplicatesFilter _duplicatesFilter;
+        private final AdvertisementFilter[] _advertisementFilters;
+        private final ScanStatistics _statistics = new ScanStatistics(SystemClock.elapsedRealtime());
+        private volatile ScanModePolicy _scanModePolicy;
+
+        protected ScanCallbackBase()
+        {
+            synchronized (_scanSync)
             {
-                NotifyScanResult(result);
+                _duplicatesFilter = _filterDuplicates
+                    ? new DuplicatesFilter(_duplicatesRssiThreshold, _duplicatesReemitIntervalMillis)
+                    : null;
+                _advertisementFilters = Scanner._advertisementFilters;
             }
+        }
 
-            @Override
-            public void onBatchScanResults(final List<ScanResult> results)
+        @Override
+        public void onScanResult(final int callbackType, final ScanResult result)
+        {
+            processScanResult(result);
+        }
+
+        @Override
+        public void onBatchScanResults(final List<ScanResult> results)
+        {
+            _statistics.onBatchReceived(results.size());
+            for (ScanResult scan : results)
             {
-                for (ScanResult scan : results)
+                processScanResult(scan);
+            }
+        }
+
+        @Override
+        public void onScanFailed(final int errorCode)
+        {
+            notifyScanFailed(errorToString(errorCode));
+        }
+
+        /**
+         * @brief Called for each scan result from a BLE device.
+         *
+         * @param device The Android BluetoothDevice which send the advertisement data.
+         * @param address The Bluetooth address of the device as a 48 bits integer.
+         * @param scanResult The scan result.
+         */
+        protected abstract void notifyScanResult(final BluetoothDevice device, final long address, final ScanResult scanResult);
+
+        /**
+         * @brief Called when the scan fails.
+         */
+        protected abstract void notifyScanFailed(final String error);
+
+        /**
+         * @brief Called once the scan is stopped, no more results will be notified.
+         */
+        protected void onStopped() {}
+
+        /**
+         * @brief Gets the statistics of this scan.
+         */
+        final ScanStatistics getStatistics()
+        {
+            return _statistics;
+        }
+
+        /**
+         * @brief Sets the policy to notify of the scan results, may be null.
+         */
+        final void setScanModePolicy(final ScanModePolicy scanModePolicy)
+        {
+            _scanModePolicy = scanModePolicy;
+        }
+
+        /**
+         * @brief Must be called once the scan is stopped.
+         */
+        final void stop()
+        {
+            _statistics.onStopped(SystemClock.elapsedRealtime());
+            onStopped();
+        }
+
+        private void processScanResult(final ScanResult scanResult)
+        {
+            final long timestamp = SystemClock.elapsedRealtime();
+            _statistics.onPacketReceived(timestamp);
+
+            BluetoothDevice device = scanResult.getDevice();
+            // We should get only BLE devices
+            if ((device != null)
+                    && ((device.getType() == BluetoothDevice.DEVICE_TYPE_LE)
+                    || (device.getType() == BluetoothDevice.DEVICE_TYPE_DUAL)))
+            {
+                long address = BluetoothAddress.toLong(device.getAddress());
+
+                // Drop advertisement if it doesn't match the criteria that couldn't be offloaded
+                if ((_advertisementFilters != null) && !matchesAnyFilter(scanResult))
                 {
-                    NotifyScanResult(scan);
+                    _statistics.onFilteredOut();
+                    return;
                 }
-            }
 
-            @Override
-        	public void onScanFailed(final int errorCode)
+                // Remember device for a fast connection
+                synchronized (_scannedDevices)
+                {
+                    _scannedDevices.put(address, device);
+                }
+
+                _statistics.onDevicePacket(address, scanResult.getRssi(), timestamp);
+
+                // Switch back to low latency mode as soon as something new is advertised
+                ScanModePolicy scanModePolicy = _scanModePolicy;
+                if ((scanModePolicy != null)
+                    && scanModePolicy.onScanResult(address, DuplicatesFilter.hashData(scanResult.getScanRecord())))
+                {
+                    _scanModeHandler.removeCallbacks(_scanModeRunnable);
+                    _scanModeHandler.post(_scanModeRunnable);
+                }
+
+                // Drop advertisement if nothing significant changed since the last one
+                if ((_duplicatesFilter != null) && _duplicatesFilter.isDuplicate(address, scanResult))
+                {
+                    _statistics.onDuplicateDropped();
+                    return;
+                }
+
+                final long callbackStart = SystemClock.elapsedRealtimeNanos();
+                notifyScanResult(device, address, scanResult);
+                _statistics.onForwarded((SystemClock.elapsedRealtimeNanos() - callbackStart) / 1000);
+            }
+            else
             {
-                callback.onScanFailed(errorToString(errorCode));
+                _statistics.onNonLeDropped();
             }
+        }
 
-            private String errorToString(final int errorCode)
+        private boolean matchesAnyFilter(final ScanResult scanResult)
+        {
+            for (AdvertisementFilter filter : _advertisementFilters)
             {
-                switch (errorCode)
+                if (filter.matches(scanResult))
                 {
-                    case ScanCallback.SCAN_FAILED_ALREADY_STARTED:
-                        return "Already started";
-                    case ScanCallback.SCAN_FAILED_APPLICATION_REGISTRATION_FAILED:
-                        return "Application registration failed";
-                    case ScanCallback.SCAN_FAILED_INTERNAL_ERROR:
-                        return "Internal error";
-                    case ScanCallback.SCAN_FAILED_FEATURE_UNSUPPORTED:
-                        return "Feature unsupported";
-                    case ScanCallback.SCAN_FAILED_OUT_OF_HARDWARE_RESOURCES:
-                        return "Out of hardware resources";
+                    return true;
                 }
-                return "Unknown error";
+            }
+            return false;
+        }
+
+        private static String errorToString(final int errorCode)
+        {
+            switch (errorCode)
+            {
+                case ScanCallback.SCAN_FAILED_ALREADY_STARTED:
+                    return "Already started";
+                case ScanCallback.SCAN_FAILED_APPLICATION_REGISTRATION_FAILED:
+                    return "Application registration failed";
+                case ScanCallback.SCAN_FAILED_INTERNAL_ERROR:
+                    return "Internal error";
+                case ScanCallback.SCAN_FAILED_FEATURE_UNSUPPORTED:
+                    return "Feature unsupported";
+                case ScanCallback.SCAN_FAILED_OUT_OF_HARDWARE_RESOURCES:
+                    return "Out of hardware resources";
+            }
+            return "Unknown error";
+        }
+    }
+
+    /**
+     * @brief Gets a ScanCallback instance that notify scan results to user code.
+     */
+    private static ScanCallbackBase createCallback(final ScannerCallback callback)
+    {
+        return new ScanCallbackBase()
+        {
+            @Override
+            protected void notifyScanFailed(final String error)
+            {
+                callback.onScanFailed(error);
             }
 
-            private void NotifyScanResult(final ScanResult scanResult)
+            @Override
+            protected void notifyScanResult(final BluetoothDevice device, final long address, final ScanResult scanResult)
             {
-                BluetoothDevice device = scanResult.getDevice();
-                // We should get only BLE devices
-                if ((device != null)
-                        && ((device.getType() == BluetoothDevice.DEVICE_TYPE_LE)
-                        || (device.getType() == BluetoothDevice.DEVICE_TYPE_DUAL)))
+                StringBuilder sb = new StringBuilder();
+                sb.append("{\"systemId\":\"");
+                sb.append(device.hashCode());
+                sb.append("\",\"address\":");
+                sb.append(address);
+                sb.append(",\"name\":\"");
+                sb.append(device.getName());
+                sb.append("\",\"isConnectable\":");
+                sb.append(scanResult.isConnectable());
+                sb.append(",\"rssi\":");
+                sb.append(scanResult.getRssi());
+                sb.append(",\"txPowerLevel\":");
+                sb.append(scanResult.getTxPower());
+
+                ScanRecord scanRecord = scanResult.getScanRecord();
+                if (scanRecord != null)
                 {
-                    long address = 0, shift = 0;
-                    String[] octets = device.getAddress().split(":");
-                    for (int i = octets.length - 1; i >= 0; --i)
+                    // Services
+                    List<ParcelUuid> services = scanRecord.getServiceUuids();
+                    if ((services != null) && (services.size() > 0))
                     {
-                        address += (long)Integer.parseInt(octets[i], 16) << shift;
-                        shift += 8;
+                        sb.append(",\"services\":[");
+                        for (int i = 0; i < services.size(); ++i)
+                        {
+                            if (i > 0) sb.append(",");
+                            sb.append("\"");
+                            sb.append(services.get(i));
+                            sb.append("\"");
+                        }
+                        sb.append("]");
                     }
 
-                    StringBuilder sb = new StringBuilder();
-                    sb.append("{\"systemId\":\"");
-                    sb.append(device.hashCode());
-                    sb.append("\",\"address\":");
-                    sb.append(address);
-                    sb.append(",\"name\":\"");
-                    sb.append(device.getName());
-                    sb.append("\",\"isConnectable\":");
-                    sb.append(scanResult.isConnectable());
-                    sb.append(",\"rssi\":");
-                    sb.append(scanResult.getRssi());
-                    sb.append(",\"txPowerLevel\":");
-                    sb.append(scanResult.getTxPower());
-
-                    ScanRecord scanRecord = scanResult.getScanRecord();
-                    if (scanRecord != null)
+                    // Added in API level 29
+                    // Solicited services
+                    // List<ParcelUuid> solicitedServices = scanRecord.getServiceSolicitationUuids();
+                    // if ((solicitedServices != null) && (solicitedServices.size() > 0))
+                    // {
+                    //     sb.append(",\"solicitedServices\":[");
+                    //     for (int i = 0; i < solicitedServices.size(); ++i)
+                    //     {
+                    //         if (i > 0) sb.append(",");
+                    //         sb.append("\"");
+                    //         sb.append(solicitedServices.get(i));
+                    //         sb.append("\"");
+                    //     }
+                    //     sb.append("]");
+                    // }
+
+                    // Manufacturer data
+                    SparseArray<byte[]> manufacturersData = scanRecord.getManufacturerSpecificData();
+                    if ((manufacturersData != null) && (manufacturersData.size() > 0))
                     {
-                        // Services
-                        List<ParcelUuid> services = scanRecord.getServiceUuids();
-                        if ((services != null) && (services.size() > 0))
+                        sb.append(",\"manufacturersData\":[");
+                        for (int i = 0; i < manufacturersData.size(); ++i)
                         {
-                            sb.append(",\"services\":[");
-                            for (int i = 0; i < services.size(); ++i)
+                            if (i > 0) sb.append(",");
+                            sb.append("{\"companyId\":");
+                            sb.append(manufacturersData.keyAt(i));
+                            sb.append(",\"data\":[");
+                            byte[] data = manufacturersData.valueAt(i);
+                            for (int j = 0; j < data.length; ++j)
                             {
-                                if (i > 0) sb.append(",");
-                                sb.append("\"");
-                                sb.append(services.get(i));
-                                sb.append("\"");
+                                if (j > 0) sb.append(",");
+                                sb.append(data[j]);
                             }
-                            sb.append("]");
+                            sb.append("]}");
                         }
+                        sb.append("]");
+                    }
 
-                        // Added in API level 29
-                        // Solicited services
-                        // List<ParcelUuid> solicitedServices = scanRecord.getServiceSolicitationUuids();
-                        // if ((solicitedServices != null) && (solicitedServices.size() > 0))
-                        // {
-                        //     sb.append(",\"solicitedServices\":[");
-                        //     for (int i = 0; i < solicitedServices.size(); ++i)
-                        //     {
-                        //         if (i > 0) sb.append(",");
-                        //         sb.append("\"");
-                        //         sb.append(solicitedServices.get(i));
-                        //         sb.append("\"");
-                        //     }
-                        //     sb.append("]");
-                        // }
-
-                        // Manufacturer data
-                        SparseArray<byte[]> manufacturersData = scanRecord.getManufacturerSpecificData();
-                        if ((manufacturersData != null) && (manufacturersData.size() > 0))
+                    // Service data
+                    Map<ParcelUuid, byte[]> servicesData = scanRecord.getServiceData();
+                    if ((servicesData != null) && (servicesData.size() > 0))
+                    {
+                        sb.append(",\"servicesData\":[");
+                        boolean first = true;
+                        for (Map.Entry<ParcelUuid, byte[]> entry : servicesData.entrySet())
                         {
-                            sb.append(",\"manufacturersData\":[");
-                            for (int i = 0; i < manufacturersData.size(); ++i)
-                            {
-                                if (i > 0) sb.append(",");
-                                sb.append("{\"companyId\":");
-                                sb.append(manufacturersData.keyAt(i));
-                                sb.append(",\"data\":[");
-                                byte[] data = manufacturersData.valueAt(i);
-                                for (int j = 0; j < data.length; ++j)
-                                {
-                                    if (j > 0) sb.append(",");
-                                    sb.append(data[j]);
-                                }
-                                sb.append("]}");
-                            }
-                            sb.append("]");
-                        }
+                            if (!first) sb.append(",");
+                            first = false;
 
-                        // Service data
-                        Map<ParcelUuid, byte[]> servicesData = scanRecord.getServiceData();
-                        if ((servicesData != null) && (servicesData.size() > 0))
-                        {
-                            sb.append(",\"servicesData\":[");
-                            boolean first = true;
-                            for (Map.Entry<ParcelUuid, byte[]> entry : servicesData.entrySet())
+                            sb.append("{\"uuid\":\"");
+                            sb.append(entry.getKey());
+                            sb.append("\",\"data\":[");
+                            byte[] data = entry.getValue();
+                            for (int j = 0; j < data.length; ++j)
                             {
-                                if (!first) sb.append(",");
-                                first = false;
-
-                                sb.append("{\"uuid\":\"");
-                                sb.append(entry.getKey());
-                                sb.append("\",\"data\":[");
-                                byte[] data = entry.getValue();
-                                for (int j = 0; j < data.length; ++j)
-                                {
-                                    if (j > 0) sb.append(",");
-                                    sb.append(data[j]);
-                                }
-                                sb.append("]}");
+                                if (j > 0) sb.append(",");
+                                sb.append(data[j]);
                             }
-                            sb.append("]");
+                            sb.append("]}");
                         }
+                        sb.append("]");
                     }
-                    sb.append("}");
+                }
+                sb.append("}");
 
-                    callback.onScanResult(device, sb.toString());
+                callback.onScanResult(device, sb.toString());
+            }
+        };
+    }
+
+    /**
+     * @brief Gets a ScanCallback instance that notify scan results to user code
+     *        as binary records.
+     */
+    private static ScanCallbackBase createBinaryCallback(final BinaryScannerCallback callback)
+    {
+        return new ScanCallbackBase()
+        {
+            // Reused for each scan result, grown as needed
+            private ByteBuffer _buffer;
+
+            @Override
+            protected void notifyScanFailed(final String error)
+            {
+                callback.onScanFailed(error);
+            }
+
+            @Override
+            protected void notifyScanResult(final BluetoothDevice device, final long address, final ScanResult scanResult)
+            {
+                String name = device.getName();
+                _buffer = AdvertisementRecord.ensureCapacity(_buffer, AdvertisementRecord.computeSize(scanResult, name));
+                AdvertisementRecord.write(_buffer, scanResult, address, name);
+                _buffer.flip();
+
+                callback.onScanResult(device, _buffer);
+            }
+        };
+    }
+
+    /**
+     * @brief Gets a ScanCallback instance that notify scan results to user code
+     *        in batches of binary records.
+     */
+    private static ScanCallbackBase createBatchCallback(final int flushIntervalMillis, final int maxBatchSize, final BatchScannerCallback callback)
+    {
+        return new ScanCallbackBase()
+        {
+            // Scan results are notified on the main thread, so is our flush runnable
+            private final Handler _handler = new Handler(Looper.getMainLooper());
+            private final Runnable _flushRunnable = new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    flush();
+                }
+            };
+
+            // Accumulated records, reused for each batch and grown as needed
+            private ByteBuffer _buffer = AdvertisementRecord.ensureCapacity(null, 4096);
+            private int _count;
+            private volatile boolean _stopped;
+
+            @Override
+            protected void notifyScanFailed(final String error)
+            {
+                callback.onScanFailed(error);
+            }
+
+            @Override
+            protected void notifyScanResult(final BluetoothDevice device, final long address, final ScanResult scanResult)
+            {
+                if (_stopped)
+                {
+                    return;
+                }
+
+                String name = device.getName();
+                int size = AdvertisementRecord.computeSize(scanResult, name);
+                if (_buffer.remaining() < size)
+                {
+                    // Grow buffer and keep the already accumulated records
+                    ByteBuffer previous = _buffer;
+                    _buffer = AdvertisementRecord.ensureCapacity(null, 2 * previous.capacity() + size);
+                    previous.flip();
+                    _buffer.put(previous);
+                }
+                AdvertisementRecord.write(_buffer, scanResult, address, name);
+
+                if (++_count >= maxBatchSize)
+                {
+                    flush();
                 }
+                else if (_count == 1)
+                {
+                    _handler.postDelayed(_flushRunnable, flushIntervalMillis);
+                }
+            }
+
+            @Override
+            protected void onStopped()
+            {
+                // Drop pending results
+                _stopped = true;
+                _handler.removeCallbacks(_flushRunnable);
+            }
+
+            private void flush()
+            {
+                _handler.removeCallbacks(_flushRunnable);
+                if ((_count > 0) && (!_stopped))
+                {
+                    _buffer.flip();
+                    callback.onScanResults(_buffer, _count);
+                }
+                _buffer.clear();
+                _count = 0;
+            }
+        };
+    }
+
+    /**
+     * @brief Gets a ScanCallback instance that pushes scan results to an event queue.
+     */
+    private static ScanCallbackBase createEventQueueCallback(final EventQueue eventQueue)
+    {
+        return new ScanCallbackBase()
+        {
+            // Reused for each scan result, grown as needed
+            private ByteBuffer _buffer;
+
+            @Override
+            protected void notifyScanFailed(final String error)
+            {
+                eventQueue.offer(EventQueue.EVENT_SCAN_FAILED, 0, ByteBuffer.wrap(error.getBytes(StandardCharsets.UTF_8)));
+            }
+
+            @Override
+            protected void notifyScanResult(final BluetoothDevice device, final long address, final ScanResult scanResult)
+            {
+                String name = device.getName();
+                _buffer = AdvertisementRecord.ensureCapacity(_buffer, AdvertisementRecord.computeSize(scanResult, name));
+                AdvertisementRecord.write(_buffer, scanResult, address, name);
+                _buffer.flip();
+
+                eventQueue.offer(EventQueue.EVENT_SCAN_RESULT, address, _buffer);
             }
         };
     }
-}
+}
\ No newline at end of file
@@ -0,0 +1,346 @@
+package com.systemic.bluetoothle;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import com.unity3d.player.UnityPlayer;
+
+/**
+ * @brief Persistent cache of the characteristics resolved for each device,
+ *        along with a hash of the device services layout.
+ *
+ * This allows for a Peripheral to re-resolve its characteristic handles as soon
+ * as the services are discovered on reconnection, including after the application
+ * was restarted, with the same handles as long as the services layout is the same.
+ *
+ * The cache is stored in a file of the application cache directory which is memory mapped.
+ * It has a fixed number of slots, one per device, the least recently used slot is
+ * reused when the cache is full. The file is only accessed from a background thread,
+ * see post().
+ *
+ * File layout, all multi-bytes integers are stored in little-endian order:
+ * - Header: u32 magic, u16 version, u16 slots count, u32 slot size, u32 reserved.
+ * - Slots: i64 device address (zero for an empty slot), i64 last use counter,
+ *   i32 layout hash, u16 handles generation, u16 keys count, followed by the keys.
+ * - Key: 16 bytes service UUID, 16 bytes characteristic UUID, u8 instance index,
+ *   3 reserved bytes. UUIDs are stored as two big-endian 64 bits integers.
+ *
+ * This class is thread safe.
+ */
+final class ServiceLayoutCache
+{
+    private static final String TAG = "SystemicGames";
+
+    private static final String FILE_NAME = "systemic_ble_layouts.bin";
+    private static final int MAGIC = 0x434C4253; // "SBLC"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOTS_COUNT = 64;
+    private static final int SLOT_SIZE = 1024;
+    private static final int SLOT_HEADER_SIZE = 24;
+    private static final int KEY_SIZE = 36;
+
+    //! Maximum number of keys stored for a device, additional keys are only kept in memory.
+    static final int MAX_KEYS = (SLOT_SIZE - SLOT_HEADER_SIZE) / KEY_SIZE;
+
+    /**
+     * @brief Identifies a characteristic of a device.
+     */
+    static final class Key
+    {
+        final UUID serviceUuid;
+        final UUID characteristicUuid;
+        final int instanceIndex;
+
+        Key(final UUID serviceUuid, final UUID characteristicUuid, final int instanceIndex)
+        {
+            this.serviceUuid = serviceUuid;
+            this.characteristicUuid = characteristicUuid;
+            this.instanceIndex = instanceIndex;
+        }
+
+        @Override
+        public boolean equals(final Object obj)
+        {
+            if (!(obj instanceof Key))
+            {
+                return false;
+            }
+            Key other = (Key)obj;
+            return serviceUuid.equals(other.serviceUuid)
+                && characteristicUuid.equals(other.characteristicUuid)
+                && (instanceIndex == other.instanceIndex);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return (31 * serviceUuid.hashCode() + characteristicUuid.hashCode()) * 31 + instanceIndex;
+        }
+    }
+
+    /**
+     * @brief The cached data of a device.
+     */
+    static final class Entry
+    {
+        final int layoutHash;
+        final int generation;
+        final List<Key> keys;
+
+        Entry(final int layoutHash, final int generation, final List<Key> keys)
+        {
+            this.layoutHash = layoutHash;
+            this.generation = generation;
+            this.keys = keys;
+        }
+    }
+
+    private static final Object _instanceSync = new Object();
+    private static ServiceLayoutCache _instance;
+    private static boolean _instanceFailed;
+    private static Handler _ioHandler;
+
+    private final MappedByteBuffer _buffer;
+    private long _useCounter;
+
+    /**
+     * @brief Gets the cache, opening its file on the first call.
+     *
+     * @return The cache, or null if its file couldn't be opened.
+     */
+    static ServiceLayoutCache getInstance()
+    {
+        synchronized (_instanceSync)
+        {
+            if ((_instance == null) && (!_instanceFailed))
+            {
+                try
+                {
+                    File file = new File(UnityPlayer.currentActivity.getApplicationContext().getCacheDir(), FILE_NAME);
+                    _instance = new ServiceLayoutCache(file);
+                }
+                catch (IOException | RuntimeException e)
+                {
+                    // Don't try again, peripherals work without the cache
+                    Log.e(TAG, "Failed to open services layout cache: " + e);
+                    _instanceFailed = true;
+                }
+            }
+            return _instance;
+        }
+    }
+
+    private ServiceLayoutCache(final File file) throws IOException
+    {
+        final int size = HEADER_SIZE + SLOTS_COUNT * SLOT_SIZE;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+        {
+            // The mapping stays valid once the channel is closed
+            _buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        _buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if ((_buffer.getInt(0) != MAGIC)
+            || ((_buffer.getShort(4) & 0xFFFF) != VERSION)
+            || ((_buffer.getShort(6) & 0xFFFF) != SLOTS_COUNT)
+            || (_buffer.getInt(8) != SLOT_SIZE))
+        {
+            // New or incompatible file, start over
+            for (int i = 0; i < size; ++i)
+            {
+                _buffer.put(i, (byte)0);
+            }
+            _buffer.putInt(0, MAGIC);
+            _buffer.putShort(4, (short)VERSION);
+            _buffer.putShort(6, (short)SLOTS_COUNT);
+            _buffer.putInt(8, SLOT_SIZE);
+        }
+
+        for (int slot = 0; slot < SLOTS_COUNT; ++slot)
+        {
+            _useCounter = Math.max(_useCounter, _buffer.getLong(getSlotOffset(slot) + 8));
+        }
+    }
+
+    /**
+     * @brief Gets the cached data of the given device.
+     *
+     * @param address The Bluetooth address of the device.
+     * @return The cached data, or null if the device isn't in the cache.
+     */
+    synchronized Entry load(final long address)
+    {
+        final int slot = findSlot(address);
+        if (slot < 0)
+        {
+            return null;
+        }
+
+        final int offset = getSlotOffset(slot);
+        _buffer.putLong(offset + 8, ++_useCounter);
+        final int layoutHash = _buffer.getInt(offset + 16);
+        final int generation = _buffer.getShort(offset + 20) & 0xFFFF;
+        final int count = Math.min(MAX_KEYS, _buffer.getShort(offset + 22) & 0xFFFF);
+        ArrayList<Key> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i)
+        {
+            keys.add(readKey(offset + SLOT_HEADER_SIZE + i * KEY_SIZE));
+        }
+        return new Entry(layoutHash, generation, keys);
+    }
+
+    /**
+     * @brief Stores the data of the given device.
+     *
+     * If the device is already in the cache with the same layout hash, the stored keys
+     * that are missing from the given list are kept after the given keys, so several
+     * peripherals for the same device don't drop each other's keys. Otherwise the
+     * previous data is replaced.
+     *
+     * Only the first MAX_KEYS keys are stored.
+     *
+     * @param address The Bluetooth address of the device, must not be zero.
+     * @param layoutHash The hash of the device services layout, zero if unknown.
+     * @param generation The handles generation.
+     * @param keys The resolved characteristics, in handle order.
+     */
+    synchronized void store(final long address, final int layoutHash, final int generation, final List<Key> keys)
+    {
+        int slot = findSlot(address);
+        if (slot < 0)
+        {
+            write(findLeastRecentlyUsedSlot(), address, layoutHash, generation, keys);
+        }
+        else if (_buffer.getInt(getSlotOffset(slot) + 16) == layoutHash)
+        {
+            write(slot, address, layoutHash, generation, mergeKeys(slot, keys));
+        }
+        else
+        {
+            write(slot, address, layoutHash, generation, keys);
+        }
+    }
+
+    /**
+     * @brief Runs the given runnable on the thread dedicated to the cache I/O.
+     *
+     * The cache file is opened and accessed with disk I/O that shouldn't run on the
+     * caller or on a Bluetooth callback thread. Runnables are run in order.
+     */
+    static void post(final Runnable runnable)
+    {
+        synchronized (_instanceSync)
+        {
+            if (_ioHandler == null)
+            {
+                HandlerThread thread = new HandlerThread("SystemicBle-Cache", Process.THREAD_PRIORITY_BACKGROUND);
+                thread.start();
+                _ioHandler = new Handler(thread.getLooper());
+            }
+            _ioHandler.post(runnable);
+        }
+    }
+
+    private List<Key> mergeKeys(final int slot, final List<Key> keys)
+    {
+        final int offset = getSlotOffset(slot);
+        final int count = Math.min(MAX_KEYS, _buffer.getShort(offset + 22) & 0xFFFF);
+        ArrayList<Key> merged = new ArrayList<>(keys);
+        for (int i = 0; (i < count) && (merged.size() < MAX_KEYS); ++i)
+        {
+            Key key = readKey(offset + SLOT_HEADER_SIZE + i * KEY_SIZE);
+            if (!merged.contains(key))
+            {
+                merged.add(key);
+            }
+        }
+        return merged;
+    }
+
+    private void write(final int slot, final long address, final int layoutHash, final int generation, final List<Key> keys)
+    {
+        final int offset = getSlotOffset(slot);
+        final int count = Math.min(MAX_KEYS, keys.size());
+        _buffer.putLong(offset, address);
+        _buffer.putLong(offset + 8, ++_useCounter);
+        _buffer.putInt(offset + 16, layoutHash);
+        _buffer.putShort(offset + 20, (short)generation);
+        _buffer.putShort(offset + 22, (short)count);
+        for (int i = 0; i < count; ++i)
+        {
+            Key key = keys.get(i);
+            int keyOffset = offset + SLOT_HEADER_SIZE + i * KEY_SIZE;
+            writeUuid(keyOffset, key.serviceUuid);
+            writeUuid(keyOffset + 16, key.characteristicUuid);
+            _buffer.put(keyOffset + 32, (byte)key.instanceIndex);
+        }
+    }
+
+    private int findSlot(final long address)
+    {
+        for (int slot = 0; slot < SLOTS_COUNT; ++slot)
+        {
+            if (_buffer.getLong(getSlotOffset(slot)) == address)
+            {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int findLeastRecentlyUsedSlot()
+    {
+        int lruSlot = 0;
+        long lruCounter = Long.MAX_VALUE;
+        for (int slot = 0; slot < SLOTS_COUNT; ++slot)
+        {
+            int offset = getSlotOffset(slot);
+            if (_buffer.getLong(offset) == 0)
+            {
+                // Empty slot
+                return slot;
+            }
+            long counter = _buffer.getLong(offset + 8);
+            if (counter < lruCounter)
+            {
+                lruCounter = counter;
+                lruSlot = slot;
+            }
+        }
+        return lruSlot;
+    }
+
+    private static int getSlotOffset(final int slot)
+    {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private Key readKey(final int offset)
+    {
+        return new Key(readUuid(offset), readUuid(offset + 16), _buffer.get(offset + 32) & 0xFF);
+    }
+
+    private UUID readUuid(final int offset)
+    {
+        return new UUID(Long.reverseBytes(_buffer.getLong(offset)), Long.reverseBytes(_buffer.getLong(offset + 8)));
+    }
+
+    private void writeUuid(final int offset, final UUID uuid)
+    {
+        _buffer.putLong(offset, Long.reverseBytes(uuid.getMostSignificantBits()));
+        _buffer.putLong(offset + 8, Long.reverseBytes(uuid.getLeastSignificantBits()));
+    }
+}
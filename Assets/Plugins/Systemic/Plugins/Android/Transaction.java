@@ -0,0 +1,159 @@
+package com.systemic.bluetoothle;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * @brief A list of characteristic reads and writes run as a single request,
+ *        see Peripheral.executeTransaction().
+ *
+ * The operations are given as a packed descriptor buffer, made of the number of
+ * operations (u16) followed by the operations:
+ * | Offset | Type | Description                                              |
+ * |--------|------|----------------------------------------------------------|
+ * | 0      | u8   | Operation type, see the OP_xxx constants                 |
+ * | 1      | u8   | Reserved                                                 |
+ * | 2      | i32  | Characteristic handle, see Peripheral.resolveCharacteristic() |
+ * | 6      | u16  | Length of the data to write, zero for reads              |
+ * | 8      |      | The data to write                                        |
+ *
+ * The results are returned in a packed buffer, with for each operation in order
+ * the length of the read value (u16, zero for writes) followed by the value.
+ *
+ * All multi-bytes integers are stored in little-endian order.
+ */
+public final class Transaction
+{
+    //! Operation type: characteristic read.
+    public static final int OP_READ = 0;
+    //! Operation type: characteristic write, waiting for the peripheral to respond.
+    public static final int OP_WRITE = 1;
+    //! Operation type: characteristic write without response.
+    public static final int OP_WRITE_WITHOUT_RESPONSE = 2;
+
+    private static final int OPERATION_HEADER_SIZE = 8;
+
+    private final int[] _types;
+    private final int[] _handles;
+    private final byte[][] _data;
+    private final int _writtenBytes;
+
+    private Transaction(final int[] types, final int[] handles, final byte[][] data, final int writtenBytes)
+    {
+        _types = types;
+        _handles = handles;
+        _data = data;
+        _writtenBytes = writtenBytes;
+    }
+
+    /**
+     * @brief Parses the given descriptor buffer.
+     *
+     * @param descriptor The packed operations.
+     * @return The transaction.
+     */
+    static Transaction parse(final byte[] descriptor)
+    {
+        if ((descriptor == null) || (descriptor.length < 2))
+        {
+            throw new IllegalArgumentException("descriptor is null or too short");
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(descriptor).order(ByteOrder.LITTLE_ENDIAN);
+        final int count = buffer.getShort() & 0xFFFF;
+        if (count == 0)
+        {
+            throw new IllegalArgumentException("descriptor has no operation");
+        }
+
+        int[] types = new int[count];
+        int[] handles = new int[count];
+        byte[][] data = new byte[count][];
+        int writtenBytes = 0;
+        for (int i = 0; i < count; ++i)
+        {
+            if (buffer.remaining() < OPERATION_HEADER_SIZE)
+            {
+                throw new IllegalArgumentException("descriptor is truncated at operation " + i);
+            }
+            types[i] = buffer.get() & 0xFF;
+            buffer.get(); // Reserved
+            handles[i] = buffer.getInt();
+            int length = buffer.getShort() & 0xFFFF;
+            if ((types[i] < OP_READ) || (types[i] > OP_WRITE_WITHOUT_RESPONSE))
+            {
+                throw new IllegalArgumentException("Invalid type for operation " + i + ": " + types[i]);
+            }
+            if ((types[i] == OP_READ) && (length != 0))
+            {
+                throw new IllegalArgumentException("Read operation " + i + " has data");
+            }
+            if (buffer.remaining() < length)
+            {
+                throw new IllegalArgumentException("descriptor is truncated at operation " + i);
+            }
+            data[i] = new byte[length];
+            buffer.get(data[i]);
+            writtenBytes += length;
+        }
+        return new Transaction(types, handles, data, writtenBytes);
+    }
+
+    /**
+     * @brief Packs the results of a transaction.
+     *
+     * @param values The read values, null for writes.
+     * @return The packed results.
+     */
+    static byte[] packResults(final byte[][] values)
+    {
+        int size = 0;
+        for (byte[] value : values)
+        {
+            size += 2 + (value == null ? 0 : value.length);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        for (byte[] value : values)
+        {
+            if (value == null)
+            {
+                buffer.putShort((short)0);
+            }
+            else
+            {
+                buffer.putShort((short)value.length);
+                buffer.put(value);
+            }
+        }
+        return buffer.array();
+    }
+
+    int getOperationsCount()
+    {
+        return _types.length;
+    }
+
+    int getType(final int index)
+    {
+        return _types[index];
+    }
+
+    int getHandle(final int index)
+    {
+        return _handles[index];
+    }
+
+    byte[] getData(final int index)
+    {
+        return _data[index];
+    }
+
+    /**
+     * @brief Gets the total number of bytes written by the transaction.
+     */
+    int getWrittenBytes()
+    {
+        return _writtenBytes;
+    }
+}
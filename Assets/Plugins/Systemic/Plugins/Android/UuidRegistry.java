@@ -0,0 +1,112 @@
+package com.systemic.bluetoothle;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.UUID;
+
+import android.util.Log;
+
+/**
+ * @brief Static class that assigns small integer identifiers to UUIDs.
+ *
+ * User code registers the services and characteristics UUIDs it is using once,
+ * and then passes their identifiers to the methods of Scanner and Peripheral
+ * that accept them. This saves from marshaling and parsing UUID strings on each call.
+ *
+ * Identifiers are valid for the lifetime of the application, registering
+ * the same UUID again returns the same identifier.
+ */
+public final class UuidRegistry
+{
+    private static final String TAG = "SystemicGames";
+
+    private static final Object _sync = new Object();
+    private static final HashMap<UUID, Integer> _ids = new HashMap<>();
+    // Copied on write so look-ups don't require a lock
+    private static volatile UUID[] _uuids = new UUID[0];
+
+    private UuidRegistry() {}
+
+    /**
+     * @brief Registers the given UUID.
+     *
+     * @param uuid The UUID string.
+     * @return The UUID identifier, a positive or zero integer.
+     */
+    public static int register(final String uuid)
+    {
+        if (uuid == null)
+        {
+            throw new IllegalArgumentException("uuid is null");
+        }
+        return register(UUID.fromString(uuid));
+    }
+
+    /**
+     * @brief Registers the UUID with the given 128 bits value.
+     *
+     * @param mostSignificantBits The most significant 64 bits of the UUID.
+     * @param leastSignificantBits The least significant 64 bits of the UUID.
+     * @return The UUID identifier, a positive or zero integer.
+     */
+    public static int register(final long mostSignificantBits, final long leastSignificantBits)
+    {
+        return register(new UUID(mostSignificantBits, leastSignificantBits));
+    }
+
+    /**
+     * @brief Registers the given UUID.
+     *
+     * @return The UUID identifier.
+     */
+    static int register(final UUID uuid)
+    {
+        synchronized (_sync)
+        {
+            Integer id = _ids.get(uuid);
+            if (id == null)
+            {
+                Log.v(TAG, "Registering UUID " + uuid);
+
+                UUID[] uuids = Arrays.copyOf(_uuids, _uuids.length + 1);
+                id = _uuids.length;
+                uuids[id] = uuid;
+                _ids.put(uuid, id);
+                _uuids = uuids;
+            }
+            return id;
+        }
+    }
+
+    /**
+     * @brief Gets the UUID with the given identifier.
+     */
+    static UUID get(final int id)
+    {
+        final UUID[] uuids = _uuids;
+        if ((id < 0) || (id >= uuids.length))
+        {
+            throw new IllegalArgumentException("Unknown UUID identifier: " + id);
+        }
+        return uuids[id];
+    }
+
+    /**
+     * @brief Gets the UUIDs with the given identifiers.
+     *
+     * @return An array of UUIDs, or null if the given array is null or empty.
+     */
+    static UUID[] getList(final int[] ids)
+    {
+        if ((ids == null) || (ids.length == 0))
+        {
+            return null;
+        }
+        UUID[] uuids = new UUID[ids.length];
+        for (int i = 0; i < ids.length; ++i)
+        {
+            uuids[i] = get(ids[i]);
+        }
+        return uuids;
+    }
+}
@@ -0,0 +1,62 @@
+package com.systemic.bluetoothle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * @brief Static helper methods for UUIDs passed as strings by user code.
+ *
+ * Those methods only depend on the Java runtime so they may be exercised
+ * and measured off-device.
+ */
+final class UuidUtils
+{
+    private UuidUtils() {}
+
+    /**
+     * @brief Converts a comma separated list of UUIDs to an array of UUIDs.
+     *
+     * Trailing commas are ignored, as they were when the list was parsed with String.split().
+     *
+     * @param uuids Comma separated list of UUIDs, may be null or empty.
+     * @param argName The name of the argument, used in the exception message.
+     * @return An array of UUIDs, or null if the list is null or empty.
+     */
+    static UUID[] parseList(final String uuids, final String argName)
+    {
+        if (uuids == null)
+        {
+            return null;
+        }
+
+        // Skip empty trailing tokens
+        int length = uuids.length();
+        while ((length > 0) && (uuids.charAt(length - 1) == ','))
+        {
+            --length;
+        }
+        if (length == 0)
+        {
+            return null;
+        }
+
+        List<UUID> list = new ArrayList<>();
+        int start = 0;
+        while (start <= length)
+        {
+            int end = uuids.indexOf(',', start);
+            if ((end < 0) || (end > length)) end = length;
+            try
+            {
+                list.add(UUID.fromString(uuids.substring(start, end)));
+            }
+            catch (IllegalArgumentException e)
+            {
+                throw new IllegalArgumentException(argName + " must be either null, an empty string or a comma separated list of UUIDs");
+            }
+            start = end + 1;
+        }
+        return list.toArray(new UUID[list.size()]);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,69 @@
+package com.systemic.bluetoothle;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * @brief Measures the Bluetooth address conversions of BluetoothAddress against the
+ *        String.split()/Integer.parseInt() and String.format() code they replaced
+ *        in Scanner and in Peripheral.getDeviceFromAddress().
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BluetoothAddressBenchmark
+{
+    private String _string = "C0:FF:EE:01:23:45";
+    private long _value = 0xC0FFEE012345L;
+
+    @Benchmark
+    public long toLong()
+    {
+        return BluetoothAddress.toLong(_string);
+    }
+
+    @Benchmark
+    public long toLongLegacy()
+    {
+        // The conversion done by Scanner for each advertisement packet
+        long address = 0, shift = 0;
+        String[] octets = _string.split(":");
+        for (int i = octets.length - 1; i >= 0; --i)
+        {
+            address += (long)Integer.parseInt(octets[i], 16) << shift;
+            shift += 8;
+        }
+        return address;
+    }
+
+    @Benchmark
+    public String toStringFast()
+    {
+        return BluetoothAddress.toString(_value);
+    }
+
+    @Benchmark
+    public String toStringLegacy()
+    {
+        // The conversion done by Peripheral.getDeviceFromAddress()
+        StringBuilder sb = new StringBuilder();
+        for (int shift = 40; shift >= 0; shift -= 8)
+        {
+            if (sb.length() > 0) sb.append(":");
+            sb.append(String.format("%02X", (_value >> shift) & 0xFF));
+        }
+        return sb.toString();
+    }
+}
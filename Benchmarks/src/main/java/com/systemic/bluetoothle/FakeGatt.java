@@ -0,0 +1,90 @@
+package com.systemic.bluetoothle;
+
+import java.util.UUID;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattService;
+import android.bluetooth.FakeRemoteDevice;
+import android.os.FakeLooper;
+
+import no.nordicsemi.android.ble.observer.ConnectionObserver;
+
+/**
+ * @brief Simulated peripherals for the benchmarks and tests, run by the stubs
+ *        of Nordic's BleManager and of Android's Handler (see FakeLooper).
+ */
+public final class FakeGatt
+{
+    //! The Pixels service and its characteristics.
+    public static final UUID PIXEL_SERVICE = UUID.fromString("6e400001-b5a3-f393-e0a9-e50e24dcca9e");
+    public static final UUID PIXEL_NOTIFY = UUID.fromString("6e400001-b5a3-f393-e0a9-e50e24dcca9e");
+    public static final UUID PIXEL_WRITE = UUID.fromString("6e400002-b5a3-f393-e0a9-e50e24dcca9e");
+
+    //! The standard battery service and its level characteristic.
+    public static final UUID BATTERY_SERVICE = UUID.fromString("0000180f-0000-1000-8000-00805f9b34fb");
+    public static final UUID BATTERY_LEVEL = UUID.fromString("00002a19-0000-1000-8000-00805f9b34fb");
+
+    /**
+     * @brief A connection observer doing nothing.
+     */
+    public static final ConnectionObserver NO_OBSERVER = new ConnectionObserver()
+    {
+        @Override
+        public void onDeviceConnecting(final BluetoothDevice device) {}
+
+        @Override
+        public void onDeviceConnected(final BluetoothDevice device) {}
+
+        @Override
+        public void onDeviceFailedToConnect(final BluetoothDevice device, final int reason) {}
+
+        @Override
+        public void onDeviceReady(final BluetoothDevice device) {}
+
+        @Override
+        public void onDeviceDisconnecting(final BluetoothDevice device) {}
+
+        @Override
+        public void onDeviceDisconnected(final BluetoothDevice device, final int reason) {}
+    };
+
+    private FakeGatt() {}
+
+    /**
+     * @brief Creates a device with the given address and with the GATT table of a Pixels die
+     *        plus a battery service.
+     */
+    public static BluetoothDevice createDie(final long address)
+    {
+        BluetoothDevice device = new BluetoothDevice(BluetoothAddress.toString(address), "Pixel" + (address & 0xFF), BluetoothDevice.DEVICE_TYPE_LE);
+        FakeRemoteDevice remote = device.getFakeRemote();
+
+        BluetoothGattService pixel = remote.addService(PIXEL_SERVICE);
+        remote.addCharacteristic(pixel, PIXEL_NOTIFY, BluetoothGattCharacteristic.PROPERTY_NOTIFY);
+        remote.addCharacteristic(pixel, PIXEL_WRITE,
+            BluetoothGattCharacteristic.PROPERTY_WRITE | BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE);
+
+        BluetoothGattService battery = remote.addService(BATTERY_SERVICE);
+        remote.addCharacteristic(battery, BATTERY_LEVEL,
+            BluetoothGattCharacteristic.PROPERTY_READ | BluetoothGattCharacteristic.PROPERTY_NOTIFY).setValue(new byte[] { 100 });
+
+        return device;
+    }
+
+    /**
+     * @brief Creates a peripheral for the given device and connects it,
+     *        running the message queue until the peripheral is ready.
+     */
+    public static Peripheral connect(final BluetoothDevice device)
+    {
+        Peripheral peripheral = new Peripheral(device, NO_OBSERVER);
+        peripheral.connect((String)null, false, null);
+        FakeLooper.runUntilIdle();
+        if (!peripheral.isReady())
+        {
+            throw new IllegalStateException("Peripheral " + device.getAddress() + " failed to connect");
+        }
+        return peripheral;
+    }
+}
@@ -0,0 +1,68 @@
+package com.systemic.bluetoothle;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * @brief Measures the lookups of services and characteristics done by user code
+ *        on a connected peripheral.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PeripheralBenchmark
+{
+    private static final String SERVICE = FakeGatt.PIXEL_SERVICE.toString();
+    private static final String CHARACTERISTIC = FakeGatt.PIXEL_WRITE.toString();
+
+    private Peripheral _peripheral;
+    private int _serviceId;
+    private int _characteristicId;
+    private int _handle;
+
+    @Setup
+    public void setup()
+    {
+        _peripheral = FakeGatt.connect(FakeGatt.createDie(0xC0FFEE012345L));
+        _serviceId = UuidRegistry.register(SERVICE);
+        _characteristicId = UuidRegistry.register(CHARACTERISTIC);
+        _handle = _peripheral.resolveCharacteristic(SERVICE, CHARACTERISTIC, 0);
+    }
+
+    @Benchmark
+    public int getCharacteristicByUuids()
+    {
+        return _peripheral.getCharacteristicProperties(SERVICE, CHARACTERISTIC, 0);
+    }
+
+    @Benchmark
+    public int getCharacteristicByIds()
+    {
+        return _peripheral.getCharacteristicProperties(_serviceId, _characteristicId, 0);
+    }
+
+    @Benchmark
+    public int getCharacteristicByHandle()
+    {
+        return _peripheral.getCharacteristicProperties(_handle);
+    }
+
+    @Benchmark
+    public String getDiscoveredServices()
+    {
+        return _peripheral.getDiscoveredServices();
+    }
+}
@@ -0,0 +1,110 @@
+package com.systemic.bluetoothle;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import android.bluetooth.BluetoothDevice;
+import android.os.ParcelUuid;
+import android.util.SparseArray;
+
+import no.nordicsemi.android.support.v18.scanner.BluetoothLeScannerCompat;
+import no.nordicsemi.android.support.v18.scanner.ScanRecord;
+import no.nordicsemi.android.support.v18.scanner.ScanResult;
+
+/**
+ * @brief Measures the processing of one advertisement packet by Scanner, from the
+ *        Nordic scan callback to the user callback, with the advertisement data
+ *        formatted as JSON (ScannerCallback) or as a binary record (BinaryScannerCallback).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ScanResultBenchmark
+{
+    @Param({ "json", "binary" })
+    public String format;
+
+    private ScanResult _scanResult;
+
+    @Setup(Level.Trial)
+    public void setup(final Blackhole blackhole)
+    {
+        // A Pixels die advertisement
+        BluetoothDevice device = new BluetoothDevice("C0:FF:EE:01:23:45", "Pixel42", BluetoothDevice.DEVICE_TYPE_LE);
+        SparseArray<byte[]> manufacturerData = new SparseArray<>();
+        manufacturerData.put(0xFFFF, new byte[] { 20, 1, 0, (byte)0x80 });
+        HashMap<ParcelUuid, byte[]> serviceData = new HashMap<>();
+        serviceData.put(ParcelUuid.fromString("0000180a-0000-1000-8000-00805f9b34fb"), new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+        ScanRecord record = new ScanRecord(
+            Collections.singletonList(new ParcelUuid(FakeGatt.PIXEL_SERVICE)), null,
+            manufacturerData, serviceData, -4, "Pixel42", null);
+        _scanResult = new ScanResult(device, 0x11, 1, 0, 0xFF, 127, -62, 0, record, 123456789L);
+
+        if (format.equals("json"))
+        {
+            Scanner.startScan((String)null, new Scanner.ScannerCallback()
+            {
+                @Override
+                public void onScanResult(final BluetoothDevice device, final String advertisementDataJson)
+                {
+                    blackhole.consume(advertisementDataJson);
+                }
+
+                @Override
+                public void onScanFailed(final String error)
+                {
+                    throw new IllegalStateException(error);
+                }
+            });
+        }
+        else
+        {
+            Scanner.startScan((String)null, new Scanner.BinaryScannerCallback()
+            {
+                @Override
+                public void onScanResult(final BluetoothDevice device, final ByteBuffer advertisementData)
+                {
+                    blackhole.consume(advertisementData.remaining());
+                }
+
+                @Override
+                public void onScanFailed(final String error)
+                {
+                    throw new IllegalStateException(error);
+                }
+            });
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        Scanner.stopScan();
+    }
+
+    @Benchmark
+    public boolean notifyScanResult()
+    {
+        return BluetoothLeScannerCompat.getScanner().deliverScanResult(_scanResult);
+    }
+}
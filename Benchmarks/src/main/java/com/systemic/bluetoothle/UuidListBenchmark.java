@@ -0,0 +1,73 @@
+package com.systemic.bluetoothle;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * @brief Measures the parsing of the comma separated list of services UUIDs given
+ *        to Peripheral.connect() and Scanner.startScan(), against the String.split()
+ *        based parsing it replaced.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UuidListBenchmark
+{
+    @Param({ "1", "4" })
+    public int count;
+
+    private String _uuids;
+
+    @Setup
+    public void setup()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; ++i)
+        {
+            if (i > 0) sb.append(',');
+            sb.append(String.format("6e40%04x-b5a3-f393-e0a9-e50e24dcca9e", i + 1));
+        }
+        _uuids = sb.toString();
+    }
+
+    @Benchmark
+    public UUID[] parseList()
+    {
+        return UuidUtils.parseList(_uuids, "uuids");
+    }
+
+    @Benchmark
+    public UUID[] splitLegacy()
+    {
+        // The parsing done by Peripheral.connect() before UuidUtils
+        UUID[] uuids = null;
+        if (_uuids != null)
+        {
+            String[] strings = _uuids.split(",");
+            if (strings.length > 0)
+            {
+                uuids = new UUID[strings.length];
+                for (int i = 0; i < strings.length; ++i)
+                {
+                    uuids[i] = UUID.fromString(strings[i]);
+                }
+            }
+        }
+        return uuids;
+    }
+}
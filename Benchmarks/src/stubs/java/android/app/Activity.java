@@ -0,0 +1,10 @@
+package android.app;
+
+import android.content.Context;
+
+/**
+ * @brief Stub of android.app.Activity.
+ */
+public class Activity extends Context
+{
+}
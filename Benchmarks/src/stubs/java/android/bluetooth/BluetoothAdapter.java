@@ -0,0 +1,37 @@
+package android.bluetooth;
+
+import java.util.HashMap;
+
+/**
+ * @brief Stub of android.bluetooth.BluetoothAdapter, always on.
+ */
+public final class BluetoothAdapter
+{
+    public static final String ACTION_STATE_CHANGED = "android.bluetooth.adapter.action.STATE_CHANGED";
+    public static final String EXTRA_STATE = "android.bluetooth.adapter.extra.STATE";
+    public static final int ERROR = Integer.MIN_VALUE;
+    public static final int STATE_OFF = 10;
+    public static final int STATE_TURNING_ON = 11;
+    public static final int STATE_ON = 12;
+    public static final int STATE_TURNING_OFF = 13;
+
+    private final HashMap<String, BluetoothDevice> _devices = new HashMap<>();
+
+    BluetoothAdapter() {}
+
+    public int getState()
+    {
+        return STATE_ON;
+    }
+
+    public synchronized BluetoothDevice getRemoteDevice(final String address)
+    {
+        BluetoothDevice device = _devices.get(address);
+        if (device == null)
+        {
+            device = new BluetoothDevice(address);
+            _devices.put(address, device);
+        }
+        return device;
+    }
+}
@@ -0,0 +1,63 @@
+package android.bluetooth;
+
+/**
+ * @brief Stub of android.bluetooth.BluetoothDevice, the device is simulated
+ *        by a FakeRemoteDevice.
+ */
+public class BluetoothDevice
+{
+    public static final int DEVICE_TYPE_UNKNOWN = 0;
+    public static final int DEVICE_TYPE_CLASSIC = 1;
+    public static final int DEVICE_TYPE_LE = 2;
+    public static final int DEVICE_TYPE_DUAL = 3;
+
+    public static final int PHY_LE_1M_MASK = 1;
+    public static final int PHY_LE_2M_MASK = 2;
+    public static final int PHY_LE_CODED_MASK = 4;
+
+    private final String _address;
+    private final String _name;
+    private final int _type;
+    private final FakeRemoteDevice _remote = new FakeRemoteDevice();
+
+    public BluetoothDevice(final String address)
+    {
+        this(address, null, DEVICE_TYPE_LE);
+    }
+
+    public BluetoothDevice(final String address, final String name, final int type)
+    {
+        _address = address;
+        _name = name;
+        _type = type;
+    }
+
+    public String getAddress()
+    {
+        return _address;
+    }
+
+    public String getName()
+    {
+        return _name;
+    }
+
+    public int getType()
+    {
+        return _type;
+    }
+
+    /**
+     * @brief Stub only: gets the simulated device.
+     */
+    public FakeRemoteDevice getFakeRemote()
+    {
+        return _remote;
+    }
+
+    @Override
+    public String toString()
+    {
+        return _address;
+    }
+}
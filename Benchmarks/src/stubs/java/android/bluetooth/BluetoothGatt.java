@@ -0,0 +1,49 @@
+package android.bluetooth;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * @brief Stub of android.bluetooth.BluetoothGatt, with the services of a FakeRemoteDevice.
+ */
+public class BluetoothGatt implements BluetoothProfile
+{
+    public static final int CONNECTION_PRIORITY_BALANCED = 0;
+    public static final int CONNECTION_PRIORITY_HIGH = 1;
+    public static final int CONNECTION_PRIORITY_LOW_POWER = 2;
+
+    public static final int GATT_SUCCESS = 0;
+    public static final int GATT_FAILURE = 0x101;
+
+    private final BluetoothDevice _device;
+
+    /**
+     * @brief Stub only: creates a GATT client for the given device.
+     */
+    public BluetoothGatt(final BluetoothDevice device)
+    {
+        _device = device;
+    }
+
+    public BluetoothDevice getDevice()
+    {
+        return _device;
+    }
+
+    public List<BluetoothGattService> getServices()
+    {
+        return _device.getFakeRemote().getServices();
+    }
+
+    public BluetoothGattService getService(final UUID uuid)
+    {
+        for (BluetoothGattService service : getServices())
+        {
+            if (service.getUuid().equals(uuid))
+            {
+                return service;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,74 @@
+package android.bluetooth;
+
+import java.util.UUID;
+
+/**
+ * @brief Stub of android.bluetooth.BluetoothGattCharacteristic.
+ */
+public class BluetoothGattCharacteristic
+{
+    public static final int PROPERTY_BROADCAST = 0x01;
+    public static final int PROPERTY_READ = 0x02;
+    public static final int PROPERTY_WRITE_NO_RESPONSE = 0x04;
+    public static final int PROPERTY_WRITE = 0x08;
+    public static final int PROPERTY_NOTIFY = 0x10;
+    public static final int PROPERTY_INDICATE = 0x20;
+    public static final int PROPERTY_SIGNED_WRITE = 0x40;
+    public static final int PROPERTY_EXTENDED_PROPS = 0x80;
+
+    public static final int PERMISSION_READ = 0x01;
+    public static final int PERMISSION_WRITE = 0x10;
+
+    public static final int WRITE_TYPE_NO_RESPONSE = 0x01;
+    public static final int WRITE_TYPE_DEFAULT = 0x02;
+    public static final int WRITE_TYPE_SIGNED = 0x04;
+
+    private final UUID _uuid;
+    private final int _properties;
+    private final int _permissions;
+    private BluetoothGattService _service;
+    private byte[] _value;
+
+    public BluetoothGattCharacteristic(final UUID uuid, final int properties, final int permissions)
+    {
+        _uuid = uuid;
+        _properties = properties;
+        _permissions = permissions;
+    }
+
+    public UUID getUuid()
+    {
+        return _uuid;
+    }
+
+    public int getProperties()
+    {
+        return _properties;
+    }
+
+    public int getPermissions()
+    {
+        return _permissions;
+    }
+
+    public BluetoothGattService getService()
+    {
+        return _service;
+    }
+
+    void setService(final BluetoothGattService service)
+    {
+        _service = service;
+    }
+
+    public byte[] getValue()
+    {
+        return _value;
+    }
+
+    public boolean setValue(final byte[] value)
+    {
+        _value = value;
+        return true;
+    }
+}
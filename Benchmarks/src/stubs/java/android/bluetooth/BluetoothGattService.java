@@ -0,0 +1,58 @@
+package android.bluetooth;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * @brief Stub of android.bluetooth.BluetoothGattService.
+ */
+public class BluetoothGattService
+{
+    public static final int SERVICE_TYPE_PRIMARY = 0;
+    public static final int SERVICE_TYPE_SECONDARY = 1;
+
+    private final UUID _uuid;
+    private final int _serviceType;
+    private final ArrayList<BluetoothGattCharacteristic> _characteristics = new ArrayList<>();
+
+    public BluetoothGattService(final UUID uuid, final int serviceType)
+    {
+        _uuid = uuid;
+        _serviceType = serviceType;
+    }
+
+    public UUID getUuid()
+    {
+        return _uuid;
+    }
+
+    public int getType()
+    {
+        return _serviceType;
+    }
+
+    public List<BluetoothGattCharacteristic> getCharacteristics()
+    {
+        return _characteristics;
+    }
+
+    public BluetoothGattCharacteristic getCharacteristic(final UUID uuid)
+    {
+        for (BluetoothGattCharacteristic characteristic : _characteristics)
+        {
+            if (characteristic.getUuid().equals(uuid))
+            {
+                return characteristic;
+            }
+        }
+        return null;
+    }
+
+    public boolean addCharacteristic(final BluetoothGattCharacteristic characteristic)
+    {
+        _characteristics.add(characteristic);
+        characteristic.setService(this);
+        return true;
+    }
+}
@@ -0,0 +1,14 @@
+package android.bluetooth;
+
+/**
+ * @brief Stub of android.bluetooth.BluetoothManager.
+ */
+public final class BluetoothManager
+{
+    private final BluetoothAdapter _adapter = new BluetoothAdapter();
+
+    public BluetoothAdapter getAdapter()
+    {
+        return _adapter;
+    }
+}
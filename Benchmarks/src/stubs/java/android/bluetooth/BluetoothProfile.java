@@ -0,0 +1,12 @@
+package android.bluetooth;
+
+/**
+ * @brief Stub of android.bluetooth.BluetoothProfile.
+ */
+public interface BluetoothProfile
+{
+    int STATE_DISCONNECTED = 0;
+    int STATE_CONNECTING = 1;
+    int STATE_CONNECTED = 2;
+    int STATE_DISCONNECTING = 3;
+}
@@ -0,0 +1,141 @@
+package android.bluetooth;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * @brief Stub only: the simulated side of a BluetoothDevice, used by the stub
+ *        of Nordic's BleManager to run the GATT operations.
+ *
+ * The device has a GATT table, answers after a fixed latency, and may be
+ * taken out of range to simulate a connection loss.
+ */
+public final class FakeRemoteDevice
+{
+    /**
+     * @brief Receives the changes of the device, implemented by the BleManager stub.
+     */
+    public interface Listener
+    {
+        void onReachableChanged(final boolean reachable);
+
+        void onValueNotified(final BluetoothGattCharacteristic characteristic, final byte[] value);
+    }
+
+    private final ArrayList<BluetoothGattService> _services = new ArrayList<>();
+    private final ArrayList<Listener> _listeners = new ArrayList<>();
+    private boolean _reachable = true;
+    private long _latencyMillis;
+    private int _rssi = -60;
+    private int _operationsCount;
+
+    FakeRemoteDevice() {}
+
+    /**
+     * @brief Adds a primary service to the GATT table.
+     */
+    public BluetoothGattService addService(final UUID uuid)
+    {
+        BluetoothGattService service = new BluetoothGattService(uuid, BluetoothGattService.SERVICE_TYPE_PRIMARY);
+        _services.add(service);
+        return service;
+    }
+
+    /**
+     * @brief Adds a characteristic to the given service of the GATT table.
+     */
+    public BluetoothGattCharacteristic addCharacteristic(final BluetoothGattService service, final UUID uuid, final int properties)
+    {
+        BluetoothGattCharacteristic characteristic = new BluetoothGattCharacteristic(uuid, properties, 0);
+        service.addCharacteristic(characteristic);
+        return characteristic;
+    }
+
+    public List<BluetoothGattService> getServices()
+    {
+        return _services;
+    }
+
+    public boolean isReachable()
+    {
+        return _reachable;
+    }
+
+    /**
+     * @brief Brings the device in or out of range, connected managers are disconnected
+     *        with a link loss when it goes out of range.
+     */
+    public void setReachable(final boolean reachable)
+    {
+        if (_reachable != reachable)
+        {
+            _reachable = reachable;
+            for (Listener listener : new ArrayList<>(_listeners))
+            {
+                listener.onReachableChanged(reachable);
+            }
+        }
+    }
+
+    public long getLatencyMillis()
+    {
+        return _latencyMillis;
+    }
+
+    /**
+     * @brief Sets the time taken by each GATT operation, zero by default.
+     */
+    public void setLatencyMillis(final long latencyMillis)
+    {
+        _latencyMillis = latencyMillis;
+    }
+
+    public int getRssi()
+    {
+        return _rssi;
+    }
+
+    public void setRssi(final int rssi)
+    {
+        _rssi = rssi;
+    }
+
+    /**
+     * @brief Gets the number of GATT operations run by the device.
+     */
+    public int getOperationsCount()
+    {
+        return _operationsCount;
+    }
+
+    /**
+     * @brief Notifies a new value of the given characteristic to the connected managers
+     *        which set a notification callback for it.
+     */
+    public void notifyValue(final BluetoothGattCharacteristic characteristic, final byte[] value)
+    {
+        for (Listener listener : new ArrayList<>(_listeners))
+        {
+            listener.onValueNotified(characteristic, value);
+        }
+    }
+
+    public void addListener(final Listener listener)
+    {
+        if (!_listeners.contains(listener))
+        {
+            _listeners.add(listener);
+        }
+    }
+
+    public void removeListener(final Listener listener)
+    {
+        _listeners.remove(listener);
+    }
+
+    public void onOperation()
+    {
+        ++_operationsCount;
+    }
+}
@@ -0,0 +1,9 @@
+package android.content;
+
+/**
+ * @brief Stub of android.content.BroadcastReceiver.
+ */
+public abstract class BroadcastReceiver
+{
+    public abstract void onReceive(Context context, Intent intent);
+}
@@ -0,0 +1,58 @@
+package android.content;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import android.bluetooth.BluetoothManager;
+
+/**
+ * @brief Stub of android.content.Context, the cache directory is a temporary
+ *        directory created for each run.
+ */
+public class Context
+{
+    public static final String BLUETOOTH_SERVICE = "bluetooth";
+
+    private static final BluetoothManager _bluetoothManager = new BluetoothManager();
+    private static File _cacheDir;
+
+    public Context getApplicationContext()
+    {
+        return this;
+    }
+
+    public Object getSystemService(final String name)
+    {
+        return BLUETOOTH_SERVICE.equals(name) ? _bluetoothManager : null;
+    }
+
+    public File getCacheDir()
+    {
+        synchronized (Context.class)
+        {
+            if (_cacheDir == null)
+            {
+                try
+                {
+                    _cacheDir = Files.createTempDirectory("bluetoothle").toFile();
+                    _cacheDir.deleteOnExit();
+                }
+                catch (IOException e)
+                {
+                    throw new RuntimeException(e);
+                }
+            }
+            return _cacheDir;
+        }
+    }
+
+    public Intent registerReceiver(final BroadcastReceiver receiver, final IntentFilter filter)
+    {
+        return null;
+    }
+
+    public void unregisterReceiver(final BroadcastReceiver receiver)
+    {
+    }
+}
@@ -0,0 +1,34 @@
+package android.content;
+
+import java.util.HashMap;
+
+/**
+ * @brief Stub of android.content.Intent.
+ */
+public class Intent
+{
+    private final String _action;
+    private final HashMap<String, Integer> _intExtras = new HashMap<>();
+
+    public Intent(final String action)
+    {
+        _action = action;
+    }
+
+    public String getAction()
+    {
+        return _action;
+    }
+
+    public Intent putExtra(final String name, final int value)
+    {
+        _intExtras.put(name, value);
+        return this;
+    }
+
+    public int getIntExtra(final String name, final int defaultValue)
+    {
+        Integer value = _intExtras.get(name);
+        return value == null ? defaultValue : value;
+    }
+}
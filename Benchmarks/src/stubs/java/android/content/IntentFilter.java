@@ -0,0 +1,19 @@
+package android.content;
+
+/**
+ * @brief Stub of android.content.IntentFilter.
+ */
+public class IntentFilter
+{
+    private final String _action;
+
+    public IntentFilter(final String action)
+    {
+        _action = action;
+    }
+
+    public final String getAction(final int index)
+    {
+        return _action;
+    }
+}
@@ -0,0 +1,154 @@
+package android.os;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * @brief Stub only: the single message queue shared by all the loopers, with a virtual clock.
+ *
+ * Nothing runs on its own: messages posted to any Handler are run by calling
+ * runUntilIdle() or advanceBy() from the test or benchmark thread, in the order
+ * of their due time and then of their posting. SystemClock returns the virtual time.
+ */
+public final class FakeLooper
+{
+    private static final class Message implements Comparable<Message>
+    {
+        final Handler handler;
+        final Runnable runnable;
+        final long when;
+        final long sequence;
+
+        Message(final Handler handler, final Runnable runnable, final long when, final long sequence)
+        {
+            this.handler = handler;
+            this.runnable = runnable;
+            this.when = when;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(final Message other)
+        {
+            if (when != other.when)
+            {
+                return when < other.when ? -1 : 1;
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private static final PriorityQueue<Message> _messages = new PriorityQueue<>();
+    private static long _now = 1;
+    private static long _sequence;
+
+    private FakeLooper() {}
+
+    /**
+     * @brief Gets the virtual time in milliseconds.
+     */
+    public static synchronized long now()
+    {
+        return _now;
+    }
+
+    /**
+     * @brief Runs all the messages due at the current virtual time, including
+     *        the ones they post without delay.
+     *
+     * @return The number of messages run.
+     */
+    public static int runUntilIdle()
+    {
+        int count = 0;
+        Message message;
+        while ((message = pollDue(now())) != null)
+        {
+            message.runnable.run();
+            ++count;
+        }
+        return count;
+    }
+
+    /**
+     * @brief Moves the virtual time forward by the given amount, running the messages
+     *        as their due time is reached.
+     *
+     * @return The number of messages run.
+     */
+    public static int advanceBy(final long millis)
+    {
+        final long end = now() + millis;
+        int count = runUntilIdle();
+        Message message;
+        while ((message = pollDue(end)) != null)
+        {
+            synchronized (FakeLooper.class)
+            {
+                _now = Math.max(_now, message.when);
+            }
+            message.runnable.run();
+            count += 1 + runUntilIdle();
+        }
+        synchronized (FakeLooper.class)
+        {
+            _now = end;
+        }
+        return count + runUntilIdle();
+    }
+
+    /**
+     * @brief Gets the number of messages waiting to be run.
+     */
+    public static synchronized int getPendingCount()
+    {
+        return _messages.size();
+    }
+
+    /**
+     * @brief Drops all the messages, the virtual time is kept.
+     */
+    public static synchronized void reset()
+    {
+        _messages.clear();
+    }
+
+    static synchronized void post(final Handler handler, final Runnable runnable, final long delayMillis)
+    {
+        _messages.add(new Message(handler, runnable, _now + Math.max(0, delayMillis), _sequence++));
+    }
+
+    static synchronized void remove(final Handler handler, final Runnable runnable)
+    {
+        Iterator<Message> it = _messages.iterator();
+        while (it.hasNext())
+        {
+            Message message = it.next();
+            if ((message.handler == handler) && ((runnable == null) || (message.runnable == runnable)))
+            {
+                it.remove();
+            }
+        }
+    }
+
+    static synchronized void removeAll(final Looper looper)
+    {
+        ArrayList<Message> kept = new ArrayList<>(_messages.size());
+        for (Message message : _messages)
+        {
+            if (message.handler.getLooper() != looper)
+            {
+                kept.add(message);
+            }
+        }
+        _messages.clear();
+        _messages.addAll(kept);
+    }
+
+    private static synchronized Message pollDue(final long time)
+    {
+        Message message = _messages.peek();
+        return (message != null) && (message.when <= time) ? _messages.poll() : null;
+    }
+}
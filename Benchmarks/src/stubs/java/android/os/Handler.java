@@ -0,0 +1,56 @@
+package android.os;
+
+/**
+ * @brief Stub of android.os.Handler, messages are queued to FakeLooper.
+ */
+public class Handler
+{
+    private final Looper _looper;
+
+    public Handler()
+    {
+        this(Looper.getMainLooper());
+    }
+
+    public Handler(final Looper looper)
+    {
+        if (looper == null)
+        {
+            throw new NullPointerException("looper");
+        }
+        _looper = looper;
+    }
+
+    public final Looper getLooper()
+    {
+        return _looper;
+    }
+
+    public final boolean post(final Runnable r)
+    {
+        return postDelayed(r, 0);
+    }
+
+    public final boolean postDelayed(final Runnable r, final long delayMillis)
+    {
+        if (_looper.hasQuit())
+        {
+            return false;
+        }
+        FakeLooper.post(this, r, delayMillis);
+        return true;
+    }
+
+    public final void removeCallbacks(final Runnable r)
+    {
+        if (r != null)
+        {
+            FakeLooper.remove(this, r);
+        }
+    }
+
+    public final void removeCallbacksAndMessages(final Object token)
+    {
+        FakeLooper.remove(this, null);
+    }
+}
@@ -0,0 +1,42 @@
+package android.os;
+
+/**
+ * @brief Stub of android.os.HandlerThread, no thread is started as all the loopers
+ *        are run by FakeLooper.
+ */
+public class HandlerThread extends Thread
+{
+    private final Looper _looper = new Looper();
+
+    public HandlerThread(final String name)
+    {
+        super(name);
+    }
+
+    public HandlerThread(final String name, final int priority)
+    {
+        super(name);
+    }
+
+    @Override
+    public synchronized void start()
+    {
+    }
+
+    public Looper getLooper()
+    {
+        return _looper;
+    }
+
+    public boolean quit()
+    {
+        _looper.quit();
+        return true;
+    }
+
+    public boolean quitSafely()
+    {
+        _looper.quitSafely();
+        return true;
+    }
+}
@@ -0,0 +1,35 @@
+package android.os;
+
+/**
+ * @brief Stub of android.os.Looper, see FakeLooper.
+ */
+public final class Looper
+{
+    private static final Looper _mainLooper = new Looper();
+
+    private volatile boolean _quit;
+
+    Looper() {}
+
+    public static Looper getMainLooper()
+    {
+        return _mainLooper;
+    }
+
+    public void quit()
+    {
+        _quit = true;
+        FakeLooper.removeAll(this);
+    }
+
+    public void quitSafely()
+    {
+        // Pending messages are run, only new messages are dropped
+        _quit = true;
+    }
+
+    boolean hasQuit()
+    {
+        return _quit;
+    }
+}
@@ -0,0 +1,44 @@
+package android.os;
+
+import java.util.UUID;
+
+/**
+ * @brief Stub of android.os.ParcelUuid.
+ */
+public final class ParcelUuid
+{
+    private final UUID _uuid;
+
+    public ParcelUuid(final UUID uuid)
+    {
+        _uuid = uuid;
+    }
+
+    public static ParcelUuid fromString(final String uuid)
+    {
+        return new ParcelUuid(UUID.fromString(uuid));
+    }
+
+    public UUID getUuid()
+    {
+        return _uuid;
+    }
+
+    @Override
+    public boolean equals(final Object obj)
+    {
+        return (obj instanceof ParcelUuid) && _uuid.equals(((ParcelUuid)obj)._uuid);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return _uuid.hashCode();
+    }
+
+    @Override
+    public String toString()
+    {
+        return _uuid.toString();
+    }
+}
@@ -0,0 +1,16 @@
+package android.os;
+
+/**
+ * @brief Stub of android.os.Process.
+ */
+public class Process
+{
+    public static final int THREAD_PRIORITY_DEFAULT = 0;
+    public static final int THREAD_PRIORITY_BACKGROUND = 10;
+    public static final int THREAD_PRIORITY_MORE_FAVORABLE = -1;
+    public static final int THREAD_PRIORITY_LESS_FAVORABLE = 1;
+
+    public static void setThreadPriority(final int priority)
+    {
+    }
+}
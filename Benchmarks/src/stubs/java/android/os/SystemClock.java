@@ -0,0 +1,24 @@
+package android.os;
+
+/**
+ * @brief Stub of android.os.SystemClock, returns the virtual time of FakeLooper.
+ */
+public final class SystemClock
+{
+    private SystemClock() {}
+
+    public static long elapsedRealtime()
+    {
+        return FakeLooper.now();
+    }
+
+    public static long elapsedRealtimeNanos()
+    {
+        return FakeLooper.now() * 1000000L;
+    }
+
+    public static long uptimeMillis()
+    {
+        return FakeLooper.now();
+    }
+}
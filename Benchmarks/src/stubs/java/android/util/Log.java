@@ -0,0 +1,58 @@
+package android.util;
+
+/**
+ * @brief Stub of android.util.Log, warnings and errors are printed to the standard error
+ *        when the "bluetoothle.log" system property is set.
+ */
+public final class Log
+{
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+    public static final int ASSERT = 7;
+
+    private static final boolean _enabled = System.getProperty("bluetoothle.log") != null;
+
+    private Log() {}
+
+    public static int v(final String tag, final String msg)
+    {
+        return println(VERBOSE, tag, msg);
+    }
+
+    public static int d(final String tag, final String msg)
+    {
+        return println(DEBUG, tag, msg);
+    }
+
+    public static int i(final String tag, final String msg)
+    {
+        return println(INFO, tag, msg);
+    }
+
+    public static int w(final String tag, final String msg)
+    {
+        return println(WARN, tag, msg);
+    }
+
+    public static int e(final String tag, final String msg)
+    {
+        return println(ERROR, tag, msg);
+    }
+
+    public static int e(final String tag, final String msg, final Throwable tr)
+    {
+        return println(ERROR, tag, msg + ": " + tr);
+    }
+
+    public static int println(final int priority, final String tag, final String msg)
+    {
+        if (_enabled && (priority >= WARN))
+        {
+            System.err.println(tag + ": " + msg);
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,109 @@
+package android.util;
+
+import java.util.Arrays;
+
+/**
+ * @brief Stub of android.util.LongSparseArray, keys are kept sorted.
+ */
+public class LongSparseArray<E>
+{
+    private long[] _keys = new long[8];
+    private Object[] _values = new Object[8];
+    private int _size;
+
+    public LongSparseArray()
+    {
+    }
+
+    public LongSparseArray(final int initialCapacity)
+    {
+        _keys = new long[Math.max(1, initialCapacity)];
+        _values = new Object[_keys.length];
+    }
+
+    public int size()
+    {
+        return _size;
+    }
+
+    public long keyAt(final int index)
+    {
+        return _keys[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    public E valueAt(final int index)
+    {
+        return (E)_values[index];
+    }
+
+    public int indexOfKey(final long key)
+    {
+        return Arrays.binarySearch(_keys, 0, _size, key);
+    }
+
+    public E get(final long key)
+    {
+        return get(key, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(final long key, final E valueIfKeyNotFound)
+    {
+        int index = indexOfKey(key);
+        return index >= 0 ? (E)_values[index] : valueIfKeyNotFound;
+    }
+
+    public void put(final long key, final E value)
+    {
+        int index = indexOfKey(key);
+        if (index >= 0)
+        {
+            _values[index] = value;
+            return;
+        }
+        index = ~index;
+        if (_size == _keys.length)
+        {
+            _keys = Arrays.copyOf(_keys, 2 * _size);
+            _values = Arrays.copyOf(_values, 2 * _size);
+        }
+        System.arraycopy(_keys, index, _keys, index + 1, _size - index);
+        System.arraycopy(_values, index, _values, index + 1, _size - index);
+        _keys[index] = key;
+        _values[index] = value;
+        ++_size;
+    }
+
+    public void append(final long key, final E value)
+    {
+        put(key, value);
+    }
+
+    public void remove(final long key)
+    {
+        int index = indexOfKey(key);
+        if (index >= 0)
+        {
+            removeAt(index);
+        }
+    }
+
+    public void delete(final long key)
+    {
+        remove(key);
+    }
+
+    public void removeAt(final int index)
+    {
+        System.arraycopy(_keys, index + 1, _keys, index, _size - index - 1);
+        System.arraycopy(_values, index + 1, _values, index, _size - index - 1);
+        _values[--_size] = null;
+    }
+
+    public void clear()
+    {
+        Arrays.fill(_values, 0, _size, null);
+        _size = 0;
+    }
+}
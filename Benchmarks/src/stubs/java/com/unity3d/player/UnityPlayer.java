@@ -0,0 +1,11 @@
+package com.unity3d.player;
+
+import android.app.Activity;
+
+/**
+ * @brief Stub of Unity's UnityPlayer, with an activity set from the start.
+ */
+public class UnityPlayer
+{
+    public static Activity currentActivity = new Activity();
+}
@@ -0,0 +1,738 @@
+package no.nordicsemi.android.ble;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.function.IntConsumer;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothProfile;
+import android.bluetooth.FakeRemoteDevice;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import no.nordicsemi.android.ble.callback.ConnectionParametersUpdatedCallback;
+import no.nordicsemi.android.ble.callback.FailCallback;
+import no.nordicsemi.android.ble.callback.PhyCallback;
+import no.nordicsemi.android.ble.data.Data;
+import no.nordicsemi.android.ble.observer.ConnectionObserver;
+
+/**
+ * @brief Stub of Nordic's BleManager, running the requests against the FakeRemoteDevice
+ *        of the connected BluetoothDevice.
+ *
+ * Like the real manager, requests are run one at a time in the order they were queued,
+ * the requests queued by BleManagerGattCallback.initialize() are run before the device
+ * is reported as ready and a connection request holds the queue until the device is ready.
+ * Each GATT operation completes after the latency of the remote device, on the manager
+ * handler. A remote device going out of range disconnects the manager with a link loss
+ * and fails all the queued requests.
+ */
+public abstract class BleManager
+{
+    private static final int STATUS_SUCCESS = 0;
+    private static final int STATUS_INVALID = Integer.MIN_VALUE;
+
+    // Android gives up a direct connection after about 30 seconds
+    private static final long DIRECT_CONNECT_TIMEOUT_MILLIS = 30000;
+    private static final int DEFAULT_MTU = 23;
+    private static final int MAX_MTU = 517;
+
+    /**
+     * @brief Stub of Nordic's BleManagerGattCallback.
+     */
+    protected abstract static class BleManagerGattCallback
+    {
+        protected abstract boolean isRequiredServiceSupported(final BluetoothGatt gatt);
+
+        protected void initialize()
+        {
+        }
+
+        protected abstract void onServicesInvalidated();
+
+        protected void onDeviceReady()
+        {
+        }
+
+        protected void onDeviceDisconnected()
+        {
+        }
+    }
+
+    private final Handler _handler;
+    private final BleManagerGattCallback _gattCallback;
+    private final Deque<Request> _taskQueue = new ArrayDeque<>();
+    private final HashMap<BluetoothGattCharacteristic, ValueChangedCallback> _valueCallbacks = new HashMap<>();
+    private final FakeRemoteDevice.Listener _remoteListener = new FakeRemoteDevice.Listener()
+    {
+        @Override
+        public void onReachableChanged(final boolean reachable)
+        {
+            _handler.post(() -> BleManager.this.onReachableChanged(reachable));
+        }
+
+        @Override
+        public void onValueNotified(final BluetoothGattCharacteristic characteristic, final byte[] value)
+        {
+            final byte[] copy = Arrays.copyOf(value, value.length);
+            _handler.post(() -> BleManager.this.onValueNotified(characteristic, copy));
+        }
+    };
+
+    private ConnectionObserver _connectionObserver;
+    private ConnectionParametersUpdatedCallback _connectionParametersListener;
+    private BluetoothDevice _device;
+    private int _state = BluetoothProfile.STATE_DISCONNECTED;
+    private boolean _ready;
+    private int _mtu = DEFAULT_MTU;
+    // Incremented on each disconnection, to drop completions of operations started before
+    private int _connectionId;
+
+    // Non null while the requests queued by initialize() are run
+    private Deque<Request> _initQueue;
+    private Request _current;
+    private ConnectRequest _connectRequest;
+    private Runnable _connectTimeout;
+
+    public BleManager(final Context context)
+    {
+        this(context, null);
+    }
+
+    public BleManager(final Context context, final Handler handler)
+    {
+        _handler = handler != null ? handler : new Handler(Looper.getMainLooper());
+        _gattCallback = getGattCallback();
+    }
+
+    protected abstract BleManagerGattCallback getGattCallback();
+
+    public final void setConnectionObserver(final ConnectionObserver observer)
+    {
+        _connectionObserver = observer;
+    }
+
+    public final void setConnectionParametersListener(final ConnectionParametersUpdatedCallback callback)
+    {
+        _connectionParametersListener = callback;
+    }
+
+    public BluetoothDevice getBluetoothDevice()
+    {
+        return _device;
+    }
+
+    public final boolean isConnected()
+    {
+        return _state == BluetoothProfile.STATE_CONNECTED;
+    }
+
+    public boolean isReady()
+    {
+        return _ready;
+    }
+
+    public final int getConnectionState()
+    {
+        return _state;
+    }
+
+    public void log(final int priority, final String message)
+    {
+    }
+
+    public void close()
+    {
+        if (_device != null)
+        {
+            _device.getFakeRemote().removeListener(_remoteListener);
+        }
+        _taskQueue.clear();
+        _valueCallbacks.clear();
+        _state = BluetoothProfile.STATE_DISCONNECTED;
+        _ready = false;
+        ++_connectionId;
+    }
+
+    public final ConnectRequest connect(final BluetoothDevice device)
+    {
+        return new ConnectRequest(this, device);
+    }
+
+    public final DisconnectRequest disconnect()
+    {
+        return new DisconnectRequest(this);
+    }
+
+    protected int getMtu()
+    {
+        return _mtu;
+    }
+
+    protected MtuRequest requestMtu(final int mtu)
+    {
+        return new MtuRequest(this, Request.Type.REQUEST_MTU, null, mtu);
+    }
+
+    protected ReadRssiRequest readRssi()
+    {
+        return new ReadRssiRequest(this, Request.Type.READ_RSSI, null);
+    }
+
+    protected PhyRequest setPreferredPhy(final int txPhy, final int rxPhy, final int phyOptions)
+    {
+        return new PhyRequest(this, Request.Type.SET_PREFERRED_PHY, null, txPhy, rxPhy);
+    }
+
+    protected ConnectionPriorityRequest requestConnectionPriority(final int priority)
+    {
+        return new ConnectionPriorityRequest(this, Request.Type.REQUEST_CONNECTION_PRIORITY, null, priority);
+    }
+
+    protected ReadRequest readCharacteristic(final BluetoothGattCharacteristic characteristic)
+    {
+        return new ReadRequest(this, Request.Type.READ, characteristic);
+    }
+
+    protected WriteRequest writeCharacteristic(final BluetoothGattCharacteristic characteristic, final byte[] data, final int writeType)
+    {
+        return new WriteRequest(this, Request.Type.WRITE, characteristic, data, writeType);
+    }
+
+    protected WriteRequest writeCharacteristic(final BluetoothGattCharacteristic characteristic, final byte[] data)
+    {
+        return writeCharacteristic(characteristic, data, BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT);
+    }
+
+    protected WriteRequest enableNotifications(final BluetoothGattCharacteristic characteristic)
+    {
+        return new WriteRequest(this, Request.Type.ENABLE_NOTIFICATIONS, characteristic, null, BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT);
+    }
+
+    protected WriteRequest disableNotifications(final BluetoothGattCharacteristic characteristic)
+    {
+        return new WriteRequest(this, Request.Type.DISABLE_NOTIFICATIONS, characteristic, null, BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT);
+    }
+
+    protected ValueChangedCallback setNotificationCallback(final BluetoothGattCharacteristic characteristic)
+    {
+        ValueChangedCallback callback = new ValueChangedCallback();
+        if (characteristic != null)
+        {
+            _valueCallbacks.put(characteristic, callback);
+        }
+        return callback;
+    }
+
+    protected void removeNotificationCallback(final BluetoothGattCharacteristic characteristic)
+    {
+        _valueCallbacks.remove(characteristic);
+    }
+
+    protected RequestQueue beginAtomicRequestQueue()
+    {
+        return new RequestQueue(this);
+    }
+
+    /**
+     * @brief Fails all the queued requests with REASON_CANCELLED and cancels
+     *        an on-going connection.
+     *
+     * As with Nordic's library, a device that is connected but not yet initialized
+     * is disconnected, which completes after the remote latency.
+     */
+    protected final void cancelQueue()
+    {
+        failAll(_taskQueue, FailCallback.REASON_CANCELLED);
+
+        if ((_connectRequest != null) && (_state == BluetoothProfile.STATE_CONNECTED))
+        {
+            final ConnectRequest request = _connectRequest;
+            clearConnectRequest();
+            if (_initQueue != null)
+            {
+                failAll(_initQueue, FailCallback.REASON_CANCELLED);
+                _initQueue = null;
+            }
+            finish(request, FailCallback.REASON_CANCELLED);
+            _state = BluetoothProfile.STATE_DISCONNECTING;
+            if (_connectionObserver != null) _connectionObserver.onDeviceDisconnecting(_device);
+            final int connectionId = _connectionId;
+            _handler.postDelayed(() ->
+            {
+                if (connectionId == _connectionId)
+                {
+                    onDisconnected(ConnectionObserver.REASON_CANCELLED);
+                }
+            }, _device.getFakeRemote().getLatencyMillis());
+        }
+        else if (_connectRequest != null)
+        {
+            final ConnectRequest request = _connectRequest;
+            clearConnectRequest();
+            _state = BluetoothProfile.STATE_DISCONNECTING;
+            if (_connectionObserver != null) _connectionObserver.onDeviceDisconnecting(_device);
+            _state = BluetoothProfile.STATE_DISCONNECTED;
+            if (_connectionObserver != null) _connectionObserver.onDeviceFailedToConnect(_device, ConnectionObserver.REASON_CANCELLED);
+            finish(request, FailCallback.REASON_CANCELLED);
+            _handler.post(this::nextRequest);
+        }
+    }
+
+    protected final void enqueue(final Request request)
+    {
+        (_initQueue != null ? _initQueue : _taskQueue).add(request);
+        _handler.post(this::nextRequest);
+    }
+
+    private void nextRequest()
+    {
+        if ((_current != null) || ((_connectRequest != null) && (_initQueue == null)))
+        {
+            // A request is running, or the device is connecting
+            return;
+        }
+
+        Request request = null;
+        if (_initQueue != null)
+        {
+            request = _initQueue.poll();
+            if (request == null)
+            {
+                onInitialized();
+            }
+        }
+        if (request == null)
+        {
+            request = _taskQueue.poll();
+        }
+        if (request != null)
+        {
+            final Request started = request;
+            _current = started;
+            started.notifyStarted(_device != null ? _device : started instanceof ConnectRequest ? ((ConnectRequest)started).device : null);
+            execute(started, status -> finish(started, status));
+        }
+    }
+
+    private void finish(final Request request, final int status)
+    {
+        if (_current == request)
+        {
+            _current = null;
+            _handler.post(this::nextRequest);
+        }
+        else if (!(request instanceof ConnectRequest))
+        {
+            // Already completed, for example on a disconnection
+            return;
+        }
+
+        if (status == STATUS_SUCCESS)
+        {
+            request.notifySuccess(_device);
+        }
+        else if (status == STATUS_INVALID)
+        {
+            request.notifyInvalidRequest();
+        }
+        else
+        {
+            request.notifyFail(_device, status);
+        }
+    }
+
+    private void execute(final Request request, final IntConsumer completion)
+    {
+        switch (request.type)
+        {
+            case CONNECT:
+                executeConnect((ConnectRequest)request);
+                return;
+            case DISCONNECT:
+                executeDisconnect(completion);
+                return;
+            case QUEUE:
+                executeQueue(((RequestQueue)request).requests, completion);
+                return;
+            default:
+                break;
+        }
+
+        if (((request.type == Request.Type.READ)
+            || (request.type == Request.Type.WRITE)
+            || (request.type == Request.Type.ENABLE_NOTIFICATIONS)
+            || (request.type == Request.Type.DISABLE_NOTIFICATIONS))
+            && (request.characteristic == null))
+        {
+            completion.accept(STATUS_INVALID);
+            return;
+        }
+        if (!isConnected())
+        {
+            completion.accept(FailCallback.REASON_DEVICE_DISCONNECTED);
+            return;
+        }
+
+        if (request.type == Request.Type.WRITE)
+        {
+            executeWrite((WriteRequest)request, completion);
+            return;
+        }
+
+        runOperation(() ->
+        {
+            final FakeRemoteDevice remote = _device.getFakeRemote();
+            switch (request.type)
+            {
+                case READ:
+                {
+                    ReadRequest read = (ReadRequest)request;
+                    byte[] value = read.characteristic.getValue();
+                    if (read.valueCallback != null)
+                    {
+                        read.valueCallback.onDataReceived(_device, new Data(value == null ? new byte[0] : Arrays.copyOf(value, value.length)));
+                    }
+                    break;
+                }
+                case REQUEST_MTU:
+                {
+                    MtuRequest mtu = (MtuRequest)request;
+                    _mtu = Math.max(DEFAULT_MTU, Math.min(MAX_MTU, mtu.mtu));
+                    if (mtu.valueCallback != null) mtu.valueCallback.onMtuChanged(_device, _mtu);
+                    break;
+                }
+                case READ_RSSI:
+                {
+                    ReadRssiRequest rssi = (ReadRssiRequest)request;
+                    if (rssi.valueCallback != null) rssi.valueCallback.onRssiRead(_device, remote.getRssi());
+                    break;
+                }
+                case SET_PREFERRED_PHY:
+                {
+                    PhyRequest phy = (PhyRequest)request;
+                    if (phy.valueCallback != null) phy.valueCallback.onPhyChanged(_device, toPhy(phy.txPhy), toPhy(phy.rxPhy));
+                    break;
+                }
+                case REQUEST_CONNECTION_PRIORITY:
+                {
+                    ConnectionPriorityRequest priority = (ConnectionPriorityRequest)request;
+                    int interval = priority.priority == ConnectionPriorityRequest.CONNECTION_PRIORITY_HIGH ? 12
+                        : priority.priority == ConnectionPriorityRequest.CONNECTION_PRIORITY_LOW_POWER ? 80 : 36;
+                    if (priority.valueCallback != null) priority.valueCallback.onConnectionUpdated(_device, interval, 0, 500);
+                    if (_connectionParametersListener != null) _connectionParametersListener.onConnectionUpdated(_device, interval, 0, 500);
+                    break;
+                }
+                default:
+                    break;
+            }
+            return STATUS_SUCCESS;
+        }, completion);
+    }
+
+    private void executeWrite(final WriteRequest request, final IntConsumer completion)
+    {
+        final byte[] data = request.data == null ? new byte[0] : request.data;
+        final int packetSize = request.split ? _mtu - 3 : Math.max(1, data.length);
+        final int packetsCount = Math.max(1, (data.length + packetSize - 1) / packetSize);
+        writePacket(request, data, packetSize, 0, packetsCount, completion);
+    }
+
+    private void writePacket(final WriteRequest request, final byte[] data, final int packetSize, final int index, final int packetsCount, final IntConsumer completion)
+    {
+        runOperation(() ->
+        {
+            final int start = index * packetSize;
+            final byte[] packet = Arrays.copyOfRange(data, Math.min(start, data.length), Math.min(start + packetSize, data.length));
+            if (request.progressCallback != null)
+            {
+                request.progressCallback.onPacketSent(_device, packet, index);
+            }
+            return STATUS_SUCCESS;
+        }, status ->
+        {
+            if (status != STATUS_SUCCESS)
+            {
+                completion.accept(status);
+            }
+            else if (index + 1 < packetsCount)
+            {
+                writePacket(request, data, packetSize, index + 1, packetsCount, completion);
+            }
+            else
+            {
+                if (request.type == Request.Type.WRITE)
+                {
+                    request.characteristic.setValue(Arrays.copyOf(data, data.length));
+                    if (request.valueCallback != null) request.valueCallback.onDataSent(_device, new Data(data));
+                }
+                completion.accept(STATUS_SUCCESS);
+            }
+        });
+    }
+
+    private void executeQueue(final Deque<Request> requests, final IntConsumer completion)
+    {
+        final Request request = requests.poll();
+        if (request == null)
+        {
+            completion.accept(STATUS_SUCCESS);
+            return;
+        }
+        request.notifyStarted(_device);
+        execute(request, status ->
+        {
+            if (status == STATUS_SUCCESS)
+            {
+                request.notifySuccess(_device);
+                executeQueue(requests, completion);
+            }
+            else
+            {
+                if (status == STATUS_INVALID)
+                {
+                    request.notifyInvalidRequest();
+                }
+                else
+                {
+                    request.notifyFail(_device, status);
+                }
+                requests.clear();
+                completion.accept(status == STATUS_INVALID ? FailCallback.REASON_NULL_ATTRIBUTE : status);
+            }
+        });
+    }
+
+    private interface GattOperation
+    {
+        int run();
+    }
+
+    /**
+     * @brief Runs the given operation on the remote device after its latency, the completion
+     *        is dropped if the device got disconnected in between.
+     */
+    private void runOperation(final GattOperation operation, final IntConsumer completion)
+    {
+        final int connectionId = _connectionId;
+        _handler.postDelayed(() ->
+        {
+            if (connectionId == _connectionId)
+            {
+                _device.getFakeRemote().onOperation();
+                completion.accept(operation.run());
+            }
+        }, _device.getFakeRemote().getLatencyMillis());
+    }
+
+    private void executeConnect(final ConnectRequest request)
+    {
+        if (isConnected() && (request.device == _device))
+        {
+            finish(request, STATUS_SUCCESS);
+            return;
+        }
+
+        if (_device != null)
+        {
+            _device.getFakeRemote().removeListener(_remoteListener);
+        }
+        _device = request.device;
+        _device.getFakeRemote().addListener(_remoteListener);
+        _connectRequest = request;
+        _current = null;
+
+        _state = BluetoothProfile.STATE_CONNECTING;
+        if (_connectionObserver != null) _connectionObserver.onDeviceConnecting(_device);
+
+        long timeout = request.timeout > 0 ? request.timeout
+            : request.autoConnect ? 0 : DIRECT_CONNECT_TIMEOUT_MILLIS;
+        if (timeout > 0)
+        {
+            _connectTimeout = this::onConnectTimeout;
+            _handler.postDelayed(_connectTimeout, timeout);
+        }
+        if (_device.getFakeRemote().isReachable())
+        {
+            scheduleConnection();
+        }
+    }
+
+    private void scheduleConnection()
+    {
+        final ConnectRequest request = _connectRequest;
+        _handler.postDelayed(() ->
+        {
+            if ((request == _connectRequest) && (_state == BluetoothProfile.STATE_CONNECTING)
+                && _device.getFakeRemote().isReachable())
+            {
+                onConnected();
+            }
+        }, _device.getFakeRemote().getLatencyMillis());
+    }
+
+    private void onConnectTimeout()
+    {
+        _connectTimeout = null;
+        if ((_connectRequest != null) && (_state == BluetoothProfile.STATE_CONNECTING))
+        {
+            final ConnectRequest request = _connectRequest;
+            clearConnectRequest();
+            _state = BluetoothProfile.STATE_DISCONNECTED;
+            if (_connectionObserver != null) _connectionObserver.onDeviceFailedToConnect(_device, ConnectionObserver.REASON_TIMEOUT);
+            finish(request, FailCallback.REASON_TIMEOUT);
+            _handler.post(this::nextRequest);
+        }
+    }
+
+    private void clearConnectRequest()
+    {
+        _connectRequest = null;
+        if (_connectTimeout != null)
+        {
+            _handler.removeCallbacks(_connectTimeout);
+            _connectTimeout = null;
+        }
+    }
+
+    private void onConnected()
+    {
+        _state = BluetoothProfile.STATE_CONNECTED;
+        if (_connectionObserver != null) _connectionObserver.onDeviceConnected(_device);
+        if (_connectionParametersListener != null) _connectionParametersListener.onConnectionUpdated(_device, 36, 0, 500);
+
+        BluetoothGatt gatt = new BluetoothGatt(_device);
+        if (!_gattCallback.isRequiredServiceSupported(gatt))
+        {
+            final ConnectRequest request = _connectRequest;
+            clearConnectRequest();
+            ++_connectionId;
+            _state = BluetoothProfile.STATE_DISCONNECTED;
+            _gattCallback.onServicesInvalidated();
+            if (_connectionObserver != null) _connectionObserver.onDeviceDisconnected(_device, ConnectionObserver.REASON_NOT_SUPPORTED);
+            finish(request, FailCallback.REASON_DEVICE_NOT_SUPPORTED);
+            _handler.post(this::nextRequest);
+            return;
+        }
+
+        _initQueue = new ArrayDeque<>();
+        _gattCallback.initialize();
+        _handler.post(this::nextRequest);
+    }
+
+    private void onInitialized()
+    {
+        _initQueue = null;
+        _ready = true;
+        final ConnectRequest request = _connectRequest;
+        clearConnectRequest();
+        _gattCallback.onDeviceReady();
+        if (_connectionObserver != null) _connectionObserver.onDeviceReady(_device);
+        if (request != null)
+        {
+            finish(request, STATUS_SUCCESS);
+        }
+    }
+
+    private void executeDisconnect(final IntConsumer completion)
+    {
+        if (_state == BluetoothProfile.STATE_DISCONNECTED)
+        {
+            completion.accept(STATUS_SUCCESS);
+            return;
+        }
+
+        _state = BluetoothProfile.STATE_DISCONNECTING;
+        if (_connectionObserver != null) _connectionObserver.onDeviceDisconnecting(_device);
+        final int connectionId = _connectionId;
+        _handler.postDelayed(() ->
+        {
+            if (connectionId == _connectionId)
+            {
+                onDisconnected(ConnectionObserver.REASON_SUCCESS);
+            }
+            completion.accept(STATUS_SUCCESS);
+        }, _device.getFakeRemote().getLatencyMillis());
+    }
+
+    private void onDisconnected(final int reason)
+    {
+        final boolean wasConnected = (_state == BluetoothProfile.STATE_CONNECTED) || (_state == BluetoothProfile.STATE_DISCONNECTING);
+        ++_connectionId;
+        _state = BluetoothProfile.STATE_DISCONNECTED;
+        _ready = false;
+        _mtu = DEFAULT_MTU;
+
+        // Fail the requests before notifying, so requests queued by the observers are kept
+        final Request current = _current;
+        if ((current != null) && (current.type != Request.Type.DISCONNECT))
+        {
+            finish(current, FailCallback.REASON_DEVICE_DISCONNECTED);
+        }
+        final ConnectRequest connectRequest = _connectRequest;
+        clearConnectRequest();
+        if (connectRequest != null)
+        {
+            connectRequest.notifyFail(_device, FailCallback.REASON_DEVICE_DISCONNECTED);
+        }
+        if (_initQueue != null)
+        {
+            failAll(_initQueue, FailCallback.REASON_DEVICE_DISCONNECTED);
+            _initQueue = null;
+        }
+        failAll(_taskQueue, FailCallback.REASON_DEVICE_DISCONNECTED);
+
+        if (wasConnected)
+        {
+            _gattCallback.onServicesInvalidated();
+            _gattCallback.onDeviceDisconnected();
+        }
+        if (_connectionObserver != null) _connectionObserver.onDeviceDisconnected(_device, reason);
+        _handler.post(this::nextRequest);
+    }
+
+    private void onReachableChanged(final boolean reachable)
+    {
+        if (reachable)
+        {
+            if ((_connectRequest != null) && (_state == BluetoothProfile.STATE_CONNECTING))
+            {
+                scheduleConnection();
+            }
+        }
+        else if ((_state == BluetoothProfile.STATE_CONNECTED) || (_state == BluetoothProfile.STATE_DISCONNECTING))
+        {
+            onDisconnected(ConnectionObserver.REASON_LINK_LOSS);
+        }
+    }
+
+    private void onValueNotified(final BluetoothGattCharacteristic characteristic, final byte[] value)
+    {
+        ValueChangedCallback callback = _valueCallbacks.get(characteristic);
+        if (isConnected() && (callback != null) && (callback.valueCallback != null))
+        {
+            callback.valueCallback.onDataReceived(_device, new Data(value));
+        }
+    }
+
+    private void failAll(final Deque<Request> queue, final int status)
+    {
+        Request request;
+        while ((request = queue.poll()) != null)
+        {
+            request.notifyFail(_device, status);
+        }
+    }
+
+    private static int toPhy(final int mask)
+    {
+        if ((mask & PhyRequest.PHY_LE_2M_MASK) != 0) return PhyCallback.PHY_LE_2M;
+        if ((mask & PhyRequest.PHY_LE_CODED_MASK) != 0) return PhyCallback.PHY_LE_CODED;
+        return PhyCallback.PHY_LE_1M;
+    }
+}
@@ -0,0 +1,87 @@
+package no.nordicsemi.android.ble;
+
+import android.bluetooth.BluetoothDevice;
+
+import no.nordicsemi.android.ble.callback.AfterCallback;
+import no.nordicsemi.android.ble.callback.BeforeCallback;
+import no.nordicsemi.android.ble.callback.FailCallback;
+import no.nordicsemi.android.ble.callback.InvalidRequestCallback;
+import no.nordicsemi.android.ble.callback.SuccessCallback;
+
+/**
+ * @brief Stub of Nordic's ConnectRequest.
+ */
+public class ConnectRequest extends TimeoutableRequest
+{
+    final BluetoothDevice device;
+    boolean autoConnect;
+
+    ConnectRequest(final BleManager manager, final BluetoothDevice device)
+    {
+        super(manager, Type.CONNECT, null);
+        this.device = device;
+    }
+
+    public ConnectRequest useAutoConnect(final boolean autoConnect)
+    {
+        this.autoConnect = autoConnect;
+        return this;
+    }
+
+    public ConnectRequest retry(final int count)
+    {
+        return this;
+    }
+
+    public ConnectRequest retry(final int count, final int delay)
+    {
+        return this;
+    }
+
+    public BluetoothDevice getDevice()
+    {
+        return device;
+    }
+
+    @Override
+    public ConnectRequest timeout(final long timeout)
+    {
+        super.timeout(timeout);
+        return this;
+    }
+
+    @Override
+    public ConnectRequest done(final SuccessCallback callback)
+    {
+        super.done(callback);
+        return this;
+    }
+
+    @Override
+    public ConnectRequest fail(final FailCallback callback)
+    {
+        super.fail(callback);
+        return this;
+    }
+
+    @Override
+    public ConnectRequest invalid(final InvalidRequestCallback callback)
+    {
+        super.invalid(callback);
+        return this;
+    }
+
+    @Override
+    public ConnectRequest before(final BeforeCallback callback)
+    {
+        super.before(callback);
+        return this;
+    }
+
+    @Override
+    public ConnectRequest then(final AfterCallback callback)
+    {
+        super.then(callback);
+        return this;
+    }
+}
@@ -0,0 +1,70 @@
+package no.nordicsemi.android.ble;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import no.nordicsemi.android.ble.callback.AfterCallback;
+import no.nordicsemi.android.ble.callback.BeforeCallback;
+import no.nordicsemi.android.ble.callback.FailCallback;
+import no.nordicsemi.android.ble.callback.InvalidRequestCallback;
+import no.nordicsemi.android.ble.callback.SuccessCallback;
+import no.nordicsemi.android.ble.callback.ConnectionParametersUpdatedCallback;
+
+/**
+ * @brief Stub of Nordic's ConnectionPriorityRequest.
+ */
+public final class ConnectionPriorityRequest extends SimpleValueRequest<ConnectionParametersUpdatedCallback> implements Operation
+{
+    public static final int CONNECTION_PRIORITY_BALANCED = 0;
+    public static final int CONNECTION_PRIORITY_HIGH = 1;
+    public static final int CONNECTION_PRIORITY_LOW_POWER = 2;
+
+    final int priority;
+
+    ConnectionPriorityRequest(final BleManager manager, final Type type, final BluetoothGattCharacteristic characteristic, final int priority)
+    {
+        super(manager, type, characteristic);
+        this.priority = priority;
+    }
+
+    @Override
+    public ConnectionPriorityRequest with(final ConnectionParametersUpdatedCallback callback)
+    {
+        super.with(callback);
+        return this;
+    }
+
+    @Override
+    public ConnectionPriorityRequest done(final SuccessCallback callback)
+    {
+        super.done(callback);
+        return this;
+    }
+
+    @Override
+    public ConnectionPriorityRequest fail(final FailCallback callback)
+    {
+        super.fail(callback);
+        return this;
+    }
+
+    @Override
+    public ConnectionPriorityRequest invalid(final InvalidRequestCallback callback)
+    {
+        super.invalid(callback);
+        return this;
+    }
+
+    @Override
+    public ConnectionPriorityRequest before(final BeforeCallback callback)
+    {
+        super.before(callback);
+        return this;
+    }
+
+    @Override
+    public ConnectionPriorityRequest then(final AfterCallback callback)
+    {
+        super.then(callback);
+        return this;
+    }
+}
@@ -0,0 +1,60 @@
+package no.nordicsemi.android.ble;
+
+import no.nordicsemi.android.ble.callback.AfterCallback;
+import no.nordicsemi.android.ble.callback.BeforeCallback;
+import no.nordicsemi.android.ble.callback.FailCallback;
+import no.nordicsemi.android.ble.callback.InvalidRequestCallback;
+import no.nordicsemi.android.ble.callback.SuccessCallback;
+
+/**
+ * @brief Stub of Nordic's DisconnectRequest.
+ */
+public class DisconnectRequest extends TimeoutableRequest
+{
+    DisconnectRequest(final BleManager manager)
+    {
+        super(manager, Type.DISCONNECT, null);
+    }
+
+    @Override
+    public DisconnectRequest timeout(final long timeout)
+    {
+        super.timeout(timeout);
+        return this;
+    }
+
+    @Override
+    public DisconnectRequest done(final SuccessCallback callback)
+    {
+        super.done(callback);
+        return this;
+    }
+
+    @Override
+    public DisconnectRequest fail(final FailCallback callback)
+    {
+        super.fail(callback);
+        return this;
+    }
+
+    @Override
+    public DisconnectRequest invalid(final InvalidRequestCallback callback)
+    {
+        super.invalid(callback);
+        return this;
+    }
+
+    @Override
+    public DisconnectRequest before(final BeforeCallback callback)
+    {
+        super.before(callback);
+        return this;
+    }
+
+    @Override
+    public DisconnectRequest then(final AfterCallback callback)
+    {
+        super.then(callback);
+        return this;
+    }
+}
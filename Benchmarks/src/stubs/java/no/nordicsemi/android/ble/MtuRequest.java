@@ -0,0 +1,66 @@
+package no.nordicsemi.android.ble;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import no.nordicsemi.android.ble.callback.AfterCallback;
+import no.nordicsemi.android.ble.callback.BeforeCallback;
+import no.nordicsemi.android.ble.callback.FailCallback;
+import no.nordicsemi.android.ble.callback.InvalidRequestCallback;
+import no.nordicsemi.android.ble.callback.SuccessCallback;
+import no.nordicsemi.android.ble.callback.MtuCallback;
+
+/**
+ * @brief Stub of Nordic's MtuRequest.
+ */
+public final class MtuRequest extends SimpleValueRequest<MtuCallback> implements Operation
+{
+    final int mtu;
+
+    MtuRequest(final BleManager manager, final Type type, final BluetoothGattCharacteristic characteristic, final int mtu)
+    {
+        super(manager, type, characteristic);
+        this.mtu = mtu;
+    }
+
+    @Override
+    public MtuRequest with(final MtuCallback callback)
+    {
+        super.with(callback);
+        return this;
+    }
+
+    @Override
+    public MtuRequest done(final SuccessCallback callback)
+    {
+        super.done(callback);
+        return this;
+    }
+
+    @Override
+    public MtuRequest fail(final FailCallback callback)
+    {
+        super.fail(callback);
+        return this;
+    }
+
+    @Override
+    public MtuRequest invalid(final InvalidRequestCallback callback)
+    {
+        super.invalid(callback);
+        return this;
+    }
+
+    @Override
+    public MtuRequest before(final BeforeCallback callback)
+    {
+        super.before(callback);
+        return this;
+    }
+
+    @Override
+    public MtuRequest then(final AfterCallback callback)
+    {
+        super.then(callback);
+        return this;
+    }
+}
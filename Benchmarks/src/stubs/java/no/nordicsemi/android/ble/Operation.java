@@ -0,0 +1,8 @@
+package no.nordicsemi.android.ble;
+
+/**
+ * @brief Stub of Nordic's Operation, a request that may be added to a RequestQueue.
+ */
+public interface Operation
+{
+}
@@ -0,0 +1,75 @@
+package no.nordicsemi.android.ble;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import no.nordicsemi.android.ble.callback.AfterCallback;
+import no.nordicsemi.android.ble.callback.BeforeCallback;
+import no.nordicsemi.android.ble.callback.FailCallback;
+import no.nordicsemi.android.ble.callback.InvalidRequestCallback;
+import no.nordicsemi.android.ble.callback.SuccessCallback;
+import no.nordicsemi.android.ble.callback.PhyCallback;
+
+/**
+ * @brief Stub of Nordic's PhyRequest.
+ */
+public final class PhyRequest extends SimpleValueRequest<PhyCallback> implements Operation
+{
+    public static final int PHY_LE_1M_MASK = 1;
+    public static final int PHY_LE_2M_MASK = 2;
+    public static final int PHY_LE_CODED_MASK = 4;
+    public static final int PHY_OPTION_NO_PREFERRED = 0;
+    public static final int PHY_OPTION_S2 = 1;
+    public static final int PHY_OPTION_S8 = 2;
+
+    final int txPhy;
+    final int rxPhy;
+
+    PhyRequest(final BleManager manager, final Type type, final BluetoothGattCharacteristic characteristic, final int txPhy, final int rxPhy)
+    {
+        super(manager, type, characteristic);
+        this.txPhy = txPhy;
+        this.rxPhy = rxPhy;
+    }
+
+    @Override
+    public PhyRequest with(final PhyCallback callback)
+    {
+        super.with(callback);
+        return this;
+    }
+
+    @Override
+    public PhyRequest done(final SuccessCallback callback)
+    {
+        super.done(callback);
+        return this;
+    }
+
+    @Override
+    public PhyRequest fail(final FailCallback callback)
+    {
+        super.fail(callback);
+        return this;
+    }
+
+    @Override
+    public PhyRequest invalid(final InvalidRequestCallback callback)
+    {
+        super.invalid(callback);
+        return this;
+    }
+
+    @Override
+    public PhyRequest before(final BeforeCallback callback)
+    {
+        super.before(callback);
+        return this;
+    }
+
+    @Override
+    public PhyRequest then(final AfterCallback callback)
+    {
+        super.then(callback);
+        return this;
+    }
+}
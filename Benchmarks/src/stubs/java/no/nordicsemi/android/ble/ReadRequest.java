@@ -0,0 +1,63 @@
+package no.nordicsemi.android.ble;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import no.nordicsemi.android.ble.callback.AfterCallback;
+import no.nordicsemi.android.ble.callback.BeforeCallback;
+import no.nordicsemi.android.ble.callback.FailCallback;
+import no.nordicsemi.android.ble.callback.InvalidRequestCallback;
+import no.nordicsemi.android.ble.callback.SuccessCallback;
+import no.nordicsemi.android.ble.callback.DataReceivedCallback;
+
+/**
+ * @brief Stub of Nordic's ReadRequest.
+ */
+public final class ReadRequest extends SimpleValueRequest<DataReceivedCallback> implements Operation
+{
+    ReadRequest(final BleManager manager, final Type type, final BluetoothGattCharacteristic characteristic)
+    {
+        super(manager, type, characteristic);
+    }
+
+    @Override
+    public ReadRequest with(final DataReceivedCallback callback)
+    {
+        super.with(callback);
+        return this;
+    }
+
+    @Override
+    public ReadRequest done(final SuccessCallback callback)
+    {
+        super.done(callback);
+        return this;
+    }
+
+    @Override
+    public ReadRequest fail(final FailCallback callback)
+    {
+        super.fail(callback);
+        return this;
+    }
+
+    @Override
+    public ReadRequest invalid(final InvalidRequestCallback callback)
+    {
+        super.invalid(callback);
+        return this;
+    }
+
+    @Override
+    public ReadRequest before(final BeforeCallback callback)
+    {
+        super.before(callback);
+        return this;
+    }
+
+    @Override
+    public ReadRequest then(final AfterCallback callback)
+    {
+        super.then(callback);
+        return this;
+    }
+}
@@ -0,0 +1,63 @@
+package no.nordicsemi.android.ble;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import no.nordicsemi.android.ble.callback.AfterCallback;
+import no.nordicsemi.android.ble.callback.BeforeCallback;
+import no.nordicsemi.android.ble.callback.FailCallback;
+import no.nordicsemi.android.ble.callback.InvalidRequestCallback;
+import no.nordicsemi.android.ble.callback.SuccessCallback;
+import no.nordicsemi.android.ble.callback.RssiCallback;
+
+/**
+ * @brief Stub of Nordic's ReadRssiRequest.
+ */
+public final class ReadRssiRequest extends SimpleValueRequest<RssiCallback> implements Operation
+{
+    ReadRssiRequest(final BleManager manager, final Type type, final BluetoothGattCharacteristic characteristic)
+    {
+        super(manager, type, characteristic);
+    }
+
+    @Override
+    public ReadRssiRequest with(final RssiCallback callback)
+    {
+        super.with(callback);
+        return this;
+    }
+
+    @Override
+    public ReadRssiRequest done(final SuccessCallback callback)
+    {
+        super.done(callback);
+        return this;
+    }
+
+    @Override
+    public ReadRssiRequest fail(final FailCallback callback)
+    {
+        super.fail(callback);
+        return this;
+    }
+
+    @Override
+    public ReadRssiRequest invalid(final InvalidRequestCallback callback)
+    {
+        super.invalid(callback);
+        return this;
+    }
+
+    @Override
+    public ReadRssiRequest before(final BeforeCallback callback)
+    {
+        super.before(callback);
+        return this;
+    }
+
+    @Override
+    public ReadRssiRequest then(final AfterCallback callback)
+    {
+        super.then(callback);
+        return this;
+    }
+}
@@ -0,0 +1,105 @@
+package no.nordicsemi.android.ble;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import no.nordicsemi.android.ble.callback.AfterCallback;
+import no.nordicsemi.android.ble.callback.BeforeCallback;
+import no.nordicsemi.android.ble.callback.FailCallback;
+import no.nordicsemi.android.ble.callback.InvalidRequestCallback;
+import no.nordicsemi.android.ble.callback.SuccessCallback;
+
+/**
+ * @brief Stub of Nordic's Request, run by the BleManager stub.
+ */
+public abstract class Request
+{
+    enum Type
+    {
+        CONNECT,
+        DISCONNECT,
+        READ,
+        WRITE,
+        ENABLE_NOTIFICATIONS,
+        DISABLE_NOTIFICATIONS,
+        REQUEST_MTU,
+        READ_RSSI,
+        SET_PREFERRED_PHY,
+        REQUEST_CONNECTION_PRIORITY,
+        QUEUE,
+    }
+
+    final BleManager manager;
+    final Type type;
+    final BluetoothGattCharacteristic characteristic;
+
+    private BeforeCallback _beforeCallback;
+    private SuccessCallback _successCallback;
+    private FailCallback _failCallback;
+    private InvalidRequestCallback _invalidCallback;
+    private AfterCallback _afterCallback;
+
+    Request(final BleManager manager, final Type type, final BluetoothGattCharacteristic characteristic)
+    {
+        this.manager = manager;
+        this.type = type;
+        this.characteristic = characteristic;
+    }
+
+    public Request done(final SuccessCallback callback)
+    {
+        _successCallback = callback;
+        return this;
+    }
+
+    public Request fail(final FailCallback callback)
+    {
+        _failCallback = callback;
+        return this;
+    }
+
+    public Request invalid(final InvalidRequestCallback callback)
+    {
+        _invalidCallback = callback;
+        return this;
+    }
+
+    public Request before(final BeforeCallback callback)
+    {
+        _beforeCallback = callback;
+        return this;
+    }
+
+    public Request then(final AfterCallback callback)
+    {
+        _afterCallback = callback;
+        return this;
+    }
+
+    public void enqueue()
+    {
+        manager.enqueue(this);
+    }
+
+    void notifyStarted(final BluetoothDevice device)
+    {
+        if (_beforeCallback != null) _beforeCallback.onRequestStarted(device);
+    }
+
+    void notifySuccess(final BluetoothDevice device)
+    {
+        if (_successCallback != null) _successCallback.onRequestCompleted(device);
+        if (_afterCallback != null) _afterCallback.onRequestFinished(device);
+    }
+
+    void notifyFail(final BluetoothDevice device, final int status)
+    {
+        if (_failCallback != null) _failCallback.onRequestFailed(device, status);
+        if (_afterCallback != null) _afterCallback.onRequestFinished(device);
+    }
+
+    void notifyInvalidRequest()
+    {
+        if (_invalidCallback != null) _invalidCallback.onInvalidRequest();
+    }
+}
@@ -0,0 +1,83 @@
+package no.nordicsemi.android.ble;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import no.nordicsemi.android.ble.callback.AfterCallback;
+import no.nordicsemi.android.ble.callback.BeforeCallback;
+import no.nordicsemi.android.ble.callback.FailCallback;
+import no.nordicsemi.android.ble.callback.InvalidRequestCallback;
+import no.nordicsemi.android.ble.callback.SuccessCallback;
+
+/**
+ * @brief Stub of Nordic's RequestQueue, its operations are run back to back.
+ */
+public class RequestQueue extends SimpleRequest
+{
+    final Deque<Request> requests = new ArrayDeque<>();
+
+    RequestQueue(final BleManager manager)
+    {
+        super(manager, Type.QUEUE, null);
+    }
+
+    public RequestQueue add(final Operation operation)
+    {
+        if (!(operation instanceof Request))
+        {
+            throw new IllegalArgumentException("Operation is not a request");
+        }
+        requests.add((Request)operation);
+        return this;
+    }
+
+    public int size()
+    {
+        return requests.size();
+    }
+
+    public boolean isEmpty()
+    {
+        return requests.isEmpty();
+    }
+
+    public void cancelQueue()
+    {
+        requests.clear();
+    }
+
+    @Override
+    public RequestQueue done(final SuccessCallback callback)
+    {
+        super.done(callback);
+        return this;
+    }
+
+    @Override
+    public RequestQueue fail(final FailCallback callback)
+    {
+        super.fail(callback);
+        return this;
+    }
+
+    @Override
+    public RequestQueue invalid(final InvalidRequestCallback callback)
+    {
+        super.invalid(callback);
+        return this;
+    }
+
+    @Override
+    public RequestQueue before(final BeforeCallback callback)
+    {
+        super.before(callback);
+        return this;
+    }
+
+    @Override
+    public RequestQueue then(final AfterCallback callback)
+    {
+        super.then(callback);
+        return this;
+    }
+}
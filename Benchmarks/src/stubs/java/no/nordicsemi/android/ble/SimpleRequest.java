@@ -0,0 +1,14 @@
+package no.nordicsemi.android.ble;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+/**
+ * @brief Stub of Nordic's SimpleRequest.
+ */
+public class SimpleRequest extends Request
+{
+    SimpleRequest(final BleManager manager, final Type type, final BluetoothGattCharacteristic characteristic)
+    {
+        super(manager, type, characteristic);
+    }
+}
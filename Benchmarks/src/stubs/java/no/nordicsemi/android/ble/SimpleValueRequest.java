@@ -0,0 +1,22 @@
+package no.nordicsemi.android.ble;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+/**
+ * @brief Stub of Nordic's SimpleValueRequest.
+ */
+public abstract class SimpleValueRequest<T> extends SimpleRequest
+{
+    T valueCallback;
+
+    SimpleValueRequest(final BleManager manager, final Type type, final BluetoothGattCharacteristic characteristic)
+    {
+        super(manager, type, characteristic);
+    }
+
+    public SimpleValueRequest<T> with(final T callback)
+    {
+        valueCallback = callback;
+        return this;
+    }
+}
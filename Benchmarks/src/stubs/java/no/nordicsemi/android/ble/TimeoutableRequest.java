@@ -0,0 +1,33 @@
+package no.nordicsemi.android.ble;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+/**
+ * @brief Stub of Nordic's TimeoutableRequest.
+ */
+public abstract class TimeoutableRequest extends Request
+{
+    protected long timeout;
+
+    TimeoutableRequest(final BleManager manager, final Type type, final BluetoothGattCharacteristic characteristic)
+    {
+        super(manager, type, characteristic);
+    }
+
+    public TimeoutableRequest timeout(final long timeout)
+    {
+        this.timeout = timeout;
+        return this;
+    }
+
+    @Override
+    public final void enqueue()
+    {
+        super.enqueue();
+    }
+
+    public final void enqueue(final long timeout)
+    {
+        timeout(timeout).enqueue();
+    }
+}
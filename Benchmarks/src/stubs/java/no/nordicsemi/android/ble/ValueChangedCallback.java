@@ -0,0 +1,21 @@
+package no.nordicsemi.android.ble;
+
+import no.nordicsemi.android.ble.callback.DataReceivedCallback;
+
+/**
+ * @brief Stub of Nordic's ValueChangedCallback.
+ */
+public class ValueChangedCallback
+{
+    DataReceivedCallback valueCallback;
+
+    ValueChangedCallback()
+    {
+    }
+
+    public ValueChangedCallback with(final DataReceivedCallback callback)
+    {
+        valueCallback = callback;
+        return this;
+    }
+}
@@ -0,0 +1,84 @@
+package no.nordicsemi.android.ble;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import no.nordicsemi.android.ble.callback.AfterCallback;
+import no.nordicsemi.android.ble.callback.BeforeCallback;
+import no.nordicsemi.android.ble.callback.FailCallback;
+import no.nordicsemi.android.ble.callback.InvalidRequestCallback;
+import no.nordicsemi.android.ble.callback.SuccessCallback;
+import no.nordicsemi.android.ble.callback.DataSentCallback;
+import no.nordicsemi.android.ble.callback.WriteProgressCallback;
+
+/**
+ * @brief Stub of Nordic's WriteRequest.
+ */
+public final class WriteRequest extends SimpleValueRequest<DataSentCallback> implements Operation
+{
+    final byte[] data;
+    final int writeType;
+    boolean split;
+    WriteProgressCallback progressCallback;
+
+    WriteRequest(final BleManager manager, final Type type, final BluetoothGattCharacteristic characteristic, final byte[] data, final int writeType)
+    {
+        super(manager, type, characteristic);
+        this.data = data;
+        this.writeType = writeType;
+    }
+
+    public WriteRequest split()
+    {
+        split = true;
+        return this;
+    }
+
+    public WriteRequest split(final WriteProgressCallback callback)
+    {
+        split = true;
+        progressCallback = callback;
+        return this;
+    }
+
+    @Override
+    public WriteRequest with(final DataSentCallback callback)
+    {
+        super.with(callback);
+        return this;
+    }
+
+    @Override
+    public WriteRequest done(final SuccessCallback callback)
+    {
+        super.done(callback);
+        return this;
+    }
+
+    @Override
+    public WriteRequest fail(final FailCallback callback)
+    {
+        super.fail(callback);
+        return this;
+    }
+
+    @Override
+    public WriteRequest invalid(final InvalidRequestCallback callback)
+    {
+        super.invalid(callback);
+        return this;
+    }
+
+    @Override
+    public WriteRequest before(final BeforeCallback callback)
+    {
+        super.before(callback);
+        return this;
+    }
+
+    @Override
+    public WriteRequest then(final AfterCallback callback)
+    {
+        super.then(callback);
+        return this;
+    }
+}
@@ -0,0 +1,8 @@
+package no.nordicsemi.android.ble.annotation;
+
+/**
+ * @brief Stub of Nordic's WriteType annotation.
+ */
+public @interface WriteType
+{
+}
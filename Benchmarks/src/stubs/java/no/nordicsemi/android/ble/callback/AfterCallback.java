@@ -0,0 +1,12 @@
+package no.nordicsemi.android.ble.callback;
+
+import android.bluetooth.BluetoothDevice;
+
+/**
+ * @brief Stub of Nordic's AfterCallback.
+ */
+public interface AfterCallback
+{
+
+    void onRequestFinished(final BluetoothDevice device);
+}
@@ -0,0 +1,12 @@
+package no.nordicsemi.android.ble.callback;
+
+import android.bluetooth.BluetoothDevice;
+
+/**
+ * @brief Stub of Nordic's BeforeCallback.
+ */
+public interface BeforeCallback
+{
+
+    void onRequestStarted(final BluetoothDevice device);
+}
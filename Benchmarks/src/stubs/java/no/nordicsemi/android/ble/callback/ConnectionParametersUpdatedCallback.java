@@ -0,0 +1,12 @@
+package no.nordicsemi.android.ble.callback;
+
+import android.bluetooth.BluetoothDevice;
+
+/**
+ * @brief Stub of Nordic's ConnectionParametersUpdatedCallback.
+ */
+public interface ConnectionParametersUpdatedCallback
+{
+
+    void onConnectionUpdated(final BluetoothDevice device, final int interval, final int latency, final int timeout);
+}
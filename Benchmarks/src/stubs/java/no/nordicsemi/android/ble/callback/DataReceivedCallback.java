@@ -0,0 +1,13 @@
+package no.nordicsemi.android.ble.callback;
+
+import android.bluetooth.BluetoothDevice;
+import no.nordicsemi.android.ble.data.Data;
+
+/**
+ * @brief Stub of Nordic's DataReceivedCallback.
+ */
+public interface DataReceivedCallback
+{
+
+    void onDataReceived(final BluetoothDevice device, final Data data);
+}
@@ -0,0 +1,13 @@
+package no.nordicsemi.android.ble.callback;
+
+import android.bluetooth.BluetoothDevice;
+import no.nordicsemi.android.ble.data.Data;
+
+/**
+ * @brief Stub of Nordic's DataSentCallback.
+ */
+public interface DataSentCallback
+{
+
+    void onDataSent(final BluetoothDevice device, final Data data);
+}
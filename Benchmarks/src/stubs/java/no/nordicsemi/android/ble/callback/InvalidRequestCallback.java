@@ -0,0 +1,9 @@
+package no.nordicsemi.android.ble.callback;
+
+/**
+ * @brief Stub of Nordic's InvalidRequestCallback.
+ */
+public interface InvalidRequestCallback
+{
+    void onInvalidRequest();
+}
@@ -0,0 +1,12 @@
+package no.nordicsemi.android.ble.callback;
+
+import android.bluetooth.BluetoothDevice;
+
+/**
+ * @brief Stub of Nordic's MtuCallback.
+ */
+public interface MtuCallback
+{
+
+    void onMtuChanged(final BluetoothDevice device, final int mtu);
+}
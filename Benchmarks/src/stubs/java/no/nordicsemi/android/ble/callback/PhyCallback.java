@@ -0,0 +1,15 @@
+package no.nordicsemi.android.ble.callback;
+
+import android.bluetooth.BluetoothDevice;
+
+/**
+ * @brief Stub of Nordic's PhyCallback.
+ */
+public interface PhyCallback
+{
+    int PHY_LE_1M = 1;
+    int PHY_LE_2M = 2;
+    int PHY_LE_CODED = 3;
+
+    void onPhyChanged(final BluetoothDevice device, final int txPhy, final int rxPhy);
+}
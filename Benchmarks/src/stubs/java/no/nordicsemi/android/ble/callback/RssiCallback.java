@@ -0,0 +1,12 @@
+package no.nordicsemi.android.ble.callback;
+
+import android.bluetooth.BluetoothDevice;
+
+/**
+ * @brief Stub of Nordic's RssiCallback.
+ */
+public interface RssiCallback
+{
+
+    void onRssiRead(final BluetoothDevice device, final int rssi);
+}
@@ -0,0 +1,12 @@
+package no.nordicsemi.android.ble.callback;
+
+import android.bluetooth.BluetoothDevice;
+
+/**
+ * @brief Stub of Nordic's WriteProgressCallback.
+ */
+public interface WriteProgressCallback
+{
+
+    void onPacketSent(final BluetoothDevice device, final byte[] data, final int index);
+}
@@ -0,0 +1,36 @@
+package no.nordicsemi.android.ble.data;
+
+import java.util.Arrays;
+
+/**
+ * @brief Stub of Nordic's Data.
+ */
+public class Data
+{
+    protected byte[] mValue;
+
+    public Data()
+    {
+    }
+
+    public Data(final byte[] value)
+    {
+        mValue = value;
+    }
+
+    public byte[] getValue()
+    {
+        return mValue;
+    }
+
+    public int size()
+    {
+        return mValue == null ? 0 : mValue.length;
+    }
+
+    @Override
+    public String toString()
+    {
+        return Arrays.toString(mValue);
+    }
+}
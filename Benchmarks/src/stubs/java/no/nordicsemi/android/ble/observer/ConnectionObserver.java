@@ -0,0 +1,30 @@
+package no.nordicsemi.android.ble.observer;
+
+import android.bluetooth.BluetoothDevice;
+
+/**
+ * @brief Stub of Nordic's ConnectionObserver.
+ */
+public interface ConnectionObserver
+{
+    int REASON_UNKNOWN = -1;
+    int REASON_SUCCESS = 0;
+    int REASON_TERMINATE_LOCAL_HOST = 1;
+    int REASON_TERMINATE_PEER_USER = 2;
+    int REASON_LINK_LOSS = 3;
+    int REASON_NOT_SUPPORTED = 4;
+    int REASON_CANCELLED = 5;
+    int REASON_TIMEOUT = 10;
+
+    void onDeviceConnecting(final BluetoothDevice device);
+
+    void onDeviceConnected(final BluetoothDevice device);
+
+    void onDeviceFailedToConnect(final BluetoothDevice device, final int reason);
+
+    void onDeviceReady(final BluetoothDevice device);
+
+    void onDeviceDisconnecting(final BluetoothDevice device);
+
+    void onDeviceDisconnected(final BluetoothDevice device, final int reason);
+}
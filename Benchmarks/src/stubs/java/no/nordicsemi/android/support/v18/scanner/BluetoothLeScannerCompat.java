@@ -0,0 +1,85 @@
+package no.nordicsemi.android.support.v18.scanner;
+
+import java.util.List;
+
+/**
+ * @brief Stub of Nordic's BluetoothLeScannerCompat, results are pushed
+ *        by the caller with deliverScanResult().
+ */
+public final class BluetoothLeScannerCompat
+{
+    private static final BluetoothLeScannerCompat _instance = new BluetoothLeScannerCompat();
+
+    private ScanCallback _callback;
+    private List<ScanFilter> _filters;
+    private ScanSettings _settings;
+    private int _startsCount;
+
+    private BluetoothLeScannerCompat() {}
+
+    public static BluetoothLeScannerCompat getScanner()
+    {
+        return _instance;
+    }
+
+    public synchronized void startScan(final List<ScanFilter> filters, final ScanSettings settings, final ScanCallback callback)
+    {
+        _filters = filters;
+        _settings = settings;
+        _callback = callback;
+        ++_startsCount;
+    }
+
+    public synchronized void stopScan(final ScanCallback callback)
+    {
+        if (_callback == callback)
+        {
+            _callback = null;
+            _filters = null;
+            _settings = null;
+        }
+    }
+
+    /**
+     * @brief Stub only: gets the settings of the running scan, or null.
+     */
+    public synchronized ScanSettings getSettings()
+    {
+        return _settings;
+    }
+
+    /**
+     * @brief Stub only: gets the filters of the running scan, or null.
+     */
+    public synchronized List<ScanFilter> getFilters()
+    {
+        return _filters;
+    }
+
+    /**
+     * @brief Stub only: gets the number of scans started so far.
+     */
+    public synchronized int getStartsCount()
+    {
+        return _startsCount;
+    }
+
+    /**
+     * @brief Stub only: reports the given result to the running scan, if any.
+     *
+     * @return Whether a scan was running.
+     */
+    public boolean deliverScanResult(final ScanResult result)
+    {
+        ScanCallback callback;
+        synchronized (this)
+        {
+            callback = _callback;
+        }
+        if (callback != null)
+        {
+            callback.onScanResult(1, result);
+        }
+        return callback != null;
+    }
+}
@@ -0,0 +1,28 @@
+package no.nordicsemi.android.support.v18.scanner;
+
+import java.util.List;
+
+/**
+ * @brief Stub of Nordic's ScanCallback.
+ */
+public abstract class ScanCallback
+{
+    public static final int SCAN_FAILED_ALREADY_STARTED = 1;
+    public static final int SCAN_FAILED_APPLICATION_REGISTRATION_FAILED = 2;
+    public static final int SCAN_FAILED_INTERNAL_ERROR = 3;
+    public static final int SCAN_FAILED_FEATURE_UNSUPPORTED = 4;
+    public static final int SCAN_FAILED_OUT_OF_HARDWARE_RESOURCES = 5;
+    public static final int SCAN_FAILED_SCANNING_TOO_FREQUENTLY = 6;
+
+    public void onScanResult(final int callbackType, final ScanResult result)
+    {
+    }
+
+    public void onBatchScanResults(final List<ScanResult> results)
+    {
+    }
+
+    public void onScanFailed(final int errorCode)
+    {
+    }
+}
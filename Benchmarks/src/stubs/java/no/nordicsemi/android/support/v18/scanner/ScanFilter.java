@@ -0,0 +1,50 @@
+package no.nordicsemi.android.support.v18.scanner;
+
+import android.os.ParcelUuid;
+
+/**
+ * @brief Stub of Nordic's ScanFilter.
+ */
+public final class ScanFilter
+{
+    /**
+     * @brief Stub of Nordic's ScanFilter.Builder.
+     */
+    public static final class Builder
+    {
+        private ParcelUuid _serviceUuid;
+
+        public Builder setServiceUuid(final ParcelUuid serviceUuid)
+        {
+            _serviceUuid = serviceUuid;
+            return this;
+        }
+
+        public Builder setManufacturerData(final int manufacturerId, final byte[] manufacturerData, final byte[] manufacturerDataMask)
+        {
+            return this;
+        }
+
+        public Builder setServiceData(final ParcelUuid serviceDataUuid, final byte[] serviceData, final byte[] serviceDataMask)
+        {
+            return this;
+        }
+
+        public ScanFilter build()
+        {
+            return new ScanFilter(_serviceUuid);
+        }
+    }
+
+    private final ParcelUuid _serviceUuid;
+
+    private ScanFilter(final ParcelUuid serviceUuid)
+    {
+        _serviceUuid = serviceUuid;
+    }
+
+    public ParcelUuid getServiceUuid()
+    {
+        return _serviceUuid;
+    }
+}
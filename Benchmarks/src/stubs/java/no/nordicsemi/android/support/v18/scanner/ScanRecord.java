@@ -0,0 +1,82 @@
+package no.nordicsemi.android.support.v18.scanner;
+
+import java.util.List;
+import java.util.Map;
+
+import android.os.ParcelUuid;
+import android.util.SparseArray;
+
+/**
+ * @brief Stub of Nordic's ScanRecord.
+ */
+public final class ScanRecord
+{
+    private final List<ParcelUuid> _serviceUuids;
+    private final List<ParcelUuid> _serviceSolicitationUuids;
+    private final SparseArray<byte[]> _manufacturerSpecificData;
+    private final Map<ParcelUuid, byte[]> _serviceData;
+    private final int _txPowerLevel;
+    private final String _deviceName;
+    private final byte[] _bytes;
+
+    /**
+     * @brief Stub only: creates a record with the given advertisement data, any of them may be null.
+     */
+    public ScanRecord(final List<ParcelUuid> serviceUuids, final List<ParcelUuid> serviceSolicitationUuids,
+                      final SparseArray<byte[]> manufacturerSpecificData, final Map<ParcelUuid, byte[]> serviceData,
+                      final int txPowerLevel, final String deviceName, final byte[] bytes)
+    {
+        _serviceUuids = serviceUuids;
+        _serviceSolicitationUuids = serviceSolicitationUuids;
+        _manufacturerSpecificData = manufacturerSpecificData;
+        _serviceData = serviceData;
+        _txPowerLevel = txPowerLevel;
+        _deviceName = deviceName;
+        _bytes = bytes;
+    }
+
+    public List<ParcelUuid> getServiceUuids()
+    {
+        return _serviceUuids;
+    }
+
+    public List<ParcelUuid> getServiceSolicitationUuids()
+    {
+        return _serviceSolicitationUuids;
+    }
+
+    public SparseArray<byte[]> getManufacturerSpecificData()
+    {
+        return _manufacturerSpecificData;
+    }
+
+    public byte[] getManufacturerSpecificData(final int manufacturerId)
+    {
+        return _manufacturerSpecificData == null ? null : _manufacturerSpecificData.get(manufacturerId);
+    }
+
+    public Map<ParcelUuid, byte[]> getServiceData()
+    {
+        return _serviceData;
+    }
+
+    public byte[] getServiceData(final ParcelUuid serviceDataUuid)
+    {
+        return _serviceData == null ? null : _serviceData.get(serviceDataUuid);
+    }
+
+    public int getTxPowerLevel()
+    {
+        return _txPowerLevel;
+    }
+
+    public String getDeviceName()
+    {
+        return _deviceName;
+    }
+
+    public byte[] getBytes()
+    {
+        return _bytes;
+    }
+}
@@ -0,0 +1,96 @@
+package no.nordicsemi.android.support.v18.scanner;
+
+import android.bluetooth.BluetoothDevice;
+
+/**
+ * @brief Stub of Nordic's ScanResult.
+ */
+public final class ScanResult
+{
+    public static final int TX_POWER_NOT_PRESENT = 127;
+
+    private static final int ET_CONNECTABLE_MASK = 0x01;
+    private static final int ET_LEGACY_MASK = 0x10;
+
+    private final BluetoothDevice _device;
+    private final int _eventType;
+    private final int _primaryPhy;
+    private final int _secondaryPhy;
+    private final int _advertisingSid;
+    private final int _txPower;
+    private final int _rssi;
+    private final int _periodicAdvertisingInterval;
+    private final ScanRecord _scanRecord;
+    private final long _timestampNanos;
+
+    public ScanResult(final BluetoothDevice device, final int eventType, final int primaryPhy, final int secondaryPhy,
+                      final int advertisingSid, final int txPower, final int rssi, final int periodicAdvertisingInterval,
+                      final ScanRecord scanRecord, final long timestampNanos)
+    {
+        _device = device;
+        _eventType = eventType;
+        _primaryPhy = primaryPhy;
+        _secondaryPhy = secondaryPhy;
+        _advertisingSid = advertisingSid;
+        _txPower = txPower;
+        _rssi = rssi;
+        _periodicAdvertisingInterval = periodicAdvertisingInterval;
+        _scanRecord = scanRecord;
+        _timestampNanos = timestampNanos;
+    }
+
+    public BluetoothDevice getDevice()
+    {
+        return _device;
+    }
+
+    public ScanRecord getScanRecord()
+    {
+        return _scanRecord;
+    }
+
+    public int getRssi()
+    {
+        return _rssi;
+    }
+
+    public long getTimestampNanos()
+    {
+        return _timestampNanos;
+    }
+
+    public boolean isLegacy()
+    {
+        return (_eventType & ET_LEGACY_MASK) != 0;
+    }
+
+    public boolean isConnectable()
+    {
+        return (_eventType & ET_CONNECTABLE_MASK) != 0;
+    }
+
+    public int getPrimaryPhy()
+    {
+        return _primaryPhy;
+    }
+
+    public int getSecondaryPhy()
+    {
+        return _secondaryPhy;
+    }
+
+    public int getAdvertisingSid()
+    {
+        return _advertisingSid;
+    }
+
+    public int getTxPower()
+    {
+        return _txPower;
+    }
+
+    public int getPeriodicAdvertisingInterval()
+    {
+        return _periodicAdvertisingInterval;
+    }
+}
@@ -0,0 +1,71 @@
+package no.nordicsemi.android.support.v18.scanner;
+
+/**
+ * @brief Stub of Nordic's ScanSettings.
+ */
+public final class ScanSettings
+{
+    public static final int SCAN_MODE_OPPORTUNISTIC = -1;
+    public static final int SCAN_MODE_LOW_POWER = 0;
+    public static final int SCAN_MODE_BALANCED = 1;
+    public static final int SCAN_MODE_LOW_LATENCY = 2;
+
+    /**
+     * @brief Stub of Nordic's ScanSettings.Builder.
+     */
+    public static final class Builder
+    {
+        private int _scanMode = SCAN_MODE_LOW_POWER;
+        private long _reportDelayMillis;
+        private boolean _legacy = true;
+
+        public Builder setScanMode(final int scanMode)
+        {
+            _scanMode = scanMode;
+            return this;
+        }
+
+        public Builder setReportDelay(final long reportDelayMillis)
+        {
+            _reportDelayMillis = reportDelayMillis;
+            return this;
+        }
+
+        public Builder setLegacy(final boolean legacy)
+        {
+            _legacy = legacy;
+            return this;
+        }
+
+        public ScanSettings build()
+        {
+            return new ScanSettings(_scanMode, _reportDelayMillis, _legacy);
+        }
+    }
+
+    private final int _scanMode;
+    private final long _reportDelayMillis;
+    private final boolean _legacy;
+
+    private ScanSettings(final int scanMode, final long reportDelayMillis, final boolean legacy)
+    {
+        _scanMode = scanMode;
+        _reportDelayMillis = reportDelayMillis;
+        _legacy = legacy;
+    }
+
+    public int getScanMode()
+    {
+        return _scanMode;
+    }
+
+    public long getReportDelayMillis()
+    {
+        return _reportDelayMillis;
+    }
+
+    public boolean getLegacy()
+    {
+        return _legacy;
+    }
+}
@@ -0,0 +1,75 @@
+package com.systemic.bluetoothle;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import android.bluetooth.BluetoothDevice;
+
+import no.nordicsemi.android.support.v18.scanner.ScanResult;
+
+/**
+ * @brief Checks the encoding of the device name in binary advertisement records.
+ */
+public class AdvertisementRecordTest
+{
+    private static final byte[] REPLACEMENT = { (byte)0xEF, (byte)0xBF, (byte)0xBD };
+
+    private static byte[] writeName(final String name)
+    {
+        ScanResult scanResult = new ScanResult(new BluetoothDevice("01:02:03:04:05:06"), 0x11, 1, 0, 0xFF, 127, -50, 0, null, 0);
+        int size = AdvertisementRecord.computeSize(scanResult, name);
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        AdvertisementRecord.write(buffer, scanResult, 0x010203040506L, name);
+
+        // The record is exactly the computed size and the name section comes first
+        assertEquals(size, buffer.position());
+        assertEquals(size, buffer.getShort(0));
+        assertEquals(AdvertisementRecord.SECTION_NAME, buffer.get(AdvertisementRecord.HEADER_SIZE));
+        int start = AdvertisementRecord.HEADER_SIZE + AdvertisementRecord.SECTION_HEADER_SIZE;
+        assertEquals(size - start, buffer.getShort(AdvertisementRecord.HEADER_SIZE + 1));
+        return Arrays.copyOfRange(buffer.array(), start, size);
+    }
+
+    private static byte[] concat(final byte[]... arrays)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(Arrays.stream(arrays).mapToInt(a -> a.length).sum());
+        for (byte[] array : arrays) buffer.put(array);
+        return buffer.array();
+    }
+
+    @Test
+    public void validNamesMatchTheStandardEncoder()
+    {
+        for (String name : new String[] { "", "Pixel", "Dé à jouer", "サイコロ", "Die 🎲" })
+        {
+            assertArrayEquals(name, name.getBytes(StandardCharsets.UTF_8), writeName(name));
+        }
+    }
+
+    @Test
+    public void loneHighSurrogateIsReplaced()
+    {
+        assertArrayEquals(concat(new byte[] { 'a' }, REPLACEMENT, new byte[] { 'b' }), writeName("a\uD83Cb"));
+        assertArrayEquals(concat(new byte[] { 'a' }, REPLACEMENT), writeName("a\uD83C"));
+    }
+
+    @Test
+    public void loneLowSurrogateIsReplaced()
+    {
+        assertArrayEquals(concat(REPLACEMENT, new byte[] { 'z' }), writeName("\uDFB2z"));
+    }
+
+    @Test
+    public void highSurrogateBeforeAPairIsReplaced()
+    {
+        byte[] pair = "🎲".getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals(concat(REPLACEMENT, pair), writeName("\uD83C🎲"));
+    }
+}
@@ -0,0 +1,35 @@
+package com.systemic.bluetoothle;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * @brief Checks BluetoothAddress gives the same results as the code it replaced,
+ *        see BluetoothAddressBenchmark.
+ */
+public class BluetoothAddressTest
+{
+    private final BluetoothAddressBenchmark _benchmark = new BluetoothAddressBenchmark();
+
+    @Test
+    public void matchesLegacyConversions()
+    {
+        assertEquals(_benchmark.toLongLegacy(), _benchmark.toLong());
+        assertEquals(_benchmark.toStringLegacy(), _benchmark.toStringFast());
+    }
+
+    @Test
+    public void roundTrips()
+    {
+        assertEquals(0xC0FFEE012345L, BluetoothAddress.toLong("c0:ff:ee:01:23:45"));
+        assertEquals("00:00:00:00:00:01", BluetoothAddress.toString(1));
+        assertEquals(0xFFFFFFFFFFFFL, BluetoothAddress.toLong(BluetoothAddress.toString(0xFFFFFFFFFFFFL)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMissingSeparator()
+    {
+        BluetoothAddress.toLong("C0:FF:EE:01:23-45");
+    }
+}
@@ -0,0 +1,198 @@
+package com.systemic.bluetoothle;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+import android.os.FakeLooper;
+
+/**
+ * @brief Checks BulkTransfer against a fake die, with message loss, reordering
+ *        and disconnections.
+ */
+public class BulkTransferTest
+{
+    /**
+     * @brief Records the transfer notifications.
+     */
+    private static final class Callback implements BulkTransfer.Callback
+    {
+        final ArrayList<Integer> progress = new ArrayList<>();
+        int pausedCount;
+        int completedCount;
+        String error;
+
+        @Override
+        public void onProgress(final int ackedBytes, final int totalBytes)
+        {
+            progress.add(ackedBytes);
+        }
+
+        @Override
+        public void onPaused()
+        {
+            ++pausedCount;
+        }
+
+        @Override
+        public void onCompleted()
+        {
+            ++completedCount;
+        }
+
+        @Override
+        public void onFailed(final String error)
+        {
+            this.error = error;
+        }
+    }
+
+    private final Callback _callback = new Callback();
+
+    private static byte[] createData(final int size)
+    {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private BulkTransfer start(final FakeDie die, final byte[] data, final int windowSize)
+    {
+        BulkTransfer transfer = new BulkTransfer(die, data, windowSize, _callback, Clock.SYSTEM);
+        transfer.start();
+        return transfer;
+    }
+
+    private void assertCompleted(final FakeDie die, final byte[] data)
+    {
+        assertEquals(null, _callback.error);
+        assertEquals(1, _callback.completedCount);
+        assertArrayEquals(data, die.getData());
+        assertEquals(data.length, (int)_callback.progress.get(_callback.progress.size() - 1));
+    }
+
+    @Test
+    public void chunksAreSentOneAtATimeWithAWindowOfOne()
+    {
+        FakeDie die = new FakeDie(1);
+        byte[] data = createData(1000);
+        start(die, data, 1);
+        FakeLooper.advanceBy(10000);
+
+        assertCompleted(die, data);
+        assertEquals(10, die.getDataWritesCount());
+        for (int i = 0; i < 10; ++i)
+        {
+            assertEquals((i + 1) * 100, (int)_callback.progress.get(i));
+        }
+    }
+
+    @Test
+    public void lastPartialChunkIsAcknowledgedWithTheDataSize()
+    {
+        FakeDie die = new FakeDie(2);
+        byte[] data = createData(1234);
+        start(die, data, 4);
+        FakeLooper.advanceBy(10000);
+
+        assertCompleted(die, data);
+        assertEquals(13, die.getDataWritesCount());
+    }
+
+    @Test
+    public void reorderedMessagesAreAcknowledged()
+    {
+        FakeDie die = new FakeDie(3);
+        die.setLatencyMillis(5, 200);
+        byte[] data = createData(3050);
+        BulkTransfer transfer = start(die, data, 8);
+        FakeLooper.advanceBy(30000);
+
+        assertCompleted(die, data);
+        assertTrue(transfer.getBytesPerSecond() > 0);
+    }
+
+    @Test
+    public void lostMessagesAreSentAgain()
+    {
+        FakeDie die = new FakeDie(4);
+        die.setLossRate(0.15);
+        die.setLatencyMillis(5, 50);
+        byte[] data = createData(5000);
+        start(die, data, 6);
+        FakeLooper.advanceBy(120000);
+
+        assertCompleted(die, data);
+        assertTrue(die.getDataWritesCount() > 50);
+    }
+
+    @Test
+    public void transferResumesAfterReconnection()
+    {
+        FakeDie die = new FakeDie(5);
+        byte[] data = createData(4000);
+        BulkTransfer transfer = start(die, data, 4);
+
+        // Lose the connection half way
+        while (die.getReceivedEnd() < 2000)
+        {
+            FakeLooper.advanceBy(5);
+        }
+        die.disconnect();
+        FakeLooper.advanceBy(5000);
+        assertTrue(transfer.isPaused());
+        assertEquals(1, _callback.pausedCount);
+        final int ackedBytes = transfer.getAckedBytes();
+        // Acknowledgments in flight are lost with the connection
+        assertTrue((ackedBytes > 0) && (ackedBytes <= 2000));
+        final int sentCount = die.getDataWritesCount();
+
+        die.reconnect();
+        transfer.resume();
+        FakeLooper.advanceBy(10000);
+
+        assertFalse(transfer.isPaused());
+        assertCompleted(die, data);
+        assertEquals(2, die.getSetupWritesCount());
+        // Only the data that wasn't acknowledged is sent again
+        assertTrue(die.getDataWritesCount() - sentCount <= (4000 - ackedBytes) / 100 + 4);
+    }
+
+    @Test
+    public void lateAcknowledgmentsOfADieCountingBytesDontCompleteTheTransfer()
+    {
+        FakeDie die = new FakeDie(7);
+        die.setCountingBytes();
+        // The first chunk is sent at 20ms and again at 1500ms and 2500ms, the die
+        // acknowledges 300 bytes at 2520ms, then 100 bytes and 200 bytes
+        die.setReplyLatenciesMillis(10, 2600, 1500, 10);
+        start(die, createData(300), 1);
+        FakeLooper.advanceBy(60000);
+
+        // The acknowledgment of 300 bytes covers chunks that were never sent
+        assertEquals(0, _callback.completedCount);
+        assertEquals(2, _callback.progress.size());
+        assertEquals(100, (int)_callback.progress.get(0));
+        assertEquals(200, (int)_callback.progress.get(1));
+        assertEquals("No acknowledgment of bulk data at offset 200", _callback.error);
+    }
+
+    @Test
+    public void transferFailsWhenTheDieNeverAnswers()
+    {
+        FakeDie die = new FakeDie(6);
+        die.setLossRate(1);
+        start(die, createData(500), 2);
+        FakeLooper.advanceBy(60000);
+
+        assertEquals(0, _callback.completedCount);
+        assertEquals("No acknowledgment of bulk setup", _callback.error);
+        assertEquals(BulkTransfer.MAX_RETRIES + 1, die.getSetupWritesCount());
+    }
+}
@@ -0,0 +1,117 @@
+package com.systemic.bluetoothle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.UUID;
+
+import org.junit.Test;
+
+import android.bluetooth.BluetoothDevice;
+import android.os.FakeLooper;
+
+/**
+ * @brief Checks the characteristic handles of Peripheral and their persistence
+ *        in ServiceLayoutCache.
+ */
+public class CharacteristicHandlesTest
+{
+    private static final String PIXEL_SERVICE = FakeGatt.PIXEL_SERVICE.toString();
+    private static final String PIXEL_WRITE = FakeGatt.PIXEL_WRITE.toString();
+    private static final String BATTERY_SERVICE = FakeGatt.BATTERY_SERVICE.toString();
+    private static final String BATTERY_LEVEL = FakeGatt.BATTERY_LEVEL.toString();
+
+    @Test
+    public void handlesAreUnusableWhileDisconnectedAndValidAgainOnReconnection()
+    {
+        BluetoothDevice device = FakeGatt.createDie(0x0A0B0C0D0F01L);
+        Peripheral peripheral = FakeGatt.connect(device);
+        int handle = peripheral.resolveCharacteristic(PIXEL_SERVICE, PIXEL_WRITE, 0);
+        assertTrue(handle >= 0);
+
+        // Link loss invalidates the services
+        device.getFakeRemote().setReachable(false);
+        FakeLooper.runUntilIdle();
+        assertEquals(0, peripheral.getCharacteristicProperties(handle));
+
+        // On reconnection with the same services layout the handle is valid again
+        device.getFakeRemote().setReachable(true);
+        peripheral.connect((String)null, false, null);
+        FakeLooper.runUntilIdle();
+        assertTrue(peripheral.isReady());
+        assertTrue(peripheral.getCharacteristicProperties(handle) != 0);
+        assertEquals(handle, peripheral.resolveCharacteristic(PIXEL_SERVICE, PIXEL_WRITE, 0));
+    }
+
+    @Test
+    public void handlesAreStaleOnceTheServicesLayoutChanges()
+    {
+        BluetoothDevice device = FakeGatt.createDie(0x0A0B0C0D0F04L);
+        Peripheral peripheral = FakeGatt.connect(device);
+        int handle = peripheral.resolveCharacteristic(PIXEL_SERVICE, PIXEL_WRITE, 0);
+        assertTrue(handle >= 0);
+
+        // The device gets a new service while disconnected
+        device.getFakeRemote().setReachable(false);
+        FakeLooper.runUntilIdle();
+        device.getFakeRemote().addService(UUID.fromString("0000180a-0000-1000-8000-00805f9b34fb"));
+        device.getFakeRemote().setReachable(true);
+        peripheral.connect((String)null, false, null);
+        FakeLooper.runUntilIdle();
+        assertTrue(peripheral.isReady());
+
+        // The characteristic must be resolved again and gets a new handle
+        assertEquals(0, peripheral.getCharacteristicProperties(handle));
+        int newHandle = peripheral.resolveCharacteristic(PIXEL_SERVICE, PIXEL_WRITE, 0);
+        assertTrue(newHandle >= 0);
+        assertNotEquals(handle, newHandle);
+        assertTrue(peripheral.getCharacteristicProperties(newHandle) != 0);
+    }
+
+    @Test
+    public void handlesAreRestoredFromTheCache()
+    {
+        BluetoothDevice device = FakeGatt.createDie(0x0A0B0C0D0F02L);
+        Peripheral first = FakeGatt.connect(device);
+        int handle = first.resolveCharacteristic(BATTERY_SERVICE, BATTERY_LEVEL, 0);
+        first.disconnect(null);
+        FakeLooper.runUntilIdle();
+
+        // The cache is loaded in the background
+        Peripheral second = new Peripheral(device, FakeGatt.NO_OBSERVER);
+        FakeLooper.runUntilIdle();
+        second.connect((String)null, false, null);
+        FakeLooper.runUntilIdle();
+        int restored = second.resolveCharacteristic(BATTERY_SERVICE, BATTERY_LEVEL, 0);
+        assertEquals(handle & 0xFFFF, restored & 0xFFFF);
+    }
+
+    @Test
+    public void peripheralsOfTheSameDeviceKeepEachOtherKeys()
+    {
+        BluetoothDevice device = FakeGatt.createDie(0x0A0B0C0D0F03L);
+        Peripheral first = new Peripheral(device, FakeGatt.NO_OBSERVER);
+        Peripheral second = new Peripheral(device, FakeGatt.NO_OBSERVER);
+        FakeLooper.runUntilIdle();
+
+        first.connect((String)null, false, null);
+        FakeLooper.runUntilIdle();
+        first.resolveCharacteristic(PIXEL_SERVICE, PIXEL_WRITE, 0);
+        first.disconnect(null);
+        FakeLooper.runUntilIdle();
+
+        second.connect((String)null, false, null);
+        FakeLooper.runUntilIdle();
+        second.resolveCharacteristic(BATTERY_SERVICE, BATTERY_LEVEL, 0);
+        second.disconnect(null);
+        FakeLooper.runUntilIdle();
+
+        ServiceLayoutCache.Entry entry = ServiceLayoutCache.getInstance().load(BluetoothAddress.toLong(device.getAddress()));
+        assertNotNull(entry);
+        assertEquals(2, entry.keys.size());
+        assertTrue(entry.keys.contains(new ServiceLayoutCache.Key(FakeGatt.BATTERY_SERVICE, FakeGatt.BATTERY_LEVEL, 0)));
+        assertTrue(entry.keys.contains(new ServiceLayoutCache.Key(FakeGatt.PIXEL_SERVICE, FakeGatt.PIXEL_WRITE, 0)));
+    }
+}
@@ -0,0 +1,88 @@
+package com.systemic.bluetoothle;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.os.FakeLooper;
+
+/**
+ * @brief Checks Peripheral.writeCharacteristicChunked() on a fake connected peripheral.
+ */
+public class ChunkedWriteTest
+{
+    private static final class Callback implements Peripheral.WriteChunkedRequestCallback
+    {
+        final ArrayList<Integer> progress = new ArrayList<>();
+        int completedCount;
+        int failedStatus;
+
+        @Override
+        public void onProgress(final int bytesSent, final int totalBytes)
+        {
+            progress.add(bytesSent);
+        }
+
+        @Override
+        public void onRequestCompleted(final BluetoothDevice device)
+        {
+            ++completedCount;
+        }
+
+        @Override
+        public void onRequestFailed(final BluetoothDevice device, final int status)
+        {
+            failedStatus = status;
+        }
+
+        @Override
+        public void onInvalidRequest()
+        {
+            failedStatus = Integer.MIN_VALUE;
+        }
+    }
+
+    @Test
+    public void dataIsWrittenInMtuSizeChunks()
+    {
+        BluetoothDevice device = FakeGatt.createDie(0x0A0B0C0D0E10L);
+        Peripheral peripheral = FakeGatt.connect(device);
+        int handle = peripheral.resolveCharacteristic(FakeGatt.PIXEL_SERVICE.toString(), FakeGatt.PIXEL_WRITE.toString(), 0);
+        int operationsBefore = device.getFakeRemote().getOperationsCount();
+
+        byte[] data = new byte[50];
+        for (int i = 0; i < data.length; ++i) data[i] = (byte)i;
+        Callback callback = new Callback();
+        peripheral.writeCharacteristicChunked(handle, data, callback);
+        FakeLooper.runUntilIdle();
+
+        // Default MTU of 23 bytes gives chunks of 20 bytes
+        assertEquals(0, callback.failedStatus);
+        assertEquals(1, callback.completedCount);
+        assertEquals(3, device.getFakeRemote().getOperationsCount() - operationsBefore);
+        assertEquals(Arrays.asList(20, 40, 50), callback.progress);
+
+        BluetoothGattCharacteristic characteristic = device.getFakeRemote().getServices().get(0).getCharacteristic(FakeGatt.PIXEL_WRITE);
+        assertArrayEquals(data, characteristic.getValue());
+    }
+
+    @Test
+    public void invalidHandleIsReported()
+    {
+        Peripheral peripheral = FakeGatt.connect(FakeGatt.createDie(0x0A0B0C0D0E11L));
+
+        Callback callback = new Callback();
+        peripheral.writeCharacteristicChunked(0x7FFF, new byte[10], callback);
+        FakeLooper.runUntilIdle();
+
+        assertEquals(Integer.MIN_VALUE, callback.failedStatus);
+        assertTrue(callback.progress.isEmpty());
+    }
+}
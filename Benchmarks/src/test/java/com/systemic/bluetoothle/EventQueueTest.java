@@ -0,0 +1,151 @@
+package com.systemic.bluetoothle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import android.bluetooth.BluetoothDevice;
+import android.os.FakeLooper;
+
+/**
+ * @brief Checks EventQueue.poll() copies whole events, across the end of the ring,
+ *        and reports events too large for the destination buffer, and that a peripheral
+ *        pushes its connection events to the queue.
+ */
+public class EventQueueTest
+{
+    private static ByteBuffer payload(final int size, final int seed)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (int i = 0; i < size; ++i) buffer.put((byte)(seed + i));
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void assertEvent(final ByteBuffer events, final int type, final long address, final int payloadSize, final int seed)
+    {
+        int start = events.position();
+        assertEquals(EventQueue.HEADER_SIZE + payloadSize, events.getShort() & 0xFFFF);
+        assertEquals(type, events.get());
+        assertEquals(0, events.get());
+        assertEquals(address, events.getLong());
+        for (int i = 0; i < payloadSize; ++i)
+        {
+            assertEquals((byte)(seed + i), events.get());
+        }
+        assertEquals(EventQueue.HEADER_SIZE + payloadSize, events.position() - start);
+    }
+
+    @Test
+    public void eventsAreCopiedAcrossTheEndOfTheRing()
+    {
+        EventQueue queue = new EventQueue(64);
+        ByteBuffer dest = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+
+        // Move the read and write positions near the end of the ring
+        assertTrue(queue.offer(EventQueue.EVENT_SCAN_RESULT, 1, payload(40, 0)));
+        assertEquals(1, queue.poll(dest));
+        dest.clear();
+
+        // The second event wraps around
+        assertTrue(queue.offer(EventQueue.EVENT_SCAN_RESULT, 2, payload(4, 10)));
+        assertTrue(queue.offer(EventQueue.EVENT_VALUE_CHANGED, 3, payload(20, 20)));
+        assertEquals(2, queue.poll(dest));
+        assertEquals(2 * EventQueue.HEADER_SIZE + 24, dest.position());
+
+        dest.flip();
+        assertEvent(dest, EventQueue.EVENT_SCAN_RESULT, 2, 4, 10);
+        assertEvent(dest, EventQueue.EVENT_VALUE_CHANGED, 3, 20, 20);
+        assertEquals(0, queue.getPendingBytes());
+    }
+
+    @Test
+    public void onlyWholeEventsAreCopied()
+    {
+        EventQueue queue = new EventQueue(256);
+        queue.offer(EventQueue.EVENT_SCAN_RESULT, 1, payload(8, 0));
+        queue.offer(EventQueue.EVENT_SCAN_RESULT, 2, payload(8, 0));
+
+        // Room for one event and a half
+        ByteBuffer dest = ByteBuffer.allocate(30).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(1, queue.poll(dest));
+        assertEquals(20, dest.position());
+        assertEquals(20, queue.getPendingBytes());
+
+        dest.clear();
+        assertEquals(1, queue.poll(dest));
+        assertEquals(0, queue.getPendingBytes());
+    }
+
+    @Test
+    public void eventLargerThanBufferReportsItsSize()
+    {
+        EventQueue queue = new EventQueue(1024);
+        queue.offer(EventQueue.EVENT_SCAN_RESULT, 1, payload(100, 0));
+
+        ByteBuffer small = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(-(EventQueue.HEADER_SIZE + 100), queue.poll(small));
+        assertEquals(0, small.position());
+        assertEquals(EventQueue.HEADER_SIZE + 100, queue.getPendingBytes());
+
+        // Retrying with a large enough buffer gets the event
+        ByteBuffer large = ByteBuffer.allocate(EventQueue.HEADER_SIZE + 100).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(1, queue.poll(large));
+        large.flip();
+        assertEvent(large, EventQueue.EVENT_SCAN_RESULT, 1, 100, 0);
+    }
+
+    @Test
+    public void emptyQueueReturnsZero()
+    {
+        EventQueue queue = new EventQueue(64);
+        assertEquals(0, queue.poll(ByteBuffer.allocate(0)));
+        assertEquals(0, queue.poll(ByteBuffer.allocate(64)));
+    }
+
+    @Test
+    public void fullQueueDropsEvents()
+    {
+        EventQueue queue = new EventQueue(32);
+        assertTrue(queue.offer(EventQueue.EVENT_CONNECTION, 1, 0, 0));
+        assertFalse(queue.offer(EventQueue.EVENT_CONNECTION, 1, 0, 0));
+        assertEquals(1, queue.getDroppedCount());
+    }
+
+    @Test
+    public void connectionEventsAreQueuedWithoutObserver()
+    {
+        BluetoothDevice device = FakeGatt.createDie(0x0A0B0C0D1101L);
+        Peripheral peripheral = new Peripheral(device, null);
+        EventQueue queue = new EventQueue(1024);
+        peripheral.setEventQueue(queue);
+        peripheral.connect((String)null, false, null);
+        FakeLooper.runUntilIdle();
+        peripheral.disconnect(null);
+        FakeLooper.runUntilIdle();
+
+        ByteBuffer dest = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+        int count = queue.poll(dest);
+        dest.flip();
+        ArrayList<Integer> events = new ArrayList<>();
+        for (int i = 0; i < count; ++i)
+        {
+            assertEquals(EventQueue.HEADER_SIZE + 8, dest.getShort() & 0xFFFF);
+            assertEquals(EventQueue.EVENT_CONNECTION, dest.get());
+            dest.get();
+            assertEquals(0x0A0B0C0D1101L, dest.getLong());
+            events.add(dest.getInt());
+            dest.getInt();
+        }
+        assertEquals(Arrays.asList(
+            EventQueue.CONNECTION_CONNECTING, EventQueue.CONNECTION_CONNECTED, EventQueue.CONNECTION_READY,
+            EventQueue.CONNECTION_DISCONNECTING, EventQueue.CONNECTION_DISCONNECTED), events);
+    }
+}
@@ -0,0 +1,207 @@
+package com.systemic.bluetoothle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * @brief Checks the round-robin order and the running limit of FairScheduler.
+ */
+public class FairSchedulerTest
+{
+    /**
+     * @brief An operation recording when it's started, completed by the test.
+     */
+    private static class TestOperation implements FairScheduler.Operation
+    {
+        final String name;
+        final List<String> started;
+        boolean canceled;
+        RuntimeException failure;
+
+        TestOperation(final String name, final List<String> started)
+        {
+            this.name = name;
+            this.started = started;
+        }
+
+        @Override
+        public void run()
+        {
+            started.add(name);
+        }
+
+        @Override
+        public void cancel()
+        {
+            canceled = true;
+        }
+
+        @Override
+        public void fail(final RuntimeException exception)
+        {
+            failure = exception;
+        }
+    }
+
+    /**
+     * @brief An operation throwing once started.
+     */
+    private static class ThrowingOperation extends TestOperation
+    {
+        ThrowingOperation(final String name, final List<String> started)
+        {
+            super(name, started);
+        }
+
+        @Override
+        public void run()
+        {
+            super.run();
+            throw new IllegalStateException(name);
+        }
+    }
+
+    @Test
+    public void ownersAreServedInTurn()
+    {
+        FairScheduler scheduler = new FairScheduler(1);
+        List<String> started = new ArrayList<>();
+        Object a = "a", b = "b", c = "c";
+
+        // Owner a floods the scheduler before b and c submit one operation each
+        List<TestOperation> operations = new ArrayList<>();
+        for (int i = 0; i < 4; ++i)
+        {
+            TestOperation operation = new TestOperation("a" + i, started);
+            operations.add(operation);
+            scheduler.submit(a, operation);
+        }
+        TestOperation b0 = new TestOperation("b0", started);
+        TestOperation c0 = new TestOperation("c0", started);
+        operations.add(b0);
+        operations.add(c0);
+        scheduler.submit(b, b0);
+        scheduler.submit(c, c0);
+
+        // Complete the running operation until all are done
+        while (started.size() < operations.size())
+        {
+            String running = started.get(started.size() - 1);
+            TestOperation operation = operations.stream().filter(o -> o.name.equals(running)).findFirst().get();
+            scheduler.complete(operation);
+        }
+
+        assertEquals(Arrays.asList("a0", "a1", "b0", "c0", "a2", "a3"), started);
+    }
+
+    @Test
+    public void runningOperationsAreLimited()
+    {
+        FairScheduler scheduler = new FairScheduler(2);
+        List<String> started = new ArrayList<>();
+        TestOperation[] operations = new TestOperation[5];
+        for (int i = 0; i < operations.length; ++i)
+        {
+            operations[i] = new TestOperation("op" + i, started);
+            scheduler.submit("owner" + i, operations[i]);
+        }
+
+        assertEquals(2, scheduler.getRunningCount());
+        assertEquals(3, scheduler.getPendingCount());
+
+        scheduler.complete(operations[1]);
+        assertEquals(2, scheduler.getRunningCount());
+        assertEquals(Arrays.asList("op0", "op1", "op2"), started);
+    }
+
+    @Test
+    public void extraCompletionsAreIgnored()
+    {
+        FairScheduler scheduler = new FairScheduler(1);
+        List<String> started = new ArrayList<>();
+        TestOperation first = new TestOperation("first", started);
+        TestOperation second = new TestOperation("second", started);
+        TestOperation third = new TestOperation("third", started);
+        scheduler.submit("a", first);
+        scheduler.submit("a", second);
+        scheduler.submit("a", third);
+
+        scheduler.complete(first);
+        scheduler.complete(first);
+
+        // A second completion of the first operation must not start the third one
+        assertEquals(Arrays.asList("first", "second"), started);
+        assertEquals(1, scheduler.getRunningCount());
+        assertEquals(1, scheduler.getPendingCount());
+    }
+
+    @Test
+    public void throwingOperationIsCompletedOnce()
+    {
+        FairScheduler scheduler = new FairScheduler(1);
+        List<String> started = new ArrayList<>();
+        TestOperation throwing = new ThrowingOperation("throwing", started);
+        TestOperation next = new TestOperation("next", started);
+        TestOperation last = new TestOperation("last", started);
+
+        // The exception is given to the operation rather than thrown to the submitter
+        scheduler.submit("a", throwing);
+        assertEquals("throwing", throwing.failure.getMessage());
+        assertEquals(0, scheduler.getRunningCount());
+
+        scheduler.submit("a", next);
+        scheduler.submit("a", last);
+
+        // The request callback of the throwing operation may still fire later
+        scheduler.complete(throwing);
+        assertEquals(Arrays.asList("throwing", "next"), started);
+        assertEquals(1, scheduler.getRunningCount());
+        assertEquals(1, scheduler.getPendingCount());
+    }
+
+    @Test
+    public void exceptionIsNotThrownToTheCompletingThread()
+    {
+        FairScheduler scheduler = new FairScheduler(1);
+        List<String> started = new ArrayList<>();
+        TestOperation first = new TestOperation("first", started);
+        TestOperation throwing = new ThrowingOperation("throwing", started);
+        TestOperation last = new TestOperation("last", started);
+        scheduler.submit("a", first);
+        scheduler.submit("b", throwing);
+        scheduler.submit("c", last);
+
+        // Completing the first operation starts the throwing one, and then the last one
+        scheduler.complete(first);
+        assertNull(first.failure);
+        assertEquals("throwing", throwing.failure.getMessage());
+        assertEquals(Arrays.asList("first", "throwing", "last"), started);
+        assertEquals(1, scheduler.getRunningCount());
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    @Test
+    public void cancelDropsPendingOperationsOfOwner()
+    {
+        FairScheduler scheduler = new FairScheduler(1);
+        List<String> started = new ArrayList<>();
+        TestOperation a0 = new TestOperation("a0", started);
+        TestOperation a1 = new TestOperation("a1", started);
+        TestOperation b0 = new TestOperation("b0", started);
+        scheduler.submit("a", a0);
+        scheduler.submit("a", a1);
+        scheduler.submit("b", b0);
+
+        scheduler.cancel("a");
+        assertTrue(a1.canceled);
+        scheduler.complete(a0);
+        assertEquals(Arrays.asList("a0", "b0"), started);
+    }
+}
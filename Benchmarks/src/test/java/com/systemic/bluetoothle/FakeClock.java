@@ -0,0 +1,20 @@
+package com.systemic.bluetoothle;
+
+/**
+ * @brief A clock only moving forward when told to.
+ */
+class FakeClock implements Clock
+{
+    private long _now = 1000;
+
+    @Override
+    public long elapsedMillis()
+    {
+        return _now;
+    }
+
+    void advance(final long millis)
+    {
+        _now += millis;
+    }
+}
@@ -0,0 +1,250 @@
+package com.systemic.bluetoothle;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import android.os.Handler;
+
+import no.nordicsemi.android.ble.callback.FailCallback;
+
+/**
+ * @brief A Pixel die receiving bulk data, with a lossy link reordering the messages,
+ *        run by FakeLooper.
+ *
+ * The die stores each BulkData message at its offset and answers with a BulkDataAck
+ * message holding the end offset of the data received without gap. A BulkSetup message
+ * with the size of the current data keeps the data received so far.
+ *
+ * Once setCountingBytes() is called, the die rather answers with the total size of the
+ * BulkData messages received since the last BulkSetup message, duplicates included,
+ * like the receiving code of Pixel.DataTransfer.cs does.
+ */
+class FakeDie implements BulkTransfer.Link
+{
+    private static final byte MESSAGE_BULK_SETUP = 5;
+    private static final byte MESSAGE_BULK_SETUP_ACK = 6;
+    private static final byte MESSAGE_BULK_DATA = 7;
+    private static final byte MESSAGE_BULK_DATA_ACK = 8;
+
+    private final Handler _handler = new Handler();
+    private final Random _random;
+    private double _lossRate;
+    private long _minLatencyMillis = 10;
+    private long _maxLatencyMillis = 10;
+    private final ArrayDeque<Long> _replyLatencies = new ArrayDeque<>();
+    private boolean _countingBytes;
+
+    private BulkTransfer _transfer;
+    private boolean _connected = true;
+    // Incremented on disconnection, messages in flight from a previous connection are lost
+    private int _connectionId;
+
+    private byte[] _data;
+    private boolean[] _received;
+    private int _receivedEnd;
+    private int _dataWritesCount;
+    private int _setupWritesCount;
+
+    FakeDie(final long seed)
+    {
+        _random = new Random(seed);
+    }
+
+    /**
+     * @brief Sets the probability of losing a message, in each direction.
+     */
+    void setLossRate(final double lossRate)
+    {
+        _lossRate = lossRate;
+    }
+
+    /**
+     * @brief Sets the range of the random latency of messages, a range wider than
+     *        the interval between two messages reorders them.
+     */
+    void setLatencyMillis(final long minLatencyMillis, final long maxLatencyMillis)
+    {
+        _minLatencyMillis = minLatencyMillis;
+        _maxLatencyMillis = maxLatencyMillis;
+    }
+
+    /**
+     * @brief Sets the latencies of the next replies of the die, one per reply,
+     *        the following ones getting the random latency.
+     */
+    void setReplyLatenciesMillis(final long... latenciesMillis)
+    {
+        for (long latency : latenciesMillis)
+        {
+            _replyLatencies.add(latency);
+        }
+    }
+
+    /**
+     * @brief Makes the die acknowledge the number of bytes received rather than
+     *        the end offset of the data received without gap.
+     */
+    void setCountingBytes()
+    {
+        _countingBytes = true;
+    }
+
+    void disconnect()
+    {
+        _connected = false;
+        ++_connectionId;
+    }
+
+    void reconnect()
+    {
+        _connected = true;
+    }
+
+    byte[] getData()
+    {
+        return _data;
+    }
+
+    int getReceivedEnd()
+    {
+        return _receivedEnd;
+    }
+
+    /**
+     * @brief Gets the number of BulkData messages written, lost or not.
+     */
+    int getDataWritesCount()
+    {
+        return _dataWritesCount;
+    }
+
+    /**
+     * @brief Gets the number of BulkSetup messages written, lost or not.
+     */
+    int getSetupWritesCount()
+    {
+        return _setupWritesCount;
+    }
+
+    @Override
+    public void write(final byte[] message, final Peripheral.RequestCallback callback)
+    {
+        if (!_connected)
+        {
+            _handler.post(() -> callback.onRequestFailed(null, FailCallback.REASON_DEVICE_DISCONNECTED));
+            return;
+        }
+
+        if (message[0] == MESSAGE_BULK_SETUP)
+        {
+            ++_setupWritesCount;
+        }
+        else if (message[0] == MESSAGE_BULK_DATA)
+        {
+            ++_dataWritesCount;
+        }
+
+        // Written without response, the write completes once sent
+        final byte[] copy = message.clone();
+        _handler.post(() -> callback.onRequestCompleted(null));
+        transmit(() -> onReceived(copy), randomLatency());
+    }
+
+    @Override
+    public void startReceiving(final BulkTransfer transfer)
+    {
+        _transfer = transfer;
+    }
+
+    @Override
+    public void stopReceiving()
+    {
+        _transfer = null;
+    }
+
+    @Override
+    public void postDelayed(final Runnable runnable, final long delayMillis)
+    {
+        _handler.postDelayed(runnable, delayMillis);
+    }
+
+    @Override
+    public void removeCallbacks(final Runnable runnable)
+    {
+        _handler.removeCallbacks(runnable);
+    }
+
+    private long randomLatency()
+    {
+        return _minLatencyMillis + (long)(_random.nextDouble() * (_maxLatencyMillis - _minLatencyMillis));
+    }
+
+    /**
+     * @brief Runs the given runnable after the given latency, unless the message is lost.
+     */
+    private void transmit(final Runnable runnable, final long latency)
+    {
+        if (_random.nextDouble() < _lossRate)
+        {
+            return;
+        }
+        final int connectionId = _connectionId;
+        _handler.postDelayed(() ->
+        {
+            if (_connected && (connectionId == _connectionId))
+            {
+                runnable.run();
+            }
+        }, latency);
+    }
+
+    private void onReceived(final byte[] message)
+    {
+        if (message[0] == MESSAGE_BULK_SETUP)
+        {
+            final int size = (message[1] & 0xFF) | ((message[2] & 0xFF) << 8);
+            if ((_data == null) || (_data.length != size) || _countingBytes)
+            {
+                _data = new byte[size];
+                _received = new boolean[size];
+                _receivedEnd = 0;
+            }
+            reply(new byte[] { MESSAGE_BULK_SETUP_ACK });
+        }
+        else if ((message[0] == MESSAGE_BULK_DATA) && (_data != null))
+        {
+            final int length = message[1] & 0xFF;
+            final int offset = (message[2] & 0xFF) | ((message[3] & 0xFF) << 8);
+            for (int i = 0; i < length; ++i)
+            {
+                _data[offset + i] = message[4 + i];
+                _received[offset + i] = true;
+            }
+            if (_countingBytes)
+            {
+                _receivedEnd += length;
+            }
+            else
+            {
+                while ((_receivedEnd < _data.length) && _received[_receivedEnd])
+                {
+                    ++_receivedEnd;
+                }
+            }
+            reply(new byte[] { MESSAGE_BULK_DATA_ACK, (byte)_receivedEnd, (byte)(_receivedEnd >> 8) });
+        }
+    }
+
+    private void reply(final byte[] message)
+    {
+        final Long latency = _replyLatencies.poll();
+        transmit(() ->
+        {
+            BulkTransfer transfer = _transfer;
+            if (transfer != null)
+            {
+                transfer.onMessage(message);
+            }
+        }, (latency != null) ? latency : randomLatency());
+    }
+}
@@ -0,0 +1,92 @@
+package com.systemic.bluetoothle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import android.bluetooth.BluetoothDevice;
+import android.os.FakeLooper;
+
+import no.nordicsemi.android.ble.callback.FailCallback;
+
+/**
+ * @brief Checks the result of Peripheral.disconnect() depending on the connection state.
+ */
+public class PeripheralDisconnectTest
+{
+    /**
+     * @brief Records the results of a request, "ok", "invalid" or the failure status.
+     */
+    private static final class Results implements Peripheral.RequestCallback
+    {
+        final ArrayList<String> results = new ArrayList<>();
+
+        @Override
+        public void onRequestCompleted(final BluetoothDevice device)
+        {
+            results.add("ok");
+        }
+
+        @Override
+        public void onRequestFailed(final BluetoothDevice device, final int status)
+        {
+            results.add(Integer.toString(status));
+        }
+
+        @Override
+        public void onInvalidRequest()
+        {
+            results.add("invalid");
+        }
+    }
+
+    @Test
+    public void disconnectingAReadyPeripheralSucceeds()
+    {
+        Peripheral peripheral = FakeGatt.connect(FakeGatt.createDie(0x0A0B0C0D1101L));
+        Results disconnect = new Results();
+        peripheral.disconnect(disconnect);
+        FakeLooper.runUntilIdle();
+        assertEquals("[ok]", disconnect.results.toString());
+        assertFalse(peripheral.isConnected());
+    }
+
+    @Test
+    public void disconnectingAnInitializingPeripheralSucceedsOnceDisconnected()
+    {
+        BluetoothDevice device = FakeGatt.createDie(0x0A0B0C0D1102L);
+        device.getFakeRemote().setLatencyMillis(100);
+        Peripheral peripheral = new Peripheral(device, FakeGatt.NO_OBSERVER);
+        peripheral.setConnectionProfile(247, 0, -1);
+        Results connect = new Results();
+        peripheral.connect((String)null, false, connect);
+
+        // Connected, the MTU request of the connection profile is running
+        FakeLooper.advanceBy(150);
+        assertFalse(peripheral.isReady());
+
+        // Canceling the connection disconnects the device, which takes some time
+        Results disconnect = new Results();
+        peripheral.disconnect(disconnect);
+        FakeLooper.advanceBy(10);
+        assertEquals("[" + FailCallback.REASON_CANCELLED + "]", connect.results.toString());
+        assertEquals(0, disconnect.results.size());
+
+        FakeLooper.advanceBy(1000);
+        assertEquals("[ok]", disconnect.results.toString());
+        assertFalse(peripheral.isConnected());
+    }
+
+    @Test
+    public void disconnectingADisconnectedPeripheralSucceeds()
+    {
+        Peripheral peripheral = new Peripheral(FakeGatt.createDie(0x0A0B0C0D1103L), FakeGatt.NO_OBSERVER);
+        Results disconnect = new Results();
+        peripheral.disconnect(disconnect);
+        FakeLooper.runUntilIdle();
+        assertEquals("[ok]", disconnect.results.toString());
+    }
+}
@@ -0,0 +1,43 @@
+package com.systemic.bluetoothle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+/**
+ * @brief Checks the lookups measured by PeripheralBenchmark on a fake connected peripheral.
+ */
+public class PeripheralLookupTest
+{
+    private static final int WRITE_PROPERTIES =
+        BluetoothGattCharacteristic.PROPERTY_WRITE | BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE;
+
+    @Test
+    public void lookupsFindTheCharacteristic()
+    {
+        Peripheral peripheral = FakeGatt.connect(FakeGatt.createDie(0x0A0B0C0D0E01L));
+        String service = FakeGatt.PIXEL_SERVICE.toString();
+        String characteristic = FakeGatt.PIXEL_WRITE.toString();
+
+        assertEquals(WRITE_PROPERTIES, peripheral.getCharacteristicProperties(service, characteristic, 0));
+        assertEquals(WRITE_PROPERTIES, peripheral.getCharacteristicProperties(
+            UuidRegistry.register(service), UuidRegistry.register(characteristic), 0));
+        int handle = peripheral.resolveCharacteristic(service, characteristic, 0);
+        assertTrue(handle >= 0);
+        assertEquals(WRITE_PROPERTIES, peripheral.getCharacteristicProperties(handle));
+    }
+
+    @Test
+    public void discoveredServicesAreListed()
+    {
+        Peripheral peripheral = FakeGatt.connect(FakeGatt.createDie(0x0A0B0C0D0E02L));
+
+        String services = peripheral.getDiscoveredServices();
+        assertNotNull(services);
+        assertEquals(FakeGatt.PIXEL_SERVICE + "," + FakeGatt.BATTERY_SERVICE, services);
+    }
+}
@@ -0,0 +1,225 @@
+package com.systemic.bluetoothle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import android.bluetooth.BluetoothDevice;
+import android.os.FakeLooper;
+
+import no.nordicsemi.android.ble.data.Data;
+
+/**
+ * @brief Checks PeripheralPool limits and shares requests between peripherals,
+ *        with peripherals simulated by the fake GATT backend.
+ */
+public class PeripheralPoolTest
+{
+    private static final long LATENCY_MILLIS = 10;
+
+    private final List<String> _completed = new ArrayList<>();
+    private int _failures;
+
+    @Before
+    public void setUp()
+    {
+        FakeLooper.reset();
+    }
+
+    private BluetoothDevice createDie(final long address)
+    {
+        BluetoothDevice device = FakeGatt.createDie(address);
+        device.getFakeRemote().setLatencyMillis(LATENCY_MILLIS);
+        return device;
+    }
+
+    private Peripheral.RequestCallback recordCompletion(final String name)
+    {
+        return new Peripheral.RequestCallback()
+        {
+            @Override
+            public void onRequestCompleted(final BluetoothDevice device)
+            {
+                _completed.add(name);
+            }
+
+            @Override
+            public void onRequestFailed(final BluetoothDevice device, final int status)
+            {
+                ++_failures;
+            }
+
+            @Override
+            public void onInvalidRequest()
+            {
+                ++_failures;
+            }
+        };
+    }
+
+    private Peripheral.ReadValueRequestCallback recordRead(final String name)
+    {
+        return new Peripheral.ReadValueRequestCallback()
+        {
+            @Override
+            public void onDataReceived(final BluetoothDevice device, final Data data)
+            {
+                _completed.add(name);
+            }
+
+            @Override
+            public void onRequestFailed(final BluetoothDevice device, final int status)
+            {
+                ++_failures;
+            }
+
+            @Override
+            public void onInvalidRequest()
+            {
+                ++_failures;
+            }
+        };
+    }
+
+    @Test
+    public void connectionsAreLimited()
+    {
+        PeripheralPool pool = new PeripheralPool(1, 4);
+        List<Peripheral> peripherals = new ArrayList<>();
+        for (int i = 0; i < 3; ++i)
+        {
+            Peripheral peripheral = pool.createPeripheral(createDie(0x0A0B0C0D0F00L + i), FakeGatt.NO_OBSERVER);
+            peripherals.add(peripheral);
+            pool.connect(peripheral, null, false, recordCompletion("connect" + i));
+        }
+
+        // Connections are made one after another
+        for (int i = 0; i < 3; ++i)
+        {
+            assertEquals(2 - i, pool.getPendingRequestsCount());
+            FakeLooper.advanceBy(LATENCY_MILLIS);
+            for (int j = 0; j < 3; ++j)
+            {
+                assertEquals(j <= i, peripherals.get(j).isReady());
+            }
+        }
+        assertEquals(0, _failures);
+    }
+
+    @Test
+    public void busyPeripheralDoesNotStarveTheOtherOnes()
+    {
+        PeripheralPool pool = new PeripheralPool(4, 2);
+        Peripheral[] peripherals = new Peripheral[3];
+        int[] handles = new int[peripherals.length];
+        for (int i = 0; i < peripherals.length; ++i)
+        {
+            peripherals[i] = pool.createPeripheral(createDie(0x0A0B0C0D0F10L + i), FakeGatt.NO_OBSERVER);
+            pool.connect(peripherals[i], null, false, null);
+        }
+        FakeLooper.advanceBy(LATENCY_MILLIS);
+        for (int i = 0; i < peripherals.length; ++i)
+        {
+            assertTrue(peripherals[i].isReady());
+            handles[i] = peripherals[i].resolveCharacteristic(FakeGatt.BATTERY_SERVICE.toString(), FakeGatt.BATTERY_LEVEL.toString(), 0);
+        }
+
+        // The first peripheral queues many reads before the other ones queue a single read
+        final int busyCount = 10;
+        for (int i = 0; i < busyCount; ++i)
+        {
+            pool.readCharacteristic(peripherals[0], handles[0], recordRead("busy" + i));
+        }
+        pool.readCharacteristic(peripherals[1], handles[1], recordRead("second"));
+        pool.readCharacteristic(peripherals[2], handles[2], recordRead("third"));
+
+        final int total = busyCount + 2;
+        while (_completed.size() < total)
+        {
+            FakeLooper.advanceBy(1);
+
+            // The number of requests started and not completed stays within the limit
+            int running = total - _completed.size() - pool.getPendingRequestsCount();
+            assertTrue("running " + running, running <= 2);
+        }
+
+        // The other peripherals are served in the first round after they queued their read,
+        // rather than after the 10 reads of the busy peripheral
+        // (the busy peripheral had 3 reads started by then)
+        assertTrue(_completed.toString(), _completed.subList(0, 5).containsAll(Arrays.asList("second", "third")));
+        assertEquals(0, _failures);
+    }
+
+    @Test
+    public void releasedPeripheralRequestsAreCanceled()
+    {
+        PeripheralPool pool = new PeripheralPool(4, 1);
+        Peripheral first = pool.createPeripheral(createDie(0x0A0B0C0D0F20L), FakeGatt.NO_OBSERVER);
+        Peripheral second = pool.createPeripheral(createDie(0x0A0B0C0D0F21L), FakeGatt.NO_OBSERVER);
+        pool.connect(first, null, false, null);
+        pool.connect(second, null, false, null);
+        FakeLooper.advanceBy(LATENCY_MILLIS);
+        int handle1 = first.resolveCharacteristic(FakeGatt.BATTERY_SERVICE.toString(), FakeGatt.BATTERY_LEVEL.toString(), 0);
+        int handle2 = second.resolveCharacteristic(FakeGatt.BATTERY_SERVICE.toString(), FakeGatt.BATTERY_LEVEL.toString(), 0);
+
+        pool.readCharacteristic(first, handle1, recordRead("first0"));
+        pool.readCharacteristic(first, handle1, recordRead("first1"));
+        pool.readCharacteristic(second, handle2, recordRead("second"));
+        pool.releasePeripheral(first);
+        FakeLooper.advanceBy(10 * LATENCY_MILLIS);
+
+        // The running read completes, the pending one is canceled
+        assertEquals(2, _completed.size());
+        assertEquals("first0", _completed.get(0));
+        assertEquals("second", _completed.get(1));
+        assertEquals(1, _failures);
+        assertEquals(1, pool.getPeripheralsCount());
+    }
+
+    @Test
+    public void invalidArgumentsThrowWhenSubmitted()
+    {
+        PeripheralPool pool = new PeripheralPool(1, 1);
+        Peripheral busy = pool.createPeripheral(createDie(0x0A0B0C0D0F30L), FakeGatt.NO_OBSERVER);
+        Peripheral peripheral = pool.createPeripheral(createDie(0x0A0B0C0D0F31L), FakeGatt.NO_OBSERVER);
+        pool.connect(busy, null, false, null);
+        FakeLooper.advanceBy(LATENCY_MILLIS);
+        int handle = busy.resolveCharacteristic(FakeGatt.BATTERY_SERVICE.toString(), FakeGatt.BATTERY_LEVEL.toString(), 0);
+
+        // Keep both limits reached so the requests below would otherwise be queued
+        // and only run later, from the completion callback of another request
+        pool.connect(busy, null, false, recordCompletion("connect"));
+        pool.readCharacteristic(busy, handle, recordRead("read"));
+        try
+        {
+            pool.connect(peripheral, FakeGatt.PIXEL_SERVICE + ",not a uuid", false, recordCompletion("connect"));
+            fail("Invalid services UUIDs accepted");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // Expected
+        }
+        try
+        {
+            pool.writeCharacteristic(peripheral, 0, null, false, recordCompletion("write"));
+            fail("Null data accepted");
+        }
+        catch (NullPointerException e)
+        {
+            // Expected
+        }
+
+        // Nothing was queued
+        assertEquals(0, pool.getPendingRequestsCount());
+        FakeLooper.advanceBy(10 * LATENCY_MILLIS);
+        assertEquals(Arrays.asList("connect", "read"), _completed);
+        assertEquals(0, _failures);
+    }
+}
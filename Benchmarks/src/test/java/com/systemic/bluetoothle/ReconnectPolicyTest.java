@@ -0,0 +1,175 @@
+package com.systemic.bluetoothle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+import android.bluetooth.BluetoothDevice;
+
+import no.nordicsemi.android.ble.callback.FailCallback;
+import no.nordicsemi.android.ble.observer.ConnectionObserver;
+
+/**
+ * @brief Checks the attempts and backoff of ReconnectPolicy with a fake host and clock.
+ */
+public class ReconnectPolicyTest
+{
+    private static final long DIRECT_TIMEOUT = 2000;
+    private static final long AUTO_CONNECT_TIMEOUT = 10000;
+    private static final long INITIAL_BACKOFF = 1000;
+    private static final long MAX_BACKOFF = 8000;
+
+    /**
+     * @brief Records the connection attempts and the delayed runnables.
+     */
+    private static final class FakeHost implements ReconnectPolicy.Host
+    {
+        final ArrayList<Boolean> autoConnects = new ArrayList<>();
+        final ArrayList<Long> timeouts = new ArrayList<>();
+        final ArrayList<Long> delays = new ArrayList<>();
+        Peripheral.RequestCallback callback;
+        Runnable delayed;
+
+        @Override
+        public void connect(final boolean autoConnect, final long timeoutMillis, final Peripheral.RequestCallback callback)
+        {
+            autoConnects.add(autoConnect);
+            timeouts.add(timeoutMillis);
+            this.callback = callback;
+        }
+
+        @Override
+        public void postDelayed(final Runnable runnable, final long delayMillis)
+        {
+            delays.add(delayMillis);
+            delayed = runnable;
+        }
+
+        @Override
+        public void removeCallbacks(final Runnable runnable)
+        {
+            if (delayed == runnable)
+            {
+                delayed = null;
+            }
+        }
+
+        void failAttempt(final int status)
+        {
+            callback.onRequestFailed(null, status);
+        }
+
+        void runDelayed()
+        {
+            Runnable runnable = delayed;
+            delayed = null;
+            runnable.run();
+        }
+    }
+
+    private final FakeClock _clock = new FakeClock();
+    private final FakeHost _host = new FakeHost();
+
+    private ReconnectPolicy createPolicy(final int maxAttempts)
+    {
+        ReconnectPolicy policy = new ReconnectPolicy(
+            DIRECT_TIMEOUT, AUTO_CONNECT_TIMEOUT, INITIAL_BACKOFF, MAX_BACKOFF, maxAttempts, _clock, new Random(42));
+        policy.attach(_host);
+        return policy;
+    }
+
+    @Test
+    public void directAttemptThenTimedBackgroundAttemptsWithGrowingBackoff()
+    {
+        ReconnectPolicy policy = createPolicy(0);
+        policy.onDisconnected(ConnectionObserver.REASON_LINK_LOSS);
+        assertTrue(policy.isReconnecting());
+
+        long expectedMax = INITIAL_BACKOFF;
+        for (int attempt = 1; attempt <= 6; ++attempt)
+        {
+            assertEquals(attempt, _host.autoConnects.size());
+            assertEquals(attempt > 1, _host.autoConnects.get(attempt - 1));
+            assertEquals(attempt > 1 ? AUTO_CONNECT_TIMEOUT : DIRECT_TIMEOUT, (long)_host.timeouts.get(attempt - 1));
+
+            // Background attempts time out like the direct one, which moves on to the next backoff
+            _host.failAttempt(FailCallback.REASON_TIMEOUT);
+            long delay = _host.delays.get(attempt - 1);
+            assertTrue("delay " + delay + " for attempt " + (attempt + 1), (delay > expectedMax / 2) && (delay <= expectedMax));
+            expectedMax = Math.min(MAX_BACKOFF, expectedMax * 2);
+
+            _clock.advance(delay + AUTO_CONNECT_TIMEOUT);
+            _host.runDelayed();
+        }
+    }
+
+    @Test
+    public void reconnectionIsRecorded()
+    {
+        ReconnectPolicy policy = createPolicy(0);
+        policy.onDisconnected(ConnectionObserver.REASON_TIMEOUT);
+        _clock.advance(DIRECT_TIMEOUT);
+        _host.failAttempt(FailCallback.REASON_TIMEOUT);
+        _clock.advance(INITIAL_BACKOFF);
+        _host.runDelayed();
+        _clock.advance(500);
+        policy.onReady();
+
+        assertFalse(policy.isReconnecting());
+        String metrics = policy.getMetrics();
+        assertTrue(metrics, metrics.startsWith("{\"reconnections\":1,\"directReconnections\":0,\"attempts\":2,\"failedAttempts\":1,\"abandoned\":0,"));
+    }
+
+    @Test
+    public void givesUpAfterMaxAttempts()
+    {
+        ReconnectPolicy policy = createPolicy(3);
+        policy.onDisconnected(ConnectionObserver.REASON_LINK_LOSS);
+        for (int attempt = 1; attempt < 3; ++attempt)
+        {
+            _host.failAttempt(FailCallback.REASON_TIMEOUT);
+            _host.runDelayed();
+        }
+        _host.failAttempt(FailCallback.REASON_TIMEOUT);
+
+        assertFalse(policy.isReconnecting());
+        assertEquals(3, _host.autoConnects.size());
+        assertEquals(2, _host.delays.size());
+        assertTrue(policy.getMetrics().contains("\"abandoned\":1"));
+    }
+
+    @Test
+    public void requestedDisconnectionsAreNotReconnected()
+    {
+        ReconnectPolicy policy = createPolicy(0);
+        policy.onDisconnected(ConnectionObserver.REASON_SUCCESS);
+        policy.onDisconnected(ConnectionObserver.REASON_TERMINATE_PEER_USER);
+        assertFalse(policy.isReconnecting());
+        assertEquals(0, _host.autoConnects.size());
+    }
+
+    @Test
+    public void obsoleteAttemptsAreIgnored()
+    {
+        ReconnectPolicy policy = createPolicy(0);
+        policy.onDisconnected(ConnectionObserver.REASON_LINK_LOSS);
+        Peripheral.RequestCallback obsolete = _host.callback;
+
+        // User code takes over
+        policy.cancel();
+        obsolete.onRequestFailed((BluetoothDevice)null, FailCallback.REASON_CANCELLED);
+        assertFalse(policy.isReconnecting());
+        assertEquals(0, _host.delays.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void backgroundAttemptsMustTimeOut()
+    {
+        new ReconnectPolicy(DIRECT_TIMEOUT, 0, INITIAL_BACKOFF, MAX_BACKOFF, 0, _clock, new Random(42));
+    }
+}
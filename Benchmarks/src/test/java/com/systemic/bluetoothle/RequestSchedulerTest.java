@@ -0,0 +1,218 @@
+package com.systemic.bluetoothle;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import android.bluetooth.BluetoothDevice;
+import android.os.FakeLooper;
+
+import no.nordicsemi.android.ble.callback.FailCallback;
+
+/**
+ * @brief Checks how RequestScheduler orders, coalesces and times out the requests
+ *        of a peripheral, including around a background connection, on a fake device.
+ */
+public class RequestSchedulerTest
+{
+    /**
+     * @brief Records the results of the requests, "ok" or the failure status,
+     *        and optionally the order in which requests finish.
+     */
+    private static final class Results implements Peripheral.ReadRssiRequestCallback, Peripheral.RequestCallback
+    {
+        final ArrayList<String> results = new ArrayList<>();
+        private final ArrayList<String> _finished;
+        private final String _name;
+
+        Results()
+        {
+            this(null, null);
+        }
+
+        Results(final ArrayList<String> finished, final String name)
+        {
+            _finished = finished;
+            _name = name;
+        }
+
+        @Override
+        public void onRssiRead(final BluetoothDevice device, final int rssi)
+        {
+            add("rssi");
+        }
+
+        @Override
+        public void onRequestCompleted(final BluetoothDevice device)
+        {
+            add("ok");
+        }
+
+        @Override
+        public void onRequestFailed(final BluetoothDevice device, final int status)
+        {
+            add(Integer.toString(status));
+        }
+
+        @Override
+        public void onInvalidRequest()
+        {
+            add("invalid");
+        }
+
+        private void add(final String result)
+        {
+            results.add(result);
+            if (_finished != null)
+            {
+                _finished.add(_name);
+            }
+        }
+    }
+
+    private static Peripheral connectWithLatency(final long address, final long latencyMillis)
+    {
+        BluetoothDevice device = FakeGatt.createDie(address);
+        Peripheral peripheral = FakeGatt.connect(device);
+        device.getFakeRemote().setLatencyMillis(latencyMillis);
+        return peripheral;
+    }
+
+    private static Peripheral connectInBackground(final BluetoothDevice device, final Results results)
+    {
+        device.getFakeRemote().setReachable(false);
+        Peripheral peripheral = new Peripheral(device, FakeGatt.NO_OBSERVER);
+        peripheral.connect((String)null, true, results);
+        FakeLooper.runUntilIdle();
+        return peripheral;
+    }
+
+    @Test
+    public void requestsRunByPriority()
+    {
+        Peripheral peripheral = connectWithLatency(0x0A0B0C0D1004L, 10);
+        int handle = peripheral.resolveCharacteristic(FakeGatt.PIXEL_SERVICE.toString(), FakeGatt.PIXEL_WRITE.toString(), 0);
+        ArrayList<String> finished = new ArrayList<>();
+
+        // The first request runs right away, the other ones wait for it
+        peripheral.readRssi(new Results(finished, "running"));
+        byte[] data = new byte[] { 1 };
+        peripheral.writeCharacteristic(handle, data, false, Peripheral.PRIORITY_BACKGROUND, false, 0, new Results(finished, "background"));
+        peripheral.writeCharacteristic(handle, data, false, Peripheral.PRIORITY_USER, false, 0, new Results(finished, "user1"));
+        peripheral.writeCharacteristic(handle, data, false, Peripheral.PRIORITY_CONTROL, false, 0, new Results(finished, "control"));
+        peripheral.writeCharacteristic(handle, data, false, Peripheral.PRIORITY_USER, false, 0, new Results(finished, "user2"));
+        FakeLooper.advanceBy(1000);
+
+        assertEquals("[running, control, user1, user2, background]", finished.toString());
+    }
+
+    @Test
+    public void coalescedRequestsReplaceThePendingOne()
+    {
+        Peripheral peripheral = connectWithLatency(0x0A0B0C0D1005L, 10);
+        int handle = peripheral.resolveCharacteristic(FakeGatt.PIXEL_SERVICE.toString(), FakeGatt.PIXEL_WRITE.toString(), 0);
+
+        Results running = new Results();
+        Results rssi1 = new Results(), rssi2 = new Results();
+        Results write1 = new Results(), write2 = new Results(), other = new Results();
+        peripheral.readRssi(running);
+        peripheral.readRssi(Peripheral.PRIORITY_USER, 0, rssi1);
+        peripheral.writeCharacteristic(handle, new byte[] { 1 }, false, Peripheral.PRIORITY_USER, true, 0, write1);
+        peripheral.writeCharacteristic(handle, new byte[] { 2 }, false, Peripheral.PRIORITY_USER, false, 0, other);
+        peripheral.readRssi(Peripheral.PRIORITY_USER, 0, rssi2);
+        peripheral.writeCharacteristic(handle, new byte[] { 3 }, false, Peripheral.PRIORITY_USER, true, 0, write2);
+
+        // The replaced requests fail right away
+        FakeLooper.runUntilIdle();
+        assertEquals("[" + FailCallback.REASON_CANCELLED + "]", rssi1.results.toString());
+        assertEquals("[" + FailCallback.REASON_CANCELLED + "]", write1.results.toString());
+        assertEquals(0, rssi2.results.size());
+
+        // A write queued without coalescing isn't replaced
+        FakeLooper.advanceBy(1000);
+        assertEquals("[rssi]", running.results.toString());
+        assertEquals("[rssi]", rssi2.results.toString());
+        assertEquals("[ok]", write2.results.toString());
+        assertEquals("[ok]", other.results.toString());
+    }
+
+    @Test
+    public void pendingRequestsFailOnceTheirDeadlinePasses()
+    {
+        Peripheral peripheral = connectWithLatency(0x0A0B0C0D1006L, 1000);
+
+        Results running = new Results();
+        Results late = new Results();
+        Results noDeadline = new Results();
+        peripheral.readRssi(running);
+        peripheral.readRssi(Peripheral.PRIORITY_USER, 100, late);
+        peripheral.writeCharacteristic(
+            peripheral.resolveCharacteristic(FakeGatt.PIXEL_SERVICE.toString(), FakeGatt.PIXEL_WRITE.toString(), 0),
+            new byte[] { 1 }, false, Peripheral.PRIORITY_USER, false, 0, noDeadline);
+
+        // The RSSI read times out while the first request is still running
+        FakeLooper.advanceBy(100);
+        assertEquals(0, running.results.size());
+        assertEquals("[" + FailCallback.REASON_TIMEOUT + "]", late.results.toString());
+
+        // The other requests aren't affected
+        FakeLooper.advanceBy(2000);
+        assertEquals("[rssi]", running.results.toString());
+        assertEquals("[ok]", noDeadline.results.toString());
+        assertEquals(1, late.results.size());
+    }
+
+    @Test
+    public void requestsKeepTheirDeadlineDuringABackgroundConnection()
+    {
+        Results connect = new Results();
+        Peripheral peripheral = connectInBackground(FakeGatt.createDie(0x0A0B0C0D1001L), connect);
+
+        Results rssi = new Results();
+        peripheral.readRssi(Peripheral.PRIORITY_USER, 500, rssi);
+        FakeLooper.advanceBy(1000);
+        assertEquals(0, connect.results.size());
+        assertEquals(1, rssi.results.size());
+        assertEquals(Integer.toString(FailCallback.REASON_TIMEOUT), rssi.results.get(0));
+    }
+
+    @Test
+    public void requestsRunOnceTheBackgroundConnectionCompletes()
+    {
+        BluetoothDevice device = FakeGatt.createDie(0x0A0B0C0D1002L);
+        Results connect = new Results();
+        Peripheral peripheral = connectInBackground(device, connect);
+
+        Results rssi = new Results();
+        peripheral.readRssi(rssi);
+        FakeLooper.advanceBy(60000);
+        assertEquals(0, rssi.results.size());
+
+        device.getFakeRemote().setReachable(true);
+        FakeLooper.runUntilIdle();
+        assertEquals("[ok]", connect.results.toString());
+        assertEquals("[rssi]", rssi.results.toString());
+    }
+
+    @Test
+    public void disconnectCancelsABackgroundConnectionAndTheRequestsWaitingForIt()
+    {
+        Results connect = new Results();
+        Peripheral peripheral = connectInBackground(FakeGatt.createDie(0x0A0B0C0D1003L), connect);
+
+        Results rssi = new Results();
+        peripheral.readRssi(rssi);
+        peripheral.disconnect(null);
+        FakeLooper.runUntilIdle();
+        assertEquals("[" + FailCallback.REASON_CANCELLED + "]", connect.results.toString());
+        assertEquals("[" + FailCallback.REASON_CANCELLED + "]", rssi.results.toString());
+
+        // The scheduler isn't left waiting for the canceled connection
+        Results next = new Results();
+        peripheral.readRssi(next);
+        FakeLooper.runUntilIdle();
+        assertEquals("[" + FailCallback.REASON_DEVICE_DISCONNECTED + "]", next.results.toString());
+    }
+}
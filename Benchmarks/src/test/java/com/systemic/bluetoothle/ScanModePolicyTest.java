@@ -0,0 +1,161 @@
+package com.systemic.bluetoothle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import no.nordicsemi.android.support.v18.scanner.ScanSettings;
+
+/**
+ * @brief Checks the scan mode transitions of ScanModePolicy and the scan starts
+ *        accounting of ScanStartsLimiter, with a fake clock.
+ */
+public class ScanModePolicyTest
+{
+    private static final int LOW_LATENCY = ScanSettings.SCAN_MODE_LOW_LATENCY;
+    private static final int BALANCED = ScanSettings.SCAN_MODE_BALANCED;
+    private static final int LOW_POWER = ScanSettings.SCAN_MODE_LOW_POWER;
+
+    private final FakeClock _clock = new FakeClock();
+    // Android's limit: 5 starts per 30 seconds
+    private final ScanStartsLimiter _limiter = new ScanStartsLimiter(_clock, 5, 30000);
+
+    /**
+     * @brief Applies the next scan mode as Scanner does, returns it.
+     */
+    private int update(final ScanModePolicy policy)
+    {
+        int mode = policy.getNextScanMode();
+        if (mode != policy.getScanMode())
+        {
+            _limiter.onScanStarted();
+            policy.onScanStarted(mode);
+        }
+        return mode;
+    }
+
+    @Test
+    public void limiterCountsStartsOverTheWindow()
+    {
+        assertEquals(5, _limiter.getAvailableStarts());
+        for (int i = 0; i < 5; ++i)
+        {
+            _limiter.onScanStarted();
+            _clock.advance(1000);
+        }
+        assertEquals(0, _limiter.getAvailableStarts());
+
+        // The first start leaves the window 30s after it was made
+        _clock.advance(24999);
+        assertEquals(0, _limiter.getAvailableStarts());
+        _clock.advance(1);
+        assertEquals(1, _limiter.getAvailableStarts());
+        _clock.advance(4000);
+        assertEquals(5, _limiter.getAvailableStarts());
+    }
+
+    @Test
+    public void idleScanDropsToBalancedThenLowPower()
+    {
+        _limiter.onScanStarted();
+        ScanModePolicy policy = new ScanModePolicy(_clock, _limiter, 10000, 60000);
+        assertEquals(LOW_LATENCY, update(policy));
+
+        _clock.advance(9999);
+        assertEquals(LOW_LATENCY, update(policy));
+        _clock.advance(1);
+        assertEquals(BALANCED, update(policy));
+        _clock.advance(50000);
+        assertEquals(LOW_POWER, update(policy));
+    }
+
+    @Test
+    public void activityGoesBackToLowLatency()
+    {
+        _limiter.onScanStarted();
+        ScanModePolicy policy = new ScanModePolicy(_clock, _limiter, 10000, 0);
+        assertFalse(policy.onScanResult(1, 42));
+
+        _clock.advance(10000);
+        assertEquals(BALANCED, update(policy));
+
+        // Same data from a known device isn't activity
+        assertFalse(policy.onScanResult(1, 42));
+        assertEquals(BALANCED, update(policy));
+
+        // New data is, and requires a switch
+        assertTrue(policy.onScanResult(1, 43));
+        assertEquals(LOW_LATENCY, update(policy));
+
+        // So is a new device
+        _clock.advance(10000);
+        assertEquals(BALANCED, update(policy));
+        assertTrue(policy.onScanResult(2, 42));
+        assertEquals(LOW_LATENCY, update(policy));
+    }
+
+    @Test
+    public void zeroDurationsDisableModes()
+    {
+        _limiter.onScanStarted();
+        ScanModePolicy never = new ScanModePolicy(_clock, _limiter, 0, 0);
+        ScanModePolicy lowPowerOnly = new ScanModePolicy(_clock, _limiter, 0, 20000);
+
+        _clock.advance(10000);
+        assertEquals(LOW_LATENCY, never.getNextScanMode());
+        assertEquals(LOW_LATENCY, lowPowerOnly.getNextScanMode());
+        _clock.advance(10000);
+        assertEquals(LOW_LATENCY, never.getNextScanMode());
+        assertEquals(LOW_POWER, lowPowerOnly.getNextScanMode());
+    }
+
+    @Test
+    public void oneStartIsKeptInReserveForLowLatency()
+    {
+        ScanModePolicy policy = new ScanModePolicy(_clock, _limiter, 1000, 0);
+
+        // Use 3 of the 5 starts, leaving 2
+        for (int i = 0; i < 3; ++i)
+        {
+            _limiter.onScanStarted();
+        }
+        _clock.advance(1000);
+        assertEquals(2, _limiter.getAvailableStarts());
+
+        // Dropping to balanced is allowed as a start is left to go back up
+        assertEquals(BALANCED, update(policy));
+        assertEquals(1, _limiter.getAvailableStarts());
+
+        // Going back to low latency may use the last start
+        assertTrue(policy.onScanResult(1, 1));
+        assertEquals(LOW_LATENCY, update(policy));
+        assertEquals(0, _limiter.getAvailableStarts());
+
+        // No start left, the policy stays in low latency even when idle
+        _clock.advance(1000);
+        assertEquals(LOW_LATENCY, update(policy));
+    }
+
+    @Test
+    public void downgradeIsDeferredUntilTwoStartsAreAvailable()
+    {
+        ScanModePolicy policy = new ScanModePolicy(_clock, _limiter, 1000, 0);
+        for (int i = 0; i < 4; ++i)
+        {
+            _limiter.onScanStarted();
+            _clock.advance(100);
+        }
+        assertEquals(1, _limiter.getAvailableStarts());
+
+        // Idle, but the only start left is kept in reserve
+        _clock.advance(1000);
+        assertEquals(LOW_LATENCY, update(policy));
+
+        // Once the oldest start leaves the window, two starts are available
+        _clock.advance(30000 - 1400);
+        assertEquals(2, _limiter.getAvailableStarts());
+        assertEquals(BALANCED, update(policy));
+    }
+}
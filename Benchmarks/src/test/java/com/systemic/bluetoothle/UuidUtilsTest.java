@@ -0,0 +1,46 @@
+package com.systemic.bluetoothle;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.UUID;
+
+import org.junit.Test;
+
+/**
+ * @brief Checks UuidUtils.parseList() accepts the lists that String.split() based
+ *        parsing accepted, see UuidListBenchmark.
+ */
+public class UuidUtilsTest
+{
+    private static final UUID FIRST = UUID.fromString("6e400001-b5a3-f393-e0a9-e50e24dcca9e");
+    private static final UUID SECOND = UUID.fromString("0000180f-0000-1000-8000-00805f9b34fb");
+
+    @Test
+    public void parsesList()
+    {
+        assertArrayEquals(new UUID[] { FIRST }, UuidUtils.parseList(FIRST.toString(), "uuids"));
+        assertArrayEquals(new UUID[] { FIRST, SECOND }, UuidUtils.parseList(FIRST + "," + SECOND, "uuids"));
+    }
+
+    @Test
+    public void ignoresTrailingCommas()
+    {
+        assertArrayEquals(new UUID[] { FIRST }, UuidUtils.parseList(FIRST + ",", "uuids"));
+        assertArrayEquals(new UUID[] { FIRST, SECOND }, UuidUtils.parseList(FIRST + "," + SECOND + ",,", "uuids"));
+        assertNull(UuidUtils.parseList(",", "uuids"));
+    }
+
+    @Test
+    public void emptyListIsNull()
+    {
+        assertNull(UuidUtils.parseList(null, "uuids"));
+        assertNull(UuidUtils.parseList("", "uuids"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyToken()
+    {
+        UuidUtils.parseList(FIRST + ",," + SECOND, "uuids");
+    }
+}